@@ -0,0 +1,170 @@
+package kirjanpito.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Suorittaa suorituskykytestit ja kirjoittaa tulokset JSON-muodossa.
+ * Jokainen testi suoritetaan ensin <code>warmupIterations</code> kertaa
+ * tuloksia tallentamatta, jotta JIT-kääntäjä ehtii optimoida koodin.
+ * Tämän jälkeen testi suoritetaan <code>iterations</code> kertaa ja
+ * jokaisen suorituskerran kesto tallennetaan.
+ *
+ * @author Tommi Helineva
+ */
+public class Benchmark {
+	private int warmupIterations;
+	private int iterations;
+	private Map<String, String> parameters;
+	private List<Result> results;
+
+	public Benchmark(int warmupIterations, int iterations) {
+		this.warmupIterations = warmupIterations;
+		this.iterations = iterations;
+		this.parameters = new LinkedHashMap<String, String>();
+		this.results = new ArrayList<Result>();
+	}
+
+	/**
+	 * Asettaa parametrin, joka kirjoitetaan tulosten yhteyteen.
+	 *
+	 * @param name parametrin nimi
+	 * @param value parametrin arvo
+	 */
+	public void setParameter(String name, Object value) {
+		parameters.put(name, String.valueOf(value));
+	}
+
+	/**
+	 * Suorittaa testin.
+	 *
+	 * @param name testin nimi
+	 * @param task suoritettava tehtävä
+	 * @throws Exception jos tehtävän suorittaminen epäonnistuu
+	 */
+	public void run(String name, Task task) throws Exception {
+		for (int i = 0; i < warmupIterations; i++) {
+			task.run();
+		}
+
+		long[] times = new long[iterations];
+
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			task.run();
+			times[i] = System.nanoTime() - start;
+		}
+
+		Result result = new Result(name, times);
+		results.add(result);
+		System.err.println(String.format("%-55s %10.3f ms/op (min %.3f, max %.3f)",
+				name, result.mean / 1e6, result.min / 1e6, result.max / 1e6));
+	}
+
+	/**
+	 * Kirjoittaa tulokset JSON-muodossa.
+	 *
+	 * @param writer kirjoittaja
+	 * @throws IOException jos kirjoittaminen epäonnistuu
+	 */
+	public void writeJSON(Writer writer) throws IOException {
+		writer.write("{\n  \"parameters\": {");
+		boolean first = true;
+
+		for (Map.Entry<String, String> entry : parameters.entrySet()) {
+			writer.write(first ? "\n" : ",\n");
+			writer.write("    " + quote(entry.getKey()) + ": " + quote(entry.getValue()));
+			first = false;
+		}
+
+		writer.write("\n  },\n  \"results\": [");
+		first = true;
+
+		for (Result result : results) {
+			writer.write(first ? "\n" : ",\n");
+			writer.write("    {\"name\": " + quote(result.name) +
+					", \"unit\": \"ms/op\"" +
+					", \"iterations\": " + result.times.length +
+					", \"mean\": " + format(result.mean) +
+					", \"median\": " + format(result.median) +
+					", \"min\": " + format(result.min) +
+					", \"max\": " + format(result.max) +
+					", \"stddev\": " + format(result.stddev) + "}");
+			first = false;
+		}
+
+		writer.write("\n  ]\n}\n");
+		writer.flush();
+	}
+
+	private static String format(double nanos) {
+		return String.format(java.util.Locale.ROOT, "%.4f", nanos / 1e6);
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int)c));
+			}
+			else {
+				sb.append(c);
+			}
+		}
+
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Suorituskykytestin tehtävä.
+	 */
+	public interface Task {
+		public void run() throws Exception;
+	}
+
+	private static class Result {
+		public String name;
+		public long[] times;
+		public double mean;
+		public double median;
+		public double min;
+		public double max;
+		public double stddev;
+
+		public Result(String name, long[] times) {
+			this.name = name;
+			this.times = times;
+
+			long[] sorted = times.clone();
+			Arrays.sort(sorted);
+			double sum = 0;
+
+			for (long time : sorted) {
+				sum += time;
+			}
+
+			mean = sum / sorted.length;
+			median = sorted[sorted.length / 2];
+			min = sorted[0];
+			max = sorted[sorted.length - 1];
+			sum = 0;
+
+			for (long time : sorted) {
+				sum += (time - mean) * (time - mean);
+			}
+
+			stddev = Math.sqrt(sum / sorted.length);
+		}
+	}
+}
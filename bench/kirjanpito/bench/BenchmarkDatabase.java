@@ -0,0 +1,52 @@
+package kirjanpito.bench;
+
+import java.io.File;
+
+import kirjanpito.db.DataSource;
+import kirjanpito.db.sqlite.SQLiteDataSource;
+import kirjanpito.util.LedgerGenerator;
+
+/**
+ * Luo suorituskykytestejä varten SQLite-tietokannan
+ * <code>LedgerGeneratorin</code> avulla. Satunnaislukugeneraattorin
+ * siemen on kiinteä, joten samoilla parametreilla luodaan aina
+ * samanlainen tietokanta.
+ *
+ * @author Tommi Helineva
+ */
+public class BenchmarkDatabase {
+	private File file;
+	private File templateFile;
+	private int documentCount;
+	private int entriesPerDocument;
+	private int accountCount;
+
+	public BenchmarkDatabase(File file, File templateFile, int documentCount,
+			int entriesPerDocument, int accountCount) {
+
+		this.file = file;
+		this.templateFile = templateFile;
+		this.documentCount = documentCount;
+		this.entriesPerDocument = entriesPerDocument;
+		this.accountCount = accountCount;
+	}
+
+	/**
+	 * Luo tietokannan ja avaa sen.
+	 *
+	 * @return tietokanta
+	 * @throws Exception jos tietokannan luominen epäonnistuu
+	 */
+	public DataSource create() throws Exception {
+		file.delete();
+		SQLiteDataSource dataSource = new SQLiteDataSource();
+		dataSource.open("jdbc:sqlite:" + file.getAbsolutePath(), null, null);
+
+		LedgerGenerator generator = new LedgerGenerator(dataSource, templateFile);
+		generator.setDocumentCount(documentCount);
+		generator.setEntryCount(entriesPerDocument);
+		generator.setAccountCount(accountCount);
+		generator.generate();
+		return dataSource;
+	}
+}
@@ -0,0 +1,374 @@
+package kirjanpito.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import kirjanpito.db.Account;
+import kirjanpito.db.CountDTOCallback;
+import kirjanpito.db.DataSource;
+import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
+import kirjanpito.db.ListDTOCallback;
+import kirjanpito.db.Period;
+import kirjanpito.db.Session;
+import kirjanpito.reports.AccountSummaryModel;
+import kirjanpito.reports.FinancialStatementModel;
+import kirjanpito.reports.GeneralJournalModel;
+import kirjanpito.reports.GeneralLedgerModel;
+import kirjanpito.reports.PrintModel;
+import kirjanpito.reports.VATReportModel;
+import kirjanpito.util.AccountBalances;
+import kirjanpito.util.ChartOfAccounts;
+import kirjanpito.util.Registry;
+
+/**
+ * Suorituskykytestit tietokantahauille, saldojen laskennalle,
+ * tilikartan haulle ja tulosteille. Parametrit annetaan muodossa
+ * <code>nimi=arvo</code>:
+ *
+ * <ul>
+ * <li><code>documents</code> - tositteiden lukumäärä (5000)</li>
+ * <li><code>entries</code> - vientien lukumäärä tositetta kohti (4)</li>
+ * <li><code>accounts</code> - käytettävien tilien lukumäärä, 0 = kaikki (0)</li>
+ * <li><code>template</code> - tilikarttamalli</li>
+ * <li><code>db</code> - luotava SQLite-tietokanta</li>
+ * <li><code>output</code> - JSON-tulostiedosto</li>
+ * <li><code>warmup</code> - lämmittelykierrosten lukumäärä (3)</li>
+ * <li><code>iterations</code> - mitattavien kierrosten lukumäärä (10)</li>
+ * </ul>
+ *
+ * @author Tommi Helineva
+ */
+public class LedgerBenchmarks {
+	private DataSource dataSource;
+	private Registry registry;
+	private Benchmark benchmark;
+
+	private static final String[] ORDER_BY_NAMES = {
+		"", "documentNumber", "documentDate",
+		"accountNumberAndDocumentNumber", "accountNumberAndDocumentDate"
+	};
+
+	public LedgerBenchmarks(DataSource dataSource, Benchmark benchmark) {
+		this.dataSource = dataSource;
+		this.benchmark = benchmark;
+	}
+
+	public void run() throws Exception {
+		Session sess = dataSource.openSession();
+
+		try {
+			registry = new Registry();
+			registry.setDataSource(dataSource);
+			registry.fetchSettings(sess);
+			registry.fetchPeriod(sess);
+			registry.fetchChartOfAccounts(sess);
+		}
+		finally {
+			sess.close();
+		}
+
+		runEntryQueries();
+		runAccountBalances();
+		runChartOfAccountsSearch();
+		runPrintModels();
+	}
+
+	private void runEntryQueries() throws Exception {
+		final int periodId = registry.getPeriod().getId();
+
+		for (int i = 1; i < ORDER_BY_NAMES.length; i++) {
+			final int orderBy = i;
+
+			benchmark.run("EntryDAO.getByPeriodId/" + ORDER_BY_NAMES[i],
+				new Benchmark.Task() {
+					public void run() throws Exception {
+						Session sess = dataSource.openSession();
+
+						try {
+							dataSource.getEntryDAO(sess).getByPeriodId(periodId,
+									orderBy, new CountDTOCallback<Entry>());
+						}
+						finally {
+							sess.close();
+						}
+					}
+				});
+		}
+	}
+
+	private void runAccountBalances() throws Exception {
+		final List<Account> accounts = registry.getAccounts();
+		final List<Entry> entries = new ArrayList<Entry>();
+		Session sess = dataSource.openSession();
+
+		try {
+			dataSource.getEntryDAO(sess).getByPeriodId(registry.getPeriod().getId(),
+					EntryDAO.ORDER_BY_DOCUMENT_NUMBER, new ListDTOCallback<Entry>(entries));
+		}
+		finally {
+			sess.close();
+		}
+
+		compareAccountBalances(accounts, entries);
+
+		benchmark.run("AccountBalances.addEntry", new Benchmark.Task() {
+			public void run() {
+				AccountBalances balances = new AccountBalances(accounts);
+
+				for (Entry entry : entries) {
+					balances.addEntry(entry);
+				}
+			}
+		});
+
+		benchmark.run("BigDecimalAccountBalances.addEntry", new Benchmark.Task() {
+			public void run() {
+				BigDecimalAccountBalances balances =
+					new BigDecimalAccountBalances(accounts);
+
+				for (Entry entry : entries) {
+					balances.addEntry(entry);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Tarkistaa, että <code>AccountBalances</code> laskee samat saldot
+	 * kuin aiempi <code>BigDecimalAccountBalances</code>. Vertailuun
+	 * lisätään tili, jonka tyyppi on tuntematon.
+	 */
+	private void compareAccountBalances(List<Account> accounts,
+			List<Entry> entries) {
+
+		accounts = new ArrayList<Account>(accounts);
+
+		if (!accounts.isEmpty()) {
+			Account unknown = new Account();
+			unknown.setId(accounts.get(accounts.size() - 1).getId() + 1);
+			unknown.setType(-1);
+			accounts.add(unknown);
+
+			entries = new ArrayList<Entry>(entries);
+
+			for (int i = 0; i < 2; i++) {
+				Entry entry = new Entry();
+				entry.setAccountId(unknown.getId());
+				entry.setDebit(i == 0);
+				entry.setAmount(new BigDecimal("12.34"));
+				entries.add(entry);
+			}
+		}
+
+		AccountBalances balances = new AccountBalances(accounts);
+		BigDecimalAccountBalances expected = new BigDecimalAccountBalances(accounts);
+
+		for (Entry entry : entries) {
+			balances.addEntry(entry);
+			expected.addEntry(entry);
+		}
+
+		for (Account account : accounts) {
+			if (!equal(balances.getBalance(account.getId()),
+					expected.getBalance(account.getId()))) {
+				throw new IllegalStateException("Tilin " + account.getNumber() +
+						" saldo on eri: " + balances.getBalance(account.getId()) +
+						" != " + expected.getBalance(account.getId()));
+			}
+		}
+
+		if (balances.getCount() != expected.getCount() ||
+				!equal(balances.getProfit(), expected.getProfit())) {
+			throw new IllegalStateException("Tilikauden voitto on eri: " +
+					balances.getProfit() + " != " + expected.getProfit());
+		}
+	}
+
+	private static boolean equal(BigDecimal a, BigDecimal b) {
+		return (a == null) ? b == null : b != null && a.compareTo(b) == 0;
+	}
+
+	private void runChartOfAccountsSearch() throws Exception {
+		final ChartOfAccounts coa = registry.getChartOfAccounts();
+		final List<String> queries = new ArrayList<String>();
+		List<Account> accounts = registry.getAccounts();
+
+		/* Haetaan tilinumeron ja nimen alun perusteella sekä
+		 * hakusanalla, jota ei löydy. */
+		for (int i = 0; i < accounts.size(); i += 10) {
+			Account account = accounts.get(i);
+			queries.add(account.getNumber());
+			queries.add(account.getName().substring(0,
+					Math.min(3, account.getName().length())));
+		}
+
+		queries.add("xyzzy");
+
+		benchmark.run("ChartOfAccounts.search", new Benchmark.Task() {
+			public void run() {
+				for (String q : queries) {
+					coa.search(q);
+				}
+			}
+		});
+	}
+
+	private void runPrintModels() throws Exception {
+		final Period period = registry.getPeriod();
+
+		benchmark.run("GeneralLedgerModel.run", new ModelTask() {
+			protected PrintModel createModel() {
+				GeneralLedgerModel model = new GeneralLedgerModel();
+				model.setRegistry(registry);
+				model.setPeriod(period);
+				model.setStartDate(period.getStartDate());
+				model.setEndDate(period.getEndDate());
+				model.setOrderBy(GeneralLedgerModel.ORDER_BY_NUMBER);
+				return model;
+			}
+		});
+
+		benchmark.run("GeneralJournalModel.run", new ModelTask() {
+			protected PrintModel createModel() {
+				GeneralJournalModel model = new GeneralJournalModel();
+				model.setRegistry(registry);
+				model.setPeriod(period);
+				model.setStartDate(period.getStartDate());
+				model.setEndDate(period.getEndDate());
+				model.setOrderBy(GeneralJournalModel.ORDER_BY_NUMBER);
+				return model;
+			}
+		});
+
+		benchmark.run("FinancialStatementModel.run/incomeStatement", new ModelTask() {
+			protected PrintModel createModel() {
+				return createFinancialStatementModel(
+						FinancialStatementModel.TYPE_INCOME_STATEMENT_DETAILED);
+			}
+		});
+
+		benchmark.run("FinancialStatementModel.run/balanceSheet", new ModelTask() {
+			protected PrintModel createModel() {
+				return createFinancialStatementModel(
+						FinancialStatementModel.TYPE_BALANCE_SHEET_DETAILED);
+			}
+		});
+
+		benchmark.run("VATReportModel.run", new ModelTask() {
+			protected PrintModel createModel() {
+				VATReportModel model = new VATReportModel();
+				model.setDataSource(dataSource);
+				model.setPeriod(period);
+				model.setSettings(registry.getSettings());
+				model.setAccounts(registry.getAccounts());
+				model.setStartDate(period.getStartDate());
+				model.setEndDate(period.getEndDate());
+				return model;
+			}
+		});
+
+		benchmark.run("AccountSummaryModel.run", new ModelTask() {
+			protected PrintModel createModel() {
+				AccountSummaryModel model = new AccountSummaryModel();
+				model.setRegistry(registry);
+				model.setPeriod(period);
+				model.setStartDate(period.getStartDate());
+				model.setEndDate(period.getEndDate());
+				model.setPrintedAccounts(0);
+				return model;
+			}
+		});
+	}
+
+	private FinancialStatementModel createFinancialStatementModel(int type) {
+		Period period = registry.getPeriod();
+		FinancialStatementModel model = new FinancialStatementModel(type);
+		model.setDataSource(dataSource);
+		model.setSettings(registry.getSettings());
+		model.setAccounts(registry.getAccounts());
+		model.setStartDates(new Date[] { period.getStartDate() });
+		model.setEndDates(new Date[] { period.getEndDate() });
+		return model;
+	}
+
+	private abstract class ModelTask implements Benchmark.Task {
+		public void run() throws Exception {
+			createModel().run();
+		}
+
+		protected abstract PrintModel createModel();
+	}
+
+	public static void main(String[] args) throws Exception {
+		HashMap<String, String> params = new HashMap<String, String>();
+		params.put("documents", "5000");
+		params.put("entries", "4");
+		params.put("accounts", "0");
+		params.put("template", "tilikarttamallit/elinkeinotoiminta-24.jar");
+		params.put("db", "bench.sqlite");
+		params.put("output", "bench-results.json");
+		params.put("warmup", "3");
+		params.put("iterations", "10");
+
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+
+			if (index < 0 || !params.containsKey(arg.substring(0, index))) {
+				System.err.println("Tuntematon parametri: " + arg);
+				System.exit(1);
+			}
+
+			params.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+
+		Benchmark benchmark = new Benchmark(
+				Integer.parseInt(params.get("warmup")),
+				Integer.parseInt(params.get("iterations")));
+
+		for (String name : new String[] { "documents", "entries",
+				"accounts", "template", "warmup", "iterations" }) {
+			benchmark.setParameter(name, params.get(name));
+		}
+
+		benchmark.setParameter("java.version", System.getProperty("java.version"));
+		benchmark.setParameter("timestamp", new Date().getTime());
+
+		long start = System.currentTimeMillis();
+		DataSource dataSource = new BenchmarkDatabase(
+				new File(params.get("db")), new File(params.get("template")),
+				Integer.parseInt(params.get("documents")),
+				Integer.parseInt(params.get("entries")),
+				Integer.parseInt(params.get("accounts"))).create();
+		System.err.println("Tietokanta luotu " +
+				(System.currentTimeMillis() - start) + " ms");
+
+		try {
+			new LedgerBenchmarks(dataSource, benchmark).run();
+			benchmark.setParameter("statementCacheHits",
+					dataSource.getStatementCacheHitCount());
+			benchmark.setParameter("statementCacheMisses",
+					dataSource.getStatementCacheMissCount());
+		}
+		finally {
+			dataSource.close();
+		}
+
+		Writer writer = new OutputStreamWriter(
+				new FileOutputStream(params.get("output")), "UTF-8");
+
+		try {
+			benchmark.writeJSON(writer);
+		}
+		finally {
+			writer.close();
+		}
+	}
+}
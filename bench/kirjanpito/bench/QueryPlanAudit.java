@@ -0,0 +1,231 @@
+package kirjanpito.bench;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import kirjanpito.db.DataSource;
+import kirjanpito.db.Session;
+import kirjanpito.db.sqlite.SQLiteSession;
+
+/**
+ * Tarkistaa SQLite-tietokannan DAO-luokkien kyselysuunnitelmat.
+ * Kyselyt haetaan kutsumalla DAO-luokkien parametrittomia
+ * <code>get...Query()</code>-metodeja, ja jokaisen kyselyn suunnitelma
+ * haetaan <code>EXPLAIN QUERY PLAN</code> -lauseella. Jos
+ * rajattu kysely käy läpi koko vienti-, tosite- tai saldotaulun,
+ * ohjelma päättyy virheeseen.
+ *
+ * <p>Tarkistus koskee vain SQLite-tietokantaa, koska ohjelma luo itse
+ * tarkistettavan tietokannan. PostgreSQL- ja MySQL-kyselyjen
+ * suunnitelmia ei tarkisteta; niiden indeksit on määritelty samoin
+ * kuin SQLitessä, mutta suunnitelmat on tarvittaessa tarkistettava
+ * käsin <code>EXPLAIN</code>-lauseella.</p>
+ *
+ * Parametrit annetaan muodossa <code>nimi=arvo</code>:
+ *
+ * <ul>
+ * <li><code>documents</code> - tositteiden lukumäärä (2000)</li>
+ * <li><code>entries</code> - vientien lukumäärä tositetta kohti (4)</li>
+ * <li><code>template</code> - tilikarttamalli</li>
+ * <li><code>db</code> - luotava SQLite-tietokanta</li>
+ * </ul>
+ *
+ * @author Tommi Helineva
+ */
+public class QueryPlanAudit {
+	private DataSource dataSource;
+	private List<String> queries;
+
+	/** Suunnitelman rivi, joka tarkoittaa koko taulun läpikäyntiä. */
+	private static final Pattern FULL_SCAN = Pattern.compile(
+			"^SCAN TABLE (entry|document|account_balance)\\b.*");
+
+	public QueryPlanAudit(DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.queries = new ArrayList<String>();
+	}
+
+	/**
+	 * Hakee kyselyjen suunnitelmat ja tulostaa ne.
+	 *
+	 * @return koko taulun läpi käyvien kyselyjen lukumäärä
+	 * @throws Exception jos kyselyjen hakeminen epäonnistuu
+	 */
+	public int run() throws Exception {
+		Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
+		Level level = logger.getLevel();
+		Handler handler = new Handler() {
+			public void publish(LogRecord record) {
+				String message = record.getMessage();
+				int index = message.indexOf(": ");
+
+				if (record.getLevel() == Level.FINER && index >= 0) {
+					queries.add(message.substring(index + 2));
+				}
+			}
+
+			public void flush() { }
+			public void close() { }
+		};
+
+		Session sess = dataSource.openSession();
+		int failures = 0;
+
+		try {
+			logger.setLevel(Level.FINER);
+			logger.addHandler(handler);
+
+			try {
+				collectQueries(sess);
+			}
+			finally {
+				logger.removeHandler(handler);
+				logger.setLevel(level);
+			}
+
+			HashSet<String> explained = new HashSet<String>();
+
+			for (String sql : queries) {
+				if (explained.add(sql)) {
+					failures += explain((SQLiteSession)sess, sql);
+				}
+			}
+		}
+		finally {
+			sess.close();
+		}
+
+		System.out.printf("Kyselyjä %d, koko taulun läpikäyntejä %d%n",
+				new HashSet<String>(queries).size(), failures);
+		return failures;
+	}
+
+	/**
+	 * Valmistelee DAO-luokkien kyselyt. Kyselyt tallentuvat
+	 * <code>queries</code>-listaan lokiviestien kautta.
+	 */
+	private void collectQueries(Session sess) throws Exception {
+		for (Method getter : DataSource.class.getMethods()) {
+			if (!getter.getName().endsWith("DAO") ||
+					getter.getParameterTypes().length != 1) {
+				continue;
+			}
+
+			Object dao = getter.invoke(dataSource, sess);
+			HashSet<String> names = new HashSet<String>();
+
+			for (Class<?> c = dao.getClass(); c != Object.class; c = c.getSuperclass()) {
+				for (Method method : c.getDeclaredMethods()) {
+					if (!method.getName().endsWith("Query") ||
+							method.getParameterTypes().length != 0 ||
+							method.getReturnType() != PreparedStatement.class ||
+							Modifier.isAbstract(method.getModifiers()) ||
+							!names.add(method.getName())) {
+						continue;
+					}
+
+					method.setAccessible(true);
+					((PreparedStatement)method.invoke(dao)).close();
+				}
+			}
+		}
+	}
+
+	private int explain(SQLiteSession sess, String sql) throws Exception {
+		Map<String, Boolean> details = new LinkedHashMap<String, Boolean>();
+		boolean restricted = sql.contains(" WHERE ");
+		int failures = 0;
+
+		PreparedStatement stmt = sess.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+
+		try {
+			/* Parametrien arvot eivät vaikuta suunnitelmaan. */
+			int count = stmt.getParameterMetaData().getParameterCount();
+
+			for (int i = 1; i <= count; i++) {
+				stmt.setNull(i, Types.NULL);
+			}
+
+			ResultSet rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				String detail = rs.getString(4);
+				boolean fullScan = restricted && FULL_SCAN.matcher(detail).matches();
+				details.put(detail, fullScan);
+
+				if (fullScan) {
+					failures++;
+				}
+			}
+
+			rs.close();
+		}
+		finally {
+			stmt.close();
+		}
+
+		if (details.isEmpty()) {
+			return 0;
+		}
+
+		System.out.println(sql);
+
+		for (Map.Entry<String, Boolean> entry : details.entrySet()) {
+			System.out.println((entry.getValue() ? "  !! " : "     ") + entry.getKey());
+		}
+
+		System.out.println();
+		return failures;
+	}
+
+	public static void main(String[] args) throws Exception {
+		HashMap<String, String> params = new HashMap<String, String>();
+		params.put("documents", "2000");
+		params.put("entries", "4");
+		params.put("template", "tilikarttamallit/elinkeinotoiminta-24.jar");
+		params.put("db", "query-plan.sqlite");
+
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+
+			if (index < 0 || !params.containsKey(arg.substring(0, index))) {
+				System.err.println("Tuntematon parametri: " + arg);
+				System.exit(1);
+			}
+
+			params.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+
+		DataSource dataSource = new BenchmarkDatabase(
+				new File(params.get("db")), new File(params.get("template")),
+				Integer.parseInt(params.get("documents")),
+				Integer.parseInt(params.get("entries")), 0).create();
+		int failures;
+
+		try {
+			failures = new QueryPlanAudit(dataSource).run();
+		}
+		finally {
+			dataSource.close();
+		}
+
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+}
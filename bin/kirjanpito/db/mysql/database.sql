@@ -0,0 +1,137 @@
+CREATE TABLE account (
+	id int auto_increment NOT NULL,
+	number varchar(10) NOT NULL,
+	name varchar(100) NOT NULL,
+	type int NOT NULL,
+	vat_code smallint NOT NULL,
+	vat_percentage numeric(10, 2) NOT NULL,
+	vat_account1_id int,
+	vat_account2_id int,
+	flags int NOT NULL,
+	PRIMARY KEY (id),
+	FOREIGN KEY (vat_account1_id) REFERENCES account(id),
+	FOREIGN KEY (vat_account2_id) REFERENCES account(id)
+) ENGINE=InnoDB;
+
+CREATE TABLE coa_heading (
+	id int auto_increment NOT NULL,
+	number varchar(10) NOT NULL,
+	text varchar(100) NOT NULL,
+	level int NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE period (
+	id int auto_increment NOT NULL,
+	start_date date NOT NULL,
+	end_date date NOT NULL,
+	locked bool NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE document (
+	id int auto_increment NOT NULL,
+	number int NOT NULL,
+	period_id int NOT NULL,
+	date date NOT NULL,
+	PRIMARY KEY (id),
+	FOREIGN KEY (period_id) REFERENCES period (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE entry (
+	id int auto_increment NOT NULL,
+	document_id int NOT NULL,
+	account_id int NOT NULL,
+	debit bool NOT NULL,
+	amount numeric(10, 2) NOT NULL,
+	description varchar(100) NOT NULL,
+	row_number int NOT NULL,
+	flags int NOT NULL,
+	PRIMARY KEY (id),
+	FOREIGN KEY (document_id) REFERENCES document (id),
+	FOREIGN KEY (account_id) REFERENCES account (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE document_type (
+	id int auto_increment NOT NULL,
+	number int NOT NULL,
+	name varchar(100) NOT NULL,
+	number_start int NOT NULL,
+	number_end int NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE settings (
+	version int NOT NULL,
+	name varchar(100) NOT NULL,
+	business_id varchar(50) NOT NULL,
+	current_period_id int NOT NULL,
+	document_type_id int,
+	properties text NOT NULL,
+	PRIMARY KEY (version),
+	FOREIGN KEY (current_period_id) REFERENCES period (id),
+	FOREIGN KEY (document_type_id) REFERENCES document_type (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE report_structure (
+	id varchar(50) NOT NULL,
+	data text NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE entry_template (
+	id int auto_increment NOT NULL,
+	number int NOT NULL,
+	name varchar(100) NOT NULL,
+	account_id int NOT NULL,
+	debit bool NOT NULL,
+	amount numeric(10, 2) NOT NULL,
+	description varchar(100) NOT NULL,
+	row_number int NOT NULL,
+	PRIMARY KEY (id),
+	FOREIGN KEY (account_id) REFERENCES account (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE account_balance (
+	period_id int NOT NULL,
+	account_id int NOT NULL,
+	date date NOT NULL,
+	debit_total numeric(14, 2) NOT NULL,
+	credit_total numeric(14, 2) NOT NULL,
+	entry_count int NOT NULL,
+	PRIMARY KEY (account_id, period_id, date),
+	FOREIGN KEY (period_id) REFERENCES period (id),
+	FOREIGN KEY (account_id) REFERENCES account (id)
+) ENGINE=InnoDB;
+
+CREATE INDEX document_number_idx ON document (
+	period_id, number
+);
+
+CREATE INDEX account_balance_period_idx ON account_balance (
+	period_id, date
+);
+
+CREATE INDEX account_balance_date_idx ON account_balance (
+	date, account_id, debit_total, credit_total, entry_count
+);
+
+CREATE INDEX document_period_date_idx ON document (
+	period_id, date, number
+);
+
+CREATE INDEX document_date_idx ON document (
+	date, number
+);
+
+CREATE INDEX entry_document_idx ON entry (
+	document_id, row_number
+);
+
+CREATE INDEX entry_account_idx ON entry (
+	account_id, document_id
+);
+
+CREATE FULLTEXT INDEX entry_description_idx ON entry (
+	description
+);
@@ -0,0 +1,88 @@
+package kirjanpito.db;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <code>AccountBalanceDAO</code>:n avulla voidaan hakea tilien
+ * saldot tilikohtaisesta saldotaulusta, jota päivitetään sitä mukaa
+ * kuin vientejä ja tositteita tallennetaan ja poistetaan. Saldotaulussa
+ * vientien summat on ryhmitelty tilikauden, tilin ja päivämäärän mukaan,
+ * joten saldot saadaan yhdellä kyselyllä käymättä läpi jokaista vientiä.
+ *
+ * @author Tommi Helineva
+ */
+public interface AccountBalanceDAO {
+	/**
+	 * Hakee tilikohtaiset vientien summat tietyn tilikauden
+	 * aikaväliltä. Jos <code>periodId</code> on negatiivinen,
+	 * summat lasketaan kaikista tilikausista. Tilit, joille ei ole
+	 * kirjattu yhtään vientiä, jätetään pois.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @param startDate alkamispäivämäärä
+	 * @param endDate päättymispäivämäärä
+	 * @param callback callback
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void getByPeriodIdAndDate(int periodId, Date startDate,
+			Date endDate, DTOCallback<AccountTotal> callback)
+			throws DataAccessException;
+
+	/**
+	 * Hakee tilikohtaiset vientien summat koko tilikaudelta
+	 * tositteiden päivämääristä riippumatta. Tilit, joille ei ole
+	 * kirjattu yhtään vientiä, jätetään pois.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @param callback callback
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void getByPeriodId(int periodId,
+			DTOCallback<AccountTotal> callback) throws DataAccessException;
+
+	/**
+	 * Hakee tilikohtaiset vientien summat päivittäin tietyltä
+	 * aikaväliltä kaikista tilikausista. Summat käsitellään
+	 * päivämäärän mukaan nousevassa järjestyksessä, ja jokaiselle
+	 * oliolle on asetettu päivämäärä.
+	 *
+	 * @param startDate alkamispäivämäärä
+	 * @param endDate päättymispäivämäärä
+	 * @param callback callback
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void getDailyTotals(Date startDate, Date endDate,
+			DTOCallback<AccountTotal> callback) throws DataAccessException;
+
+	/**
+	 * Ilmoittaa, onko tilille kirjattu vientejä millään tilikaudella.
+	 *
+	 * @param accountId tilin tunniste
+	 * @return <code>true</code>, jos tilille on kirjattu vähintään
+	 * yksi vienti
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public boolean isAccountUsed(int accountId) throws DataAccessException;
+
+	/**
+	 * Hakee niiden tilien tunnisteet, joille on kirjattu vientejä
+	 * tietyllä tilikaudella.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @return tilien tunnisteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public List<Integer> getUsedAccountIds(int periodId)
+		throws DataAccessException;
+
+	/**
+	 * Laskee tilikauden saldot uudelleen vienneistä. Jos
+	 * <code>periodId</code> on negatiivinen, kaikkien tilikausien
+	 * saldot lasketaan uudelleen.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @throws DataAccessException jos saldojen laskeminen epäonnistuu
+	 */
+	public void rebuild(int periodId) throws DataAccessException;
+}
@@ -0,0 +1,108 @@
+package kirjanpito.db;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Sisältää tilin vientien summat tietyltä aikaväliltä.
+ *
+ * @author Tommi Helineva
+ */
+public class AccountTotal {
+	private int accountId;
+	private Date date;
+	private BigDecimal debitTotal;
+	private BigDecimal creditTotal;
+	private int entryCount;
+
+	/**
+	 * Palauttaa tilin tunnisteen.
+	 *
+	 * @return tilin tunniste
+	 */
+	public int getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * Asettaa tilin tunnisteen.
+	 *
+	 * @param accountId tilin tunniste
+	 */
+	public void setAccountId(int accountId) {
+		this.accountId = accountId;
+	}
+
+	/**
+	 * Palauttaa päivämäärän, jolta summat on laskettu. Päivämäärä
+	 * on asetettu vain päiväkohtaisissa summissa.
+	 *
+	 * @return päivämäärä tai <code>null</code>
+	 */
+	public Date getDate() {
+		return date;
+	}
+
+	/**
+	 * Asettaa päivämäärän, jolta summat on laskettu.
+	 *
+	 * @param date päivämäärä
+	 */
+	public void setDate(Date date) {
+		this.date = date;
+	}
+
+	/**
+	 * Palauttaa debet-vientien summan.
+	 *
+	 * @return debet-vientien summa
+	 */
+	public BigDecimal getDebitTotal() {
+		return debitTotal;
+	}
+
+	/**
+	 * Asettaa debet-vientien summan.
+	 *
+	 * @param debitTotal debet-vientien summa
+	 */
+	public void setDebitTotal(BigDecimal debitTotal) {
+		this.debitTotal = debitTotal;
+	}
+
+	/**
+	 * Palauttaa kredit-vientien summan.
+	 *
+	 * @return kredit-vientien summa
+	 */
+	public BigDecimal getCreditTotal() {
+		return creditTotal;
+	}
+
+	/**
+	 * Asettaa kredit-vientien summan.
+	 *
+	 * @param creditTotal kredit-vientien summa
+	 */
+	public void setCreditTotal(BigDecimal creditTotal) {
+		this.creditTotal = creditTotal;
+	}
+
+	/**
+	 * Palauttaa vientien lukumäärän.
+	 *
+	 * @return vientien lukumäärä
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/**
+	 * Asettaa vientien lukumäärän.
+	 *
+	 * @param entryCount vientien lukumäärä
+	 */
+	public void setEntryCount(int entryCount) {
+		this.entryCount = entryCount;
+	}
+}
@@ -0,0 +1,174 @@
+package kirjanpito.db;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Sisältää tilikohtaiset debet- ja kredit-vientien summat.
+ * Summat tallennetaan sentteinä <code>long</code>-taulukoihin
+ * tilin tunnisteen mukaan järjestettynä, joten jokaista tiliä
+ * kohti ei luoda erillistä oliota.
+ *
+ * @author Tommi Helineva
+ */
+public class AccountTotalArray {
+	private int[] accountIds;
+	private long[] debitTotals;
+	private long[] creditTotals;
+	private int[] entryCounts;
+	private int size;
+
+	public AccountTotalArray() {
+		this(16);
+	}
+
+	/**
+	 * Luo <code>AccountTotalArray</code>-olion, johon mahtuu
+	 * <code>capacity</code> tiliä ennen kuin taulukoita kasvatetaan.
+	 *
+	 * @param capacity tilien lukumäärä
+	 */
+	public AccountTotalArray(int capacity) {
+		capacity = Math.max(capacity, 1);
+		accountIds = new int[capacity];
+		debitTotals = new long[capacity];
+		creditTotals = new long[capacity];
+		entryCounts = new int[capacity];
+	}
+
+	/**
+	 * Lisää summan tilille. Tilit on lisättävä tunnisteen
+	 * mukaan nousevassa järjestyksessä.
+	 *
+	 * @param accountId tilin tunniste
+	 * @param debit <code>true</code>, jos summa on debet-vientien summa
+	 * @param amount summa sentteinä
+	 * @param entryCount vientien lukumäärä
+	 */
+	public void add(int accountId, boolean debit, long amount, int entryCount) {
+		if (size == 0 || accountIds[size - 1] != accountId) {
+			if (size > 0 && accountIds[size - 1] > accountId) {
+				throw new IllegalArgumentException(
+						"Tilit on lisättävä tunnisteen mukaan järjestyksessä");
+			}
+
+			if (size == accountIds.length) {
+				int capacity = size * 2;
+				accountIds = Arrays.copyOf(accountIds, capacity);
+				debitTotals = Arrays.copyOf(debitTotals, capacity);
+				creditTotals = Arrays.copyOf(creditTotals, capacity);
+				entryCounts = Arrays.copyOf(entryCounts, capacity);
+			}
+
+			accountIds[size] = accountId;
+			debitTotals[size] = 0;
+			creditTotals[size] = 0;
+			entryCounts[size] = 0;
+			size++;
+		}
+
+		int index = size - 1;
+
+		if (debit) {
+			debitTotals[index] += amount;
+		}
+		else {
+			creditTotals[index] += amount;
+		}
+
+		entryCounts[index] += entryCount;
+	}
+
+	/**
+	 * Palauttaa niiden tilien lukumäärän, joille on kirjattu vientejä.
+	 *
+	 * @return tilien lukumäärä
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Palauttaa tilin järjestysnumeron.
+	 *
+	 * @param accountId tilin tunniste
+	 * @return järjestysnumero tai -1, jos tilille ei ole kirjattu vientejä
+	 */
+	public int indexOf(int accountId) {
+		int index = Arrays.binarySearch(accountIds, 0, size, accountId);
+		return (index < 0) ? -1 : index;
+	}
+
+	/**
+	 * Palauttaa tilin tunnisteen.
+	 *
+	 * @param index järjestysnumero
+	 * @return tilin tunniste
+	 */
+	public int getAccountId(int index) {
+		return accountIds[index];
+	}
+
+	/**
+	 * Palauttaa debet-vientien summan sentteinä.
+	 *
+	 * @param index järjestysnumero
+	 * @return debet-vientien summa
+	 */
+	public long getDebitCents(int index) {
+		return debitTotals[index];
+	}
+
+	/**
+	 * Palauttaa kredit-vientien summan sentteinä.
+	 *
+	 * @param index järjestysnumero
+	 * @return kredit-vientien summa
+	 */
+	public long getCreditCents(int index) {
+		return creditTotals[index];
+	}
+
+	/**
+	 * Palauttaa debet-vientien summan.
+	 *
+	 * @param index järjestysnumero
+	 * @return debet-vientien summa
+	 */
+	public BigDecimal getDebitTotal(int index) {
+		return BigDecimal.valueOf(debitTotals[index], 2);
+	}
+
+	/**
+	 * Palauttaa kredit-vientien summan.
+	 *
+	 * @param index järjestysnumero
+	 * @return kredit-vientien summa
+	 */
+	public BigDecimal getCreditTotal(int index) {
+		return BigDecimal.valueOf(creditTotals[index], 2);
+	}
+
+	/**
+	 * Palauttaa vientien lukumäärän.
+	 *
+	 * @param index järjestysnumero
+	 * @return vientien lukumäärä
+	 */
+	public int getEntryCount(int index) {
+		return entryCounts[index];
+	}
+
+	/**
+	 * Muuntaa rahamäärän senteiksi.
+	 *
+	 * @param amount rahamäärä
+	 * @return rahamäärä sentteinä
+	 * @throws ArithmeticException jos rahamäärä ei mahdu
+	 * <code>long</code>-tyyppiin
+	 */
+	public static long toCents(BigDecimal amount) {
+		return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+	}
+}
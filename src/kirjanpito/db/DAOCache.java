@@ -0,0 +1,39 @@
+package kirjanpito.db;
+
+import java.util.HashMap;
+
+/**
+ * Säilyttää istunnon DAO-oliot, jotta samaa oliota voidaan käyttää
+ * koko istunnon ajan. DAO-olioissa ei ole istunnon lisäksi muuta
+ * tilaa, joten niitä ei tarvitse luoda uudelleen jokaista kutsua
+ * varten.
+ *
+ * @author Tommi Helineva
+ */
+public class DAOCache {
+	private HashMap<Class<?>, Object> daos;
+
+	public DAOCache() {
+		daos = new HashMap<Class<?>, Object>();
+	}
+
+	/**
+	 * Palauttaa tyypin <code>type</code> DAO-olion.
+	 *
+	 * @param type DAO-rajapinta
+	 * @return DAO-olio tai <code>null</code>, jos oliota ei ole vielä luotu
+	 */
+	public <T> T get(Class<T> type) {
+		return type.cast(daos.get(type));
+	}
+
+	/**
+	 * Tallentaa tyypin <code>type</code> DAO-olion.
+	 *
+	 * @param type DAO-rajapinta
+	 * @param dao DAO-olio
+	 */
+	public <T> void put(Class<T> type, T dao) {
+		daos.put(type, dao);
+	}
+}
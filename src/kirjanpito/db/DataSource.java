@@ -27,6 +27,47 @@ public interface DataSource {
 	 */
 	public void backup() throws DataAccessException;
 	
+	/**
+	 * Asettaa säilytettävien varmuuskopioiden enimmäismäärän, ajan,
+	 * jonka välein tietokanta varmuuskopioidaan taustalla, ja sen,
+	 * pakataanko varmuuskopiot. Asetukset on annettava ennen
+	 * tietokantayhteyden avaamista.
+	 * 
+	 * @param backupCount varmuuskopioiden enimmäismäärä tai 0, jos
+	 * varmuuskopioita ei poisteta
+	 * @param backupInterval aika minuutteina tai 0, jos tietokantaa
+	 * ei varmuuskopioida taustalla
+	 * @param compress <code>true</code>, jos varmuuskopiot pakataan
+	 */
+	public void setBackupOptions(int backupCount, int backupInterval,
+			boolean compress);
+	
+	/**
+	 * Asettaa yhteysaltaan enimmäiskoon ja ajan, jonka jälkeen
+	 * käyttämätön yhteys suljetaan. Asetukset on annettava ennen
+	 * tietokantayhteyden avaamista.
+	 * 
+	 * @param maxConnections yhteyksien enimmäismäärä
+	 * @param idleTimeout aika sekunteina
+	 */
+	public void setConnectionPoolOptions(int maxConnections, int idleTimeout);
+	
+	/**
+	 * Palauttaa valmisteltujen kyselyjen välimuistista löytyneiden
+	 * kyselyjen lukumäärän.
+	 * 
+	 * @return osumien lukumäärä
+	 */
+	public int getStatementCacheHitCount();
+	
+	/**
+	 * Palauttaa valmisteltujen kyselyjen lukumäärän, joita
+	 * ei löytynyt välimuistista.
+	 * 
+	 * @return ohitusten lukumäärä
+	 */
+	public int getStatementCacheMissCount();
+	
 	/**
 	 * Avaa uuden tietokantaistunnon. Yhteysaltaasta (connection pool)
 	 * varataan tietokantayhteys istunnon käyttöön. Yhteys on vapautettava
@@ -47,6 +88,15 @@ public interface DataSource {
 	 */
 	public AccountDAO getAccountDAO(Session session);
 	
+	/**
+	 * Palauttaa <code>AccountBalanceDAO</code>-olion, jonka avulla voidaan
+	 * hakea tilien saldot saldotaulusta.
+	 * 
+	 * @param session tietokantaistunto
+	 * @return <code>AccountBalanceDAO</code>-olio
+	 */
+	public AccountBalanceDAO getAccountBalanceDAO(Session session);
+	
 	/**
 	 * Palauttaa <code>COAHeadingDAO</code>-olion, jonka avulla voidaan
 	 * lisätä, muokata ja poistaa tilikartan otsikoita sekä hakea
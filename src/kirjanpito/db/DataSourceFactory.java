@@ -1,5 +1,7 @@
 package kirjanpito.db;
 
+import kirjanpito.db.cache.CachingDataSource;
+
 public class DataSourceFactory {
 	private DataSourceFactory() {
 	}
@@ -7,6 +9,54 @@ public class DataSourceFactory {
 	public static DataSource create(String url, String username, String password)
 		throws DataAccessException {
 		
+		return create(url, username, password, 0, 0);
+	}
+	
+	/**
+	 * Luo tietolähteen ja avaa tietokantayhteyden. Jos
+	 * <code>maxConnections</code> on suurempi kuin 0, yhteysaltaan
+	 * asetukset annetaan tietolähteelle. Tietolähde palautetaan
+	 * <code>CachingDataSource</code>-olion sisällä, joten usein
+	 * haettavat tiedot löytyvät välimuistista.
+	 * 
+	 * @param url JDBC-osoite
+	 * @param username käyttäjänimi
+	 * @param password salasana
+	 * @param maxConnections yhteyksien enimmäismäärä
+	 * @param idleTimeout aika sekunteina, jonka jälkeen käyttämätön
+	 * yhteys suljetaan
+	 * @return tietolähde
+	 * @throws DataAccessException jos tietokantayhteyden avaaminen epäonnistuu
+	 */
+	public static DataSource create(String url, String username, String password,
+			int maxConnections, int idleTimeout) throws DataAccessException {
+		
+		return create(url, username, password, maxConnections, idleTimeout,
+				0, 0, false);
+	}
+	
+	/**
+	 * Luo tietolähteen ja avaa tietokantayhteyden. Varmuuskopioinnin
+	 * asetukset annetaan tietolähteelle ennen yhteyden avaamista.
+	 * 
+	 * @param url JDBC-osoite
+	 * @param username käyttäjänimi
+	 * @param password salasana
+	 * @param maxConnections yhteyksien enimmäismäärä
+	 * @param idleTimeout aika sekunteina, jonka jälkeen käyttämätön
+	 * yhteys suljetaan
+	 * @param backupCount säilytettävien varmuuskopioiden enimmäismäärä
+	 * @param backupInterval aika minuutteina, jonka välein tietokanta
+	 * varmuuskopioidaan taustalla
+	 * @param compressBackups <code>true</code>, jos varmuuskopiot pakataan
+	 * @return tietolähde
+	 * @throws DataAccessException jos tietokantayhteyden avaaminen epäonnistuu
+	 */
+	public static DataSource create(String url, String username, String password,
+			int maxConnections, int idleTimeout, int backupCount,
+			int backupInterval, boolean compressBackups)
+		throws DataAccessException {
+		
 		String[] prefixes = {
 			"jdbc:sqlite:",
 			"jdbc:postgresql:",
@@ -35,8 +85,14 @@ public class DataSourceFactory {
 							" epäonnistui", e);
 				}
 				
+				if (maxConnections > 0) {
+					dataSource.setConnectionPoolOptions(maxConnections, idleTimeout);
+				}
+				
+				dataSource.setBackupOptions(backupCount, backupInterval,
+						compressBackups);
 				dataSource.open(url, username, password);
-				return dataSource;
+				return new CachingDataSource(dataSource);
 			}
 			
 			index++;
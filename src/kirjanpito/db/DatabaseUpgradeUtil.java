@@ -603,6 +603,49 @@ public class DatabaseUpgradeUtil {
 		logger.info("Tietokannan päivittäminen versioon 14 onnistui");
 	}
 
+	public static void upgrade14to15(Connection conn, Statement stmt) throws SQLException {
+		/* Tilikohtainen saldotaulu, josta raportit hakevat saldot
+		 * käymättä läpi kaikkia vientejä. */
+		stmt.executeUpdate("CREATE TABLE account_balance (" +
+			"period_id integer NOT NULL, " +
+			"account_id integer NOT NULL, " +
+			"date date NOT NULL, " +
+			"debit_total numeric(14, 2) NOT NULL, " +
+			"credit_total numeric(14, 2) NOT NULL, " +
+			"entry_count integer NOT NULL, " +
+			"PRIMARY KEY (account_id, period_id, date), " +
+			"FOREIGN KEY (period_id) REFERENCES period (id), " +
+			"FOREIGN KEY (account_id) REFERENCES account (id))");
+		stmt.executeUpdate("CREATE INDEX account_balance_period_idx ON account_balance (period_id, date)");
+		stmt.executeUpdate("INSERT INTO account_balance (period_id, account_id, date, debit_total, credit_total, entry_count) " +
+			"SELECT d.period_id, e.account_id, d.date, " +
+			"SUM(CASE WHEN e.debit THEN e.amount ELSE 0 END), " +
+			"SUM(CASE WHEN e.debit THEN 0 ELSE e.amount END), COUNT(*) " +
+			"FROM entry e INNER JOIN document d ON d.id = e.document_id " +
+			"GROUP BY d.period_id, e.account_id, d.date");
+		stmt.executeUpdate("UPDATE settings SET version=15");
+		conn.commit();
+
+		Logger logger = Logger.getLogger("kirjanpito.db");
+		logger.info("Tietokannan päivittäminen versioon 15 onnistui");
+	}
+
+	public static void upgrade15to16(Connection conn, Statement stmt) throws SQLException {
+		/* Indeksit vientien hakemiseen tositteen ja tilin perusteella
+		 * sekä tositteiden hakemiseen päivämäärän perusteella. */
+		stmt.executeUpdate("CREATE INDEX entry_document_idx ON entry (document_id, row_number)");
+		stmt.executeUpdate("CREATE INDEX entry_account_idx ON entry (account_id, document_id)");
+		stmt.executeUpdate("CREATE INDEX document_period_date_idx ON document (period_id, date, number)");
+		stmt.executeUpdate("CREATE INDEX document_date_idx ON document (date, number)");
+		stmt.executeUpdate("CREATE INDEX account_balance_date_idx ON account_balance (" +
+			"date, account_id, debit_total, credit_total, entry_count)");
+		stmt.executeUpdate("UPDATE settings SET version=16");
+		conn.commit();
+
+		Logger logger = Logger.getLogger("kirjanpito.db");
+		logger.info("Tietokannan päivittäminen versioon 16 onnistui");
+	}
+
 	private static String readTextFile(JarFile jarFile, String name) throws IOException {
 		BufferedReader reader = new BufferedReader(new InputStreamReader(
 				jarFile.getInputStream(jarFile.getEntry(name)),
@@ -139,6 +139,38 @@ public interface DocumentDAO {
 			int startNumber, int endNumber, int offset, int limit)
 			throws DataAccessException;
 	
+	/**
+	 * Hakee tietokannasta enintään <code>limit</code> ensimmäistä
+	 * tositetta numeroväliltä <code>startNumber</code>..<code>endNumber</code>
+	 * tietyltä tilikaudelta. Tositteet palautetaan numerojärjestyksessä.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public List<Document> getFirstByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int limit)
+			throws DataAccessException;
+	
+	/**
+	 * Hakee tietokannasta enintään <code>limit</code> viimeistä
+	 * tositetta numeroväliltä <code>startNumber</code>..<code>endNumber</code>
+	 * tietyltä tilikaudelta. Tositteet palautetaan numerojärjestyksessä.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public List<Document> getLastByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int limit)
+			throws DataAccessException;
+	
 	/**
 	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa
 	 * tulosten lukumäärän.
@@ -163,6 +195,36 @@ public interface DocumentDAO {
 	public List<Document> getByPeriodIdAndPhrase(int periodId, String q,
 			int offset, int limit) throws DataAccessException;
 	
+	/**
+	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa enintään
+	 * <code>limit</code> ensimmäistä tositetta numeroväliltä
+	 * <code>startNumber</code>..<code>endNumber</code>.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param q hakusana
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet numerojärjestyksessä
+	 */
+	public List<Document> getFirstByPeriodIdAndPhrase(int periodId, String q,
+			int startNumber, int endNumber, int limit) throws DataAccessException;
+	
+	/**
+	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa enintään
+	 * <code>limit</code> viimeistä tositetta numeroväliltä
+	 * <code>startNumber</code>..<code>endNumber</code>.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param q hakusana
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet numerojärjestyksessä
+	 */
+	public List<Document> getLastByPeriodIdAndPhrase(int periodId, String q,
+			int startNumber, int endNumber, int limit) throws DataAccessException;
+	
 	/**
 	 * Hakee tietokannasta tositteet tietyltä aikaväliltä.
 	 * 
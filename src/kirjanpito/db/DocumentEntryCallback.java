@@ -0,0 +1,16 @@
+package kirjanpito.db;
+
+/**
+ * Callback, jolle välitetään vienti ja tosite, johon vienti kuuluu.
+ *
+ * @author Tommi Helineva
+ */
+public interface DocumentEntryCallback {
+	/**
+	 * Käsittelee viennin.
+	 *
+	 * @param document tosite
+	 * @param entry vienti
+	 */
+	public void process(Document document, Entry entry);
+}
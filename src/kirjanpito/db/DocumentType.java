@@ -55,4 +55,19 @@ public class DocumentType implements Comparable<DocumentType> {
 	public int compareTo(DocumentType t) {
 		return number - t.number;
 	}
+
+	/**
+	 * Luo oliosta kopion.
+	 * 
+	 * @return kopio
+	 */
+	public DocumentType clone() {
+		DocumentType type = new DocumentType();
+		type.id = id;
+		type.number = number;
+		type.name = name;
+		type.numberStart = numberStart;
+		type.numberEnd = numberEnd;
+		return type;
+	}
 }
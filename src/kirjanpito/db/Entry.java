@@ -180,6 +180,7 @@ public class Entry {
 		entry.amount = amount;
 		entry.description = description;
 		entry.rowNumber = rowNumber;
+		entry.flags = flags;
 		return entry;
 	}
 }
@@ -47,6 +47,24 @@ public interface EntryDAO {
 	 */
 	public void delete(int entryId) throws DataAccessException;
 
+	/**
+	 * Tallentaa vientien tiedot tietokantaan. Uudet viennit lisätään
+	 * ja olemassa olevat päivitetään eräajona, joten tietokantaan
+	 * ei lähetetä erillistä kyselyä jokaista vientiä kohti.
+	 *
+	 * @param entries tallennettavat viennit
+	 * @throws DataAccessException jos tallentaminen epäonnistuu
+	 */
+	public void saveAll(List<Entry> entries) throws DataAccessException;
+
+	/**
+	 * Poistaa vientien tiedot tietokannasta eräajona.
+	 *
+	 * @param entries poistettavat viennit
+	 * @throws DataAccessException jos poistaminen epäonnistuu
+	 */
+	public void deleteAll(List<Entry> entries) throws DataAccessException;
+
 	/**
 	 * Poistaa tietyn tilikauden kaikki viennit tietokannasta.
 	 *
@@ -89,6 +107,20 @@ public interface EntryDAO {
 	public void getByPeriodId(int periodId, int orderBy, DTOCallback<Entry> callback)
 		throws DataAccessException;
 
+	/**
+	 * Hakee tietokannasta tietyn tilikauden viennit ja niiden
+	 * tositteiden numerot ja päivämäärät yhdellä kyselyllä. Viennit
+	 * järjestetään tositenumeron mukaan. Saman tositteen vienneille
+	 * välitetään sama <code>Document</code>-olio.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @param numberOffset tositenumero >= <code>numberOffset</code>
+	 * @param callback callback
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void getByPeriodIdWithDocuments(int periodId, int numberOffset,
+			DocumentEntryCallback callback) throws DataAccessException;
+
 	/**
 	 * Hakee tietokannasta tietyn tilikauden viennit, jotka
 	 * kohdistuvat tiettyyn tiliin. Viennit järjestetään päivämäärän mukaan.
@@ -103,6 +135,29 @@ public interface EntryDAO {
 	public void getByPeriodIdAndAccountId(int periodId,
 			int accountId, int orderBy, DTOCallback<Entry> callback) throws DataAccessException;
 
+	/**
+	 * Hakee tietokannasta enintään <code>limit</code> tietyn tilikauden
+	 * vientiä, jotka kohdistuvat tiettyyn tiliin. Viennit haetaan
+	 * tositteesta <code>start</code> alkaen, eli tositteista, joiden
+	 * numero tai päivämäärä on vähintään tositteen <code>start</code>
+	 * numero tai päivämäärä. Viennit järjestetään kuten
+	 * <code>getByPeriodIdAndAccountId()</code>-metodissa. Kysely käy
+	 * tositteet läpi järjestyksessä, joten se sopii tileille, joihin
+	 * kohdistuu suuri osa tilikauden vienneistä.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @param accountId tilin tunniste
+	 * @param orderBy <code>ORDER_BY_DOCUMENT_NUMBER</code> tai
+	 * <code>ORDER_BY_DOCUMENT_DATE</code>
+	 * @param start tosite, josta haku aloitetaan
+	 * @param limit vientien enimmäismäärä
+	 * @param callback callback
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void getByPeriodIdAndAccountId(int periodId, int accountId,
+			int orderBy, Document start, int limit, DTOCallback<Entry> callback)
+			throws DataAccessException;
+
 	/**
 	 * Hakee tietokannasta tietyn tilikauden viennit tietyltä
 	 * aikaväliltä.
@@ -86,4 +86,18 @@ public class Period {
 	public void setLocked(boolean locked) {
 		this.locked = locked;
 	}
+	
+	/**
+	 * Luo oliosta kopion.
+	 * 
+	 * @return kopio
+	 */
+	public Period clone() {
+		Period period = new Period();
+		period.id = id;
+		period.startDate = startDate;
+		period.endDate = endDate;
+		period.locked = locked;
+		return period;
+	}
 }
@@ -21,7 +21,13 @@ public interface Session {
 	public void rollback() throws DataAccessException;
 	
 	/**
-	 * Päättää istunnon.
+	 * Päättää istunnon. Muutokset on vahvistettava
+	 * <code>commit()</code>-metodilla ennen istunnon sulkemista.
+	 * Yhteysallasta käyttävissä tietolähteissä vahvistamattomat
+	 * muutokset perutaan, kun yhteys palautetaan altaaseen. SQLite-istunnot
+	 * käyttävät samaa yhteyttä, joten niiden vahvistamattomat muutokset
+	 * jäävät voimaan, kunnes jokin istunto vahvistaa tai peruu ne.
+	 * Suljettua istuntoa ei saa enää käyttää.
 	 */
 	public void close();
 }
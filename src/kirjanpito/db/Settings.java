@@ -158,4 +158,19 @@ public class Settings {
 		
 		return sb.toString().replace("\\\\", "\\");
 	}
+	
+	/**
+	 * Luo oliosta kopion.
+	 * 
+	 * @return kopio
+	 */
+	public Settings clone() {
+		Settings settings = new Settings();
+		settings.name = name;
+		settings.businessId = businessId;
+		settings.currentPeriodId = currentPeriodId;
+		settings.documentTypeId = documentTypeId;
+		settings.properties.putAll(properties);
+		return settings;
+	}
 }
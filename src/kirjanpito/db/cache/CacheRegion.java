@@ -0,0 +1,157 @@
+package kirjanpito.db.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Yhden tietotyypin välimuisti. Välimuistissa pidetään enintään
+ * <code>maxSize</code> arvoa, ja vähiten aikaa sitten käytetty arvo
+ * poistetaan ensimmäisenä. Jos <code>maxAge</code> on suurempi kuin 0,
+ * arvoa ei palauteta, kun se on ollut välimuistissa tätä kauemmin.
+ *
+ * <p>Välimuistin versio kasvaa aina, kun arvoja poistetaan. Arvo
+ * tallennetaan vain, jos versio ei ole muuttunut sen jälkeen, kun
+ * arvon hakeminen tietokannasta aloitettiin. Näin toisen säikeen
+ * samanaikaisesti mitätöimää arvoa ei tallenneta välimuistiin.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class CacheRegion<K, V> {
+	private String name;
+	private long maxAge;
+	private LinkedHashMap<K, Item<V>> items;
+	private int version;
+	private int hitCount;
+	private int missCount;
+
+	/**
+	 * Luo välimuistin.
+	 *
+	 * @param name välimuistin nimi
+	 * @param maxSize arvojen enimmäismäärä
+	 * @param maxAge arvon enimmäisikä millisekunteina tai 0
+	 */
+	public CacheRegion(String name, final int maxSize, long maxAge) {
+		this.name = name;
+		this.maxAge = maxAge;
+		this.items = new LinkedHashMap<K, Item<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<K, Item<V>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Palauttaa välimuistin nimen.
+	 *
+	 * @return nimi
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Palauttaa niiden hakujen lukumäärän, joiden arvo löytyi
+	 * välimuistista.
+	 *
+	 * @return osumien lukumäärä
+	 */
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Palauttaa niiden hakujen lukumäärän, joiden arvoa ei löytynyt
+	 * välimuistista.
+	 *
+	 * @return ohihakujen lukumäärä
+	 */
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Palauttaa välimuistissa olevien arvojen lukumäärän.
+	 *
+	 * @return arvojen lukumäärä
+	 */
+	public synchronized int getSize() {
+		return items.size();
+	}
+
+	/**
+	 * Palauttaa välimuistin version.
+	 *
+	 * @return versio
+	 */
+	public synchronized int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Palauttaa avaimeen <code>key</code> liittyvän arvon.
+	 *
+	 * @param key avain
+	 * @return arvo tai <code>null</code>, jos arvoa ei ole välimuistissa
+	 */
+	public synchronized V get(K key) {
+		Item<V> item = items.get(key);
+
+		if (item != null && maxAge > 0 &&
+				System.currentTimeMillis() - item.time > maxAge) {
+			items.remove(key);
+			item = null;
+		}
+
+		if (item == null) {
+			missCount++;
+			return null;
+		}
+
+		hitCount++;
+		return item.value;
+	}
+
+	/**
+	 * Tallentaa arvon välimuistiin, jos välimuistin versio on
+	 * <code>version</code>.
+	 *
+	 * @param key avain
+	 * @param value arvo
+	 * @param version versio, joka luettiin ennen arvon hakemista
+	 */
+	public synchronized void put(K key, V value, int version) {
+		if (this.version == version) {
+			items.put(key, new Item<V>(value, System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Poistaa avaimeen <code>key</code> liittyvän arvon. Jos
+	 * <code>key</code> on <code>null</code>, kaikki arvot poistetaan.
+	 *
+	 * @param key avain tai <code>null</code>
+	 */
+	public synchronized void invalidate(Object key) {
+		if (key == null) {
+			items.clear();
+		}
+		else {
+			items.remove(key);
+		}
+
+		version++;
+	}
+
+	private static class Item<V> {
+		public V value;
+		public long time;
+
+		public Item(V value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package kirjanpito.db.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import kirjanpito.db.AccountBalanceDAO;
+import kirjanpito.db.AccountDAO;
+import kirjanpito.db.COAHeadingDAO;
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.DataSource;
+import kirjanpito.db.DocumentDAO;
+import kirjanpito.db.DocumentType;
+import kirjanpito.db.DocumentTypeDAO;
+import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
+import kirjanpito.db.EntryTemplateDAO;
+import kirjanpito.db.Period;
+import kirjanpito.db.PeriodDAO;
+import kirjanpito.db.ReportStructureDAO;
+import kirjanpito.db.Session;
+import kirjanpito.db.Settings;
+import kirjanpito.db.SettingsDAO;
+
+/**
+ * Tietolähde, joka pitää asetukset, tilikaudet, tositelajit,
+ * tositesivut ja tositteiden viennit välimuistissa. Tiedot haetaan
+ * toisesta tietolähteestä, kun niitä ei löydy välimuistista.
+ * DAO-luokkien tallennus- ja poistometodit mitätöivät välimuistin
+ * arvot, joihin muutos vaikuttaa.
+ *
+ * <p>Kaikki arvot poistetaan välimuistista <code>MAX_AGE</code>
+ * millisekunnin kuluttua, jotta toisen käyttäjän tekemät muutokset
+ * näkyvät, kun tietokantapalvelinta käyttää usea käyttäjä.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class CachingDataSource implements DataSource {
+	private DataSource dataSource;
+	private CacheRegion<String, Settings> settingsCache;
+	private CacheRegion<String, Period[]> periodCache;
+	private CacheRegion<String, DocumentType[]> documentTypeCache;
+	private CacheRegion<String, Object> documentCache;
+	private CacheRegion<Integer, Entry[]> entryCache;
+
+	/** Välimuistissa pidettävien tositesivujen enimmäismäärä. */
+	private static final int DOCUMENT_CACHE_SIZE = 64;
+
+	/** Välimuistissa pidettävien tositteiden vientien enimmäismäärä. */
+	private static final int ENTRY_CACHE_SIZE = 2000;
+
+	/** Arvojen enimmäisikä välimuistissa. */
+	private static final long MAX_AGE = 30000;
+
+	/**
+	 * Luo välimuistin tietolähteelle <code>dataSource</code>.
+	 *
+	 * @param dataSource tietolähde, josta tiedot haetaan
+	 */
+	public CachingDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.settingsCache = new CacheRegion<String, Settings>("Asetukset", 1, MAX_AGE);
+		this.periodCache = new CacheRegion<String, Period[]>("Tilikaudet", 2, MAX_AGE);
+		this.documentTypeCache = new CacheRegion<String, DocumentType[]>("Tositelajit",
+				1, MAX_AGE);
+		this.documentCache = new CacheRegion<String, Object>("Tositteet",
+				DOCUMENT_CACHE_SIZE, MAX_AGE);
+		this.entryCache = new CacheRegion<Integer, Entry[]>("Viennit",
+				ENTRY_CACHE_SIZE, MAX_AGE);
+	}
+
+	/**
+	 * Palauttaa tietolähteen, josta tiedot haetaan.
+	 *
+	 * @return tietolähde
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * Palauttaa välimuistit.
+	 *
+	 * @return välimuistit
+	 */
+	public List<CacheRegion<?, ?>> getCacheRegions() {
+		return Arrays.<CacheRegion<?, ?>>asList(settingsCache, periodCache,
+				documentTypeCache, documentCache, entryCache);
+	}
+
+	/**
+	 * Tyhjentää kaikki välimuistit.
+	 */
+	public void invalidateAll() {
+		for (CacheRegion<?, ?> region : getCacheRegions()) {
+			region.invalidate(null);
+		}
+	}
+
+	public void open(String url, String username, String password)
+		throws DataAccessException {
+
+		invalidateAll();
+		dataSource.open(url, username, password);
+	}
+
+	public void close() {
+		dataSource.close();
+		invalidateAll();
+	}
+
+	public void backup() throws DataAccessException {
+		dataSource.backup();
+	}
+
+	public void setBackupOptions(int backupCount, int backupInterval,
+			boolean compress) {
+
+		dataSource.setBackupOptions(backupCount, backupInterval, compress);
+	}
+
+	public void setConnectionPoolOptions(int maxConnections, int idleTimeout) {
+		dataSource.setConnectionPoolOptions(maxConnections, idleTimeout);
+	}
+
+	public int getStatementCacheHitCount() {
+		return dataSource.getStatementCacheHitCount();
+	}
+
+	public int getStatementCacheMissCount() {
+		return dataSource.getStatementCacheMissCount();
+	}
+
+	public Session openSession() throws DataAccessException {
+		return new CachingSession(dataSource.openSession());
+	}
+
+	public AccountDAO getAccountDAO(Session session) {
+		return dataSource.getAccountDAO(unwrap(session));
+	}
+
+	public AccountBalanceDAO getAccountBalanceDAO(Session session) {
+		return dataSource.getAccountBalanceDAO(unwrap(session));
+	}
+
+	public COAHeadingDAO getCOAHeadingDAO(Session session) {
+		return dataSource.getCOAHeadingDAO(unwrap(session));
+	}
+
+	public DocumentDAO getDocumentDAO(Session session) {
+		CachingSession sess = (CachingSession)session;
+		DocumentDAO dao = sess.getDAOCache().get(DocumentDAO.class);
+
+		if (dao == null) {
+			dao = new CachingDocumentDAO(sess,
+					dataSource.getDocumentDAO(unwrap(session)),
+					documentCache, entryCache);
+			sess.getDAOCache().put(DocumentDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public EntryDAO getEntryDAO(Session session) {
+		CachingSession sess = (CachingSession)session;
+		EntryDAO dao = sess.getDAOCache().get(EntryDAO.class);
+
+		if (dao == null) {
+			dao = new CachingEntryDAO(sess,
+					dataSource.getEntryDAO(unwrap(session)), entryCache);
+			sess.getDAOCache().put(EntryDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public PeriodDAO getPeriodDAO(Session session) {
+		CachingSession sess = (CachingSession)session;
+		PeriodDAO dao = sess.getDAOCache().get(PeriodDAO.class);
+
+		if (dao == null) {
+			dao = new CachingPeriodDAO(sess,
+					dataSource.getPeriodDAO(unwrap(session)),
+					periodCache, documentCache, entryCache);
+			sess.getDAOCache().put(PeriodDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public SettingsDAO getSettingsDAO(Session session) {
+		CachingSession sess = (CachingSession)session;
+		SettingsDAO dao = sess.getDAOCache().get(SettingsDAO.class);
+
+		if (dao == null) {
+			dao = new CachingSettingsDAO(sess,
+					dataSource.getSettingsDAO(unwrap(session)),
+					settingsCache, periodCache);
+			sess.getDAOCache().put(SettingsDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public ReportStructureDAO getReportStructureDAO(Session session) {
+		return dataSource.getReportStructureDAO(unwrap(session));
+	}
+
+	public EntryTemplateDAO getEntryTemplateDAO(Session session) {
+		return dataSource.getEntryTemplateDAO(unwrap(session));
+	}
+
+	public DocumentTypeDAO getDocumentTypeDAO(Session session) {
+		CachingSession sess = (CachingSession)session;
+		DocumentTypeDAO dao = sess.getDAOCache().get(DocumentTypeDAO.class);
+
+		if (dao == null) {
+			dao = new CachingDocumentTypeDAO(sess,
+					dataSource.getDocumentTypeDAO(unwrap(session)),
+					documentTypeCache);
+			sess.getDAOCache().put(DocumentTypeDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	private Session unwrap(Session session) {
+		return ((CachingSession)session).getSession();
+	}
+}
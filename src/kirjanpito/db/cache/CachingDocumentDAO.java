@@ -0,0 +1,236 @@
+package kirjanpito.db.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Document;
+import kirjanpito.db.DocumentDAO;
+import kirjanpito.db.Entry;
+
+/**
+ * <code>DocumentDAO</code>, joka hakee tositesivut välimuistista.
+ * Välimuistiin tallennetaan tositenumeron perusteella haetut sivut
+ * ja tositteiden lukumäärät, joita tositteiden selaaminen käyttää.
+ * Muut kyselyt välitetään suoraan tietokantaan.
+ *
+ * @author Tommi Helineva
+ */
+class CachingDocumentDAO implements DocumentDAO {
+	private CachingSession sess;
+	private DocumentDAO dao;
+	private CacheRegion<String, Object> cache;
+	private CacheRegion<Integer, Entry[]> entryCache;
+
+	public CachingDocumentDAO(CachingSession sess, DocumentDAO dao,
+			CacheRegion<String, Object> cache,
+			CacheRegion<Integer, Entry[]> entryCache) {
+
+		this.sess = sess;
+		this.dao = dao;
+		this.cache = cache;
+		this.entryCache = entryCache;
+	}
+
+	public Document create(int periodId, int numberStart, int numberEnd)
+		throws DataAccessException {
+
+		return dao.create(periodId, numberStart, numberEnd);
+	}
+
+	public void save(Document document) throws DataAccessException {
+		sess.invalidate(cache, null);
+		dao.save(document);
+	}
+
+	public void delete(int documentId) throws DataAccessException {
+		sess.invalidate(cache, null);
+		sess.invalidate(entryCache, documentId);
+		dao.delete(documentId);
+	}
+
+	public void deleteByPeriodId(int periodId) throws DataAccessException {
+		sess.invalidate(cache, null);
+		sess.invalidate(entryCache, null);
+		dao.deleteByPeriodId(periodId);
+	}
+
+	public void shiftNumbers(int periodId, int startNumber, int endNumber,
+			int shift) throws DataAccessException {
+
+		sess.invalidate(cache, null);
+		dao.shiftNumbers(periodId, startNumber, endNumber, shift);
+	}
+
+	public List<Document> getByPeriodId(int periodId, int numberOffset)
+		throws DataAccessException {
+
+		return dao.getByPeriodId(periodId, numberOffset);
+	}
+
+	public int getCountByPeriodId(int periodId, int numberOffset)
+		throws DataAccessException {
+
+		return dao.getCountByPeriodId(periodId, numberOffset);
+	}
+
+	public Document getByPeriodIdAndNumber(int periodId, int number)
+		throws DataAccessException {
+
+		return dao.getByPeriodIdAndNumber(periodId, number);
+	}
+
+	public int getCountByPeriodIdAndNumber(int periodId, int startNumber,
+			int endNumber) throws DataAccessException {
+
+		if (sess.isDirty()) {
+			return dao.getCountByPeriodIdAndNumber(periodId, startNumber, endNumber);
+		}
+
+		String key = "count/" + periodId + "/" + startNumber + "/" + endNumber;
+		Integer count = (Integer)cache.get(key);
+
+		if (count == null) {
+			int version = cache.getVersion();
+			count = dao.getCountByPeriodIdAndNumber(periodId, startNumber, endNumber);
+			cache.put(key, count, version);
+		}
+
+		return count;
+	}
+
+	public int getIndexByPeriodIdAndNumber(int periodId, int startNumber,
+			int endNumber, int number) throws DataAccessException {
+
+		return dao.getIndexByPeriodIdAndNumber(periodId, startNumber,
+				endNumber, number);
+	}
+
+	public List<Document> getByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int offset, int limit)
+			throws DataAccessException {
+
+		if (sess.isDirty()) {
+			return dao.getByPeriodIdAndNumber(periodId, startNumber,
+					endNumber, offset, limit);
+		}
+
+		String key = "offset/" + periodId + "/" + startNumber + "/" +
+			endNumber + "/" + offset + "/" + limit;
+		Document[] documents = (Document[])cache.get(key);
+
+		if (documents == null) {
+			int version = cache.getVersion();
+			List<Document> list = dao.getByPeriodIdAndNumber(periodId,
+					startNumber, endNumber, offset, limit);
+			cache.put(key, copy(list), version);
+			return list;
+		}
+
+		return copy(documents);
+	}
+
+	public List<Document> getFirstByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int limit)
+			throws DataAccessException {
+
+		if (sess.isDirty()) {
+			return dao.getFirstByPeriodIdAndNumber(periodId, startNumber,
+					endNumber, limit);
+		}
+
+		String key = "first/" + periodId + "/" + startNumber + "/" +
+			endNumber + "/" + limit;
+		Document[] documents = (Document[])cache.get(key);
+
+		if (documents == null) {
+			int version = cache.getVersion();
+			List<Document> list = dao.getFirstByPeriodIdAndNumber(periodId,
+					startNumber, endNumber, limit);
+			cache.put(key, copy(list), version);
+			return list;
+		}
+
+		return copy(documents);
+	}
+
+	public List<Document> getLastByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int limit)
+			throws DataAccessException {
+
+		if (sess.isDirty()) {
+			return dao.getLastByPeriodIdAndNumber(periodId, startNumber,
+					endNumber, limit);
+		}
+
+		String key = "last/" + periodId + "/" + startNumber + "/" +
+			endNumber + "/" + limit;
+		Document[] documents = (Document[])cache.get(key);
+
+		if (documents == null) {
+			int version = cache.getVersion();
+			List<Document> list = dao.getLastByPeriodIdAndNumber(periodId,
+					startNumber, endNumber, limit);
+			cache.put(key, copy(list), version);
+			return list;
+		}
+
+		return copy(documents);
+	}
+
+	public int getCountByPeriodIdAndPhrase(int periodId, String q)
+		throws DataAccessException {
+
+		return dao.getCountByPeriodIdAndPhrase(periodId, q);
+	}
+
+	public List<Document> getByPeriodIdAndPhrase(int periodId, String q,
+			int offset, int limit) throws DataAccessException {
+
+		return dao.getByPeriodIdAndPhrase(periodId, q, offset, limit);
+	}
+
+	public List<Document> getFirstByPeriodIdAndPhrase(int periodId, String q,
+			int startNumber, int endNumber, int limit) throws DataAccessException {
+
+		return dao.getFirstByPeriodIdAndPhrase(periodId, q, startNumber,
+				endNumber, limit);
+	}
+
+	public List<Document> getLastByPeriodIdAndPhrase(int periodId, String q,
+			int startNumber, int endNumber, int limit) throws DataAccessException {
+
+		return dao.getLastByPeriodIdAndPhrase(periodId, q, startNumber,
+				endNumber, limit);
+	}
+
+	public List<Document> getByPeriodIdAndDate(int periodId,
+			Date startDate, Date endDate) throws DataAccessException {
+
+		return dao.getByPeriodIdAndDate(periodId, startDate, endDate);
+	}
+
+	private static Document[] copy(List<Document> list) {
+		Document[] documents = new Document[list.size()];
+
+		for (int i = 0; i < documents.length; i++) {
+			documents[i] = new Document();
+			list.get(i).copy(documents[i]);
+		}
+
+		return documents;
+	}
+
+	private static List<Document> copy(Document[] documents) {
+		List<Document> list = new ArrayList<Document>(documents.length);
+
+		for (Document document : documents) {
+			Document copy = new Document();
+			document.copy(copy);
+			list.add(copy);
+		}
+
+		return list;
+	}
+}
@@ -0,0 +1,68 @@
+package kirjanpito.db.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.DocumentType;
+import kirjanpito.db.DocumentTypeDAO;
+
+/**
+ * <code>DocumentTypeDAO</code>, joka hakee tositelajit välimuistista.
+ *
+ * @author Tommi Helineva
+ */
+class CachingDocumentTypeDAO implements DocumentTypeDAO {
+	private CachingSession sess;
+	private DocumentTypeDAO dao;
+	private CacheRegion<String, DocumentType[]> cache;
+
+	private static final String KEY = "all";
+
+	public CachingDocumentTypeDAO(CachingSession sess, DocumentTypeDAO dao,
+			CacheRegion<String, DocumentType[]> cache) {
+
+		this.sess = sess;
+		this.dao = dao;
+		this.cache = cache;
+	}
+
+	public void save(DocumentType documentType) throws DataAccessException {
+		sess.invalidate(cache, null);
+		dao.save(documentType);
+	}
+
+	public void delete(int typeId) throws DataAccessException {
+		sess.invalidate(cache, null);
+		dao.delete(typeId);
+	}
+
+	public List<DocumentType> getAll() throws DataAccessException {
+		if (sess.isDirty()) {
+			return dao.getAll();
+		}
+
+		DocumentType[] types = cache.get(KEY);
+
+		if (types == null) {
+			int version = cache.getVersion();
+			List<DocumentType> list = dao.getAll();
+			types = new DocumentType[list.size()];
+
+			for (int i = 0; i < types.length; i++) {
+				types[i] = list.get(i).clone();
+			}
+
+			cache.put(KEY, types, version);
+			return list;
+		}
+
+		List<DocumentType> list = new ArrayList<DocumentType>(types.length);
+
+		for (DocumentType type : types) {
+			list.add(type.clone());
+		}
+
+		return list;
+	}
+}
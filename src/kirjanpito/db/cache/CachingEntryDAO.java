@@ -0,0 +1,198 @@
+package kirjanpito.db.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import kirjanpito.db.DTOCallback;
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Document;
+import kirjanpito.db.DocumentEntryCallback;
+import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
+
+/**
+ * <code>EntryDAO</code>, joka hakee tositteiden viennit välimuistista.
+ * Välimuistiin tallennetaan tositteittain haetut viennit. Tilikauden
+ * kaikkia vientejä käsittelevät kyselyt välitetään suoraan
+ * tietokantaan.
+ *
+ * @author Tommi Helineva
+ */
+class CachingEntryDAO implements EntryDAO {
+	private CachingSession sess;
+	private EntryDAO dao;
+	private CacheRegion<Integer, Entry[]> cache;
+
+	public CachingEntryDAO(CachingSession sess, EntryDAO dao,
+			CacheRegion<Integer, Entry[]> cache) {
+
+		this.sess = sess;
+		this.dao = dao;
+		this.cache = cache;
+	}
+
+	public void save(Entry entry) throws DataAccessException {
+		sess.invalidate(cache, entry.getDocumentId());
+		dao.save(entry);
+	}
+
+	public void delete(int entryId) throws DataAccessException {
+		/* Viennin tositetta ei tiedetä, joten kaikki viennit mitätöidään. */
+		sess.invalidate(cache, null);
+		dao.delete(entryId);
+	}
+
+	public void saveAll(List<Entry> entries) throws DataAccessException {
+		invalidate(entries);
+		dao.saveAll(entries);
+	}
+
+	public void deleteAll(List<Entry> entries) throws DataAccessException {
+		invalidate(entries);
+		dao.deleteAll(entries);
+	}
+
+	public void deleteByPeriodId(int periodId) throws DataAccessException {
+		sess.invalidate(cache, null);
+		dao.deleteByPeriodId(periodId);
+	}
+
+	public List<Entry> getByDocumentId(int documentId)
+		throws DataAccessException {
+
+		if (sess.isDirty()) {
+			return dao.getByDocumentId(documentId);
+		}
+
+		Entry[] entries = cache.get(documentId);
+
+		if (entries == null) {
+			int version = cache.getVersion();
+			List<Entry> list = dao.getByDocumentId(documentId);
+			cache.put(documentId, copy(list), version);
+			return list;
+		}
+
+		List<Entry> list = new ArrayList<Entry>(entries.length);
+
+		for (Entry entry : entries) {
+			list.add(entry.clone());
+		}
+
+		return list;
+	}
+
+	public void getByDocuments(List<Document> documents,
+			DTOCallback<Entry> callback) throws DataAccessException {
+
+		if (sess.isDirty()) {
+			dao.getByDocuments(documents, callback);
+			return;
+		}
+
+		/* Haetaan tietokannasta vain ne tositteet, joiden vientejä
+		 * ei löydy välimuistista. */
+		final HashMap<Integer, List<Entry>> fetched = new HashMap<Integer, List<Entry>>();
+		ArrayList<Document> missing = new ArrayList<Document>();
+		Entry[][] cached = new Entry[documents.size()][];
+		int version = cache.getVersion();
+
+		for (int i = 0; i < cached.length; i++) {
+			cached[i] = cache.get(documents.get(i).getId());
+
+			if (cached[i] == null) {
+				missing.add(documents.get(i));
+				fetched.put(documents.get(i).getId(), new ArrayList<Entry>());
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			dao.getByDocuments(missing, new DTOCallback<Entry>() {
+				public void process(Entry obj) {
+					fetched.get(obj.getDocumentId()).add(obj);
+				}
+			});
+		}
+
+		for (int i = 0; i < cached.length; i++) {
+			if (cached[i] != null) {
+				for (Entry entry : cached[i]) {
+					callback.process(entry.clone());
+				}
+			}
+			else {
+				int documentId = documents.get(i).getId();
+				List<Entry> list = fetched.get(documentId);
+				cache.put(documentId, copy(list), version);
+
+				for (Entry entry : list) {
+					callback.process(entry);
+				}
+			}
+		}
+	}
+
+	public void getByPeriodId(int periodId, int orderBy,
+			DTOCallback<Entry> callback) throws DataAccessException {
+
+		dao.getByPeriodId(periodId, orderBy, callback);
+	}
+
+	public void getByPeriodIdWithDocuments(int periodId, int numberOffset,
+			DocumentEntryCallback callback) throws DataAccessException {
+
+		dao.getByPeriodIdWithDocuments(periodId, numberOffset, callback);
+	}
+
+	public void getByPeriodIdAndAccountId(int periodId, int accountId,
+			int orderBy, DTOCallback<Entry> callback) throws DataAccessException {
+
+		dao.getByPeriodIdAndAccountId(periodId, accountId, orderBy, callback);
+	}
+
+	public void getByPeriodIdAndAccountId(int periodId, int accountId,
+			int orderBy, Document start, int limit, DTOCallback<Entry> callback)
+			throws DataAccessException {
+
+		dao.getByPeriodIdAndAccountId(periodId, accountId, orderBy, start,
+				limit, callback);
+	}
+
+	public void getByPeriodIdAndDate(int periodId, Date startDate,
+			Date endDate, DTOCallback<Entry> callback) throws DataAccessException {
+
+		dao.getByPeriodIdAndDate(periodId, startDate, endDate, callback);
+	}
+
+	public void getByPeriodIdAndDate(int periodId, Date startDate,
+			Date endDate, int startNumber, DTOCallback<Entry> callback)
+			throws DataAccessException {
+
+		dao.getByPeriodIdAndDate(periodId, startDate, endDate, startNumber,
+				callback);
+	}
+
+	public void getByPeriodIdAndNumber(int periodId, int startNumber,
+			int endNumber, DTOCallback<Entry> callback) throws DataAccessException {
+
+		dao.getByPeriodIdAndNumber(periodId, startNumber, endNumber, callback);
+	}
+
+	private void invalidate(List<Entry> entries) {
+		for (Entry entry : entries) {
+			sess.invalidate(cache, entry.getDocumentId());
+		}
+	}
+
+	private static Entry[] copy(List<Entry> list) {
+		Entry[] entries = new Entry[list.size()];
+
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = list.get(i).clone();
+		}
+
+		return entries;
+	}
+}
@@ -0,0 +1,98 @@
+package kirjanpito.db.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Entry;
+import kirjanpito.db.Period;
+import kirjanpito.db.PeriodDAO;
+
+/**
+ * <code>PeriodDAO</code>, joka hakee tilikaudet välimuistista.
+ *
+ * @author Tommi Helineva
+ */
+class CachingPeriodDAO implements PeriodDAO {
+	private CachingSession sess;
+	private PeriodDAO dao;
+	private CacheRegion<String, Period[]> cache;
+	private CacheRegion<String, Object> documentCache;
+	private CacheRegion<Integer, Entry[]> entryCache;
+
+	private static final String ALL_KEY = "all";
+	private static final String CURRENT_KEY = "current";
+
+	public CachingPeriodDAO(CachingSession sess, PeriodDAO dao,
+			CacheRegion<String, Period[]> cache,
+			CacheRegion<String, Object> documentCache,
+			CacheRegion<Integer, Entry[]> entryCache) {
+
+		this.sess = sess;
+		this.dao = dao;
+		this.cache = cache;
+		this.documentCache = documentCache;
+		this.entryCache = entryCache;
+	}
+
+	public void save(Period period) throws DataAccessException {
+		sess.invalidate(cache, null);
+		dao.save(period);
+	}
+
+	public void delete(int periodId) throws DataAccessException {
+		sess.invalidate(cache, null);
+		sess.invalidate(documentCache, null);
+		sess.invalidate(entryCache, null);
+		dao.delete(periodId);
+	}
+
+	public List<Period> getAll() throws DataAccessException {
+		if (sess.isDirty()) {
+			return dao.getAll();
+		}
+
+		Period[] periods = cache.get(ALL_KEY);
+
+		if (periods == null) {
+			int version = cache.getVersion();
+			List<Period> list = dao.getAll();
+			periods = new Period[list.size()];
+
+			for (int i = 0; i < periods.length; i++) {
+				periods[i] = list.get(i).clone();
+			}
+
+			cache.put(ALL_KEY, periods, version);
+			return list;
+		}
+
+		List<Period> list = new ArrayList<Period>(periods.length);
+
+		for (Period period : periods) {
+			list.add(period.clone());
+		}
+
+		return list;
+	}
+
+	public Period getCurrent() throws DataAccessException {
+		if (sess.isDirty()) {
+			return dao.getCurrent();
+		}
+
+		/* Tilikausi tallennetaan yhden alkion taulukkona, jotta
+		 * myös puuttuva tilikausi voidaan tallentaa välimuistiin. */
+		Period[] periods = cache.get(CURRENT_KEY);
+
+		if (periods == null) {
+			int version = cache.getVersion();
+			Period period = dao.getCurrent();
+			cache.put(CURRENT_KEY, new Period[] {
+					(period == null) ? null : period.clone() }, version);
+			return period;
+		}
+
+		return (periods[0] == null) ? null : periods[0].clone();
+	}
+}
@@ -0,0 +1,129 @@
+package kirjanpito.db.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import kirjanpito.db.DAOCache;
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Session;
+
+/**
+ * Istunto, joka pitää kirjaa istunnon aikana mitätöidyistä
+ * välimuistin arvoista. Arvot mitätöidään uudelleen, kun muutokset
+ * vahvistetaan tai perutaan, koska toinen istunto on voinut tallentaa
+ * välimuistiin vahvistamattomia tai vanhentuneita tietoja ennen sitä.
+ * Istunto, jossa on vahvistamattomia muutoksia, ei käytä välimuistia.
+ *
+ * @author Tommi Helineva
+ */
+class CachingSession implements Session {
+	private Session session;
+	private HashMap<CacheRegion<?, ?>, HashSet<Object>> invalidated;
+	private DAOCache daos;
+
+	/**
+	 * Mitätöityjen avainten enimmäismäärä välimuistia kohti. Jos
+	 * avaimia on enemmän, välimuistin kaikki arvot mitätöidään.
+	 */
+	private static final int MAX_KEYS = 1000;
+
+	public CachingSession(Session session) {
+		this.session = session;
+		this.invalidated = new HashMap<CacheRegion<?, ?>, HashSet<Object>>();
+		this.daos = new DAOCache();
+	}
+
+	/**
+	 * Palauttaa tietokannan istunnon.
+	 *
+	 * @return istunto
+	 */
+	public Session getSession() {
+		return session;
+	}
+
+	/**
+	 * Palauttaa istunnon DAO-oliot.
+	 *
+	 * @return DAO-oliot
+	 */
+	public DAOCache getDAOCache() {
+		return daos;
+	}
+
+	/**
+	 * Ilmoittaa, onko istunnossa vahvistamattomia muutoksia.
+	 *
+	 * @return <code>true</code>, jos välimuistia ei saa käyttää
+	 */
+	public boolean isDirty() {
+		return !invalidated.isEmpty();
+	}
+
+	/**
+	 * Mitätöi välimuistin arvon ennen kuin tietoja muutetaan.
+	 *
+	 * @param region välimuisti
+	 * @param key avain tai <code>null</code>, jos kaikki arvot mitätöidään
+	 */
+	public void invalidate(CacheRegion<?, ?> region, Object key) {
+		region.invalidate(key);
+		HashSet<Object> keys = invalidated.get(region);
+
+		if (keys == null && !invalidated.containsKey(region)) {
+			keys = new HashSet<Object>();
+			invalidated.put(region, keys);
+		}
+
+		/* null tarkoittaa, että kaikki arvot mitätöidään. */
+		if (keys != null) {
+			if (key == null || keys.size() >= MAX_KEYS) {
+				invalidated.put(region, null);
+			}
+			else {
+				keys.add(key);
+			}
+		}
+	}
+
+	public void commit() throws DataAccessException {
+		try {
+			session.commit();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void rollback() throws DataAccessException {
+		try {
+			session.rollback();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void close() {
+		session.close();
+		invalidateAll();
+	}
+
+	private void invalidateAll() {
+		for (Map.Entry<CacheRegion<?, ?>, HashSet<Object>> entry :
+				invalidated.entrySet()) {
+
+			if (entry.getValue() == null) {
+				entry.getKey().invalidate(null);
+			}
+			else {
+				for (Object key : entry.getValue()) {
+					entry.getKey().invalidate(key);
+				}
+			}
+		}
+
+		invalidated.clear();
+	}
+}
@@ -0,0 +1,55 @@
+package kirjanpito.db.cache;
+
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Period;
+import kirjanpito.db.Settings;
+import kirjanpito.db.SettingsDAO;
+
+/**
+ * <code>SettingsDAO</code>, joka hakee asetukset välimuistista.
+ *
+ * @author Tommi Helineva
+ */
+class CachingSettingsDAO implements SettingsDAO {
+	private CachingSession sess;
+	private SettingsDAO dao;
+	private CacheRegion<String, Settings> cache;
+	private CacheRegion<String, Period[]> periodCache;
+
+	private static final String KEY = "settings";
+
+	public CachingSettingsDAO(CachingSession sess, SettingsDAO dao,
+			CacheRegion<String, Settings> cache,
+			CacheRegion<String, Period[]> periodCache) {
+
+		this.sess = sess;
+		this.dao = dao;
+		this.cache = cache;
+		this.periodCache = periodCache;
+	}
+
+	public void save(Settings settings) throws DataAccessException {
+		/* Nykyisen tilikauden tunniste tallennetaan asetuksiin. */
+		sess.invalidate(cache, null);
+		sess.invalidate(periodCache, null);
+		dao.save(settings);
+	}
+
+	public Settings get() throws DataAccessException {
+		if (sess.isDirty()) {
+			return dao.get();
+		}
+
+		Settings settings = cache.get(KEY);
+
+		if (settings == null) {
+			int version = cache.getVersion();
+			settings = dao.get();
+			if (settings == null) return null;
+			cache.put(KEY, settings.clone(), version);
+			return settings;
+		}
+
+		return settings.clone();
+	}
+}
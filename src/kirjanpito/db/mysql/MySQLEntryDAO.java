@@ -3,6 +3,7 @@ package kirjanpito.db.mysql;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import kirjanpito.db.sql.SQLAccountBalanceDAO;
 import kirjanpito.db.sql.SQLEntryDAO;
 
 /**
@@ -14,6 +15,7 @@ import kirjanpito.db.sql.SQLEntryDAO;
  */
 public class MySQLEntryDAO extends SQLEntryDAO {
 	private MySQLSession sess;
+	private SQLAccountBalanceDAO balanceDAO;
 
 	public MySQLEntryDAO(MySQLSession sess) {
 		this.sess = sess;
@@ -23,6 +25,14 @@ public class MySQLEntryDAO extends SQLEntryDAO {
 		return sess.getInsertId();
 	}
 
+	protected SQLAccountBalanceDAO getAccountBalanceDAO() {
+		if (balanceDAO == null) {
+			balanceDAO = new MySQLAccountBalanceDAO(sess);
+		}
+
+		return balanceDAO;
+	}
+
 	protected PreparedStatement getSelectByDocumentIdQuery() throws SQLException {
 		return sess.prepareStatement("SELECT id, document_id, account_id, debit, amount, description, row_number, flags FROM entry WHERE document_id = ? ORDER BY row_number");
 	}
@@ -35,6 +45,10 @@ public class MySQLEntryDAO extends SQLEntryDAO {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? ORDER BY d.number, e.row_number");
 	}
 
+	protected PreparedStatement getSelectByPeriodIdWithDocumentsQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags, d.number, d.date FROM document d STRAIGHT_JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.number >= ? ORDER BY d.number, e.row_number");
+	}
+
 	protected PreparedStatement getSelectByPeriodIdOrderByDateQuery() throws SQLException {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? ORDER BY d.date, d.number, e.row_number");
 	}
@@ -55,6 +69,14 @@ public class MySQLEntryDAO extends SQLEntryDAO {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? AND e.account_id = ? ORDER BY d.number, d.date, e.row_number");
 	}
 
+	protected PreparedStatement getSelectByPeriodIdAndAccountIdFromDateQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM document d STRAIGHT_JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.date >= ? AND e.account_id = ? ORDER BY d.date, d.number, e.row_number LIMIT ?");
+	}
+
+	protected PreparedStatement getSelectByPeriodIdAndAccountIdFromNumberQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM document d STRAIGHT_JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.number >= ? AND e.account_id = ? ORDER BY d.number, e.row_number LIMIT ?");
+	}
+
 	protected PreparedStatement getSelectByAccountIdQuery() throws SQLException {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE e.account_id = ? ORDER BY d.number, e.row_number");
 	}
@@ -76,7 +98,7 @@ public class MySQLEntryDAO extends SQLEntryDAO {
 	}
 
 	protected PreparedStatement getInsertQuery() throws SQLException {
-		return sess.prepareStatement("INSERT INTO entry (document_id, account_id, debit, amount, description, row_number, flags) VALUES (?, ?, ?, ?, ?, ?, ?)");
+		return sess.prepareInsertStatement("INSERT INTO entry (document_id, account_id, debit, amount, description, row_number, flags) VALUES (?, ?, ?, ?, ?, ?, ?)");
 	}
 
 	protected PreparedStatement getUpdateQuery() throws SQLException {
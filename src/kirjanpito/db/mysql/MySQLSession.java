@@ -4,11 +4,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import kirjanpito.db.DAOCache;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.Session;
+import kirjanpito.db.sql.ConnectionPool;
+import kirjanpito.db.sql.PooledConnection;
+import kirjanpito.db.sql.StatementCache;
+import kirjanpito.db.sql.StatementTracker;
 
 /**
  * MySQL-tietokantaistunto.
@@ -18,10 +24,26 @@ import kirjanpito.db.Session;
 public class MySQLSession implements Session {
 	private static Logger logger = Logger.getLogger("kirjanpito.db.mysql");
 	
+	private ConnectionPool pool;
+	private PooledConnection pooled;
 	private Connection conn;
+	private StatementCache cache;
+	private StatementTracker statements;
+	private DAOCache daos;
 
-	public MySQLSession(Connection conn) {
-		this.conn = conn;
+	/**
+	 * Luo istunnon ja varaa sen käyttöön yhteyden altaasta.
+	 * 
+	 * @param pool yhteysallas
+	 * @throws SQLException jos yhteyden varaaminen epäonnistuu
+	 */
+	public MySQLSession(ConnectionPool pool) throws SQLException {
+		this.pool = pool;
+		this.pooled = pool.getConnection();
+		this.conn = pooled.getConnection();
+		this.cache = pooled.getStatementCache();
+		this.statements = new StatementTracker();
+		this.daos = new DAOCache();
 	}
 	
 	/**
@@ -33,6 +55,15 @@ public class MySQLSession implements Session {
 		return conn;
 	}
 	
+	/**
+	 * Palauttaa istunnon DAO-oliot.
+	 * 
+	 * @return DAO-oliot
+	 */
+	public DAOCache getDAOCache() {
+		return daos;
+	}
+	
 	public void commit() throws DataAccessException {
 		try {
 			conn.commit();
@@ -52,12 +83,33 @@ public class MySQLSession implements Session {
 	}
 	
 	public void close() {
+		statements.closeAll();
+
+		if (pooled != null) {
+			pool.release(pooled);
+			pooled = null;
+		}
 	}
 	
 	public PreparedStatement prepareStatement(String sql) throws SQLException
 	{
 		logger.log(Level.FINER, "Suoritetaan tietokantakysely: " + sql);
-		return conn.prepareStatement(sql);
+		return statements.add(cache.prepareStatement(sql));
+	}
+	
+	/**
+	 * Luo kyselyn, jonka lisäämien rivien AUTO_INCREMENT-kenttien
+	 * arvot voidaan hakea <code>getGeneratedKeys()</code>-metodilla.
+	 * 
+	 * @param sql SQL-kysely
+	 * @return kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	public PreparedStatement prepareInsertStatement(String sql) throws SQLException
+	{
+		logger.log(Level.FINER, "Suoritetaan tietokantakysely: " + sql);
+		return statements.add(cache.prepareStatement(sql,
+				Statement.RETURN_GENERATED_KEYS));
 	}
 	
 	/**
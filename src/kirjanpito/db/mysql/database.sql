@@ -92,6 +92,46 @@ CREATE TABLE entry_template (
 	FOREIGN KEY (account_id) REFERENCES account (id)
 ) ENGINE=InnoDB;
 
+CREATE TABLE account_balance (
+	period_id int NOT NULL,
+	account_id int NOT NULL,
+	date date NOT NULL,
+	debit_total numeric(14, 2) NOT NULL,
+	credit_total numeric(14, 2) NOT NULL,
+	entry_count int NOT NULL,
+	PRIMARY KEY (account_id, period_id, date),
+	FOREIGN KEY (period_id) REFERENCES period (id),
+	FOREIGN KEY (account_id) REFERENCES account (id)
+) ENGINE=InnoDB;
+
 CREATE INDEX document_number_idx ON document (
 	period_id, number
 );
+
+CREATE INDEX account_balance_period_idx ON account_balance (
+	period_id, date
+);
+
+CREATE INDEX account_balance_date_idx ON account_balance (
+	date, account_id, debit_total, credit_total, entry_count
+);
+
+CREATE INDEX document_period_date_idx ON document (
+	period_id, date, number
+);
+
+CREATE INDEX document_date_idx ON document (
+	date, number
+);
+
+CREATE INDEX entry_document_idx ON entry (
+	document_id, row_number
+);
+
+CREATE INDEX entry_account_idx ON entry (
+	account_id, document_id
+);
+
+CREATE FULLTEXT INDEX entry_description_idx ON entry (
+	description
+);
@@ -0,0 +1,88 @@
+package kirjanpito.db.postgresql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import kirjanpito.db.sql.SQLAccountBalanceDAO;
+
+/**
+ * <code>PSQLAccountBalanceDAO</code>:n avulla voidaan hakea tilien
+ * saldot saldotaulusta.
+ *
+ * @author Tommi Helineva
+ */
+public class PSQLAccountBalanceDAO extends SQLAccountBalanceDAO {
+	private PSQLSession sess;
+
+	public PSQLAccountBalanceDAO(PSQLSession sess) {
+		this.sess = sess;
+	}
+
+	protected PreparedStatement getSelectByPeriodIdAndDateQuery() throws SQLException {
+		return sess.prepareStatement("SELECT account_id, SUM(debit_total), SUM(credit_total), SUM(entry_count) FROM account_balance WHERE period_id = ? AND date >= ? AND date <= ? GROUP BY account_id");
+	}
+
+	protected PreparedStatement getSelectByDateQuery() throws SQLException {
+		return sess.prepareStatement("SELECT account_id, SUM(debit_total), SUM(credit_total), SUM(entry_count) FROM account_balance WHERE date >= ? AND date <= ? GROUP BY account_id");
+	}
+
+	protected PreparedStatement getSelectByPeriodIdQuery() throws SQLException {
+		return sess.prepareStatement("SELECT account_id, SUM(debit_total), SUM(credit_total), SUM(entry_count) FROM account_balance WHERE period_id = ? GROUP BY account_id");
+	}
+
+	protected PreparedStatement getSelectDailyByDateQuery() throws SQLException {
+		return sess.prepareStatement("SELECT account_id, SUM(debit_total), SUM(credit_total), SUM(entry_count), date FROM account_balance WHERE date >= ? AND date <= ? GROUP BY date, account_id ORDER BY date");
+	}
+
+	protected PreparedStatement getSelectAccountUsedQuery() throws SQLException {
+		return sess.prepareStatement("SELECT 1 FROM account_balance WHERE account_id = ? LIMIT 1");
+	}
+
+	protected PreparedStatement getSelectUsedAccountIdsQuery() throws SQLException {
+		return sess.prepareStatement("SELECT a.id FROM account a WHERE EXISTS (SELECT 1 FROM account_balance b WHERE b.account_id = a.id AND b.period_id = ?)");
+	}
+
+	protected PreparedStatement getRebuildByPeriodIdQuery() throws SQLException {
+		return sess.prepareStatement("INSERT INTO account_balance (period_id, account_id, date, debit_total, credit_total, entry_count) SELECT d.period_id, e.account_id, d.date, SUM(CASE WHEN e.debit THEN e.amount ELSE 0 END), SUM(CASE WHEN e.debit THEN 0 ELSE e.amount END), COUNT(*) FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? GROUP BY d.period_id, e.account_id, d.date");
+	}
+
+	protected PreparedStatement getRebuildAllQuery() throws SQLException {
+		return sess.prepareStatement("INSERT INTO account_balance (period_id, account_id, date, debit_total, credit_total, entry_count) SELECT d.period_id, e.account_id, d.date, SUM(CASE WHEN e.debit THEN e.amount ELSE 0 END), SUM(CASE WHEN e.debit THEN 0 ELSE e.amount END), COUNT(*) FROM entry e INNER JOIN document d ON d.id = e.document_id GROUP BY d.period_id, e.account_id, d.date");
+	}
+
+	protected PreparedStatement getDeleteByPeriodIdQuery() throws SQLException {
+		return sess.prepareStatement("DELETE FROM account_balance WHERE period_id = ?");
+	}
+
+	protected PreparedStatement getDeleteAllQuery() throws SQLException {
+		return sess.prepareStatement("DELETE FROM account_balance");
+	}
+
+	protected PreparedStatement getSelectEntryQuery() throws SQLException {
+		return sess.prepareStatement("SELECT document_id, account_id, debit, amount FROM entry WHERE id = ?");
+	}
+
+	protected PreparedStatement getSelectEntriesByDocumentIdQuery() throws SQLException {
+		return sess.prepareStatement("SELECT id, document_id, account_id, debit, amount FROM entry WHERE document_id = ?");
+	}
+
+	protected PreparedStatement getSelectDocumentTotalsQuery() throws SQLException {
+		return sess.prepareStatement("SELECT account_id, SUM(CASE WHEN debit THEN amount ELSE 0 END), SUM(CASE WHEN debit THEN 0 ELSE amount END), COUNT(*) FROM entry WHERE document_id = ? GROUP BY account_id");
+	}
+
+	protected PreparedStatement getSelectDocumentQuery() throws SQLException {
+		return sess.prepareStatement("SELECT period_id, date FROM document WHERE id = ?");
+	}
+
+	protected PreparedStatement getUpdateQuery() throws SQLException {
+		return sess.prepareStatement("UPDATE account_balance SET debit_total = debit_total + ?, credit_total = credit_total + ?, entry_count = entry_count + ? WHERE account_id = ? AND period_id = ? AND date = ?");
+	}
+
+	protected PreparedStatement getUpsertQuery() throws SQLException {
+		return sess.prepareStatement("INSERT INTO account_balance (period_id, account_id, date, debit_total, credit_total, entry_count) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (account_id, period_id, date) DO UPDATE SET debit_total = account_balance.debit_total + EXCLUDED.debit_total, credit_total = account_balance.credit_total + EXCLUDED.credit_total, entry_count = account_balance.entry_count + EXCLUDED.entry_count");
+	}
+
+	protected PreparedStatement getDeleteEmptyQuery() throws SQLException {
+		return sess.prepareStatement("DELETE FROM account_balance WHERE account_id = ? AND period_id = ? AND date = ? AND entry_count <= 0");
+	}
+}
@@ -2,12 +2,12 @@ package kirjanpito.db.postgresql;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.logging.Logger;
 
+import kirjanpito.db.AccountBalanceDAO;
 import kirjanpito.db.AccountDAO;
 import kirjanpito.db.COAHeadingDAO;
 import kirjanpito.db.DataAccessException;
@@ -21,15 +21,28 @@ import kirjanpito.db.PeriodDAO;
 import kirjanpito.db.ReportStructureDAO;
 import kirjanpito.db.Session;
 import kirjanpito.db.SettingsDAO;
+import kirjanpito.db.sql.ConnectionPool;
+import kirjanpito.db.sql.PooledConnection;
 
 /**
  * @author Tommi Helineva
  */
 public class PSQLDataSource implements DataSource {
-	private Connection conn;
+	private ConnectionPool pool;
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
 
 	private static final String JDBC_DRIVER_CLASS = "org.postgresql.Driver";
 
+	/** Välimuistiin tallennettavien kyselyjen enimmäismäärä. */
+	private static final int STATEMENT_CACHE_SIZE = 64;
+
+	/** Yhteysaltaan oletuskoko. */
+	public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+	/** Aika sekunteina, jonka jälkeen käyttämätön yhteys suljetaan. */
+	public static final int DEFAULT_IDLE_TIMEOUT = 300;
+
 	public void open(String url, String username, String password)
 		throws DataAccessException
 	{
@@ -41,64 +54,180 @@ public class PSQLDataSource implements DataSource {
 					"PostgreSQL-tietokanta-ajuria ei löytynyt", e);
 		}
 
+		pool = new ConnectionPool(url, username, password,
+				maxConnections, idleTimeout, STATEMENT_CACHE_SIZE);
+
 		try {
-			conn = DriverManager.getConnection(url, username, password);
-			conn.setAutoCommit(false);
-			upgradeDatabase(conn);
+			PooledConnection pc = pool.getConnection();
+
+			try {
+				upgradeDatabase(pc.getConnection());
+			}
+			finally {
+				pool.release(pc);
+			}
 		}
 		catch (SQLException e) {
+			pool.close();
 			throw new DataAccessException(e.getMessage(), e);
 		}
+		catch (DataAccessException e) {
+			pool.close();
+			throw e;
+		}
 	}
 
 	public void close() {
-		try {
-			conn.close();
-		}
-		catch (SQLException e) { }
+		pool.close();
+	}
+
+	public void setConnectionPoolOptions(int maxConnections, int idleTimeout) {
+		this.maxConnections = maxConnections;
+		this.idleTimeout = idleTimeout;
 	}
 
 	public void backup() {
 	}
 
+	public void setBackupOptions(int backupCount, int backupInterval,
+			boolean compress) {
+	}
+
 	public AccountDAO getAccountDAO(Session session) {
-		return new PSQLAccountDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		AccountDAO dao = sess.getDAOCache().get(AccountDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLAccountDAO(sess);
+			sess.getDAOCache().put(AccountDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public AccountBalanceDAO getAccountBalanceDAO(Session session) {
+		PSQLSession sess = (PSQLSession)session;
+		AccountBalanceDAO dao = sess.getDAOCache().get(AccountBalanceDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLAccountBalanceDAO(sess);
+			sess.getDAOCache().put(AccountBalanceDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public COAHeadingDAO getCOAHeadingDAO(Session session) {
-		return new PSQLCOAHeadingDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		COAHeadingDAO dao = sess.getDAOCache().get(COAHeadingDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLCOAHeadingDAO(sess);
+			sess.getDAOCache().put(COAHeadingDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public DocumentDAO getDocumentDAO(Session session) {
-		return new PSQLDocumentDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		DocumentDAO dao = sess.getDAOCache().get(DocumentDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLDocumentDAO(sess);
+			sess.getDAOCache().put(DocumentDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public EntryDAO getEntryDAO(Session session) {
-		return new PSQLEntryDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		EntryDAO dao = sess.getDAOCache().get(EntryDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLEntryDAO(sess);
+			sess.getDAOCache().put(EntryDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public PeriodDAO getPeriodDAO(Session session) {
-		return new PSQLPeriodDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		PeriodDAO dao = sess.getDAOCache().get(PeriodDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLPeriodDAO(sess);
+			sess.getDAOCache().put(PeriodDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public SettingsDAO getSettingsDAO(Session session) {
-		return new PSQLSettingsDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		SettingsDAO dao = sess.getDAOCache().get(SettingsDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLSettingsDAO(sess);
+			sess.getDAOCache().put(SettingsDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public ReportStructureDAO getReportStructureDAO(Session session) {
-		return new PSQLReportStructureDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		ReportStructureDAO dao = sess.getDAOCache().get(ReportStructureDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLReportStructureDAO(sess);
+			sess.getDAOCache().put(ReportStructureDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public EntryTemplateDAO getEntryTemplateDAO(Session session) {
-		return new PSQLEntryTemplateDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		EntryTemplateDAO dao = sess.getDAOCache().get(EntryTemplateDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLEntryTemplateDAO(sess);
+			sess.getDAOCache().put(EntryTemplateDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public DocumentTypeDAO getDocumentTypeDAO(Session session) {
-		return new PSQLDocumentTypeDAO((PSQLSession)session);
+		PSQLSession sess = (PSQLSession)session;
+		DocumentTypeDAO dao = sess.getDAOCache().get(DocumentTypeDAO.class);
+
+		if (dao == null) {
+			dao = new PSQLDocumentTypeDAO(sess);
+			sess.getDAOCache().put(DocumentTypeDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public int getStatementCacheHitCount() {
+		return pool.getStatementCacheHitCount();
+	}
+
+	public int getStatementCacheMissCount() {
+		return pool.getStatementCacheMissCount();
 	}
 
 	public Session openSession() throws DataAccessException {
-		return new PSQLSession(conn);
+		try {
+			return new PSQLSession(pool);
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
 	}
 
 	private static void createTables(Connection conn)
@@ -194,6 +323,21 @@ public class PSQLDataSource implements DataSource {
 				version = 14;
 			}
 
+			if (version == 14) {
+				DatabaseUpgradeUtil.upgrade14to15(conn, stmt);
+				version = 15;
+			}
+
+			if (version == 15) {
+				DatabaseUpgradeUtil.upgrade15to16(conn, stmt);
+				version = 16;
+			}
+
+			if (version == 16) {
+				upgrade16to17(conn, stmt);
+				version = 17;
+			}
+
 			stmt.close();
 		}
 		catch (Exception e) {
@@ -232,4 +376,13 @@ public class PSQLDataSource implements DataSource {
 		Logger logger = Logger.getLogger("kirjanpito.db.postgresql");
 		logger.info("Tietokannan päivittäminen versioon 3 onnistui");
 	}
+
+	private static void upgrade16to17(Connection conn, Statement stmt) throws SQLException {
+		stmt.execute("CREATE INDEX entry_description_idx ON entry USING gin (to_tsvector('simple', description))");
+		stmt.executeUpdate("UPDATE settings SET version=17");
+		conn.commit();
+
+		Logger logger = Logger.getLogger("kirjanpito.db.postgresql");
+		logger.info("Tietokannan päivittäminen versioon 17 onnistui");
+	}
 }
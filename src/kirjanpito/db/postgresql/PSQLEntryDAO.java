@@ -1,8 +1,12 @@
 package kirjanpito.db.postgresql;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
+import kirjanpito.db.Entry;
+import kirjanpito.db.sql.SQLAccountBalanceDAO;
 import kirjanpito.db.sql.SQLEntryDAO;
 
 /**
@@ -14,6 +18,7 @@ import kirjanpito.db.sql.SQLEntryDAO;
  */
 public class PSQLEntryDAO extends SQLEntryDAO {
 	private PSQLSession sess;
+	private SQLAccountBalanceDAO balanceDAO;
 
 	public PSQLEntryDAO(PSQLSession sess) {
 		this.sess = sess;
@@ -23,6 +28,42 @@ public class PSQLEntryDAO extends SQLEntryDAO {
 		return sess.getSequenceValue("entry_id_seq");
 	}
 
+	protected void executeInsertBatch(List<Entry> list) throws SQLException {
+		/* Ajuri ei palauta eräajon luomia tunnisteita, joten
+		 * tunnisteet varataan sekvenssistä ennen lisäämistä. */
+		PreparedStatement stmt = sess.prepareStatement(
+				"SELECT nextval('entry_id_seq') FROM generate_series(1, ?)");
+		stmt.setInt(1, list.size());
+		ResultSet rs = stmt.executeQuery();
+		int index = 0;
+
+		while (index < list.size() && rs.next()) {
+			list.get(index++).setId(rs.getInt(1));
+		}
+
+		rs.close();
+		stmt.close();
+
+		stmt = sess.prepareStatement("INSERT INTO entry (document_id, account_id, debit, amount, description, row_number, flags, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+
+		for (Entry obj : list) {
+			setValuesToStatement(stmt, obj);
+			stmt.setInt(8, obj.getId());
+			stmt.addBatch();
+		}
+
+		stmt.executeBatch();
+		stmt.close();
+	}
+
+	protected SQLAccountBalanceDAO getAccountBalanceDAO() {
+		if (balanceDAO == null) {
+			balanceDAO = new PSQLAccountBalanceDAO(sess);
+		}
+
+		return balanceDAO;
+	}
+
 	protected PreparedStatement getSelectByDocumentIdQuery() throws SQLException {
 		return sess.prepareStatement("SELECT id, document_id, account_id, debit, amount, description, row_number, flags FROM entry WHERE document_id = ? ORDER BY row_number");
 	}
@@ -35,6 +76,10 @@ public class PSQLEntryDAO extends SQLEntryDAO {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? ORDER BY d.number, e.row_number");
 	}
 
+	protected PreparedStatement getSelectByPeriodIdWithDocumentsQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags, d.number, d.date FROM document d INNER JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.number >= ? ORDER BY d.number, e.row_number");
+	}
+
 	protected PreparedStatement getSelectByPeriodIdOrderByDateQuery() throws SQLException {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? ORDER BY d.date, d.number, e.row_number");
 	}
@@ -55,6 +100,14 @@ public class PSQLEntryDAO extends SQLEntryDAO {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? AND e.account_id = ? ORDER BY d.number, d.date, e.row_number");
 	}
 
+	protected PreparedStatement getSelectByPeriodIdAndAccountIdFromDateQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM document d INNER JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.date >= ? AND e.account_id = ? ORDER BY d.date, d.number, e.row_number LIMIT ?");
+	}
+
+	protected PreparedStatement getSelectByPeriodIdAndAccountIdFromNumberQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM document d INNER JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.number >= ? AND e.account_id = ? ORDER BY d.number, e.row_number LIMIT ?");
+	}
+
 	protected PreparedStatement getSelectByAccountIdQuery() throws SQLException {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE e.account_id = ? ORDER BY d.number, e.row_number");
 	}
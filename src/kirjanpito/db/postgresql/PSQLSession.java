@@ -7,8 +7,13 @@ import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import kirjanpito.db.DAOCache;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.Session;
+import kirjanpito.db.sql.ConnectionPool;
+import kirjanpito.db.sql.PooledConnection;
+import kirjanpito.db.sql.StatementCache;
+import kirjanpito.db.sql.StatementTracker;
 
 /**
  * PostgreSQL-tietokantaistunto
@@ -18,16 +23,41 @@ import kirjanpito.db.Session;
 public class PSQLSession implements Session {
 	private static Logger logger = Logger.getLogger("kirjanpito.db.postgresql");
 	
+	private ConnectionPool pool;
+	private PooledConnection pooled;
 	protected Connection conn;
+	private StatementCache cache;
+	private StatementTracker statements;
+	private DAOCache daos;
 
-	public PSQLSession(Connection conn) {
-		this.conn = conn;
+	/**
+	 * Luo istunnon ja varaa sen käyttöön yhteyden altaasta.
+	 * 
+	 * @param pool yhteysallas
+	 * @throws SQLException jos yhteyden varaaminen epäonnistuu
+	 */
+	public PSQLSession(ConnectionPool pool) throws SQLException {
+		this.pool = pool;
+		this.pooled = pool.getConnection();
+		this.conn = pooled.getConnection();
+		this.cache = pooled.getStatementCache();
+		this.statements = new StatementTracker();
+		this.daos = new DAOCache();
 	}
 	
 	public Connection getConnection() {
 		return conn;
 	}
 	
+	/**
+	 * Palauttaa istunnon DAO-oliot.
+	 * 
+	 * @return DAO-oliot
+	 */
+	public DAOCache getDAOCache() {
+		return daos;
+	}
+	
 	public void commit() throws DataAccessException {
 		try {
 			conn.commit();
@@ -47,12 +77,18 @@ public class PSQLSession implements Session {
 	}
 	
 	public void close() {
+		statements.closeAll();
+
+		if (pooled != null) {
+			pool.release(pooled);
+			pooled = null;
+		}
 	}
 	
 	public PreparedStatement prepareStatement(String sql) throws SQLException
 	{
 		logger.log(Level.FINER, "Suoritetaan tietokantakysely: " + sql);
-		return conn.prepareStatement(sql);
+		return statements.add(cache.prepareStatement(sql));
 	}
 	
 	/**
@@ -106,6 +106,46 @@ CREATE TABLE entry_template (
 
 CREATE SEQUENCE entry_template_id_seq;
 
+CREATE TABLE account_balance (
+	period_id int4 NOT NULL,
+	account_id int4 NOT NULL,
+	date date NOT NULL,
+	debit_total numeric(14, 2) NOT NULL,
+	credit_total numeric(14, 2) NOT NULL,
+	entry_count int4 NOT NULL,
+	PRIMARY KEY (account_id, period_id, date),
+	FOREIGN KEY (period_id) REFERENCES period (id),
+	FOREIGN KEY (account_id) REFERENCES account (id)
+);
+
 CREATE INDEX document_number_idx ON document (
 	period_id, number
 );
+
+CREATE INDEX account_balance_period_idx ON account_balance (
+	period_id, date
+);
+
+CREATE INDEX account_balance_date_idx ON account_balance (
+	date, account_id, debit_total, credit_total, entry_count
+);
+
+CREATE INDEX document_period_date_idx ON document (
+	period_id, date, number
+);
+
+CREATE INDEX document_date_idx ON document (
+	date, number
+);
+
+CREATE INDEX entry_document_idx ON entry (
+	document_id, row_number
+);
+
+CREATE INDEX entry_account_idx ON entry (
+	account_id, document_id
+);
+
+CREATE INDEX entry_description_idx ON entry USING gin (
+	to_tsvector('simple', description)
+);
@@ -0,0 +1,328 @@
+package kirjanpito.db.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tietokantayhteysallas. Altaasta varataan yhteys tietokantaistunnon
+ * käyttöön, ja yhteys palautetaan altaaseen, kun istunto suljetaan.
+ * Yhteyksiä avataan enintään <code>maxSize</code> kappaletta. Jos
+ * kaikki yhteydet ovat käytössä, odotetaan, kunnes jokin yhteys
+ * vapautuu.
+ *
+ * <p>Jos säie avaa uuden istunnon, kun sillä on jo yhteys käytössään,
+ * istunto käyttää samaa yhteyttä. Sisäkkäiset istunnot näkevät siten
+ * toistensa tekemät muutokset eivätkä voi lukita toisiaan.</p>
+ *
+ * <p>Yhteys tarkistetaan ennen käyttöönottoa, jos sitä ei ole käytetty
+ * <code>VALIDATION_INTERVAL</code> millisekuntiin. Yhteydet, joita ei ole
+ * käytetty <code>idleTimeout</code> sekuntiin, suljetaan.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class ConnectionPool {
+	private String url;
+	private String username;
+	private String password;
+	private int maxSize;
+	private long idleTimeout;
+	private int statementCacheSize;
+	private LinkedList<PooledConnection> idle;
+	private ArrayList<PooledConnection> connections;
+	private ThreadLocal<PooledConnection> current;
+	private int openingCount;
+	private int closedHitCount;
+	private int closedMissCount;
+	private boolean closed;
+	private Timer timer;
+
+	private static Logger logger = Logger.getLogger("kirjanpito.db.sql");
+
+	/** Aika, jonka jälkeen käyttämätön yhteys tarkistetaan. */
+	private static final long VALIDATION_INTERVAL = 30000;
+
+	/** Aika, jonka yhteyden vapautumista odotetaan. */
+	private static final long WAIT_TIMEOUT = 30000;
+
+	/**
+	 * Luo yhteysaltaan. Ensimmäinen yhteys avataan vasta, kun
+	 * altaasta pyydetään yhteyttä.
+	 *
+	 * @param url JDBC-osoite
+	 * @param username käyttäjänimi
+	 * @param password salasana
+	 * @param maxSize yhteyksien enimmäismäärä
+	 * @param idleTimeout aika sekunteina, jonka jälkeen käyttämätön
+	 * yhteys suljetaan
+	 * @param statementCacheSize yhteyttä kohti välimuistiin
+	 * tallennettavien kyselyjen enimmäismäärä
+	 */
+	public ConnectionPool(String url, String username, String password,
+			int maxSize, int idleTimeout, int statementCacheSize) {
+
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.maxSize = Math.max(1, maxSize);
+		this.idleTimeout = Math.max(1, idleTimeout) * 1000L;
+		this.statementCacheSize = statementCacheSize;
+		this.idle = new LinkedList<PooledConnection>();
+		this.connections = new ArrayList<PooledConnection>();
+		this.current = new ThreadLocal<PooledConnection>();
+		this.timer = new Timer("ConnectionPool", true);
+
+		long period = Math.max(1000, this.idleTimeout / 2);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				closeIdleConnections();
+			}
+		}, period, period);
+	}
+
+	/**
+	 * Varaa yhteyden nykyisen säikeen käyttöön. Yhteys on
+	 * vapautettava kutsumalla <code>release()</code>-metodia.
+	 *
+	 * @return yhteys
+	 * @throws SQLException jos yhteyden avaaminen epäonnistuu tai
+	 * yhteyttä ei vapaudu
+	 */
+	public PooledConnection getConnection() throws SQLException {
+		PooledConnection pc = current.get();
+
+		if (pc != null && pc.getHoldCount() > 0) {
+			pc.setHoldCount(pc.getHoldCount() + 1);
+			return pc;
+		}
+
+		pc = acquire();
+		pc.setHoldCount(1);
+		current.set(pc);
+		return pc;
+	}
+
+	/**
+	 * Vapauttaa yhteyden. Keskeneräinen transaktio perutaan, ja
+	 * yhteys palautetaan altaaseen.
+	 *
+	 * @param pc yhteys
+	 */
+	public void release(PooledConnection pc) {
+		int holdCount = pc.getHoldCount() - 1;
+		pc.setHoldCount(holdCount);
+
+		if (holdCount > 0) {
+			return;
+		}
+
+		if (current.get() == pc) {
+			current.remove();
+		}
+
+		try {
+			pc.getConnection().rollback();
+		}
+		catch (SQLException e) {
+			logger.log(Level.WARNING, "Tietokantayhteys suljetaan", e);
+			discard(pc);
+			return;
+		}
+
+		synchronized (this) {
+			if (closed) {
+				discard(pc);
+			}
+			else {
+				pc.setLastUsed(System.currentTimeMillis());
+				idle.addFirst(pc);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Palauttaa välimuisteista löytyneiden kyselyjen lukumäärän.
+	 *
+	 * @return osumien lukumäärä
+	 */
+	public synchronized int getStatementCacheHitCount() {
+		int count = closedHitCount;
+
+		for (PooledConnection pc : connections) {
+			count += pc.getStatementCache().getHitCount();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Palauttaa valmisteltujen kyselyjen lukumäärän, joita ei
+	 * löytynyt välimuisteista.
+	 *
+	 * @return ohitusten lukumäärä
+	 */
+	public synchronized int getStatementCacheMissCount() {
+		int count = closedMissCount;
+
+		for (PooledConnection pc : connections) {
+			count += pc.getStatementCache().getMissCount();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Palauttaa avoinna olevien yhteyksien lukumäärän.
+	 *
+	 * @return yhteyksien lukumäärä
+	 */
+	public synchronized int getSize() {
+		return connections.size();
+	}
+
+	/**
+	 * Sulkee käyttämättömät yhteydet. Käytössä olevat yhteydet
+	 * suljetaan, kun ne vapautetaan.
+	 */
+	public synchronized void close() {
+		closed = true;
+		timer.cancel();
+
+		while (!idle.isEmpty()) {
+			discard(idle.removeFirst());
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * Sulkee yhteydet, joita ei ole käytetty <code>idleTimeout</code>
+	 * sekuntiin. Yksi yhteys jätetään aina avoimeksi.
+	 */
+	public synchronized void closeIdleConnections() {
+		long time = System.currentTimeMillis();
+
+		while (idle.size() > 1 &&
+				time - idle.getLast().getLastUsed() > idleTimeout) {
+			discard(idle.removeLast());
+		}
+	}
+
+	private PooledConnection acquire() throws SQLException {
+		long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+
+		while (true) {
+			PooledConnection pc = null;
+
+			synchronized (this) {
+				while (pc == null) {
+					if (closed) {
+						throw new SQLException("Yhteysallas on suljettu");
+					}
+
+					if (!idle.isEmpty()) {
+						pc = idle.removeFirst();
+					}
+					else if (connections.size() + openingCount < maxSize) {
+						openingCount++;
+						break;
+					}
+					else {
+						long timeout = deadline - System.currentTimeMillis();
+
+						if (timeout <= 0) {
+							throw new SQLException(
+									"Tietokantayhteyttä ei saatu " +
+									(WAIT_TIMEOUT / 1000) + " sekunnissa");
+						}
+
+						try {
+							wait(timeout);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new SQLException("Yhteyden odottaminen keskeytettiin");
+						}
+					}
+				}
+			}
+
+			if (pc == null) {
+				return open();
+			}
+
+			if (System.currentTimeMillis() - pc.getLastUsed() < VALIDATION_INTERVAL ||
+					validate(pc)) {
+				return pc;
+			}
+
+			logger.log(Level.INFO, "Tietokantayhteys ei ole enää käytettävissä");
+			discard(pc);
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		PooledConnection pc = null;
+
+		try {
+			Connection conn = DriverManager.getConnection(url, username, password);
+
+			try {
+				conn.setAutoCommit(false);
+			}
+			catch (SQLException e) {
+				conn.close();
+				throw e;
+			}
+
+			pc = new PooledConnection(conn, statementCacheSize);
+			logger.log(Level.FINE, "Tietokantayhteys avattu");
+		}
+		finally {
+			synchronized (this) {
+				openingCount--;
+
+				if (pc != null) {
+					connections.add(pc);
+				}
+
+				notifyAll();
+			}
+		}
+
+		return pc;
+	}
+
+	private boolean validate(PooledConnection pc) {
+		Connection conn = pc.getConnection();
+
+		try {
+			Statement stmt = conn.createStatement();
+			stmt.executeQuery("SELECT 1").close();
+			stmt.close();
+			conn.rollback();
+			return true;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private synchronized void discard(PooledConnection pc) {
+		if (connections.remove(pc)) {
+			closedHitCount += pc.getStatementCache().getHitCount();
+			closedMissCount += pc.getStatementCache().getMissCount();
+		}
+
+		pc.close();
+		notifyAll();
+	}
+}
@@ -0,0 +1,66 @@
+package kirjanpito.db.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Yhteysaltaan tietokantayhteys. Yhteyteen liittyy valmisteltujen
+ * kyselyjen välimuisti, joka säilyy, kun yhteys palautetaan altaaseen.
+ *
+ * @author Tommi Helineva
+ */
+public class PooledConnection {
+	private Connection conn;
+	private StatementCache statementCache;
+	private int holdCount;
+	private long lastUsed;
+
+	PooledConnection(Connection conn, int statementCacheSize) {
+		this.conn = conn;
+		this.statementCache = new StatementCache(conn, statementCacheSize);
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Palauttaa tietokantayhteyden.
+	 *
+	 * @return tietokantayhteys
+	 */
+	public Connection getConnection() {
+		return conn;
+	}
+
+	/**
+	 * Palauttaa valmisteltujen kyselyjen välimuistin.
+	 *
+	 * @return kyselyvälimuisti
+	 */
+	public StatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	int getHoldCount() {
+		return holdCount;
+	}
+
+	void setHoldCount(int holdCount) {
+		this.holdCount = holdCount;
+	}
+
+	long getLastUsed() {
+		return lastUsed;
+	}
+
+	void setLastUsed(long lastUsed) {
+		this.lastUsed = lastUsed;
+	}
+
+	void close() {
+		statementCache.close();
+
+		try {
+			conn.close();
+		}
+		catch (SQLException e) { }
+	}
+}
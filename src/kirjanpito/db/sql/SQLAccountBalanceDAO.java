@@ -0,0 +1,877 @@
+package kirjanpito.db.sql;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import kirjanpito.db.AccountBalanceDAO;
+import kirjanpito.db.AccountTotal;
+import kirjanpito.db.DTOCallback;
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Document;
+import kirjanpito.db.Entry;
+
+/**
+ * <code>SQLAccountBalanceDAO</code>:n avulla voidaan hakea tilien
+ * saldot saldotaulusta. <code>SQLEntryDAO</code> ja
+ * <code>SQLDocumentDAO</code> päivittävät saldotaulua samassa
+ * tietokantaistunnossa, jossa viennit ja tositteet tallennetaan.
+ * Aliluokassa on määriteltävä toteutukset metodeilla, jotka
+ * palauttavat SQL-kyselymerkkijonot.
+ *
+ * @author Tommi Helineva
+ */
+public abstract class SQLAccountBalanceDAO implements AccountBalanceDAO {
+	public void getByPeriodIdAndDate(int periodId, Date startDate,
+			Date endDate, DTOCallback<AccountTotal> callback)
+			throws DataAccessException {
+
+		ResultSet rs;
+
+		try {
+			PreparedStatement stmt;
+			int index = 1;
+
+			if (periodId >= 0) {
+				stmt = getSelectByPeriodIdAndDateQuery();
+				stmt.setInt(index++, periodId);
+			}
+			else {
+				stmt = getSelectByDateQuery();
+			}
+
+			stmt.setTimestamp(index++, new Timestamp(startDate.getTime()));
+			stmt.setTimestamp(index++, new Timestamp(endDate.getTime()));
+			rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				callback.process(createObject(rs));
+			}
+
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tilikohtaiset
+	 * summat tietyn tilikauden aikaväliltä. Kyselyssä on kolme parametria:
+	 * 1. tilikauden tunniste, 2. alkamispäivämäärä ja 3. päättymispäivämäärä.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByPeriodIdAndDateQuery() throws SQLException;
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tilikohtaiset
+	 * summat tietyltä aikaväliltä kaikista tilikausista.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByDateQuery() throws SQLException;
+
+	public void getByPeriodId(int periodId,
+			DTOCallback<AccountTotal> callback) throws DataAccessException {
+
+		ResultSet rs;
+
+		try {
+			PreparedStatement stmt = getSelectByPeriodIdQuery();
+			stmt.setInt(1, periodId);
+			rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				callback.process(createObject(rs));
+			}
+
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tilikohtaiset
+	 * summat koko tilikaudelta. Kyselyn parametrina on tilikauden
+	 * tunniste.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByPeriodIdQuery() throws SQLException;
+
+	public void getDailyTotals(Date startDate, Date endDate,
+			DTOCallback<AccountTotal> callback) throws DataAccessException {
+
+		ResultSet rs;
+
+		try {
+			PreparedStatement stmt = getSelectDailyByDateQuery();
+			stmt.setTimestamp(1, new Timestamp(startDate.getTime()));
+			stmt.setTimestamp(2, new Timestamp(endDate.getTime()));
+			rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				AccountTotal obj = createObject(rs);
+				obj.setDate(rs.getDate(5));
+				callback.process(obj);
+			}
+
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tilikohtaiset
+	 * summat päivittäin tietyltä aikaväliltä päivämäärän mukaan
+	 * järjestettynä. Kyselyssä on kaksi parametria: 1. alkamispäivämäärä
+	 * ja 2. päättymispäivämäärä. Viides sarake on päivämäärä.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectDailyByDateQuery() throws SQLException;
+
+	public boolean isAccountUsed(int accountId) throws DataAccessException {
+		ResultSet rs;
+		boolean used;
+
+		try {
+			PreparedStatement stmt = getSelectAccountUsedQuery();
+			stmt.setInt(1, accountId);
+			rs = stmt.executeQuery();
+			used = rs.next();
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+
+		return used;
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, joka palauttaa rivin, jos tilille on
+	 * kirjattu vientejä. Kyselyn parametrina on tilin tunniste.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectAccountUsedQuery() throws SQLException;
+
+	public List<Integer> getUsedAccountIds(int periodId)
+		throws DataAccessException {
+
+		ArrayList<Integer> list = new ArrayList<Integer>();
+		ResultSet rs;
+
+		try {
+			PreparedStatement stmt = getSelectUsedAccountIdsQuery();
+			stmt.setInt(1, periodId);
+			rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				list.add(rs.getInt(1));
+			}
+
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+
+		return list;
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan niiden tilien
+	 * tunnisteet, joille on kirjattu vientejä tietyllä tilikaudella.
+	 * Kyselyn parametrina on tilikauden tunniste.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectUsedAccountIdsQuery() throws SQLException;
+
+	public void rebuild(int periodId) throws DataAccessException {
+		try {
+			PreparedStatement stmt;
+
+			if (periodId >= 0) {
+				stmt = getDeleteByPeriodIdQuery();
+				stmt.setInt(1, periodId);
+				stmt.executeUpdate();
+				stmt.close();
+
+				stmt = getRebuildByPeriodIdQuery();
+				stmt.setInt(1, periodId);
+				stmt.executeUpdate();
+				stmt.close();
+			}
+			else {
+				stmt = getDeleteAllQuery();
+				stmt.executeUpdate();
+				stmt.close();
+
+				stmt = getRebuildAllQuery();
+				stmt.executeUpdate();
+				stmt.close();
+			}
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Palauttaa INSERT-kyselyn, jonka avulla lasketaan tietyn
+	 * tilikauden saldot vienneistä.
+	 *
+	 * @return INSERT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getRebuildByPeriodIdQuery() throws SQLException;
+
+	/**
+	 * Palauttaa INSERT-kyselyn, jonka avulla lasketaan kaikkien
+	 * tilikausien saldot vienneistä.
+	 *
+	 * @return INSERT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getRebuildAllQuery() throws SQLException;
+
+	/**
+	 * Poistaa tietyn tilikauden saldot.
+	 *
+	 * @param periodId tilikauden tunniste
+	 * @throws SQLException jos poistaminen epäonnistuu
+	 */
+	protected void deleteByPeriodId(int periodId) throws SQLException {
+		PreparedStatement stmt = getDeleteByPeriodIdQuery();
+		stmt.setInt(1, periodId);
+		stmt.executeUpdate();
+		stmt.close();
+	}
+
+	/**
+	 * Palauttaa DELETE-kyselyn, jonka avulla poistetaan tietyn
+	 * tilikauden saldot.
+	 *
+	 * @return DELETE-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getDeleteByPeriodIdQuery() throws SQLException;
+
+	/**
+	 * Palauttaa DELETE-kyselyn, jonka avulla poistetaan kaikki saldot.
+	 *
+	 * @return DELETE-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getDeleteAllQuery() throws SQLException;
+
+	/**
+	 * Lisää uuden viennin saldotauluun. Vienti on lisättävä
+	 * saldotauluun vasta, kun se on tallennettu tietokantaan.
+	 *
+	 * @param entry vienti
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void addEntry(Entry entry) throws SQLException {
+		DocumentKey key = getDocumentKey(entry.getDocumentId());
+
+		if (key != null) {
+			adjust(key, entry.getAccountId(), entry.isDebit(),
+					entry.getAmount(), 1);
+		}
+	}
+
+	/**
+	 * Päivittää saldotaulun ennen kuin viennin uudet tiedot
+	 * tallennetaan. Saldotaulua ei muuteta, jos viennin tili,
+	 * tosite, puoli ja rahamäärä ovat ennallaan.
+	 *
+	 * @param entry vienti, jonka tiedot tallennetaan
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void updateEntry(Entry entry) throws SQLException {
+		PreparedStatement stmt = getSelectEntryQuery();
+		stmt.setInt(1, entry.getId());
+		ResultSet rs = stmt.executeQuery();
+		Entry old = null;
+
+		if (rs.next()) {
+			old = new Entry();
+			old.setDocumentId(rs.getInt(1));
+			old.setAccountId(rs.getInt(2));
+			old.setDebit(rs.getBoolean(3));
+			old.setAmount(getAmount(rs, 4));
+		}
+
+		rs.close();
+		stmt.close();
+
+		if (old != null && old.getDocumentId() == entry.getDocumentId() &&
+				old.getAccountId() == entry.getAccountId() &&
+				old.isDebit() == entry.isDebit() &&
+				old.getAmount().compareTo(entry.getAmount()) == 0) {
+			return;
+		}
+
+		if (old != null) {
+			DocumentKey key = getDocumentKey(old.getDocumentId());
+
+			if (key != null) {
+				adjust(key, old.getAccountId(), old.isDebit(),
+						old.getAmount(), -1);
+			}
+		}
+
+		addEntry(entry);
+	}
+
+	/**
+	 * Vähentää viennin saldotaulusta. Vienti on vähennettävä
+	 * ennen kuin se poistetaan tietokannasta.
+	 *
+	 * @param entryId viennin tunniste
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void removeEntry(int entryId) throws SQLException {
+		PreparedStatement stmt = getSelectEntryQuery();
+		stmt.setInt(1, entryId);
+		ResultSet rs = stmt.executeQuery();
+		int documentId = -1, accountId = -1;
+		boolean debit = false;
+		BigDecimal amount = null;
+
+		if (rs.next()) {
+			documentId = rs.getInt(1);
+			accountId = rs.getInt(2);
+			debit = rs.getBoolean(3);
+			amount = getAmount(rs, 4);
+		}
+
+		rs.close();
+		stmt.close();
+
+		if (amount != null) {
+			DocumentKey key = getDocumentKey(documentId);
+
+			if (key != null) {
+				adjust(key, accountId, debit, amount, -1);
+			}
+		}
+	}
+
+	/**
+	 * Lisää eräajona tallennetut viennit saldotauluun. Viennit
+	 * ryhmitellään tositteen ja tilin mukaan, joten saldotaulua
+	 * päivitetään kerran jokaista tositteen tiliä kohti.
+	 *
+	 * @param entries viennit
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void addEntries(List<Entry> entries) throws SQLException {
+		Map<Integer, Map<Integer, Totals>> deltas =
+			new LinkedHashMap<Integer, Map<Integer, Totals>>();
+
+		for (Entry entry : entries) {
+			accumulate(deltas, entry, 1);
+		}
+
+		applyDeltas(deltas);
+	}
+
+	/**
+	 * Päivittää saldotaulun ennen kuin vientien uudet tiedot
+	 * tallennetaan eräajona.
+	 *
+	 * @param entries viennit, joiden tiedot tallennetaan
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void updateEntries(List<Entry> entries) throws SQLException {
+		Map<Integer, Entry> stored = getStoredEntries(entries);
+		Map<Integer, Map<Integer, Totals>> deltas =
+			new LinkedHashMap<Integer, Map<Integer, Totals>>();
+
+		for (Entry entry : entries) {
+			Entry old = stored.get(entry.getId());
+
+			if (old != null && old.getDocumentId() == entry.getDocumentId() &&
+					old.getAccountId() == entry.getAccountId() &&
+					old.isDebit() == entry.isDebit() &&
+					old.getAmount().compareTo(entry.getAmount()) == 0) {
+				continue;
+			}
+
+			if (old != null) {
+				accumulate(deltas, old, -1);
+			}
+
+			accumulate(deltas, entry, 1);
+		}
+
+		applyDeltas(deltas);
+	}
+
+	/**
+	 * Vähentää viennit saldotaulusta ennen kuin ne poistetaan
+	 * tietokannasta eräajona.
+	 *
+	 * @param entries poistettavat viennit
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void removeEntries(List<Entry> entries) throws SQLException {
+		Map<Integer, Entry> stored = getStoredEntries(entries);
+		Map<Integer, Map<Integer, Totals>> deltas =
+			new LinkedHashMap<Integer, Map<Integer, Totals>>();
+
+		for (Entry entry : entries) {
+			Entry old = stored.get(entry.getId());
+
+			if (old != null) {
+				accumulate(deltas, old, -1);
+			}
+		}
+
+		applyDeltas(deltas);
+	}
+
+	/**
+	 * Hakee vientien tietokantaan tallennetut tiedot. Viennit haetaan
+	 * tositteittain, ja vain ne viennit, joita ei löydy tositteen
+	 * vienneistä, haetaan yksitellen.
+	 */
+	private Map<Integer, Entry> getStoredEntries(List<Entry> entries)
+		throws SQLException {
+
+		HashMap<Integer, Entry> map = new HashMap<Integer, Entry>();
+		LinkedHashSet<Integer> documentIds = new LinkedHashSet<Integer>();
+
+		for (Entry entry : entries) {
+			documentIds.add(entry.getDocumentId());
+		}
+
+		for (int documentId : documentIds) {
+			PreparedStatement stmt = getSelectEntriesByDocumentIdQuery();
+			stmt.setInt(1, documentId);
+			ResultSet rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				Entry old = new Entry();
+				old.setId(rs.getInt(1));
+				old.setDocumentId(rs.getInt(2));
+				old.setAccountId(rs.getInt(3));
+				old.setDebit(rs.getBoolean(4));
+				old.setAmount(getAmount(rs, 5));
+				map.put(old.getId(), old);
+			}
+
+			rs.close();
+			stmt.close();
+		}
+
+		for (Entry entry : entries) {
+			if (entry.getId() <= 0 || map.containsKey(entry.getId())) {
+				continue;
+			}
+
+			PreparedStatement stmt = getSelectEntryQuery();
+			stmt.setInt(1, entry.getId());
+			ResultSet rs = stmt.executeQuery();
+
+			if (rs.next()) {
+				Entry old = new Entry();
+				old.setId(entry.getId());
+				old.setDocumentId(rs.getInt(1));
+				old.setAccountId(rs.getInt(2));
+				old.setDebit(rs.getBoolean(3));
+				old.setAmount(getAmount(rs, 4));
+				map.put(old.getId(), old);
+			}
+
+			rs.close();
+			stmt.close();
+		}
+
+		return map;
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tositteen
+	 * viennit. Kyselyssä on yksi parametri, joka on tositteen tunniste.
+	 * Kysely palauttaa sarakkeet: viennin tunniste, tositteen tunniste,
+	 * tilin tunniste, puoli ja rahamäärä.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectEntriesByDocumentIdQuery() throws SQLException;
+
+	private void accumulate(Map<Integer, Map<Integer, Totals>> deltas,
+			Entry entry, int sign) {
+
+		Map<Integer, Totals> map = deltas.get(entry.getDocumentId());
+
+		if (map == null) {
+			map = new LinkedHashMap<Integer, Totals>();
+			deltas.put(entry.getDocumentId(), map);
+		}
+
+		Totals totals = map.get(entry.getAccountId());
+
+		if (totals == null) {
+			totals = new Totals();
+			totals.accountId = entry.getAccountId();
+			totals.debitTotal = BigDecimal.ZERO;
+			totals.creditTotal = BigDecimal.ZERO;
+			map.put(entry.getAccountId(), totals);
+		}
+
+		BigDecimal amount = (sign < 0) ? entry.getAmount().negate() : entry.getAmount();
+
+		if (entry.isDebit()) {
+			totals.debitTotal = totals.debitTotal.add(amount);
+		}
+		else {
+			totals.creditTotal = totals.creditTotal.add(amount);
+		}
+
+		totals.count += sign;
+	}
+
+	private void applyDeltas(Map<Integer, Map<Integer, Totals>> deltas)
+		throws SQLException {
+
+		for (Map.Entry<Integer, Map<Integer, Totals>> item : deltas.entrySet()) {
+			DocumentKey key = getDocumentKey(item.getKey());
+
+			if (key == null) {
+				continue;
+			}
+
+			for (Totals totals : item.getValue().values()) {
+				if (totals.count == 0 && totals.debitTotal.signum() == 0 &&
+						totals.creditTotal.signum() == 0) {
+					continue;
+				}
+
+				adjust(key, totals.accountId, totals.debitTotal,
+						totals.creditTotal, totals.count);
+			}
+		}
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan viennin
+	 * tositteen tunniste, tilin tunniste, puoli ja rahamäärä.
+	 * Kyselyssä on yksi parametri, joka on viennin tunniste.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectEntryQuery() throws SQLException;
+
+	/**
+	 * Siirtää tositteen viennit saldotaulussa uudelle päivämäärälle
+	 * tai tilikaudelle. Metodia on kutsuttava ennen kuin tositteen uudet
+	 * tiedot tallennetaan.
+	 *
+	 * @param document tosite, jonka tiedot tallennetaan
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void moveDocument(Document document) throws SQLException {
+		DocumentKey oldKey = getDocumentKey(document.getId());
+
+		if (oldKey == null) {
+			return;
+		}
+
+		DocumentKey newKey = new DocumentKey(document.getPeriodId(),
+				new Timestamp(document.getDate().getTime()));
+
+		if (oldKey.equals(newKey)) {
+			return;
+		}
+
+		for (Totals totals : getDocumentTotals(document.getId())) {
+			adjust(oldKey, totals.accountId, totals.debitTotal.negate(),
+					totals.creditTotal.negate(), -totals.count);
+			adjust(newKey, totals.accountId, totals.debitTotal,
+					totals.creditTotal, totals.count);
+		}
+	}
+
+	/**
+	 * Vähentää tositteen jäljellä olevat viennit saldotaulusta.
+	 * Metodia on kutsuttava ennen kuin tosite poistetaan.
+	 *
+	 * @param documentId tositteen tunniste
+	 * @throws SQLException jos saldon päivittäminen epäonnistuu
+	 */
+	protected void removeDocument(int documentId) throws SQLException {
+		List<Totals> list = getDocumentTotals(documentId);
+
+		if (list.isEmpty()) {
+			return;
+		}
+
+		DocumentKey key = getDocumentKey(documentId);
+
+		if (key == null) {
+			return;
+		}
+
+		for (Totals totals : list) {
+			adjust(key, totals.accountId, totals.debitTotal.negate(),
+					totals.creditTotal.negate(), -totals.count);
+		}
+	}
+
+	private List<Totals> getDocumentTotals(int documentId) throws SQLException {
+		ArrayList<Totals> list = new ArrayList<Totals>();
+		PreparedStatement stmt = getSelectDocumentTotalsQuery();
+		stmt.setInt(1, documentId);
+		ResultSet rs = stmt.executeQuery();
+
+		while (rs.next()) {
+			Totals totals = new Totals();
+			totals.accountId = rs.getInt(1);
+			totals.debitTotal = getAmount(rs, 2);
+			totals.creditTotal = getAmount(rs, 3);
+			totals.count = rs.getInt(4);
+			list.add(totals);
+		}
+
+		rs.close();
+		stmt.close();
+		return list;
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tositteen
+	 * vientien summat tileittäin. Kyselyssä on yksi parametri,
+	 * joka on tositteen tunniste. Kysely palauttaa sarakkeet:
+	 * tilin tunniste, debet-summa, kredit-summa ja vientien lukumäärä.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectDocumentTotalsQuery() throws SQLException;
+
+	private DocumentKey getDocumentKey(int documentId) throws SQLException {
+		PreparedStatement stmt = getSelectDocumentQuery();
+		stmt.setInt(1, documentId);
+		ResultSet rs = stmt.executeQuery();
+		DocumentKey key = null;
+
+		if (rs.next()) {
+			key = new DocumentKey(rs.getInt(1), rs.getTimestamp(2));
+		}
+
+		rs.close();
+		stmt.close();
+		return key;
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tositteen
+	 * tilikauden tunniste ja päivämäärä. Kyselyssä on yksi parametri,
+	 * joka on tositteen tunniste.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectDocumentQuery() throws SQLException;
+
+	private void adjust(DocumentKey key, int accountId, boolean debit,
+			BigDecimal amount, int sign) throws SQLException {
+
+		if (sign < 0) {
+			amount = amount.negate();
+		}
+
+		if (debit) {
+			adjust(key, accountId, amount, BigDecimal.ZERO, sign);
+		}
+		else {
+			adjust(key, accountId, BigDecimal.ZERO, amount, sign);
+		}
+	}
+
+	private void adjust(DocumentKey key, int accountId, BigDecimal debitDelta,
+			BigDecimal creditDelta, int countDelta) throws SQLException {
+
+		PreparedStatement stmt;
+		int count = 0;
+
+		if (countDelta > 0) {
+			/* Rivi lisätään ja sen summia kasvatetaan samalla
+			 * kyselyllä, jotta kaksi istuntoa voi kirjata saman tilin
+			 * ensimmäisen viennin samalle päivälle yhtä aikaa. */
+			stmt = getUpsertQuery();
+			stmt.setInt(1, key.periodId);
+			stmt.setInt(2, accountId);
+			stmt.setTimestamp(3, key.date);
+			setAmount(stmt, 4, debitDelta);
+			setAmount(stmt, 5, creditDelta);
+			stmt.setInt(6, countDelta);
+			count = stmt.executeUpdate();
+			stmt.close();
+		}
+
+		if (count == 0) {
+			stmt = getUpdateQuery();
+			setAmount(stmt, 1, debitDelta);
+			setAmount(stmt, 2, creditDelta);
+			stmt.setInt(3, countDelta);
+			stmt.setInt(4, accountId);
+			stmt.setInt(5, key.periodId);
+			stmt.setTimestamp(6, key.date);
+			stmt.executeUpdate();
+			stmt.close();
+		}
+
+		if (countDelta < 0) {
+			/* Poistetaan rivi, kun tilin viimeinenkin vienti on
+			 * poistettu. Näin tilit, joille ei ole kirjattu vientejä,
+			 * eivät näy hakutuloksissa. */
+			stmt = getDeleteEmptyQuery();
+			stmt.setInt(1, accountId);
+			stmt.setInt(2, key.periodId);
+			stmt.setTimestamp(3, key.date);
+			stmt.executeUpdate();
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Palauttaa UPDATE-kyselyn, jonka avulla kasvatetaan summia.
+	 * Kyselyssä on kuusi parametria: 1. debet-summan muutos,
+	 * 2. kredit-summan muutos, 3. vientien lukumäärän muutos,
+	 * 4. tilin tunniste, 5. tilikauden tunniste ja 6. päivämäärä.
+	 *
+	 * @return UPDATE-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getUpdateQuery() throws SQLException;
+
+	/**
+	 * Palauttaa INSERT-kyselyn, jonka avulla lisätään rivi tai, jos
+	 * rivi on jo olemassa, kasvatetaan sen summia. Kyselyssä on kuusi
+	 * parametria: 1. tilikauden tunniste, 2. tilin tunniste,
+	 * 3. päivämäärä, 4. debet-summa, 5. kredit-summa ja
+	 * 6. vientien lukumäärä. Jos kysely ei muuta yhtään riviä,
+	 * summia kasvatetaan lisäksi UPDATE-kyselyllä.
+	 *
+	 * @return INSERT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getUpsertQuery() throws SQLException;
+
+	/**
+	 * Palauttaa DELETE-kyselyn, jonka avulla poistetaan rivi, jos
+	 * siihen ei kuulu enää yhtään vientiä. Kyselyssä on kolme parametria:
+	 * 1. tilin tunniste, 2. tilikauden tunniste ja 3. päivämäärä.
+	 *
+	 * @return DELETE-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getDeleteEmptyQuery() throws SQLException;
+
+	/**
+	 * Lukee <code>ResultSetistä</code> rivin kentät ja
+	 * luo <code>AccountTotal</code>-olion.
+	 *
+	 * @param rs <code>ResultSet</code>-olio, josta kentät luetaan.
+	 * @return luotu olio
+	 * @throws SQLException jos kenttien lukeminen epäonnistuu
+	 */
+	protected AccountTotal createObject(ResultSet rs) throws SQLException {
+		AccountTotal obj = new AccountTotal();
+		obj.setAccountId(rs.getInt(1));
+		obj.setDebitTotal(getAmount(rs, 2));
+		obj.setCreditTotal(getAmount(rs, 3));
+		obj.setEntryCount(rs.getInt(4));
+		return obj;
+	}
+
+	/**
+	 * Lukee rahamäärän <code>ResultSetistä</code>.
+	 *
+	 * @param rs <code>ResultSet</code>-olio
+	 * @param index sarakkeen numero
+	 * @return rahamäärä
+	 * @throws SQLException jos lukeminen epäonnistuu
+	 */
+	protected BigDecimal getAmount(ResultSet rs, int index) throws SQLException {
+		BigDecimal amount = rs.getBigDecimal(index);
+		return (amount == null) ? BigDecimal.ZERO : amount;
+	}
+
+	/**
+	 * Asettaa rahamäärän kyselyn parametriksi.
+	 *
+	 * @param stmt kysely
+	 * @param index parametrin numero
+	 * @param amount rahamäärä
+	 * @throws SQLException jos asettaminen epäonnistuu
+	 */
+	protected void setAmount(PreparedStatement stmt, int index, BigDecimal amount)
+		throws SQLException {
+		stmt.setBigDecimal(index, amount);
+	}
+
+	private static class DocumentKey {
+		public int periodId;
+		public Timestamp date;
+
+		public DocumentKey(int periodId, Timestamp date) {
+			this.periodId = periodId;
+			this.date = date;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DocumentKey))
+				return false;
+
+			DocumentKey key = (DocumentKey)obj;
+			return periodId == key.periodId && date.getTime() == key.date.getTime();
+		}
+
+		public int hashCode() {
+			return periodId * 31 + date.hashCode();
+		}
+	}
+
+	private static class Totals {
+		public int accountId;
+		public BigDecimal debitTotal;
+		public BigDecimal creditTotal;
+		public int count;
+	}
+}
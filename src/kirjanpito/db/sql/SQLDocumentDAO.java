@@ -4,6 +4,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -17,6 +18,12 @@ import kirjanpito.db.DocumentDAO;
  * tietoja. Aliluokassa on määriteltävä toteutukset metodeilla, jotka
  * palauttavat SQL-kyselymerkkijonot.
  * 
+ * <p>Hakusanalla etsittäessä käytetään vientien selitteiden
+ * tekstihakuindeksiä, jos aliluokka pystyy muodostamaan hakusanasta
+ * tekstihakulausekkeen ja tekstihaku löytää tilikaudelta vähintään
+ * yhden tositteen. Muuten selitteitä verrataan LIKE-operaattorilla
+ * hakusanaan, jonka tähti korvataan mielivaltaisella merkkijonolla.</p>
+ * 
  * @author Tommi Helineva
  */
 public abstract class SQLDocumentDAO implements DocumentDAO {
@@ -277,21 +284,22 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 		int index = -1;
 		ResultSet rs;
 		
+		if (number < startNumber || number > endNumber) {
+			return -1;
+		}
+		
 		try {
-			PreparedStatement stmt = getSelectNumberByPeriodIdAndNumberQuery();
-			stmt.setInt(1, periodId);
-			stmt.setInt(2, startNumber);
-			stmt.setInt(3, endNumber);
+			PreparedStatement stmt = getSelectIndexByPeriodIdAndNumberQuery();
+			stmt.setInt(1, number);
+			stmt.setInt(2, periodId);
+			stmt.setInt(3, startNumber);
+			stmt.setInt(4, number);
 			rs = stmt.executeQuery();
-			int i = 0;
 			
-			while (rs.next()) {
-				if (rs.getInt(1) == number) {
-					index = i;
-					break;
-				}
-				
-				i++;
+			/* Järjestysnumero on numeroa pienempien tositteiden
+			 * lukumäärä, jos tosite löytyi. */
+			if (rs.next() && rs.getInt(2) > 0) {
+				index = rs.getInt(1) - 1;
 			}
 			
 			rs.close();
@@ -305,13 +313,13 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	}
 	
 	/**
-	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tositenumerot
-	 * tietyltä numeroväliltä ja tietyltä tilikaudelta.
+	 * Palauttaa SELECT-kyselyn, jonka avulla lasketaan tositteiden
+	 * lukumäärä numeroväliltä ja se, löytyykö välin viimeinen numero.
 	 * 
 	 * @return SELECT-kysely
 	 * @throws SQLException jos kyselyn luominen epäonnistuu
 	 */
-	protected abstract PreparedStatement getSelectNumberByPeriodIdAndNumberQuery() throws SQLException;
+	protected abstract PreparedStatement getSelectIndexByPeriodIdAndNumberQuery() throws SQLException;
 	
 	/**
 	 * Hakee tietokannasta tositteet numeroväliltä
@@ -357,6 +365,74 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 		return list;
 	}
 	
+	/**
+	 * Hakee tietokannasta enintään <code>limit</code> ensimmäistä
+	 * tositetta numeroväliltä <code>startNumber</code>..<code>endNumber</code>
+	 * tietyltä tilikaudelta. Tositteet palautetaan numerojärjestyksessä.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public List<Document> getFirstByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int limit)
+			throws DataAccessException
+	{
+		try {
+			return getPage(getSelectFirstByPeriodIdAndNumberQuery(),
+					periodId, null, startNumber, endNumber, limit, false);
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan numerovälin
+	 * ensimmäiset tositteet nousevassa numerojärjestyksessä.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectFirstByPeriodIdAndNumberQuery() throws SQLException;
+	
+	/**
+	 * Hakee tietokannasta enintään <code>limit</code> viimeistä
+	 * tositetta numeroväliltä <code>startNumber</code>..<code>endNumber</code>
+	 * tietyltä tilikaudelta. Tositteet palautetaan numerojärjestyksessä.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public List<Document> getLastByPeriodIdAndNumber(int periodId,
+			int startNumber, int endNumber, int limit)
+			throws DataAccessException
+	{
+		try {
+			return getPage(getSelectLastByPeriodIdAndNumberQuery(),
+					periodId, null, startNumber, endNumber, limit, true);
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan numerovälin
+	 * viimeiset tositteet laskevassa numerojärjestyksessä.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectLastByPeriodIdAndNumberQuery() throws SQLException;
+	
 	/**
 	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa
 	 * tulosten lukumäärän.
@@ -366,27 +442,25 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 * @return tulosten lukumäärä
 	 */
 	public int getCountByPeriodIdAndPhrase(int periodId, String q) throws DataAccessException {
-		int count = 0;
-		ResultSet rs;
-		
 		try {
-			PreparedStatement stmt = getSelectCountByPeriodIdAndPhraseQuery();
-			stmt.setInt(1, periodId);
-			stmt.setString(2, escapePhrase(q));
-			rs = stmt.executeQuery();
+			String expr = createTextSearchExpression(q);
+			int count = 0;
 			
-			if (rs.next()) {
-				count = rs.getInt(1);
+			if (expr != null) {
+				count = getCount(getSelectCountByPeriodIdAndTextQuery(),
+						periodId, expr);
 			}
 			
-			rs.close();
-			stmt.close();
+			if (count == 0) {
+				count = getCount(getSelectCountByPeriodIdAndPhraseQuery(),
+						periodId, escapePhrase(q));
+			}
+			
+			return count;
 		}
 		catch (SQLException e) {
 			throw new DataAccessException(e.getMessage(), e);
 		}
-		
-		return count;
 	}
 	
 	/**
@@ -398,6 +472,15 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 */
 	protected abstract PreparedStatement getSelectCountByPeriodIdAndPhraseQuery() throws SQLException;
 	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tekstihakuindeksin
+	 * avulla tositteiden lukumäärä, joiden vienneistä löytyy hakusanat.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectCountByPeriodIdAndTextQuery() throws SQLException;
+	
 	/**
 	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa
 	 * löytyneet tositteet
@@ -411,30 +494,24 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	public List<Document> getByPeriodIdAndPhrase(int periodId,
 			String q, int offset, int limit) throws DataAccessException
 	{
-		ArrayList<Document> list;
-		ResultSet rs;
-		
 		try {
-			PreparedStatement stmt = getSelectByPeriodIdAndPhraseQuery();
-			stmt.setInt(1, periodId);
-			stmt.setString(2, escapePhrase(q));
-			stmt.setInt(3, limit);
-			stmt.setInt(4, offset);
-			rs = stmt.executeQuery();
-			list = new ArrayList<Document>();
+			String expr = createTextSearchExpression(q);
 			
-			while (rs.next()) {
-				list.add(createObject(rs));
+			if (expr != null) {
+				List<Document> list = getPage(getSelectByPeriodIdAndTextQuery(),
+						periodId, expr, offset, limit);
+				
+				if (!list.isEmpty() || hasTextMatches(periodId, expr)) {
+					return list;
+				}
 			}
 			
-			rs.close();
-			stmt.close();
+			return getPage(getSelectByPeriodIdAndPhraseQuery(),
+					periodId, escapePhrase(q), offset, limit);
 		}
 		catch (SQLException e) {
 			throw new DataAccessException(e.getMessage(), e);
 		}
-		
-		return list;
 	}
 	
 	/**
@@ -446,12 +523,279 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 */
 	protected abstract PreparedStatement getSelectByPeriodIdAndPhraseQuery() throws SQLException;
 	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tekstihakuindeksin
+	 * avulla tositteet, joiden vienneistä löytyy hakusanat.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByPeriodIdAndTextQuery() throws SQLException;
+	
+	/**
+	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa enintään
+	 * <code>limit</code> ensimmäistä tositetta numeroväliltä
+	 * <code>startNumber</code>..<code>endNumber</code>.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param q hakusana
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet numerojärjestyksessä
+	 */
+	public List<Document> getFirstByPeriodIdAndPhrase(int periodId, String q,
+			int startNumber, int endNumber, int limit) throws DataAccessException
+	{
+		try {
+			String expr = createTextSearchExpression(q);
+			
+			if (expr != null) {
+				List<Document> list = getPage(getSelectFirstByPeriodIdAndTextQuery(),
+						periodId, expr, startNumber, endNumber, limit, false);
+				
+				if (!list.isEmpty() || hasTextMatches(periodId, expr)) {
+					return list;
+				}
+			}
+			
+			return getPage(getSelectFirstByPeriodIdAndPhraseQuery(),
+					periodId, escapePhrase(q), startNumber, endNumber, limit, false);
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan numerovälin
+	 * ensimmäiset tositteet, joiden vienneistä löytyy tietty merkkijono.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectFirstByPeriodIdAndPhraseQuery() throws SQLException;
+	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tekstihakuindeksin
+	 * avulla numerovälin ensimmäiset tositteet, joiden vienneistä
+	 * löytyy hakusanat.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectFirstByPeriodIdAndTextQuery() throws SQLException;
+	
+	/**
+	 * Etsii tositteita hakusanalla <code>q</code> ja palauttaa enintään
+	 * <code>limit</code> viimeistä tositetta numeroväliltä
+	 * <code>startNumber</code>..<code>endNumber</code>.
+	 * 
+	 * @param periodId tilikauden tunniste
+	 * @param q hakusana
+	 * @param startNumber tositenumerovälin alku
+	 * @param endNumber tositenumerovälin loppu
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet numerojärjestyksessä
+	 */
+	public List<Document> getLastByPeriodIdAndPhrase(int periodId, String q,
+			int startNumber, int endNumber, int limit) throws DataAccessException
+	{
+		try {
+			String expr = createTextSearchExpression(q);
+			
+			if (expr != null) {
+				List<Document> list = getPage(getSelectLastByPeriodIdAndTextQuery(),
+						periodId, expr, startNumber, endNumber, limit, true);
+				
+				if (!list.isEmpty() || hasTextMatches(periodId, expr)) {
+					return list;
+				}
+			}
+			
+			return getPage(getSelectLastByPeriodIdAndPhraseQuery(),
+					periodId, escapePhrase(q), startNumber, endNumber, limit, true);
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan numerovälin
+	 * viimeiset tositteet laskevassa numerojärjestyksessä, joiden
+	 * vienneistä löytyy tietty merkkijono.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectLastByPeriodIdAndPhraseQuery() throws SQLException;
+	
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tekstihakuindeksin
+	 * avulla numerovälin viimeiset tositteet laskevassa
+	 * numerojärjestyksessä, joiden vienneistä löytyy hakusanat.
+	 * 
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectLastByPeriodIdAndTextQuery() throws SQLException;
+	
+	/**
+	 * Suorittaa lukumääräkyselyn, jonka parametrit ovat tilikauden
+	 * tunniste ja hakulauseke.
+	 */
+	private int getCount(PreparedStatement stmt, int periodId, String q)
+		throws SQLException
+	{
+		int count = 0;
+		stmt.setInt(1, periodId);
+		stmt.setString(2, q);
+		ResultSet rs = stmt.executeQuery();
+		
+		if (rs.next()) {
+			count = rs.getInt(1);
+		}
+		
+		rs.close();
+		stmt.close();
+		return count;
+	}
+	
+	/**
+	 * Tarkistaa, löytääkö tekstihaku tilikaudelta yhtään tositetta.
+	 * Jos ei löydä, haetaan LIKE-operaattorilla, jotta kaikki
+	 * hakukyselyt käyttävät samaa hakutapaa.
+	 */
+	private boolean hasTextMatches(int periodId, String expr)
+		throws SQLException
+	{
+		return getCount(getSelectCountByPeriodIdAndTextQuery(),
+				periodId, expr) > 0;
+	}
+	
+	/**
+	 * Suorittaa sivutuskyselyn, jonka parametrit ovat tilikauden
+	 * tunniste, hakulauseke, tositteiden enimmäismäärä ja siirtymä.
+	 */
+	private List<Document> getPage(PreparedStatement stmt, int periodId,
+			String q, int offset, int limit) throws SQLException
+	{
+		ArrayList<Document> list = new ArrayList<Document>();
+		stmt.setInt(1, periodId);
+		stmt.setString(2, q);
+		stmt.setInt(3, limit);
+		stmt.setInt(4, offset);
+		ResultSet rs = stmt.executeQuery();
+		
+		while (rs.next()) {
+			list.add(createObject(rs));
+		}
+		
+		rs.close();
+		stmt.close();
+		return list;
+	}
+	
+	/**
+	 * Suorittaa sivutuskyselyn. Kyselyn parametrit ovat tilikauden
+	 * tunniste, hakulauseke (jos <code>q</code> ei ole <code>null</code>),
+	 * numerovälin alku ja loppu sekä tositteiden enimmäismäärä.
+	 */
+	private List<Document> getPage(PreparedStatement stmt, int periodId,
+			String q, int startNumber, int endNumber, int limit,
+			boolean descending) throws SQLException
+	{
+		ArrayList<Document> list = new ArrayList<Document>();
+		int index = 1;
+		stmt.setInt(index++, periodId);
+		
+		if (q != null) {
+			stmt.setString(index++, q);
+		}
+		
+		stmt.setInt(index++, startNumber);
+		stmt.setInt(index++, endNumber);
+		stmt.setInt(index++, limit);
+		ResultSet rs = stmt.executeQuery();
+		
+		while (rs.next()) {
+			list.add(createObject(rs));
+		}
+		
+		rs.close();
+		stmt.close();
+		
+		if (descending) {
+			Collections.reverse(list);
+		}
+		
+		return list;
+	}
+	
 	private String escapePhrase(String q) {
 		q = q.replace("%", "\\%").replace("_", "\\_").replace("*", "%");
 		if (!q.endsWith("%")) q += "%";
 		return q;
 	}
 	
+	/**
+	 * Muodostaa hakusanasta tekstihakulausekkeen. Hakusana jaetaan
+	 * sanoiksi, joista jokaisen alun on löydyttävä samasta viennistä.
+	 * Jos hakusanan alussa tai keskellä on tähti, haetaan
+	 * LIKE-operaattorilla, koska tekstihakuindeksistä voidaan etsiä vain
+	 * sanojen alkuja. LIKE-hakua käytetään myös silloin, kun tekstihaku
+	 * ei löydä tilikaudelta yhtään tositetta.
+	 * 
+	 * @param q hakusana
+	 * @return tekstihakulauseke tai <code>null</code>, jos
+	 * tekstihakuindeksiä ei voida käyttää
+	 */
+	private String createTextSearchExpression(String q) {
+		String s = q.trim();
+		
+		while (s.endsWith("*")) {
+			s = s.substring(0, s.length() - 1);
+		}
+		
+		if (s.indexOf('*') >= 0) {
+			return null;
+		}
+		
+		ArrayList<String> words = new ArrayList<String>();
+		
+		for (String word : splitWords(s)) {
+			if (word.length() > 0) {
+				words.add(word);
+			}
+		}
+		
+		return words.isEmpty() ? null : createTextSearchExpression(words);
+	}
+	
+	/**
+	 * Jakaa hakusanan sanoiksi samoista kohdista kuin tietokannan
+	 * tekstihakuindeksi. Oletuksena sanat erotetaan muilla merkeillä
+	 * kuin kirjaimilla ja numeroilla.
+	 * 
+	 * @param q hakusana
+	 * @return sanat, joiden joukossa voi olla tyhjiä merkkijonoja
+	 */
+	protected String[] splitWords(String q) {
+		return q.split("[^\\p{L}\\p{N}]+");
+	}
+	
+	/**
+	 * Muodostaa sanoista tekstihakulausekkeen, joka löytää viennit,
+	 * joiden selitteessä on jokaisella sanalla alkava sana. Sanoissa
+	 * on vain kirjaimia ja numeroita.
+	 * 
+	 * @param words sanat
+	 * @return tekstihakulauseke tai <code>null</code>, jos
+	 * sanoja ei voida hakea tekstihakuindeksistä
+	 */
+	protected abstract String createTextSearchExpression(List<String> words);
+	
 	/**
 	 * Hakee tietokannasta tositteet tietyltä aikaväliltä.
 	 * 
@@ -555,6 +899,7 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 * @throws SQLException jos kyselyn suorittaminen epäonnistuu
 	 */
 	protected void executeUpdateQuery(Document obj) throws SQLException {
+		getAccountBalanceDAO().moveDocument(obj);
 		PreparedStatement stmt = getUpdateQuery();
 		setValuesToStatement(stmt, obj);
 		stmt.setInt(4, obj.getId());
@@ -578,6 +923,7 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 */
 	public void delete(int documentId) throws DataAccessException {
 		try {
+			getAccountBalanceDAO().removeDocument(documentId);
 			PreparedStatement stmt = getDeleteQuery();
 			stmt.setInt(1, documentId);
 			stmt.executeUpdate();
@@ -605,6 +951,7 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 */
 	public void deleteByPeriodId(int periodId) throws DataAccessException {
 		try {
+			getAccountBalanceDAO().deleteByPeriodId(periodId);
 			PreparedStatement stmt = getDeleteByPeriodIdQuery();
 			stmt.setInt(1, periodId);
 			stmt.executeUpdate();
@@ -626,6 +973,8 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	
 	/**
 	 * Muuttaa tositenumeroita välillä <code>startNumber</code>..<code>endNumber</code>.
+	 * Saldotaulua ei tarvitse päivittää, koska tositenumero ei vaikuta
+	 * saldoihin.
 	 * 
 	 * @param startNumber välin alku
 	 * @param endNumber välin loppu
@@ -658,6 +1007,15 @@ public abstract class SQLDocumentDAO implements DocumentDAO {
 	 */
 	protected abstract PreparedStatement getNumberShiftQuery() throws SQLException;
 
+	/**
+	 * Palauttaa <code>SQLAccountBalanceDAO</code>-olion, jonka avulla
+	 * saldotaulua päivitetään samassa tietokantaistunnossa. Aliluokka
+	 * luo olion kerran ja käyttää samaa oliota kaikissa kutsuissa.
+	 * 
+	 * @return <code>SQLAccountBalanceDAO</code>-olio
+	 */
+	protected abstract SQLAccountBalanceDAO getAccountBalanceDAO();
+
 	/**
 	 * Lukee <code>ResultSetistä</code> rivin kentät ja
 	 * luo <code>Document</code>-olion.
@@ -10,6 +10,7 @@ import java.util.List;
 import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.Document;
+import kirjanpito.db.DocumentEntryCallback;
 import kirjanpito.db.Entry;
 import kirjanpito.db.EntryDAO;
 
@@ -128,6 +129,50 @@ public abstract class SQLEntryDAO implements EntryDAO {
 		}
 	}
 
+	public void getByPeriodIdWithDocuments(int periodId, int numberOffset,
+			DocumentEntryCallback callback) throws DataAccessException
+	{
+		ResultSet rs;
+
+		try {
+			PreparedStatement stmt = getSelectByPeriodIdWithDocumentsQuery();
+			stmt.setInt(1, periodId);
+			stmt.setInt(2, numberOffset);
+			rs = stmt.executeQuery();
+			Document document = null;
+
+			while (rs.next()) {
+				Entry entry = createObject(rs);
+
+				if (document == null || document.getId() != entry.getDocumentId()) {
+					document = new Document();
+					document.setId(entry.getDocumentId());
+					document.setNumber(rs.getInt(9));
+					document.setPeriodId(periodId);
+					document.setDate(rs.getDate(10));
+				}
+
+				callback.process(document, entry);
+			}
+
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan tietyn tilikauden
+	 * viennit sekä tositteiden numerot ja päivämäärät. Rivit
+	 * järjestetään tositenumeron mukaan.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByPeriodIdWithDocumentsQuery() throws SQLException;
+
 	/**
 	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan kaikki tietyn
 	 * tilikauden viennit. Rivit järjestetään tositenumeron mukaan.
@@ -228,6 +273,62 @@ public abstract class SQLEntryDAO implements EntryDAO {
 	 */
 	protected abstract PreparedStatement getSelectByPeriodIdAndAccountIdOrderByNumberQuery() throws SQLException;
 
+	public void getByPeriodIdAndAccountId(int periodId, int accountId, int orderBy,
+			Document start, int limit, DTOCallback<Entry> callback) throws DataAccessException
+	{
+		ResultSet rs;
+
+		try {
+			PreparedStatement stmt;
+
+			if (orderBy == ORDER_BY_DOCUMENT_NUMBER) {
+				stmt = getSelectByPeriodIdAndAccountIdFromNumberQuery();
+				stmt.setInt(2, start.getNumber());
+			}
+			else {
+				stmt = getSelectByPeriodIdAndAccountIdFromDateQuery();
+				stmt.setTimestamp(2, new java.sql.Timestamp(start.getDate().getTime()));
+			}
+
+			stmt.setInt(1, periodId);
+			stmt.setInt(3, accountId);
+			stmt.setInt(4, limit);
+			rs = stmt.executeQuery();
+
+			while (rs.next()) {
+				callback.process(createObject(rs));
+			}
+
+			rs.close();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan enintään
+	 * <code>limit</code> tietyn tilikauden vientiä, jotka kohdistuvat
+	 * tiettyyn tiliin, tietystä päivämäärästä alkaen. Rivit järjestetään
+	 * päivämäärän mukaan.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByPeriodIdAndAccountIdFromDateQuery() throws SQLException;
+
+	/**
+	 * Palauttaa SELECT-kyselyn, jonka avulla haetaan enintään
+	 * <code>limit</code> tietyn tilikauden vientiä, jotka kohdistuvat
+	 * tiettyyn tiliin, tietystä tositenumerosta alkaen. Rivit järjestetään
+	 * tositenumeron mukaan.
+	 *
+	 * @return SELECT-kysely
+	 * @throws SQLException jos kyselyn luominen epäonnistuu
+	 */
+	protected abstract PreparedStatement getSelectByPeriodIdAndAccountIdFromNumberQuery() throws SQLException;
+
 	public void getByPeriodIdAndDate(int periodId, Date startDate,
 			Date endDate, int startNumber, DTOCallback<Entry> callback) throws DataAccessException {
 
@@ -355,6 +456,116 @@ public abstract class SQLEntryDAO implements EntryDAO {
 		}
 	}
 
+	public void saveAll(List<Entry> entries) throws DataAccessException {
+		ArrayList<Entry> inserted = new ArrayList<Entry>();
+		ArrayList<Entry> updated = new ArrayList<Entry>();
+
+		for (Entry obj : entries) {
+			if (obj.getId() == 0) {
+				inserted.add(obj);
+			}
+			else {
+				updated.add(obj);
+			}
+		}
+
+		try {
+			if (!updated.isEmpty()) {
+				getAccountBalanceDAO().updateEntries(updated);
+				executeUpdateBatch(updated);
+			}
+
+			if (!inserted.isEmpty()) {
+				executeInsertBatch(inserted);
+				getAccountBalanceDAO().addEntries(inserted);
+			}
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Lisää vientien tiedot tietokantaan eräajona ja asettaa
+	 * vienneille tunnisteet.
+	 *
+	 * @param list tallennettavat viennit
+	 * @throws SQLException jos tallentaminen epäonnistuu
+	 */
+	protected void executeInsertBatch(List<Entry> list) throws SQLException {
+		PreparedStatement stmt = getInsertQuery();
+
+		for (Entry obj : list) {
+			setValuesToStatement(stmt, obj);
+			stmt.addBatch();
+		}
+
+		stmt.executeBatch();
+		setGeneratedKeys(stmt, list);
+		stmt.close();
+	}
+
+	/**
+	 * Asettaa eräajona lisätyille vienneille tunnisteet.
+	 *
+	 * @param stmt INSERT-kysely, jolla viennit lisättiin
+	 * @param list lisätyt viennit
+	 * @throws SQLException jos tunnisteiden hakeminen epäonnistuu
+	 */
+	protected void setGeneratedKeys(PreparedStatement stmt, List<Entry> list)
+		throws SQLException {
+
+		ResultSet rs = stmt.getGeneratedKeys();
+		int index = 0;
+
+		while (index < list.size() && rs.next()) {
+			list.get(index++).setId(rs.getInt(1));
+		}
+
+		rs.close();
+	}
+
+	/**
+	 * Päivittää vientien tiedot tietokantaan eräajona.
+	 *
+	 * @param list tallennettavat viennit
+	 * @throws SQLException jos kyselyn suorittaminen epäonnistuu
+	 */
+	protected void executeUpdateBatch(List<Entry> list) throws SQLException {
+		PreparedStatement stmt = getUpdateQuery();
+
+		for (Entry obj : list) {
+			setValuesToStatement(stmt, obj);
+			stmt.setInt(8, obj.getId());
+			stmt.addBatch();
+		}
+
+		stmt.executeBatch();
+		stmt.close();
+	}
+
+	public void deleteAll(List<Entry> entries) throws DataAccessException {
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		try {
+			getAccountBalanceDAO().removeEntries(entries);
+			PreparedStatement stmt = getDeleteQuery();
+
+			for (Entry obj : entries) {
+				stmt.setInt(1, obj.getId());
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+			stmt.close();
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Lisää viennin tiedot tietokantaan.
 	 *
@@ -367,6 +578,7 @@ public abstract class SQLEntryDAO implements EntryDAO {
 		stmt.executeUpdate();
 		stmt.close();
 		obj.setId(getGeneratedKey());
+		getAccountBalanceDAO().addEntry(obj);
 	}
 
 	/**
@@ -392,6 +604,7 @@ public abstract class SQLEntryDAO implements EntryDAO {
 	 * @throws SQLException jos kyselyn suorittaminen epäonnistuu
 	 */
 	protected void executeUpdateQuery(Entry obj) throws SQLException {
+		getAccountBalanceDAO().updateEntry(obj);
 		PreparedStatement stmt = getUpdateQuery();
 		setValuesToStatement(stmt, obj);
 		stmt.setInt(8, obj.getId());
@@ -415,6 +628,7 @@ public abstract class SQLEntryDAO implements EntryDAO {
 	 */
 	public void delete(int entryId) throws DataAccessException {
 		try {
+			getAccountBalanceDAO().removeEntry(entryId);
 			PreparedStatement stmt = getDeleteQuery();
 			stmt.setInt(1, entryId);
 			stmt.executeUpdate();
@@ -442,6 +656,7 @@ public abstract class SQLEntryDAO implements EntryDAO {
 	 */
 	public void deleteByPeriodId(int periodId) throws DataAccessException {
 		try {
+			getAccountBalanceDAO().deleteByPeriodId(periodId);
 			PreparedStatement stmt = getDeleteByPeriodIdQuery();
 			stmt.setInt(1, periodId);
 			stmt.executeUpdate();
@@ -461,6 +676,15 @@ public abstract class SQLEntryDAO implements EntryDAO {
 	 */
 	protected abstract PreparedStatement getDeleteByPeriodIdQuery() throws SQLException;
 
+	/**
+	 * Palauttaa <code>SQLAccountBalanceDAO</code>-olion, jonka avulla
+	 * saldotaulua päivitetään samassa tietokantaistunnossa. Aliluokka
+	 * luo olion kerran ja käyttää samaa oliota kaikissa kutsuissa.
+	 *
+	 * @return <code>SQLAccountBalanceDAO</code>-olio
+	 */
+	protected abstract SQLAccountBalanceDAO getAccountBalanceDAO();
+
 	/**
 	 * Lukee <code>ResultSetistä</code> rivin kentät ja
 	 * luo <code>Entry</code>-olion.
@@ -0,0 +1,282 @@
+package kirjanpito.db.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Säilyttää tietokantayhteyden valmisteltuja kyselyjä, jotta samaa
+ * SQL-kyselyä ei tarvitse jäsentää uudelleen jokaisella suorituskerralla.
+ * Kyselyt tunnistetaan SQL-merkkijonon perusteella. Kun välimuistissa
+ * on <code>capacity</code> kyselyä, pisimpään käyttämättä ollut kysely
+ * suljetaan.
+ *
+ * <p><code>prepareStatement()</code> palauttaa kyselyn, jonka
+ * <code>close()</code>-metodi palauttaa kyselyn välimuistiin. Jos
+ * sama kysely on jo käytössä, luodaan uusi kysely, jota ei tallenneta
+ * välimuistiin. Istunnot sulkevat <code>StatementTracker</code>-olion
+ * avulla kyselyt, joita DAO-luokat eivät ole sulkeneet, jotta kyselyt
+ * eivät jää pysyvästi käyttöön.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class StatementCache {
+	private Connection conn;
+	private LinkedHashMap<String, CachedStatement> statements;
+	private int capacity;
+	private int hitCount;
+	private int missCount;
+
+	private static final Class<?>[] INTERFACES = { PreparedStatement.class };
+
+	/**
+	 * Luo välimuistin tietokantayhteydelle <code>conn</code>.
+	 *
+	 * @param conn tietokantayhteys
+	 * @param capacity välimuistiin tallennettavien kyselyjen enimmäismäärä
+	 */
+	public StatementCache(Connection conn, int capacity) {
+		this.conn = conn;
+		this.capacity = capacity;
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true);
+	}
+
+	/**
+	 * Palauttaa valmistellun kyselyn. Kysely haetaan välimuistista,
+	 * jos se on valmisteltu aikaisemmin.
+	 *
+	 * @param sql SQL-kysely
+	 * @return kysely
+	 * @throws SQLException jos kyselyn valmisteleminen epäonnistuu
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return prepareStatement(sql, Statement.NO_GENERATED_KEYS);
+	}
+
+	/**
+	 * Palauttaa valmistellun kyselyn. Jos <code>autoGeneratedKeys</code>
+	 * on <code>Statement.RETURN_GENERATED_KEYS</code>, lisättyjen rivien
+	 * tunnisteet voidaan hakea <code>getGeneratedKeys()</code>-metodilla.
+	 *
+	 * @param sql SQL-kysely
+	 * @param autoGeneratedKeys <code>Statement.RETURN_GENERATED_KEYS</code>
+	 * tai <code>Statement.NO_GENERATED_KEYS</code>
+	 * @return kysely
+	 * @throws SQLException jos kyselyn valmisteleminen epäonnistuu
+	 */
+	public synchronized PreparedStatement prepareStatement(String sql,
+			int autoGeneratedKeys) throws SQLException {
+
+		String key = (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) ?
+				"+" + sql : sql;
+
+		CachedStatement cached = statements.get(key);
+
+		if (cached != null && !cached.inUse) {
+			hitCount++;
+			cached.inUse = true;
+			return cached.createProxy();
+		}
+
+		missCount++;
+		PreparedStatement stmt = (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS) ?
+				conn.prepareStatement(sql, autoGeneratedKeys) :
+				conn.prepareStatement(sql);
+
+		/* Käytössä olevaa kyselyä ei korvata välimuistissa. Kysely
+		 * suljetaan, kun se palautetaan. */
+		if (cached != null) {
+			cached = new CachedStatement(stmt);
+			cached.inUse = true;
+			cached.evicted = true;
+			return cached.createProxy();
+		}
+
+		cached = new CachedStatement(stmt);
+		cached.inUse = true;
+		statements.put(key, cached);
+		evict();
+		return cached.createProxy();
+	}
+
+	/**
+	 * Palauttaa välimuistista löytyneiden kyselyjen lukumäärän.
+	 *
+	 * @return osumien lukumäärä
+	 */
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Palauttaa valmisteltujen kyselyjen lukumäärän.
+	 *
+	 * @return ohitusten lukumäärä
+	 */
+	public synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Palauttaa välimuistissa olevien kyselyjen lukumäärän.
+	 *
+	 * @return kyselyjen lukumäärä
+	 */
+	public synchronized int getSize() {
+		return statements.size();
+	}
+
+	/**
+	 * Sulkee välimuistissa olevat kyselyt.
+	 */
+	public synchronized void close() {
+		ArrayList<CachedStatement> list =
+			new ArrayList<CachedStatement>(statements.values());
+
+		statements.clear();
+
+		for (CachedStatement cached : list) {
+			cached.evicted = true;
+
+			if (!cached.inUse) {
+				cached.closeStatement();
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<CachedStatement> iter = statements.values().iterator();
+
+		while (statements.size() > capacity && iter.hasNext()) {
+			CachedStatement cached = iter.next();
+			iter.remove();
+			cached.evicted = true;
+
+			/* Käytössä oleva kysely suljetaan, kun se palautetaan. */
+			if (!cached.inUse) {
+				cached.closeStatement();
+			}
+		}
+	}
+
+	private synchronized void release(CachedStatement cached) {
+		if (cached.resultSet != null) {
+			try {
+				cached.resultSet.close();
+			}
+			catch (SQLException e) { }
+
+			cached.resultSet = null;
+		}
+
+		if (cached.evicted) {
+			cached.closeStatement();
+		}
+		else {
+			try {
+				cached.stmt.clearParameters();
+				cached.stmt.clearBatch();
+			}
+			catch (SQLException e) {
+				statements.values().remove(cached);
+				cached.closeStatement();
+			}
+		}
+
+		cached.inUse = false;
+	}
+
+	private class CachedStatement {
+		public PreparedStatement stmt;
+		public ResultSet resultSet;
+		public boolean inUse;
+		public boolean evicted;
+
+		public CachedStatement(PreparedStatement stmt) {
+			this.stmt = stmt;
+		}
+
+		public PreparedStatement createProxy() {
+			return (PreparedStatement)Proxy.newProxyInstance(
+					StatementCache.class.getClassLoader(), INTERFACES,
+					new Handler(this));
+		}
+
+		public void closeStatement() {
+			try {
+				stmt.close();
+			}
+			catch (SQLException e) { }
+		}
+	}
+
+	/**
+	 * Välittää metodikutsut välimuistissa olevalle kyselylle.
+	 * <code>close()</code> palauttaa kyselyn välimuistiin.
+	 */
+	private class Handler implements InvocationHandler {
+		private CachedStatement cached;
+		private boolean closed;
+
+		public Handler(CachedStatement cached) {
+			this.cached = cached;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args)
+			throws Throwable {
+
+			String name = method.getName();
+
+			if (method.getDeclaringClass() == Object.class) {
+				if (name.equals("equals")) {
+					return proxy == args[0];
+				}
+				else if (name.equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				}
+
+				return "StatementCache: " + cached.stmt;
+			}
+			else if (name.equals("close")) {
+				if (!closed) {
+					closed = true;
+					release(cached);
+				}
+
+				return null;
+			}
+			else if (name.equals("isClosed")) {
+				return closed;
+			}
+			else if (closed) {
+				throw new SQLException("Kysely on suljettu");
+			}
+
+			Object result;
+
+			try {
+				result = method.invoke(cached.stmt, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			/* Tallennetaan tulosjoukko, jotta se voidaan sulkea,
+			 * kun kysely palautetaan välimuistiin. */
+			if (name.equals("executeQuery")) {
+				cached.resultSet = (ResultSet)result;
+			}
+
+			return result;
+		}
+	}
+}
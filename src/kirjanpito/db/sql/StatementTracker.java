@@ -0,0 +1,76 @@
+package kirjanpito.db.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Pitää kirjaa istunnossa valmistelluista kyselyistä. Kun istunto
+ * suljetaan, <code>closeAll()</code> sulkee kyselyt, joita ei ole
+ * suljettu, jolloin <code>StatementCache</code> voi antaa ne uudelleen
+ * käyttöön. Suljetut kyselyt poistetaan listasta, kun listaan on
+ * lisätty riittävän monta kyselyä, joten pitkäkestoinen istunto ei
+ * kasvata listaa rajatta.
+ *
+ * @author Tommi Helineva
+ */
+public class StatementTracker {
+	private ArrayList<PreparedStatement> statements;
+	private int pruneSize;
+
+	/** Kyselyjen lukumäärä, jonka jälkeen suljetut kyselyt poistetaan. */
+	private static final int PRUNE_SIZE = 32;
+
+	public StatementTracker() {
+		statements = new ArrayList<PreparedStatement>();
+		pruneSize = PRUNE_SIZE;
+	}
+
+	/**
+	 * Lisää kyselyn seurattavaksi.
+	 *
+	 * @param stmt <code>StatementCache</code>-olion palauttama kysely
+	 * @return <code>stmt</code>
+	 */
+	public PreparedStatement add(PreparedStatement stmt) {
+		if (statements.size() >= pruneSize) {
+			prune();
+		}
+
+		statements.add(stmt);
+		return stmt;
+	}
+
+	/**
+	 * Sulkee kyselyt, joita ei ole vielä suljettu.
+	 */
+	public void closeAll() {
+		for (PreparedStatement stmt : statements) {
+			try {
+				stmt.close();
+			}
+			catch (SQLException e) { }
+		}
+
+		statements.clear();
+		pruneSize = PRUNE_SIZE;
+	}
+
+	private void prune() {
+		Iterator<PreparedStatement> iter = statements.iterator();
+
+		while (iter.hasNext()) {
+			try {
+				if (iter.next().isClosed()) {
+					iter.remove();
+				}
+			}
+			catch (SQLException e) { }
+		}
+
+		/* Jos avoimia kyselyjä on paljon, kynnystä kasvatetaan,
+		 * jotta listaa ei käydä läpi jokaisen lisäyksen yhteydessä. */
+		pruneSize = Math.max(PRUNE_SIZE, statements.size() * 2);
+	}
+}
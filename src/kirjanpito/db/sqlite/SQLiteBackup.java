@@ -0,0 +1,501 @@
+package kirjanpito.db.sqlite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import kirjanpito.db.DataAccessException;
+
+/**
+ * Varmuuskopioi SQLite-tietokannan SQLiten varmuuskopiointirajapinnalla.
+ * Varmuuskopio luetaan erillisen tietokantayhteyden kautta, joten
+ * sovelluksen yhteyttä ei tarvitse sulkea ja varmuuskopioon tallentuvat
+ * vain vahvistetut muutokset. Varmuuskopio tallennetaan tietokannan
+ * hakemistoon nimellä <code>&lt;nimi&gt;-yyyy-MM-dd'T'HH-mm-ss.sqlite</code>,
+ * jossa <code>&lt;nimi&gt;</code> on tietokantatiedoston nimi ilman
+ * tiedostopäätettä, ja sen viereen kirjoitetaan SHA-256-tarkistussumma. Tiedosto
+ * voidaan myös pakata gzip-muotoon.
+ *
+ * <p>Kun varmuuskopioiden enimmäismäärä on asetettu, saman tietokannan
+ * vanhimmat varmuuskopiot poistetaan uuden varmuuskopion luomisen
+ * jälkeen. Muiden tietokantojen varmuuskopioihin ei kosketa.
+ * Varmuuskopio palautetaan <code>restore()</code>-metodilla tai
+ * komentoriviltä, ja ennen palauttamista tarkistetaan tarkistussumma
+ * ja tietokannan eheys.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class SQLiteBackup {
+	private File file;
+	private String baseName;
+	private Pattern backupFilenamePattern;
+	private int backupCount;
+	private boolean compress;
+
+	private static final String CHECKSUM_SUFFIX = ".sha256";
+	private static final String COMPRESSED_SUFFIX = ".gz";
+
+	/** Kopiointiyritysten enimmäismäärä. */
+	private static final int MAX_ATTEMPTS = 5;
+
+	/** Odotusaika kopiointiyritysten välillä millisekunteina. */
+	private static final long RETRY_DELAY = 2000;
+
+	/**
+	 * Luo varmuuskopioijan tietokantatiedostolle <code>file</code>.
+	 *
+	 * @param file tietokantatiedosto
+	 */
+	public SQLiteBackup(File file) {
+		this.file = file;
+		this.baseName = getBaseName(file);
+		this.backupFilenamePattern = Pattern.compile(Pattern.quote(baseName) +
+				"-\\d{4}-\\d{2}-\\d{2}T\\d{2}-\\d{2}-\\d{2}\\.sqlite(\\.gz)?");
+	}
+
+	/**
+	 * Asettaa säilytettävien varmuuskopioiden enimmäismäärän.
+	 * Jos enimmäismäärä on 0, varmuuskopioita ei poisteta.
+	 *
+	 * @param backupCount varmuuskopioiden enimmäismäärä
+	 */
+	public void setBackupCount(int backupCount) {
+		this.backupCount = backupCount;
+	}
+
+	/**
+	 * Asettaa, pakataanko varmuuskopiot gzip-muotoon.
+	 *
+	 * @param compress <code>true</code>, jos varmuuskopiot pakataan
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Varmuuskopioi tietokannan. Jos samalla nimellä on jo
+	 * varmuuskopio, uutta varmuuskopiota ei luoda.
+	 *
+	 * @return varmuuskopiotiedosto tai <code>null</code>, jos
+	 * varmuuskopiota ei luotu
+	 * @throws DataAccessException jos varmuuskopiointi epäonnistuu
+	 */
+	public synchronized File backup() throws DataAccessException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
+		String name = baseName + "-" + dateFormat.format(new Date()) + ".sqlite";
+		File destination = new File(dir, compress ? name + COMPRESSED_SUFFIX : name);
+
+		if (destination.exists()) {
+			return null;
+		}
+
+		Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
+		logger.severe("Varmuuskopioidaan tietokanta, " + file + " -> " + destination);
+		File tmpFile = new File(dir, name + ".tmp");
+
+		try {
+			copyDatabase(file, tmpFile);
+
+			if (compress) {
+				compressFile(tmpFile, destination);
+				tmpFile.delete();
+			}
+			else if (!tmpFile.renameTo(destination)) {
+				throw new IOException("Tiedoston " + tmpFile +
+						" nimeäminen uudelleen epäonnistui");
+			}
+
+			writeChecksum(destination);
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+		finally {
+			tmpFile.delete();
+		}
+
+		removeOldBackups(dir);
+		return destination;
+	}
+
+	/**
+	 * Palauttaa varmuuskopion tietokantaan <code>databaseFile</code>.
+	 * Varmuuskopion tarkistussumma ja eheys tarkistetaan ennen
+	 * palauttamista. Jos tietokanta on jo olemassa, se varmuuskopioidaan
+	 * ennen kuin sen tiedot korvataan.
+	 *
+	 * @param backupFile varmuuskopiotiedosto
+	 * @param databaseFile tietokantatiedosto
+	 * @throws DataAccessException jos palauttaminen epäonnistuu
+	 */
+	public static void restore(File backupFile, File databaseFile)
+		throws DataAccessException {
+
+		File tmpFile = null;
+
+		try {
+			verifyChecksum(backupFile);
+			File source = backupFile;
+
+			if (backupFile.getName().endsWith(COMPRESSED_SUFFIX)) {
+				tmpFile = File.createTempFile("kirjanpito-", ".sqlite",
+						databaseFile.getAbsoluteFile().getParentFile());
+				decompressFile(backupFile, tmpFile);
+				source = tmpFile;
+			}
+
+			checkIntegrity(source, "integrity_check");
+
+			if (databaseFile.exists()) {
+				new SQLiteBackup(databaseFile).backup();
+			}
+
+			Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
+			logger.severe("Palautetaan varmuuskopio, " + backupFile + " -> " + databaseFile);
+			Connection conn = openConnection(databaseFile);
+
+			try {
+				Statement stmt = conn.createStatement();
+				stmt.executeUpdate("restore from " + quote(source));
+				stmt.close();
+			}
+			finally {
+				conn.close();
+			}
+
+			checkIntegrity(databaseFile, "quick_check");
+		}
+		catch (SQLException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new DataAccessException(e.getMessage(), e);
+		}
+		finally {
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Kopioi tietokannan <code>src</code> tiedostoon <code>dst</code>.
+	 * SQLite-ajuri kopioi tietokannan sadan sivun erissä, ja lukulukko
+	 * vapautetaan erien välillä, joten kopiointi ei estä muita yhteyksiä
+	 * vahvistamasta muutoksia. Jos muutos vahvistetaan kesken kopioinnin,
+	 * SQLite aloittaa kopioinnin alusta. Jos kopiointi ei valmistu, koska
+	 * tietokanta on varattuna, kopiointia yritetään myöhemmin uudelleen.
+	 * Kopio on valmis, kun siinä on yhtä monta sivua kuin alkuperäisessä
+	 * tietokannassa.
+	 */
+	private static void copyDatabase(File src, File dst) throws SQLException {
+		int pageCount = 0;
+		int backupPageCount = 0;
+
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			if (attempt > 0) {
+				Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
+				logger.info(String.format(
+						"Varmuuskopio jäi keskeneräiseksi (%d/%d sivua), " +
+						"yritetään uudelleen", backupPageCount, pageCount));
+
+				try {
+					Thread.sleep(RETRY_DELAY);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Varmuuskopiointi keskeytettiin");
+				}
+			}
+
+			dst.delete();
+			Connection conn = openConnection(src);
+
+			try {
+				Statement stmt = conn.createStatement();
+				stmt.executeUpdate("backup to " + quote(dst));
+				pageCount = getPageCount(stmt);
+				stmt.close();
+			}
+			finally {
+				conn.close();
+			}
+
+			backupPageCount = getPageCount(dst);
+
+			if (backupPageCount > 0 && backupPageCount == pageCount) {
+				return;
+			}
+		}
+
+		throw new SQLException(String.format(
+				"Varmuuskopio on keskeneräinen (%d/%d sivua)",
+				backupPageCount, pageCount));
+	}
+
+	private static int getPageCount(File file) throws SQLException {
+		Connection conn = openConnection(file);
+
+		try {
+			Statement stmt = conn.createStatement();
+			int count = getPageCount(stmt);
+			stmt.close();
+			return count;
+		}
+		finally {
+			conn.close();
+		}
+	}
+
+	private static int getPageCount(Statement stmt) throws SQLException {
+		ResultSet rs = stmt.executeQuery("PRAGMA page_count");
+		int count = rs.next() ? rs.getInt(1) : 0;
+		rs.close();
+		return count;
+	}
+
+	private static void checkIntegrity(File file, String pragma)
+		throws SQLException {
+
+		Connection conn = openConnection(file);
+
+		try {
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("PRAGMA " + pragma);
+			String result = rs.next() ? rs.getString(1) : null;
+			rs.close();
+			stmt.close();
+
+			if (!"ok".equals(result)) {
+				throw new SQLException("Tietokanta " + file +
+						" on vioittunut: " + result);
+			}
+		}
+		finally {
+			conn.close();
+		}
+	}
+
+	private static Connection openConnection(File file) throws SQLException {
+		try {
+			Class.forName("org.sqlite.JDBC");
+		}
+		catch (ClassNotFoundException e) {
+			throw new SQLException("SQLite-tietokanta-ajuria ei löytynyt", e);
+		}
+
+		return DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+	}
+
+	private static String quote(File file) {
+		return '"' + file.getPath() + '"';
+	}
+
+	/**
+	 * Poistaa vanhimmat varmuuskopiot, kun niitä on enemmän kuin
+	 * <code>backupCount</code>. Vain tämän tietokannan varmuuskopiot
+	 * otetaan huomioon. Varmuuskopiot järjestetään nimen mukaan, koska
+	 * nimessä on tietokannan nimen jälkeen luontiaika.
+	 */
+	private void removeOldBackups(File dir) {
+		if (backupCount <= 0) {
+			return;
+		}
+
+		String[] names = dir.list();
+
+		if (names == null) {
+			return;
+		}
+
+		ArrayList<String> backups = new ArrayList<String>();
+
+		for (String name : names) {
+			if (backupFilenamePattern.matcher(name).matches()) {
+				backups.add(name);
+			}
+		}
+
+		Collections.sort(backups);
+		Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
+
+		for (int i = 0; i < backups.size() - backupCount; i++) {
+			File backup = new File(dir, backups.get(i));
+			logger.info("Poistetaan vanha varmuuskopio " + backup);
+			backup.delete();
+			new File(dir, backups.get(i) + CHECKSUM_SUFFIX).delete();
+		}
+	}
+
+	/**
+	 * Palauttaa tietokantatiedoston nimen ilman tiedostopäätettä.
+	 */
+	private static String getBaseName(File file) {
+		String name = file.getName();
+		int index = name.lastIndexOf('.');
+		return (index > 0) ? name.substring(0, index) : name;
+	}
+
+	private static void compressFile(File src, File dst) throws IOException {
+		InputStream in = new FileInputStream(src);
+
+		try {
+			OutputStream out = new GZIPOutputStream(new FileOutputStream(dst), 65536);
+
+			try {
+				copyStream(in, out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void decompressFile(File src, File dst) throws IOException {
+		InputStream in = new GZIPInputStream(new FileInputStream(src), 65536);
+
+		try {
+			OutputStream out = new FileOutputStream(dst);
+
+			try {
+				copyStream(in, out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void copyStream(InputStream in, OutputStream out)
+		throws IOException {
+
+		byte[] buf = new byte[65536];
+		int len;
+
+		while ((len = in.read(buf)) > 0) {
+			out.write(buf, 0, len);
+		}
+	}
+
+	/**
+	 * Kirjoittaa tiedoston SHA-256-tarkistussumman tiedostoon, jonka
+	 * nimen loppuun on lisätty <code>.sha256</code>. Tiedoston muoto
+	 * on sama kuin <code>sha256sum</code>-ohjelmalla.
+	 */
+	private static void writeChecksum(File file) throws IOException {
+		FileWriter writer = new FileWriter(new File(file.getPath() + CHECKSUM_SUFFIX));
+
+		try {
+			writer.write(computeChecksum(file) + "  " + file.getName() + "\n");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private static void verifyChecksum(File file) throws IOException {
+		File checksumFile = new File(file.getPath() + CHECKSUM_SUFFIX);
+
+		if (!checksumFile.exists()) {
+			throw new IOException("Tarkistussummatiedostoa " +
+					checksumFile + " ei löytynyt");
+		}
+
+		BufferedReader reader = new BufferedReader(new FileReader(checksumFile));
+		String line;
+
+		try {
+			line = reader.readLine();
+		}
+		finally {
+			reader.close();
+		}
+
+		String expected = (line == null) ? "" : line.trim().split("\\s+")[0];
+
+		if (!expected.equalsIgnoreCase(computeChecksum(file))) {
+			throw new IOException("Varmuuskopion " + file +
+					" tarkistussumma ei täsmää");
+		}
+	}
+
+	private static String computeChecksum(File file) throws IOException {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		InputStream in = new FileInputStream(file);
+		byte[] buf = new byte[65536];
+		int len;
+
+		try {
+			while ((len = in.read(buf)) > 0) {
+				digest.update(buf, 0, len);
+			}
+		}
+		finally {
+			in.close();
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b & 0xFF));
+		}
+
+		return sb.toString();
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Käyttö: SQLiteBackup <varmuuskopio> <tietokanta>");
+			System.exit(1);
+		}
+
+		try {
+			restore(new File(args[0]), new File(args[1]));
+			System.out.println("Varmuuskopio palautettiin tietokantaan " + args[1]);
+		}
+		catch (DataAccessException e) {
+			System.err.println("Varmuuskopion palauttaminen epäonnistui: " +
+					e.getMessage());
+			System.exit(1);
+		}
+	}
+}
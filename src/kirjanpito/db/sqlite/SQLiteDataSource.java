@@ -1,19 +1,18 @@
 package kirjanpito.db.sqlite;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import kirjanpito.db.AccountBalanceDAO;
 import kirjanpito.db.AccountDAO;
 import kirjanpito.db.COAHeadingDAO;
 import kirjanpito.db.DataAccessException;
@@ -27,17 +26,25 @@ import kirjanpito.db.PeriodDAO;
 import kirjanpito.db.ReportStructureDAO;
 import kirjanpito.db.Session;
 import kirjanpito.db.SettingsDAO;
+import kirjanpito.db.sql.StatementCache;
 
 /**
  * @author Tommi Helineva
  */
 public class SQLiteDataSource implements DataSource {
-	private String url;
-	private File file;
 	private Connection conn;
+	private StatementCache statementCache;
+	private SQLiteBackup backup;
+	private Timer backupTimer;
+	private int backupCount;
+	private int backupInterval;
+	private boolean compressBackups;
 
 	private static final String JDBC_DRIVER_CLASS = "org.sqlite.JDBC";
 
+	/** Välimuistiin tallennettavien kyselyjen enimmäismäärä. */
+	private static final int STATEMENT_CACHE_SIZE = 64;
+
 	public void open(String url, String username, String password)
 		throws DataAccessException
 	{
@@ -54,16 +61,19 @@ public class SQLiteDataSource implements DataSource {
 		}
 
 		String filename = url.substring(12);
-		this.url = url;
-		this.file = new File(filename);
+		File file = new File(filename);
 		boolean tablesExist = file.exists();
+		backup = new SQLiteBackup(file);
+		backup.setBackupCount(backupCount);
+		backup.setCompress(compressBackups);
 
 		try {
 			conn = DriverManager.getConnection(url);
 			conn.setAutoCommit(false);
+			statementCache = new StatementCache(conn, STATEMENT_CACHE_SIZE);
 
 			if (tablesExist) {
-				upgradeDatabase(conn, file);
+				upgradeDatabase(conn, backup);
 			}
 			else {
 				createTables(conn);
@@ -72,9 +82,20 @@ public class SQLiteDataSource implements DataSource {
 		catch (SQLException e) {
 			throw new DataAccessException(e.getMessage(), e);
 		}
+
+		if (backupInterval > 0) {
+			startBackupTimer();
+		}
 	}
 
 	public void close() {
+		if (backupTimer != null) {
+			backupTimer.cancel();
+			backupTimer = null;
+		}
+
+		statementCache.close();
+
 		try {
 			conn.close();
 		}
@@ -82,49 +103,151 @@ public class SQLiteDataSource implements DataSource {
 	}
 
 	public void backup() throws DataAccessException {
-		close();
-		backupDatabase(file);
-		open(url, null, null);
+		backup.backup();
+	}
+
+	public void setBackupOptions(int backupCount, int backupInterval,
+			boolean compress) {
+
+		this.backupCount = backupCount;
+		this.backupInterval = backupInterval;
+		this.compressBackups = compress;
 	}
 
 	public AccountDAO getAccountDAO(Session session) {
-		return new SQLiteAccountDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		AccountDAO dao = sess.getDAOCache().get(AccountDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteAccountDAO(sess);
+			sess.getDAOCache().put(AccountDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public AccountBalanceDAO getAccountBalanceDAO(Session session) {
+		SQLiteSession sess = (SQLiteSession)session;
+		AccountBalanceDAO dao = sess.getDAOCache().get(AccountBalanceDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteAccountBalanceDAO(sess);
+			sess.getDAOCache().put(AccountBalanceDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public COAHeadingDAO getCOAHeadingDAO(Session session) {
-		return new SQLiteCOAHeadingDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		COAHeadingDAO dao = sess.getDAOCache().get(COAHeadingDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteCOAHeadingDAO(sess);
+			sess.getDAOCache().put(COAHeadingDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public DocumentDAO getDocumentDAO(Session session) {
-		return new SQLiteDocumentDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		DocumentDAO dao = sess.getDAOCache().get(DocumentDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteDocumentDAO(sess);
+			sess.getDAOCache().put(DocumentDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public EntryDAO getEntryDAO(Session session) {
-		return new SQLiteEntryDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		EntryDAO dao = sess.getDAOCache().get(EntryDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteEntryDAO(sess);
+			sess.getDAOCache().put(EntryDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public PeriodDAO getPeriodDAO(Session session) {
-		return new SQLitePeriodDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		PeriodDAO dao = sess.getDAOCache().get(PeriodDAO.class);
+
+		if (dao == null) {
+			dao = new SQLitePeriodDAO(sess);
+			sess.getDAOCache().put(PeriodDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public SettingsDAO getSettingsDAO(Session session) {
-		return new SQLiteSettingsDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		SettingsDAO dao = sess.getDAOCache().get(SettingsDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteSettingsDAO(sess);
+			sess.getDAOCache().put(SettingsDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public ReportStructureDAO getReportStructureDAO(Session session) {
-		return new SQLiteReportStructureDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		ReportStructureDAO dao = sess.getDAOCache().get(ReportStructureDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteReportStructureDAO(sess);
+			sess.getDAOCache().put(ReportStructureDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public EntryTemplateDAO getEntryTemplateDAO(Session session) {
-		return new SQLiteEntryTemplateDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		EntryTemplateDAO dao = sess.getDAOCache().get(EntryTemplateDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteEntryTemplateDAO(sess);
+			sess.getDAOCache().put(EntryTemplateDAO.class, dao);
+		}
+
+		return dao;
 	}
 
 	public DocumentTypeDAO getDocumentTypeDAO(Session session) {
-		return new SQLiteDocumentTypeDAO((SQLiteSession)session);
+		SQLiteSession sess = (SQLiteSession)session;
+		DocumentTypeDAO dao = sess.getDAOCache().get(DocumentTypeDAO.class);
+
+		if (dao == null) {
+			dao = new SQLiteDocumentTypeDAO(sess);
+			sess.getDAOCache().put(DocumentTypeDAO.class, dao);
+		}
+
+		return dao;
+	}
+
+	public void setConnectionPoolOptions(int maxConnections, int idleTimeout) {
+		/* SQLite-tietokantaa käytetään yhden yhteyden kautta. */
+	}
+
+	public int getStatementCacheHitCount() {
+		return statementCache.getHitCount();
+	}
+
+	public int getStatementCacheMissCount() {
+		return statementCache.getMissCount();
 	}
 
 	public Session openSession() throws DataAccessException {
-		return new SQLiteSession(conn);
+		return new SQLiteSession(conn, statementCache);
 	}
 
 	private static void createTables(Connection conn)
@@ -133,6 +256,10 @@ public class SQLiteDataSource implements DataSource {
 		try {
 			DatabaseUpgradeUtil.executeQueries(conn,
 					SQLiteDataSource.class.getResourceAsStream("database.sql"));
+			Statement stmt = conn.createStatement();
+			createSearchIndex(stmt);
+			stmt.close();
+			conn.commit();
 		}
 		catch (SQLException e) {
 			throw new DataAccessException(e.getMessage(), e);
@@ -142,7 +269,7 @@ public class SQLiteDataSource implements DataSource {
 		}
 	}
 
-	private static void upgradeDatabase(Connection conn, File file)
+	private static void upgradeDatabase(Connection conn, SQLiteBackup backup)
 		throws DataAccessException {
 
 		int version = 0;
@@ -156,83 +283,101 @@ public class SQLiteDataSource implements DataSource {
 			}
 
 			if (version == 1) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				upgrade1to2(conn, stmt);
 				version = 2;
 			}
 
 			if (version == 2) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				upgrade2to3(conn, stmt);
 				version = 3;
 			}
 
 			if (version == 3) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade3to4(conn, stmt);
 				version = 4;
 			}
 
 			if (version == 4) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade4to5(conn, stmt);
 				version = 5;
 			}
 
 			if (version == 5) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade5to6(conn, stmt);
 				version = 6;
 			}
 
 			if (version == 6) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade6to7(conn, stmt);
 				version = 7;
 			}
 
 			if (version == 7) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade7to8(conn, stmt);
 				version = 8;
 			}
 
 			if (version == 8) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade8to9(conn, stmt);
 				version = 9;
 			}
 
 			if (version == 9) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade9to10(conn, stmt);
 				version = 10;
 			}
 
 			if (version == 10) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade10to11(conn, stmt);
 				version = 11;
 			}
 
 			if (version == 11) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade11to12(conn, stmt);
 				version = 12;
 			}
 
 			if (version == 12) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade12to13(conn, stmt);
 				version = 13;
 			}
 
 			if (version == 13) {
-				backupDatabase(file);
+				backupDatabase(backup);
 				DatabaseUpgradeUtil.upgrade13to14(conn, stmt, true);
 				version = 14;
 			}
 
+			if (version == 14) {
+				backupDatabase(backup);
+				DatabaseUpgradeUtil.upgrade14to15(conn, stmt);
+				version = 15;
+			}
+
+			if (version == 15) {
+				backupDatabase(backup);
+				DatabaseUpgradeUtil.upgrade15to16(conn, stmt);
+				version = 16;
+			}
+
+			if (version == 16) {
+				backupDatabase(backup);
+				upgrade16to17(conn, stmt);
+				version = 17;
+			}
+
 			stmt.close();
 		}
 		catch (Exception e) {
@@ -267,38 +412,57 @@ public class SQLiteDataSource implements DataSource {
 		logger.info("Tietokannan päivittäminen versioon 3 onnistui");
 	}
 
-	private static void backupDatabase(File file) {
-		File dir = file.getParentFile();
-		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
-		File destination = new File(dir, "kirjanpito-" +
-				dateFormat.format(new Date()) + ".sqlite");
-
-		if (destination.exists()) {
-			return;
-		}
+	private static void upgrade16to17(Connection conn, Statement stmt) throws SQLException {
+		createSearchIndex(stmt);
+		stmt.execute("INSERT INTO entry_search (entry_search) VALUES ('rebuild')");
+		stmt.executeUpdate("UPDATE settings SET version=17");
+		conn.commit();
 
 		Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
-		logger.severe("Varmuuskopioidaan tietokanta, " + file + " -> " + destination);
+		logger.info("Tietokannan päivittäminen versioon 17 onnistui");
+	}
+
+	/**
+	 * Luo vientien selitteille FTS-tekstihakuindeksin. Indeksi ei
+	 * tallenna selitteitä, vaan lukee ne entry-taulusta, ja liipaisimet
+	 * päivittävät indeksin, kun vientejä lisätään, muutetaan tai
+	 * poistetaan.
+	 */
+	private static void createSearchIndex(Statement stmt) throws SQLException {
+		stmt.execute("CREATE VIRTUAL TABLE entry_search USING fts4(content=\"entry\", description)");
+		stmt.execute("CREATE TRIGGER entry_search_bu BEFORE UPDATE ON entry BEGIN " +
+				"DELETE FROM entry_search WHERE docid = old.id; END");
+		stmt.execute("CREATE TRIGGER entry_search_bd BEFORE DELETE ON entry BEGIN " +
+				"DELETE FROM entry_search WHERE docid = old.id; END");
+		stmt.execute("CREATE TRIGGER entry_search_au AFTER UPDATE ON entry BEGIN " +
+				"INSERT INTO entry_search (docid, description) VALUES (new.id, new.description); END");
+		stmt.execute("CREATE TRIGGER entry_search_ai AFTER INSERT ON entry BEGIN " +
+				"INSERT INTO entry_search (docid, description) VALUES (new.id, new.description); END");
+	}
 
+	/**
+	 * Varmuuskopioi tietokannan <code>backupInterval</code> minuutin
+	 * välein taustasäikeessä. Varmuuskopio luetaan omalla yhteydellä,
+	 * joten sovellusta voi käyttää varmuuskopioinnin aikana.
+	 */
+	private void startBackupTimer() {
+		final SQLiteBackup backup = this.backup;
+		long period = backupInterval * 60000L;
+		backupTimer = new Timer("SQLiteBackup", true);
+		backupTimer.schedule(new TimerTask() {
+			public void run() {
+				backupDatabase(backup);
+			}
+		}, period, period);
+	}
+
+	private static void backupDatabase(SQLiteBackup backup) {
 		try {
-			copyFile(file, destination);
+			backup.backup();
 		}
-		catch (IOException e) {
+		catch (DataAccessException e) {
+			Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
 			logger.log(Level.SEVERE, "Tietokannan varmuuskopiointi epäonnistui", e);
 		}
 	}
-
-	private static void copyFile(File src, File dst) throws IOException {
-	    FileInputStream in = new FileInputStream(src);
-	    FileOutputStream out = new FileOutputStream(dst);
-	    byte[] buf = new byte[1024];
-	    int len;
-
-	    while ((len = in.read(buf)) > 0) {
-	        out.write(buf, 0, len);
-	    }
-
-	    in.close();
-	    out.close();
-	}
 }
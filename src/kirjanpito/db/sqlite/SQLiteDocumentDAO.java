@@ -2,7 +2,9 @@ package kirjanpito.db.sqlite;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
+import kirjanpito.db.sql.SQLAccountBalanceDAO;
 import kirjanpito.db.sql.SQLDocumentDAO;
 
 /**
@@ -14,6 +16,7 @@ import kirjanpito.db.sql.SQLDocumentDAO;
  */
 public class SQLiteDocumentDAO extends SQLDocumentDAO {
 	private SQLiteSession sess;
+	private SQLAccountBalanceDAO balanceDAO;
 	
 	public SQLiteDocumentDAO(SQLiteSession sess) {
 		this.sess = sess;
@@ -23,6 +26,14 @@ public class SQLiteDocumentDAO extends SQLDocumentDAO {
 		return sess.getInsertId();
 	}
 	
+	protected SQLAccountBalanceDAO getAccountBalanceDAO() {
+		if (balanceDAO == null) {
+			balanceDAO = new SQLiteAccountBalanceDAO(sess);
+		}
+
+		return balanceDAO;
+	}
+	
 	protected PreparedStatement getSelectLastDocumentQuery() throws SQLException {
 		return sess.prepareStatement("SELECT number, date FROM document WHERE period_id = ? AND number BETWEEN ? AND ? ORDER BY number DESC LIMIT 1");
 	}
@@ -43,8 +54,16 @@ public class SQLiteDocumentDAO extends SQLDocumentDAO {
 		return sess.prepareStatement("SELECT count(*) FROM document WHERE period_id = ? AND number BETWEEN ? AND ?");
 	}
 	
-	protected PreparedStatement getSelectNumberByPeriodIdAndNumberQuery() throws SQLException {
-		return sess.prepareStatement("SELECT number FROM document WHERE period_id = ? AND number BETWEEN ? AND ? ORDER BY number");
+	protected PreparedStatement getSelectIndexByPeriodIdAndNumberQuery() throws SQLException {
+		return sess.prepareStatement("SELECT count(*), sum(CASE WHEN number = ? THEN 1 ELSE 0 END) FROM document WHERE period_id = ? AND number BETWEEN ? AND ?");
+	}
+	
+	protected PreparedStatement getSelectFirstByPeriodIdAndNumberQuery() throws SQLException {
+		return sess.prepareStatement("SELECT id, number, period_id, date FROM document WHERE period_id = ? AND number BETWEEN ? AND ? ORDER BY number LIMIT ?");
+	}
+	
+	protected PreparedStatement getSelectLastByPeriodIdAndNumberQuery() throws SQLException {
+		return sess.prepareStatement("SELECT id, number, period_id, date FROM document WHERE period_id = ? AND number BETWEEN ? AND ? ORDER BY number DESC LIMIT ?");
 	}
 	
 	protected PreparedStatement getSelectCountByPeriodIdAndPhraseQuery() throws SQLException {
@@ -55,6 +74,55 @@ public class SQLiteDocumentDAO extends SQLDocumentDAO {
 		return sess.prepareStatement("SELECT d.id, d.number, d.period_id, d.date FROM document d WHERE d.period_id = ? AND (SELECT count(*) FROM entry e WHERE e.document_id = d.id AND e.description LIKE ?) > 0 ORDER BY d.number LIMIT ? OFFSET ?");
 	}
 	
+	protected PreparedStatement getSelectFirstByPeriodIdAndPhraseQuery() throws SQLException {
+		return sess.prepareStatement("SELECT d.id, d.number, d.period_id, d.date FROM document d WHERE d.period_id = ? AND (SELECT count(*) FROM entry e WHERE e.document_id = d.id AND e.description LIKE ?) > 0 AND d.number BETWEEN ? AND ? ORDER BY d.number LIMIT ?");
+	}
+	
+	protected PreparedStatement getSelectLastByPeriodIdAndPhraseQuery() throws SQLException {
+		return sess.prepareStatement("SELECT d.id, d.number, d.period_id, d.date FROM document d WHERE d.period_id = ? AND (SELECT count(*) FROM entry e WHERE e.document_id = d.id AND e.description LIKE ?) > 0 AND d.number BETWEEN ? AND ? ORDER BY d.number DESC LIMIT ?");
+	}
+	
+	protected PreparedStatement getSelectCountByPeriodIdAndTextQuery() throws SQLException {
+		return sess.prepareStatement("SELECT count(*) FROM document d WHERE d.period_id = ? AND d.id IN (SELECT e.document_id FROM entry e WHERE e.id IN (SELECT docid FROM entry_search WHERE entry_search MATCH ?))");
+	}
+	
+	protected PreparedStatement getSelectByPeriodIdAndTextQuery() throws SQLException {
+		return sess.prepareStatement("SELECT d.id, d.number, d.period_id, d.date FROM document d WHERE d.period_id = ? AND d.id IN (SELECT e.document_id FROM entry e WHERE e.id IN (SELECT docid FROM entry_search WHERE entry_search MATCH ?)) ORDER BY d.number LIMIT ? OFFSET ?");
+	}
+	
+	protected PreparedStatement getSelectFirstByPeriodIdAndTextQuery() throws SQLException {
+		return sess.prepareStatement("SELECT d.id, d.number, d.period_id, d.date FROM document d WHERE d.period_id = ? AND d.id IN (SELECT e.document_id FROM entry e WHERE e.id IN (SELECT docid FROM entry_search WHERE entry_search MATCH ?)) AND d.number BETWEEN ? AND ? ORDER BY d.number LIMIT ?");
+	}
+	
+	protected PreparedStatement getSelectLastByPeriodIdAndTextQuery() throws SQLException {
+		return sess.prepareStatement("SELECT d.id, d.number, d.period_id, d.date FROM document d WHERE d.period_id = ? AND d.id IN (SELECT e.document_id FROM entry e WHERE e.id IN (SELECT docid FROM entry_search WHERE entry_search MATCH ?)) AND d.number BETWEEN ? AND ? ORDER BY d.number DESC LIMIT ?");
+	}
+	
+	protected String[] splitWords(String q) {
+		/* FTS-indeksin oletusjäsennin erottaa sanat vain ASCII-merkeillä,
+		 * jotka eivät ole kirjaimia tai numeroita. */
+		return q.split("[\\x00-\\x2F\\x3A-\\x40\\x5B-\\x60\\x7B-\\x7F]+");
+	}
+	
+	protected String createTextSearchExpression(List<String> words) {
+		StringBuilder sb = new StringBuilder();
+		
+		/* FTS-indeksin oletusjäsennin muuttaa vain ASCII-kirjaimet
+		 * pieniksi kirjaimiksi. */
+		for (String word : words) {
+			if (sb.length() > 0) sb.append(' ');
+			
+			for (int i = 0; i < word.length(); i++) {
+				char c = word.charAt(i);
+				sb.append((c >= 'A' && c <= 'Z') ? (char)(c + 32) : c);
+			}
+			
+			sb.append('*');
+		}
+		
+		return sb.toString();
+	}
+	
 	protected PreparedStatement getSelectByPeriodIdAndDateQuery() throws SQLException {
 		return sess.prepareStatement("SELECT id, number, period_id, date FROM document WHERE period_id = ? AND date BETWEEN ? AND ? ORDER BY number");
 	}
@@ -4,8 +4,10 @@ import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 import kirjanpito.db.Entry;
+import kirjanpito.db.sql.SQLAccountBalanceDAO;
 import kirjanpito.db.sql.SQLEntryDAO;
 
 /**
@@ -17,6 +19,7 @@ import kirjanpito.db.sql.SQLEntryDAO;
  */
 public class SQLiteEntryDAO extends SQLEntryDAO {
 	private SQLiteSession sess;
+	private SQLAccountBalanceDAO balanceDAO;
 
 	public SQLiteEntryDAO(SQLiteSession sess) {
 		this.sess = sess;
@@ -26,6 +29,27 @@ public class SQLiteEntryDAO extends SQLEntryDAO {
 		return sess.getInsertId();
 	}
 
+	protected void setGeneratedKeys(PreparedStatement stmt, List<Entry> list)
+		throws SQLException {
+
+		/* SQLite-ajuri palauttaa vain viimeksi lisätyn rivin tunnisteen.
+		 * Eräajon rivit lisätään peräkkäin samassa transaktiossa, joten
+		 * AUTOINCREMENT-tunnisteet ovat peräkkäisiä. */
+		int id = sess.getInsertId() - list.size() + 1;
+
+		for (Entry obj : list) {
+			obj.setId(id++);
+		}
+	}
+
+	protected SQLAccountBalanceDAO getAccountBalanceDAO() {
+		if (balanceDAO == null) {
+			balanceDAO = new SQLiteAccountBalanceDAO(sess);
+		}
+
+		return balanceDAO;
+	}
+
 	protected PreparedStatement getSelectByDocumentIdQuery() throws SQLException {
 		return sess.prepareStatement("SELECT id, document_id, account_id, debit, amount, description, row_number, flags FROM entry WHERE document_id = ? ORDER BY row_number");
 	}
@@ -38,6 +62,10 @@ public class SQLiteEntryDAO extends SQLEntryDAO {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? ORDER BY d.number, e.row_number");
 	}
 
+	protected PreparedStatement getSelectByPeriodIdWithDocumentsQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags, d.number, d.date FROM document d CROSS JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.number >= ? ORDER BY d.number, e.row_number");
+	}
+
 	protected PreparedStatement getSelectByPeriodIdOrderByDateQuery() throws SQLException {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? ORDER BY d.date, d.number, e.row_number");
 	}
@@ -58,6 +86,14 @@ public class SQLiteEntryDAO extends SQLEntryDAO {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE d.period_id = ? AND e.account_id = ? ORDER BY d.number, d.date, e.row_number");
 	}
 
+	protected PreparedStatement getSelectByPeriodIdAndAccountIdFromDateQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM document d CROSS JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.date >= ? AND e.account_id = ? ORDER BY d.date, d.number, e.row_number LIMIT ?");
+	}
+
+	protected PreparedStatement getSelectByPeriodIdAndAccountIdFromNumberQuery() throws SQLException {
+		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM document d CROSS JOIN entry e ON e.document_id = d.id WHERE d.period_id = ? AND d.number >= ? AND e.account_id = ? ORDER BY d.number, e.row_number LIMIT ?");
+	}
+
 	protected PreparedStatement getSelectByAccountIdQuery() throws SQLException {
 		return sess.prepareStatement("SELECT e.id, e.document_id, e.account_id, e.debit, e.amount, e.description, e.row_number, e.flags FROM entry e INNER JOIN document d ON d.id = e.document_id WHERE e.account_id = ? ORDER BY d.number, e.row_number");
 	}
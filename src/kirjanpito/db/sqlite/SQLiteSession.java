@@ -7,8 +7,11 @@ import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import kirjanpito.db.DAOCache;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.Session;
+import kirjanpito.db.sql.StatementCache;
+import kirjanpito.db.sql.StatementTracker;
 
 /**
  * SQLite-tietokantaistunto.
@@ -19,9 +22,15 @@ public class SQLiteSession implements Session {
 	private static Logger logger = Logger.getLogger("kirjanpito.db.sqlite");
 	
 	private Connection conn;
+	private StatementCache cache;
+	private StatementTracker statements;
+	private DAOCache daos;
 
-	public SQLiteSession(Connection conn) {
+	public SQLiteSession(Connection conn, StatementCache cache) {
 		this.conn = conn;
+		this.cache = cache;
+		this.statements = new StatementTracker();
+		this.daos = new DAOCache();
 	}
 	
 	/**
@@ -33,6 +42,15 @@ public class SQLiteSession implements Session {
 		return conn;
 	}
 	
+	/**
+	 * Palauttaa istunnon DAO-oliot.
+	 * 
+	 * @return DAO-oliot
+	 */
+	public DAOCache getDAOCache() {
+		return daos;
+	}
+	
 	public void commit() throws DataAccessException {
 		try {
 			conn.commit();
@@ -52,12 +70,13 @@ public class SQLiteSession implements Session {
 	}
 	
 	public void close() {
+		statements.closeAll();
 	}
 	
 	public PreparedStatement prepareStatement(String sql) throws SQLException
 	{
 		logger.log(Level.FINER, "Suoritetaan tietokantakysely: " + sql);
-		return conn.prepareStatement(sql);
+		return statements.add(cache.prepareStatement(sql));
 	}
 	
 	/**
@@ -6,11 +6,8 @@ import java.util.List;
 
 import kirjanpito.db.Account;
 import kirjanpito.db.COAHeading;
-import kirjanpito.db.CountDTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
-import kirjanpito.db.Entry;
-import kirjanpito.db.EntryDAO;
 import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
 import kirjanpito.util.AppSettings;
@@ -200,6 +197,9 @@ public class COAModel {
 	public void updateRow(int index, boolean positionChanged) {
 		DataSourceAction action;
 
+		/* Tilin numero, nimi tai otsikon teksti on voinut muuttua. */
+		coa.clearSearchIndex();
+
 		if (coa.getType(index) == ChartOfAccounts.TYPE_ACCOUNT) {
 			Account account = coa.getAccount(index);
 			action = new SaveAccountAction(account);
@@ -375,10 +375,8 @@ public class COAModel {
 
 		try {
 			sess = dataSource.openSession();
-			CountDTOCallback<Entry> callback = new CountDTOCallback<Entry>();
-			dataSource.getEntryDAO(sess).getByPeriodIdAndAccountId(-1,
-					accountId, EntryDAO.ORDER_BY_DOCUMENT_DATE, callback);
-			return callback.getCount() == 0 ? 0 : 1;
+			return dataSource.getAccountBalanceDAO(
+					sess).isAccountUsed(accountId) ? 1 : 0;
 		}
 		finally {
 			if (sess != null) sess.close();
@@ -1,22 +1,27 @@
 package kirjanpito.models;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.text.SimpleDateFormat;
-import java.util.HashMap;
-import java.util.List;
 
 import javax.swing.SwingWorker;
 
 import kirjanpito.db.Account;
-import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
 import kirjanpito.db.Document;
+import kirjanpito.db.DocumentEntryCallback;
 import kirjanpito.db.Entry;
-import kirjanpito.db.EntryDAO;
 import kirjanpito.db.Period;
 import kirjanpito.db.Session;
 import kirjanpito.util.CSVWriter;
@@ -32,6 +37,12 @@ public class CSVExportWorker extends SwingWorker<Void, Void> {
 	private SimpleDateFormat dateFormat;
 	private DecimalFormat numberFormat;
 	private IOException exception;
+	private StringBuilder buffer;
+	private char groupingSeparator;
+	private char decimalSeparator;
+	private int groupingSize;
+	
+	private static final int BUFFER_SIZE = 65536;
 	
 	public CSVExportWorker(Registry registry, File file) {
 		this.registry = registry;
@@ -40,6 +51,13 @@ public class CSVExportWorker extends SwingWorker<Void, Void> {
 		numberFormat = new DecimalFormat();
 		numberFormat.setMinimumFractionDigits(2);
 		numberFormat.setMaximumFractionDigits(2);
+		
+		DecimalFormatSymbols symbols = numberFormat.getDecimalFormatSymbols();
+		buffer = new StringBuilder();
+		groupingSeparator = symbols.getGroupingSeparator();
+		decimalSeparator = symbols.getDecimalSeparator();
+		groupingSize = numberFormat.isGroupingUsed() ?
+				numberFormat.getGroupingSize() : 0;
 	}
 	
 	protected Void doInBackground() throws Exception {
@@ -68,59 +86,112 @@ public class CSVExportWorker extends SwingWorker<Void, Void> {
 		
 		DataSource dataSource = registry.getDataSource();
 		Period period = registry.getPeriod();
+		final int documentCount = dataSource.getDocumentDAO(
+				sess).getCountByPeriodId(period.getId(), 1);
 		
-		List<Document> documents = dataSource.getDocumentDAO(
-				sess).getByPeriodId(period.getId(), 1);
-		
-		final HashMap<Integer, Document> documentMap =
-			new HashMap<Integer, Document>();
-		
-		for (Document document : documents) {
-			documentMap.put(document.getId(), document);
-		}
-		
-		documents = null;
+		FileChannel channel = new FileOutputStream(file).getChannel();
+		CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
 		
-		final CSVWriter writer = new CSVWriter(new FileWriter(file));
-		writer.writeField("Tosite");
-		writer.writeField("Päivämäärä");
-		writer.writeField("Nro");
-		writer.writeField("Tili");
-		writer.writeField("Debet");
-		writer.writeField("Kredit");
-		writer.writeField("Selite");
-		writer.writeLine();
+		final CSVWriter writer = new CSVWriter(new BufferedWriter(
+				Channels.newWriter(channel, encoder, BUFFER_SIZE),
+				BUFFER_SIZE));
 		
-		dataSource.getEntryDAO(sess).getByPeriodId(period.getId(),
-			EntryDAO.ORDER_BY_DOCUMENT_NUMBER, new DTOCallback<Entry>() {
-			public void process(Entry entry) {
-				Document document = documentMap.get(entry.getDocumentId());
-				if (document == null) return;
-				Account account = registry.getAccountById(entry.getAccountId());
+		try {
+			writer.writeField("Tosite");
+			writer.writeField("Päivämäärä");
+			writer.writeField("Nro");
+			writer.writeField("Tili");
+			writer.writeField("Debet");
+			writer.writeField("Kredit");
+			writer.writeField("Selite");
+			writer.writeLine();
+			
+			/* Tositteen numero ja päivämäärä muotoillaan vain kerran
+			 * tositetta kohti. */
+			dataSource.getEntryDAO(sess).getByPeriodIdWithDocuments(period.getId(), 1,
+				new DocumentEntryCallback() {
+				private Document document;
+				private String number;
+				private String date;
+				private int documentIndex;
 				
-				try {
-					writer.writeField(Integer.toString(document.getNumber()));
-					writer.writeField(dateFormat.format(document.getDate()));
-					writer.writeField(account.getNumber());
-					writer.writeField(account.getName());
-					writer.writeField(entry.isDebit() ?
-							numberFormat.format(entry.getAmount()) : "");
-					writer.writeField(!entry.isDebit() ?
-							numberFormat.format(entry.getAmount()) : "");
-					writer.writeField(entry.getDescription());
-					writer.writeLine();
-				}
-				catch (IOException e) {
-					exception = e;
+				public void process(Document document, Entry entry) {
+					if (exception != null || isCancelled()) {
+						return;
+					}
+					
+					if (document != this.document) {
+						this.document = document;
+						number = Integer.toString(document.getNumber());
+						date = dateFormat.format(document.getDate());
+						setProgress(Math.min(99, documentIndex++ * 100 / documentCount));
+					}
+					
+					Account account = registry.getAccountById(entry.getAccountId());
+					if (account == null) return;
+					
+					try {
+						String amount = formatAmount(entry.getAmount());
+						writer.writeField(number);
+						writer.writeField(date);
+						writer.writeField(account.getNumber());
+						writer.writeField(account.getName());
+						writer.writeField(entry.isDebit() ? amount : "");
+						writer.writeField(!entry.isDebit() ? amount : "");
+						writer.writeField(entry.getDescription());
+						writer.writeLine();
+					}
+					catch (IOException e) {
+						exception = e;
+					}
 				}
-			}
-		});
-		
-		writer.close();
+			});
+		}
+		finally {
+			writer.close();
+		}
 		
 		if (exception != null)
 			throw exception;
 		
 		setProgress(100);
 	}
+	
+	/**
+	 * Muotoilee rahamäärän. Kahden desimaalin tarkkuudella annettu
+	 * rahamäärä muotoillaan senttimääränä ilman <code>DecimalFormat</code>ia,
+	 * mutta samoilla erotinmerkeillä.
+	 */
+	private String formatAmount(BigDecimal amount) {
+		if (amount.scale() < 0 || amount.scale() > 2 || amount.signum() < 0 ||
+				amount.precision() > 18) {
+			return numberFormat.format(amount);
+		}
+		
+		long cents = amount.unscaledValue().longValue();
+		
+		if (amount.scale() < 2) {
+			cents *= (amount.scale() == 0) ? 100 : 10;
+		}
+		
+		String units = Long.toString(cents / 100);
+		int fraction = (int)(cents % 100);
+		int length = units.length();
+		buffer.setLength(0);
+		
+		for (int i = 0; i < length; i++) {
+			if (groupingSize > 0 && i > 0 && (length - i) % groupingSize == 0) {
+				buffer.append(groupingSeparator);
+			}
+			
+			buffer.append(units.charAt(i));
+		}
+		
+		buffer.append(decimalSeparator);
+		buffer.append((char)('0' + fraction / 10));
+		buffer.append((char)('0' + fraction % 10));
+		return buffer.toString();
+	}
 }
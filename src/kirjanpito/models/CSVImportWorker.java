@@ -0,0 +1,492 @@
+package kirjanpito.models;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingWorker;
+
+import kirjanpito.db.Account;
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.DataSource;
+import kirjanpito.db.Document;
+import kirjanpito.db.DocumentDAO;
+import kirjanpito.db.DocumentType;
+import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
+import kirjanpito.db.Period;
+import kirjanpito.db.Session;
+import kirjanpito.ui.Kirjanpito;
+import kirjanpito.util.CSVReader;
+import kirjanpito.util.Registry;
+
+/**
+ * <code>SwingWorker</code>, joka tuo tositteet CSV-tiedostosta.
+ * Tiedoston sarakkeet ovat samat kuin <code>CSVExportWorker</code>in
+ * luomassa tiedostossa: tosite, päivämäärä, tilinumero, tilin nimi,
+ * debet, kredit ja selite. Peräkkäiset rivit, joilla on sama
+ * tositetunnus, muodostavat yhden tositteen.
+ *
+ * <p>Koko tiedosto tarkistetaan ennen kuin tietokantaan kirjoitetaan
+ * mitään. Tositteille annetaan numerot tositelajin numeroväliltä
+ * viimeisen käytössä olevan numeron jälkeen. Tositteet tallennetaan
+ * yhdessä transaktiossa, ja viennit lisätään eräajona
+ * <code>BATCH_SIZE</code> tositteen välein. Kokeiluajossa tiedosto
+ * ainoastaan tarkistetaan.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class CSVImportWorker extends SwingWorker<Integer, Void> {
+	private Registry registry;
+	private DocumentType documentType;
+	private File file;
+	private boolean dryRun;
+	private List<ImportedDocument> documents;
+	private List<String> errors;
+	private int errorCount;
+	private int entryCount;
+	private int firstNumber;
+	private int lastNumber;
+	private Logger logger = Logger.getLogger(Kirjanpito.LOGGER_NAME);
+
+	private static final int BATCH_SIZE = 1000;
+	private static final int MAX_ERRORS = 20;
+
+	/**
+	 * Luo <code>CSVImportWorker</code>-olion.
+	 *
+	 * @param registry rekisteri
+	 * @param documentType tositelaji, jonka numeroväliltä tositenumerot
+	 * annetaan, tai <code>null</code>
+	 * @param file CSV-tiedosto
+	 * @param dryRun <code>true</code>, jos tiedosto ainoastaan tarkistetaan
+	 */
+	public CSVImportWorker(Registry registry, DocumentType documentType,
+			File file, boolean dryRun) {
+
+		this.registry = registry;
+		this.documentType = documentType;
+		this.file = file;
+		this.dryRun = dryRun;
+		this.errors = new ArrayList<String>();
+	}
+
+	/**
+	 * Palauttaa CSV-tiedoston.
+	 *
+	 * @return CSV-tiedosto
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Ilmoittaa, tarkistetaanko tiedosto ainoastaan.
+	 *
+	 * @return <code>true</code>, jos kyseessä on kokeiluajo
+	 */
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * Palauttaa tarkistuksessa löytyneet virheet. Virheitä
+	 * palautetaan enintään <code>MAX_ERRORS</code>.
+	 *
+	 * @return virheilmoitukset
+	 */
+	public List<String> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Palauttaa löytyneiden virheiden kokonaismäärän.
+	 *
+	 * @return virheiden lukumäärä
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Palauttaa tiedostossa olevien vientien lukumäärän.
+	 *
+	 * @return vientien lukumäärä
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/**
+	 * Palauttaa ensimmäisen tuotavalle tositteelle annettavan numeron.
+	 *
+	 * @return tositenumero
+	 */
+	public int getFirstNumber() {
+		return firstNumber;
+	}
+
+	/**
+	 * Palauttaa viimeisen tuotavalle tositteelle annettavan numeron.
+	 *
+	 * @return tositenumero
+	 */
+	public int getLastNumber() {
+		return lastNumber;
+	}
+
+	/**
+	 * Tarkistaa tiedoston ja tallentaa tositteet, jos kyseessä ei
+	 * ole kokeiluajo.
+	 *
+	 * @return tositteiden lukumäärä tai 0, jos tiedostossa on virheitä
+	 */
+	protected Integer doInBackground() throws Exception {
+		Period period = registry.getPeriod();
+
+		if (period.isLocked()) {
+			addError(0, "Tilikausi on lukittu");
+			return 0;
+		}
+
+		readFile(period);
+
+		if (errorCount > 0 || isCancelled()) {
+			return 0;
+		}
+
+		DataSource dataSource = registry.getDataSource();
+		Session sess = null;
+
+		if (!dryRun) {
+			dataSource.backup();
+		}
+
+		try {
+			sess = dataSource.openSession();
+
+			if (!assignNumbers(sess, period) || dryRun) {
+				return 0;
+			}
+
+			if (!save(sess)) {
+				sess.rollback();
+				return 0;
+			}
+
+			sess.commit();
+		}
+		catch (DataAccessException e) {
+			logger.log(Level.SEVERE, "Tositteiden tuonti epäonnistui", e);
+			if (sess != null) sess.rollback();
+			throw e;
+		}
+		finally {
+			if (sess != null) sess.close();
+		}
+
+		setProgress(100);
+		return documents.size();
+	}
+
+	/**
+	 * Lukee tositteet tiedostosta ja tarkistaa ne.
+	 */
+	private void readFile(Period period) throws IOException {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("d.M.yyyy");
+		dateFormat.setLenient(false);
+		SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM");
+		DecimalFormat numberFormat = new DecimalFormat();
+		numberFormat.setParseBigDecimal(true);
+
+		String[] lockedMonths = registry.getSettings().getProperty(
+				"locked/" + period.getId(), "").split(",");
+		Arrays.sort(lockedMonths);
+
+		/* Tilit haetaan numeron perusteella, joten rakennetaan
+		 * hakutaulu, ettei tilikarttaa käydä läpi jokaisella rivillä. */
+		HashMap<String, Account> accounts = new HashMap<String, Account>();
+
+		for (Account account : registry.getAccounts()) {
+			accounts.put(account.getNumber(), account);
+		}
+
+		HashSet<String> keys = new HashSet<String>();
+		documents = new ArrayList<ImportedDocument>();
+		entryCount = 0;
+		ImportedDocument document = null;
+		String key = null;
+		String[] fields;
+		int line = 0;
+
+		BufferedReader input = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file)));
+		CSVReader reader = new CSVReader(input);
+
+		try {
+			while ((fields = reader.readLine()) != null) {
+				line++;
+
+				if (isCancelled()) {
+					return;
+				}
+
+				/* Ohitetaan otsikkorivi ja tyhjät rivit. */
+				if ((line == 1 && fields[0].equals("Tosite")) ||
+						(fields.length == 1 && fields[0].length() == 0)) {
+					continue;
+				}
+
+				if (fields.length != 7) {
+					addError(line, "Sarakkeiden lukumäärä on virheellinen");
+					continue;
+				}
+
+				if (fields[0].length() == 0) {
+					addError(line, "Tositetunnus puuttuu");
+					continue;
+				}
+
+				Date date = parseDate(dateFormat, fields[1]);
+
+				if (date == null) {
+					addError(line, "Päivämäärä on virheellinen: " + fields[1]);
+					if (fields[0].equals(key)) document.valid = false;
+					continue;
+				}
+
+				if (!fields[0].equals(key)) {
+					if (document != null) {
+						validate(document);
+					}
+
+					key = fields[0];
+
+					if (!keys.add(key)) {
+						addError(line, "Tosite " + key + " esiintyy tiedostossa useaan kertaan");
+					}
+
+					document = new ImportedDocument(line, key, date);
+					documents.add(document);
+
+					if (date.before(period.getStartDate()) ||
+							date.after(period.getEndDate())) {
+						addError(line, "Päivämäärä ei kuulu tilikaudelle: " + fields[1]);
+					}
+					else if (Arrays.binarySearch(lockedMonths,
+							monthFormat.format(date)) >= 0) {
+						addError(line, "Kuukausi on lukittu: " + fields[1]);
+					}
+				}
+				else if (!date.equals(document.date)) {
+					addError(line, "Tositteen " + key + " riveillä on eri päivämäärät");
+				}
+
+				Account account = accounts.get(fields[2]);
+
+				if (account == null) {
+					addError(line, "Tiliä " + fields[2] + " ei löydy tilikartasta");
+					document.valid = false;
+					continue;
+				}
+
+				boolean debit = fields[4].length() > 0;
+
+				if (debit == (fields[5].length() > 0)) {
+					addError(line, "Rivillä on oltava joko debet- tai kredit-summa");
+					document.valid = false;
+					continue;
+				}
+
+				BigDecimal amount = parseAmount(numberFormat, debit ? fields[4] : fields[5]);
+
+				if (amount == null) {
+					addError(line, "Summa on virheellinen: " + (debit ? fields[4] : fields[5]));
+					document.valid = false;
+					continue;
+				}
+
+				Entry entry = new Entry();
+				entry.setAccountId(account.getId());
+				entry.setDebit(debit);
+				entry.setAmount(amount);
+				entry.setDescription(fields[6]);
+				entry.setRowNumber(document.entries.size());
+				document.add(entry);
+				entryCount++;
+			}
+		}
+		finally {
+			input.close();
+		}
+
+		if (document != null) {
+			validate(document);
+		}
+
+		if (documents.isEmpty()) {
+			addError(0, "Tiedostossa ei ole tositteita");
+		}
+	}
+
+	/**
+	 * Tarkistaa, että tositteen debet- ja kredit-vientien summat
+	 * ovat yhtä suuret. Summia ei verrata, jos jokin tositteen
+	 * riveistä on virheellinen.
+	 */
+	private void validate(ImportedDocument document) {
+		if (document.valid && document.debitTotal.compareTo(document.creditTotal) != 0) {
+			addError(document.line, String.format(
+					"Tositteen %s debet- ja kredit-vientien summat eroavat (%s ≠ %s)",
+					document.key, document.debitTotal.toPlainString(),
+					document.creditTotal.toPlainString()));
+		}
+	}
+
+	/**
+	 * Hakee ensimmäisen vapaan tositenumeron ja tarkistaa, että
+	 * kaikki tositteet mahtuvat tositelajin numerovälille.
+	 */
+	private boolean assignNumbers(Session sess, Period period)
+		throws DataAccessException {
+
+		int numberStart = 1;
+		int numberEnd = Integer.MAX_VALUE;
+
+		if (documentType != null) {
+			numberStart = documentType.getNumberStart();
+			numberEnd = documentType.getNumberEnd();
+		}
+
+		firstNumber = registry.getDataSource().getDocumentDAO(sess).create(
+				period.getId(), numberStart, numberEnd).getNumber();
+		lastNumber = firstNumber + documents.size() - 1;
+
+		if (lastNumber > numberEnd || lastNumber < firstNumber) {
+			addError(0, String.format("Tositelajin numeroväli %d–%d ei riitä " +
+					"%d tositteelle. Vapaita numeroita on %d.",
+					numberStart, numberEnd, documents.size(),
+					Math.max(0, numberEnd - firstNumber + 1)));
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Tallentaa tositteet. Viennit tallennetaan eräajona
+	 * <code>BATCH_SIZE</code> tositteen välein.
+	 *
+	 * @return <code>false</code>, jos työ keskeytettiin
+	 */
+	private boolean save(Session sess) throws DataAccessException {
+		DataSource dataSource = registry.getDataSource();
+		DocumentDAO documentDAO = dataSource.getDocumentDAO(sess);
+		EntryDAO entryDAO = dataSource.getEntryDAO(sess);
+		int periodId = registry.getPeriod().getId();
+		List<Entry> batch = new ArrayList<Entry>();
+		int number = firstNumber;
+		int index = 0;
+
+		for (ImportedDocument imported : documents) {
+			Document document = new Document();
+			document.setPeriodId(periodId);
+			document.setNumber(number++);
+			document.setDate(imported.date);
+			documentDAO.save(document);
+
+			for (Entry entry : imported.entries) {
+				entry.setDocumentId(document.getId());
+				batch.add(entry);
+			}
+
+			if (++index % BATCH_SIZE == 0) {
+				entryDAO.saveAll(batch);
+				batch.clear();
+
+				if (isCancelled()) {
+					return false;
+				}
+
+				setProgress(Math.min(99, index * 100 / documents.size()));
+			}
+		}
+
+		entryDAO.saveAll(batch);
+		return !isCancelled();
+	}
+
+	private Date parseDate(SimpleDateFormat format, String text) {
+		ParsePosition pos = new ParsePosition(0);
+		Date date = format.parse(text, pos);
+		return (pos.getIndex() == text.length()) ? date : null;
+	}
+
+	private BigDecimal parseAmount(DecimalFormat format, String text) {
+		ParsePosition pos = new ParsePosition(0);
+		BigDecimal amount = (BigDecimal)format.parse(text, pos);
+
+		if (amount == null || pos.getIndex() != text.length()) {
+			return null;
+		}
+
+		return amount.setScale(2, RoundingMode.HALF_UP);
+	}
+
+	private void addError(int line, String message) {
+		if (errors.size() < MAX_ERRORS) {
+			errors.add((line > 0) ? "Rivi " + line + ": " + message : message);
+		}
+
+		errorCount++;
+	}
+
+	/**
+	 * Tiedostosta luettu tosite, jolle ei ole vielä annettu numeroa.
+	 */
+	private static class ImportedDocument {
+		public int line;
+		public String key;
+		public Date date;
+		public List<Entry> entries;
+		public BigDecimal debitTotal;
+		public BigDecimal creditTotal;
+		public boolean valid;
+
+		public ImportedDocument(int line, String key, Date date) {
+			this.line = line;
+			this.key = key;
+			this.date = date;
+			this.entries = new ArrayList<Entry>(4);
+			this.debitTotal = BigDecimal.ZERO;
+			this.creditTotal = BigDecimal.ZERO;
+			this.valid = true;
+		}
+
+		public void add(Entry entry) {
+			entries.add(entry);
+
+			if (entry.isDebit()) {
+				debitTotal = debitTotal.add(entry.getAmount());
+			}
+			else {
+				creditTotal = creditTotal.add(entry.getAmount());
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package kirjanpito.models;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingWorker;
+
+import kirjanpito.db.DTOCallback;
+import kirjanpito.db.DataSource;
+import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
+import kirjanpito.db.Period;
+import kirjanpito.db.Session;
+import kirjanpito.ui.Kirjanpito;
+import kirjanpito.util.DescriptionIndex;
+
+/**
+ * <code>SwingWorker</code>, joka rakentaa vientien selitteiden
+ * hakemiston tilikauden vienneistä taustalla. Hakemisto otetaan
+ * käyttöön, kun kaikki viennit on käyty läpi. Jos työ keskeytetään,
+ * vientien hakeminen lopetetaan heti.
+ *
+ * @author Tommi Helineva
+ */
+public class DescriptionIndexWorker extends SwingWorker<Void, Void> {
+	private DataSource dataSource;
+	private Period period;
+	private DescriptionIndex index;
+	private DescriptionIndex.Builder builder;
+	private Logger logger = Logger.getLogger(Kirjanpito.LOGGER_NAME);
+
+	public DescriptionIndexWorker(DataSource dataSource, Period period,
+			DescriptionIndex index) {
+
+		this.dataSource = dataSource;
+		this.period = period;
+		this.index = index;
+		this.builder = index.beginRebuild();
+	}
+
+	@Override
+	protected Void doInBackground() throws Exception {
+		Session sess = null;
+
+		try {
+			sess = dataSource.openSession();
+			dataSource.getEntryDAO(sess).getByPeriodId(period.getId(),
+					EntryDAO.ORDER_BY_DOCUMENT_NUMBER, new DTOCallback<Entry>() {
+						public void process(Entry obj) {
+							/* Poikkeus keskeyttää kyselyn. Istunnon
+							 * sulkeminen sulkee avoimen kyselyn. */
+							if (isCancelled()) {
+								throw new CancellationException();
+							}
+
+							builder.add(obj);
+						}
+					});
+		}
+		finally {
+			if (sess != null) sess.close();
+		}
+
+		return null;
+	}
+
+	@Override
+	protected void done() {
+		if (isCancelled()) {
+			index.cancelRebuild(builder);
+			return;
+		}
+
+		try {
+			get();
+			index.finishRebuild(builder);
+		}
+		catch (InterruptedException e) {
+			index.cancelRebuild(builder);
+		}
+		catch (ExecutionException e) {
+			logger.log(Level.WARNING, "Selitehakemiston rakentaminen epäonnistui", e.getCause());
+			index.cancelRebuild(builder);
+		}
+	}
+}
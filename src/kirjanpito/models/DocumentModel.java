@@ -6,12 +6,15 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountTotal;
 import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
@@ -28,13 +31,13 @@ import kirjanpito.db.Settings;
 import kirjanpito.util.AccountBalances;
 import kirjanpito.util.AppSettings;
 import kirjanpito.util.AutoCompleteSupport;
+import kirjanpito.util.DescriptionIndex;
 import kirjanpito.util.DocumentRecordSet;
 import kirjanpito.util.DummyAutoCompleteSupport;
 import kirjanpito.util.EntryTemplateHelper;
 import kirjanpito.util.FilteredDocumentRecordSet;
 import kirjanpito.util.Registry;
 import kirjanpito.util.SearchRecordSet;
-import kirjanpito.util.TreeMapAutoCompleteSupport;
 import kirjanpito.util.VATUtil;
 
 /**
@@ -50,12 +53,14 @@ public class DocumentModel {
 	private ArrayList<BigDecimal> amounts;
 	private ArrayList<BigDecimal> vatAmounts;
 	private HashSet<Entry> deletedEntries;
+	private IdentityHashMap<Entry, Entry> storedEntries;
 	private int documentTypeIndex;
 	private int documentCountTotal;
 	private boolean changed;
 	private boolean editable;
 	private boolean autoCompleteEnabled;
 	private AutoCompleteSupport autoCompleteSupport;
+	private DescriptionIndexWorker descriptionIndexWorker;
 	private SimpleDateFormat monthFormat;
 	private String[] lockedMonths;
 
@@ -67,6 +72,7 @@ public class DocumentModel {
 	public DocumentModel(Registry registry) {
 		this.registry = registry;
 		deletedEntries = new HashSet<Entry>();
+		storedEntries = new IdentityHashMap<Entry, Entry>();
 		amounts = new ArrayList<BigDecimal>();
 		vatAmounts = new ArrayList<BigDecimal>();
 		documentTypeIndex = -1;
@@ -95,13 +101,26 @@ public class DocumentModel {
 			url = buildDefaultJDBCURL();
 		}
 
-		registry.setDataSource(DataSourceFactory.create(url, username, password));
+		int maxConnections = settings.getInt("database.pool-size", 4);
+		int idleTimeout = settings.getInt("database.pool-idle-timeout", 300);
+		int backupCount = settings.getInt("database.backup-count", 0);
+		int backupInterval = settings.getInt("database.backup-interval", 0);
+		boolean compressBackups = settings.getBoolean("database.backup-compress", false);
+		registry.setDataSource(DataSourceFactory.create(url, username, password,
+				maxConnections, idleTimeout, backupCount, backupInterval,
+				compressBackups));
 	}
 
 	/**
 	 * Sulkee tietokantayhteyden.
 	 */
 	public void closeDataSource() {
+		cancelDescriptionIndexWorker();
+
+		if (autoCompleteSupport != null) {
+			autoCompleteSupport.clear();
+		}
+
 		registry.clear();
 		recordSet = null;
 		document = null;
@@ -109,6 +128,7 @@ public class DocumentModel {
 		amounts.clear();
 		vatAmounts.clear();
 		deletedEntries.clear();
+		storedEntries.clear();
 		documentCountTotal = 0;
 		documentTypeIndex = -1;
 		editable = false;
@@ -183,6 +203,7 @@ public class DocumentModel {
 
 			Period period = registry.getPeriod();
 			loadLockedMonths();
+			buildDescriptionIndex();
 			documentCountTotal = dataSource.getDocumentDAO(
 					sess).getCountByPeriodId(period.getId(), 1);
 
@@ -215,6 +236,20 @@ public class DocumentModel {
 	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
 	 */
 	public void fetchDocuments(int position) throws DataAccessException {
+		fetchDocuments(position, -1);
+	}
+
+	/**
+	 * Hakee valitun tositelajin tositteet ja siirtyy tositteeseen,
+	 * jonka järjestysnumero on <code>position</code> ja tositenumero
+	 * <code>number</code>. Jos <code>number</code> on -1, tosite
+	 * haetaan pelkän järjestysnumeron perusteella.
+	 *
+	 * @param position tositteen järjestysnumero
+	 * @param number tositenumero tai -1
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void fetchDocuments(int position, int number) throws DataAccessException {
 		DataSource dataSource = registry.getDataSource();
 		Period period = registry.getPeriod();
 		Session sess = null;
@@ -242,7 +277,7 @@ public class DocumentModel {
 			recordSet.open(sess);
 
 			if (position >= 0 && position < recordSet.getCount()) {
-				goToDocument(position);
+				goToDocument(position, number);
 			}
 			else if (recordSet.getCount() > 0) {
 				fetchDocument();
@@ -444,6 +479,26 @@ public class DocumentModel {
 		}
 	}
 
+	/**
+	 * Siirtyy tositteeseen, jonka järjestysnumero on <code>index</code>
+	 * ja tositenumero <code>number</code>. Tosite haetaan tositenumeron
+	 * perusteella. Jos <code>number</code> on -1, toimii kuten
+	 * <code>goToDocument(int)</code>.
+	 *
+	 * @param index tositteen järjestysnumero
+	 * @param number tositenumero tai -1
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void goToDocument(int index, int number) throws DataAccessException {
+		if (number < 0 || index < 0 || recordSet.getCount() == 0) {
+			goToDocument(index);
+		}
+		else {
+			recordSet.move(index, number);
+			fetchDocument();
+		}
+	}
+
 	/**
 	 * Luo uuden tositteen.
 	 *
@@ -492,6 +547,7 @@ public class DocumentModel {
 		}
 
 		entries = new ArrayList<Entry>();
+		storedEntries.clear();
 		amounts.clear();
 		vatAmounts.clear();
 	}
@@ -524,14 +580,19 @@ public class DocumentModel {
 				entryDAO = dataSource.getEntryDAO(sess);
 
 				/* Poistetaan tositteeseen kuuluvat viennit. */
+				ArrayList<Entry> deleted = new ArrayList<Entry>();
+
 				for (Entry entry : entries) {
 					if (entry.getId() > 0) {
-						entryDAO.delete(entry.getId());
+						deleted.add(entry);
 					}
 				}
 
+				entryDAO.deleteAll(deleted);
+
 				dataSource.getDocumentDAO(sess).delete(document.getId());
 				sess.commit();
+				autoCompleteSupport.removeEntries(getStoredEntries(deleted));
 				documentCountTotal--;
 				recordSet.remove();
 
@@ -568,24 +629,41 @@ public class DocumentModel {
 		}
 
 		boolean newDocument = (document.getId() == 0);
+		ArrayList<Entry> addedEntries = new ArrayList<Entry>();
+		ArrayList<Entry> removedEntries = getStoredEntries(deletedEntries);
 		Session sess = null;
 		EntryDAO entryDAO;
 
+		/* Muokatun viennin vanha selite poistetaan hakemistosta
+		 * ja uusi lisätään. Jos vientiä ei ole tallennettu muistiin
+		 * (esim. edellinen tallennus epäonnistui tunnisteen asettamisen
+		 * jälkeen), vienti käsitellään uutena. */
+		for (Entry entry : entries) {
+			Entry stored = storedEntries.get(entry);
+
+			if (entry.getId() == 0 || stored == null) {
+				addedEntries.add(entry);
+			}
+			else if (stored.getAccountId() != entry.getAccountId() ||
+					!stored.getDescription().equals(entry.getDescription())) {
+				removedEntries.add(stored);
+				addedEntries.add(entry);
+			}
+		}
+
 		try {
 			sess = dataSource.openSession();
 			entryDAO = dataSource.getEntryDAO(sess);
 
-			for (Entry entry : deletedEntries) {
-				entryDAO.delete(entry.getId());
-			}
-
+			entryDAO.deleteAll(new ArrayList<Entry>(deletedEntries));
 			dataSource.getDocumentDAO(sess).save(document);
 
 			for (Entry entry : entries) {
 				entry.setDocumentId(document.getId());
-				entryDAO.save(entry);
 			}
 
+			entryDAO.saveAll(entries);
+
 			sess.commit();
 		}
 		catch (DataAccessException e) {
@@ -604,7 +682,41 @@ public class DocumentModel {
 		recordSet.setDocument(document);
 		recordSet.setEntries(entries);
 		deletedEntries.clear();
+		rememberStoredEntries();
 		changed = false;
+
+		autoCompleteSupport.removeEntries(removedEntries);
+		autoCompleteSupport.addEntries(addedEntries);
+	}
+
+	/**
+	 * Tallentaa kopiot vienneistä sellaisina kuin ne ovat
+	 * tietokannassa. Kopioiden avulla selitehakemistosta poistetaan
+	 * tallennettu selite, vaikka vientiä olisi muokattu.
+	 */
+	private void rememberStoredEntries() {
+		storedEntries.clear();
+
+		for (Entry entry : entries) {
+			if (entry.getId() > 0) {
+				storedEntries.put(entry, entry.clone());
+			}
+		}
+	}
+
+	/**
+	 * Palauttaa vientien tallennetut kopiot. Jos viennistä ei ole
+	 * kopiota, palautetaan vienti itse.
+	 */
+	private ArrayList<Entry> getStoredEntries(Collection<Entry> list) {
+		ArrayList<Entry> result = new ArrayList<Entry>(list.size());
+
+		for (Entry entry : list) {
+			Entry stored = storedEntries.get(entry);
+			result.add((stored == null) ? entry : stored);
+		}
+
+		return result;
 	}
 
 	/**
@@ -879,22 +991,25 @@ public class DocumentModel {
 	 * @return <code>false</code>, jos ALV-velkatiliä ei ole määritetty
 	 */
 	public boolean createVATDocument() throws DataAccessException {
-		final AccountBalances balances = new AccountBalances(registry.getAccounts());
+		final AccountBalances balances = new AccountBalances();
 		DataSource dataSource = registry.getDataSource();
 		Period period = registry.getPeriod();
 		Session sess = null;
 
+		for (Account account : registry.getAccounts()) {
+			if (account.getVatCode() == 2 || account.getVatCode() == 3) {
+				balances.addAccount(account);
+			}
+		}
+
 		try {
 			sess = dataSource.openSession();
-			/* Lasketaan ALV-tilien saldot. */
-			dataSource.getEntryDAO(sess).getByPeriodId(period.getId(), EntryDAO.ORDER_BY_DOCUMENT_NUMBER,
-				new DTOCallback<Entry>() {
-					public void process(Entry entry) {
-						Account account = registry.getAccountById(entry.getAccountId());
-
-						if (account.getVatCode() == 2 || account.getVatCode() == 3) {
-							balances.addEntry(entry);
-						}
+			/* Lasketaan ALV-tilien saldot koko tilikauden vienneistä
+			 * päivämäärästä riippumatta. */
+			dataSource.getAccountBalanceDAO(sess).getByPeriodId(period.getId(),
+				new DTOCallback<AccountTotal>() {
+					public void process(AccountTotal obj) {
+						balances.addTotal(obj);
 					}
 				});
 			createDocument(sess);
@@ -1128,13 +1243,45 @@ public class DocumentModel {
 	}
 
 	public void setAutoCompleteEnabled(boolean enabled) {
+		/* Rakennettu hakemisto säilytetään. */
+		if (enabled && autoCompleteSupport instanceof DescriptionIndex) {
+			autoCompleteEnabled = true;
+			return;
+		}
+
 		autoCompleteEnabled = enabled;
-		autoCompleteSupport = enabled ? new TreeMapAutoCompleteSupport() :
+		autoCompleteSupport = enabled ? new DescriptionIndex() :
 			new DummyAutoCompleteSupport();
 
 		if (recordSet != null) {
 			recordSet.setAutoCompleteSupport(autoCompleteSupport);
 		}
+
+		if (registry.getPeriod() != null) {
+			buildDescriptionIndex();
+		}
+	}
+
+	/**
+	 * Rakentaa vientien selitteiden hakemiston taustalla, jos
+	 * selitteiden täydennys on käytössä.
+	 */
+	private void buildDescriptionIndex() {
+		cancelDescriptionIndexWorker();
+
+		if (autoCompleteSupport instanceof DescriptionIndex) {
+			descriptionIndexWorker = new DescriptionIndexWorker(
+					registry.getDataSource(), registry.getPeriod(),
+					(DescriptionIndex)autoCompleteSupport);
+			descriptionIndexWorker.execute();
+		}
+	}
+
+	private void cancelDescriptionIndexWorker() {
+		if (descriptionIndexWorker != null) {
+			descriptionIndexWorker.cancel(false);
+			descriptionIndexWorker = null;
+		}
 	}
 
 	/**
@@ -1272,6 +1419,8 @@ public class DocumentModel {
 		if (entries == null)
 			entries = new ArrayList<Entry>();
 
+		rememberStoredEntries();
+
 		amounts.clear();
 		vatAmounts.clear();
 
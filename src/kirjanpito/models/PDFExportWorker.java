@@ -0,0 +1,41 @@
+package kirjanpito.models;
+
+import java.io.File;
+
+import javax.swing.SwingWorker;
+
+/**
+ * <code>SwingWorker</code>, joka tallentaa tulosteen PDF-tiedostoon
+ * ja päivittää edistymistilannetta sivu kerrallaan. Kun tallentaminen
+ * päättyy tai keskeytyy, lähetetään <code>finished</code>-ominaisuuden
+ * muutostapahtuma. Keskeytetty työ voi vielä käyttää tulostetta,
+ * kun tila on jo <code>DONE</code>.
+ *
+ * @author Tommi Helineva
+ */
+public class PDFExportWorker extends SwingWorker<Void, Void>
+	implements PrintPreviewModel.ProgressListener {
+
+	private PrintPreviewModel model;
+	private File file;
+
+	public PDFExportWorker(PrintPreviewModel model, File file) {
+		this.model = model;
+		this.file = file;
+	}
+
+	protected Void doInBackground() throws Exception {
+		try {
+			model.writePDF(file, this);
+		}
+		finally {
+			firePropertyChange("finished", false, true);
+		}
+		
+		return null;
+	}
+
+	public void pagesWritten(int pagesWritten, int pageCount) {
+		setProgress(pagesWritten * 100 / pageCount);
+	}
+}
@@ -0,0 +1,61 @@
+package kirjanpito.models;
+
+import javax.swing.SwingWorker;
+
+import kirjanpito.reports.PrintModel;
+import kirjanpito.util.ProgressMonitor;
+
+/**
+ * <code>SwingWorker</code>, joka hakee tulosteen tiedot tietokannasta
+ * ja päivittää edistymistilannetta. Malli avaa oman istuntonsa, joten
+ * useaa tulostetta voidaan luoda samanaikaisesti. Kun työ keskeytetään,
+ * malli lopettaa tietojen käsittelyn, ja sen tiedot jäävät
+ * keskeneräisiksi.
+ *
+ * <p>Rajoitukset: SQLite-tietokannassa kaikki istunnot käyttävät samaa
+ * tietokantayhteyttä, joten tuloste näkee myös muiden istuntojen
+ * tallentamattomat muutokset. Malli lukee tilit rekisteristä
+ * (<code>Registry.getAccounts()</code> ja <code>getAccountById()</code>)
+ * taustasäikeessä, joten tilikarttaa ei saa muokata, kun tulosteen
+ * luominen on kesken. <code>DocumentFrame</code> estää tilikartta- ja
+ * ALV-kantojen muutosikkunoiden avaamisen tänä aikana.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class PrintModelWorker extends SwingWorker<Void, Void>
+	implements ProgressMonitor {
+
+	private PrintModel printModel;
+
+	public PrintModelWorker(PrintModel printModel) {
+		this.printModel = printModel;
+	}
+
+	/**
+	 * Palauttaa tulosteen mallin.
+	 *
+	 * @return tulosteen malli
+	 */
+	public PrintModel getPrintModel() {
+		return printModel;
+	}
+
+	protected Void doInBackground() throws Exception {
+		printModel.setProgressMonitor(this);
+
+		try {
+			printModel.run();
+		}
+		finally {
+			printModel.setProgressMonitor(ProgressMonitor.NONE);
+		}
+
+		return null;
+	}
+
+	public void setProgress(int value, int maximum) {
+		if (maximum > 0) {
+			setProgress((int)Math.min(100, value * 100L / maximum));
+		}
+	}
+}
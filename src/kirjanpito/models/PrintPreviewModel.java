@@ -2,11 +2,21 @@ package kirjanpito.models;
 
 import java.awt.print.PageFormat;
 import java.awt.print.Paper;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.print.Doc;
 import javax.print.DocFlavor;
@@ -28,6 +38,7 @@ import kirjanpito.reports.PDFCanvas;
 import kirjanpito.reports.Print;
 import kirjanpito.reports.PrintCanvas;
 import kirjanpito.reports.PrintModel;
+import kirjanpito.reports.RecordingCanvas;
 import kirjanpito.ui.Kirjanpito;
 import kirjanpito.util.AppSettings;
 import kirjanpito.util.CSVWriter;
@@ -36,6 +47,9 @@ import kirjanpito.util.ODFSpreadsheet;
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.PageSize;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
 import com.lowagie.text.pdf.PdfWriter;
 
 /**
@@ -49,6 +63,9 @@ public class PrintPreviewModel {
 	private Print print;
 	private PrintModel printModel;
 	private int pageIndex;
+	
+	/** Rinnakkain muunnettavan osan sivujen lukumäärä. */
+	private static final int PAGES_PER_TASK = 50;
 
 	/**
 	 * Palauttaa tulosteen.
@@ -277,11 +294,9 @@ public class PrintPreviewModel {
 		try {
 			pj.print(doc, getAttributeSet());
 		}
-		catch (PrintException e) {
-			e.printStackTrace();
+		finally {
+			print.setCanvas(oldCanvas);
 		}
-		
-		print.setCanvas(oldCanvas);
 	}
 	
 	/**
@@ -290,52 +305,216 @@ public class PrintPreviewModel {
 	 * @param file PDF-tiedosto
 	 */
 	public void writePDF(File file) throws IOException {
+		writePDF(file, null);
+	}
+	
+	/**
+	 * Tallentaa tulosteen PDF-tiedostoon. Sivut asetellaan ja
+	 * tallennetaan <code>RecordingCanvas</code>-olioon tässä säikeessä.
+	 * Jos koneessa on useita suorittimia, tallennetut sivut muunnetaan
+	 * PDF-muotoon <code>PAGES_PER_TASK</code> sivun osissa rinnakkain,
+	 * ja osat yhdistetään tiedostoon järjestyksessä.
+	 * 
+	 * @param file PDF-tiedosto
+	 * @param listener kuuntelija, jolle ilmoitetaan tallennetuista
+	 * sivuista, tai <code>null</code>
+	 * @throws IOException jos tallentaminen epäonnistuu
+	 */
+	public void writePDF(File file, ProgressListener listener) throws IOException {
 		PrintCanvas oldCanvas = print.getCanvas();
 		AppSettings settings = AppSettings.getInstance();
 		String orientation = settings.getString("paper.orientation", "");
+		Rectangle pageSize;
+		
+		if (orientation.equalsIgnoreCase("landscape") ||
+				orientation.equalsIgnoreCase("reverse-landscape")) {
+			pageSize = PageSize.A4.rotate();
+		}
+		else {
+			pageSize = PageSize.A4;
+		}
+		
+		OutputStream output = new FileOutputStream(file);
+		ExecutorService executor = null;
+		boolean completed = false;
 		
 		try {
-			OutputStream output = new FileOutputStream(file);
-			Document document;
-
-			if (orientation.equalsIgnoreCase("landscape") ||
-					orientation.equalsIgnoreCase("reverse-landscape")) {
-				document = new Document(PageSize.A4.rotate());
+			RecordingCanvas recorder = new RecordingCanvas(new PDFCanvas(pageSize));
+			print.setCanvas(recorder);
+			int pageCount = print.getPageCount();
+			int threadCount = Math.min(Runtime.getRuntime().availableProcessors(),
+					(pageCount + PAGES_PER_TASK - 1) / PAGES_PER_TASK);
+			
+			Document document = new Document(pageSize);
+			PdfWriter writer;
+			PDFCanvas canvas = null;
+			
+			if (threadCount > 1) {
+				writer = new PdfCopy(document, output);
+				executor = Executors.newFixedThreadPool(threadCount);
 			}
 			else {
-				document = new Document();
+				writer = PdfWriter.getInstance(document, output);
 			}
 			
-			PdfWriter writer = PdfWriter.getInstance(document, output);
 			document.open();
 			document.addTitle(print.getTitle());
 			document.addCreator(Kirjanpito.APP_NAME + " " +
 					Kirjanpito.APP_VERSION);
 			document.addCreationDate();
-
-			print.setCanvas(new PDFCanvas(document, writer));
-			int pageCount = print.getPageCount();
-			int pageIndex = 0;
-			print.printPage(pageIndex);
-			pageIndex++;
 			
-			while (pageIndex < pageCount) {
-				document.newPage();
+			if (executor == null) {
+				canvas = new PDFCanvas(document, writer);
+			}
+			
+			LinkedList<Future<byte[]>> tasks = new LinkedList<Future<byte[]>>();
+			ArrayList<RecordingCanvas.Page> pages = new ArrayList<RecordingCanvas.Page>();
+			int pagesWritten = 0;
+			
+			for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
 				print.printPage(pageIndex);
-				pageIndex++;
+				
+				if (executor == null) {
+					if (pageIndex > 0) {
+						document.newPage();
+					}
+					
+					recorder.takePage().replay(canvas);
+					pagesWritten++;
+				}
+				else {
+					pages.add(recorder.takePage());
+					
+					if (pages.size() == PAGES_PER_TASK || pageIndex == pageCount - 1) {
+						tasks.add(executor.submit(new PageWriter(pages, pageSize)));
+						pages = new ArrayList<RecordingCanvas.Page>();
+					}
+					
+					/* Valmiita osia odotetaan, jos jonossa on liikaa osia,
+					 * jotta muistissa ei ole koko tulostetta. */
+					while (tasks.size() > threadCount * 2 ||
+							(!tasks.isEmpty() && (pageIndex == pageCount - 1 ||
+									tasks.getFirst().isDone()))) {
+						
+						pagesWritten += appendPages((PdfCopy)writer,
+								waitFor(tasks.removeFirst()));
+						
+						if (listener != null) {
+							listener.pagesWritten(pagesWritten, pageCount);
+						}
+					}
+				}
+				
+				if (Thread.interrupted()) {
+					throw new InterruptedIOException();
+				}
+				
+				if (listener != null && executor == null) {
+					listener.pagesWritten(pagesWritten, pageCount);
+				}
 			}
 			
 			document.close();
-			output.close();
+			completed = true;
 		}
 		catch (DocumentException e) {
-			e.printStackTrace();
+			IOException ioe = new IOException("PDF-tiedoston luominen epäonnistui");
+			ioe.initCause(e);
+			throw ioe;
 		}
 		finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			
+			output.close();
 			print.setCanvas(oldCanvas);
+			
+			if (!completed) {
+				file.delete();
+			}
 		}
 	}
 	
+	/**
+	 * Lisää PDF-dokumentin sivut tiedostoon.
+	 */
+	private int appendPages(PdfCopy copy, byte[] data)
+		throws IOException, DocumentException {
+		
+		PdfReader reader = new PdfReader(data);
+		int pageCount = reader.getNumberOfPages();
+		
+		for (int i = 1; i <= pageCount; i++) {
+			copy.addPage(copy.getImportedPage(reader, i));
+		}
+		
+		copy.freeReader(reader);
+		return pageCount;
+	}
+	
+	private byte[] waitFor(Future<byte[]> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e) {
+			IOException ioe = new IOException("PDF-sivujen luominen epäonnistui");
+			ioe.initCause(e.getCause());
+			throw ioe;
+		}
+	}
+	
+	/**
+	 * Muuntaa tallennetut sivut erilliseksi PDF-dokumentiksi. Jokaisella
+	 * tehtävällä on oma <code>PdfWriter</code>- ja
+	 * <code>PDFCanvas</code>-olionsa.
+	 */
+	private static class PageWriter implements Callable<byte[]> {
+		private List<RecordingCanvas.Page> pages;
+		private Rectangle pageSize;
+		
+		public PageWriter(List<RecordingCanvas.Page> pages, Rectangle pageSize) {
+			this.pages = pages;
+			this.pageSize = pageSize;
+		}
+		
+		public byte[] call() throws Exception {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			Document document = new Document(pageSize);
+			PdfWriter writer = PdfWriter.getInstance(document, output);
+			document.open();
+			PDFCanvas canvas = new PDFCanvas(document, writer);
+			
+			for (int i = 0; i < pages.size(); i++) {
+				if (i > 0) {
+					document.newPage();
+				}
+				
+				pages.get(i).replay(canvas);
+			}
+			
+			document.close();
+			return output.toByteArray();
+		}
+	}
+	
+	/**
+	 * Kuuntelija, jolle ilmoitetaan PDF-tiedoston tallentamisen
+	 * edistymisestä.
+	 */
+	public interface ProgressListener {
+		/**
+		 * Kutsutaan, kun sivuja on tallennettu.
+		 * 
+		 * @param pagesWritten tallennettujen sivujen lukumäärä
+		 * @param pageCount sivujen lukumäärä
+		 */
+		public void pagesWritten(int pagesWritten, int pageCount);
+	}
+	
 	public void writeCSV(File file, char delimiter) throws IOException {
 		FileWriter writer = new FileWriter(file);
 		CSVWriter csv = new CSVWriter(writer);
@@ -346,7 +525,19 @@ public class PrintPreviewModel {
 
 	public void writeODS(File file) throws IOException {
 		ODFSpreadsheet spreadsheet = new ODFSpreadsheet();
-		printModel.writeODS(spreadsheet);
-		spreadsheet.save(file);
+		spreadsheet.open(file);
+		boolean completed = false;
+		
+		try {
+			printModel.writeODS(spreadsheet);
+			completed = true;
+		}
+		finally {
+			spreadsheet.close();
+			
+			if (!completed) {
+				file.delete();
+			}
+		}
 	}
 }
@@ -1,18 +1,19 @@
 package kirjanpito.models;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountTotal;
 import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
 import kirjanpito.db.Document;
 import kirjanpito.db.Entry;
-import kirjanpito.db.EntryDAO;
 import kirjanpito.db.Period;
 import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
@@ -261,12 +262,12 @@ public class PropertiesModel {
 		List<Account> accounts = dataSource.getAccountDAO(sess).getAll();
 		final AccountBalances balances = new AccountBalances(accounts);
 
-		/* Luetaan edellisen tilikauden viennit ja lasketaan taseen tilien
-		 * loppusaldot. */
-		dataSource.getEntryDAO(sess).getByPeriodId(prevPeriod.getId(), EntryDAO.ORDER_BY_DOCUMENT_NUMBER,
-				new DTOCallback<Entry>() {
-					public void process(Entry obj) {
-						balances.addEntry(obj);
+		/* Lasketaan taseen tilien loppusaldot edellisen tilikauden
+		 * saldotaulusta. */
+		dataSource.getAccountBalanceDAO(sess).getByPeriodId(prevPeriod.getId(),
+				new DTOCallback<AccountTotal>() {
+					public void process(AccountTotal obj) {
+						balances.addTotal(obj);
 					}
 				});
 
@@ -278,6 +279,7 @@ public class PropertiesModel {
 		dataSource.getDocumentDAO(sess).save(doc);
 
 		BigDecimal balance;
+		List<Entry> entries = new ArrayList<Entry>();
 
 		for (Account account : accounts) {
 			/* Jos tili kuuluu taseeseen, lisätään vienti. */
@@ -299,9 +301,11 @@ public class PropertiesModel {
 					Entry entry = new Entry();
 					StartingBalanceModel.createStartingBalanceEntry(account,
 							balance, doc.getId(), entry);
-					dataSource.getEntryDAO(sess).save(entry);
+					entries.add(entry);
 				}
 			}
 		}
+
+		dataSource.getEntryDAO(sess).saveAll(entries);
 	}
 }
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.util.List;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountTotal;
 import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
@@ -135,15 +136,12 @@ public class StartingBalanceModel {
 		try {
 			sess = dataSource.openSession();
 			
-			for (int i = 0; i < entryIndex; i++) {
-				dataSource.getEntryDAO(sess).save(entries.get(i));
-			}
+			EntryDAO entryDAO = dataSource.getEntryDAO(sess);
+			entryDAO.saveAll(entries.subList(0, entryIndex));
 			
 			/* Poistetaan ylimääräiset viennit,
 			 * jos vientejä on ollut aikaisemmin enemmän. */
-			for (int i = entryIndex; i < entries.size(); i++) {
-				dataSource.getEntryDAO(sess).delete(entries.get(i).getId());
-			}
+			entryDAO.deleteAll(entries.subList(entryIndex, entries.size()));
 			
 			sess.commit();
 		}
@@ -263,10 +261,11 @@ public class StartingBalanceModel {
 				return false;
 			}
 			
-			dataSource.getEntryDAO(sess).getByPeriodId(prevPeriod.getId(), EntryDAO.ORDER_BY_DOCUMENT_NUMBER,
-				new DTOCallback<Entry>() {
-					public void process(Entry obj) {
-						balances.addEntry(obj);
+			/* Edellisen tilikauden loppusaldot lasketaan saldotaulusta. */
+			dataSource.getAccountBalanceDAO(sess).getByPeriodId(prevPeriod.getId(),
+				new DTOCallback<AccountTotal>() {
+					public void process(AccountTotal obj) {
+						balances.addTotal(obj);
 					}
 				});
 		}
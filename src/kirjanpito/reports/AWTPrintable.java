@@ -4,6 +4,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
+import java.awt.print.PrinterException;
 
 public class AWTPrintable implements Printable {
 	private Print print;
@@ -14,7 +15,7 @@ public class AWTPrintable implements Printable {
 		this.canvas = canvas;
 	}
 
-	public int print(Graphics g, PageFormat pf, int pageIndex) {
+	public int print(Graphics g, PageFormat pf, int pageIndex) throws PrinterException {
 		if (canvas == null) {
 			canvas = new AWTCanvas(pf);
 			print.setCanvas(canvas);
@@ -22,7 +23,16 @@ public class AWTPrintable implements Printable {
 		
 		if (pageIndex < print.getPageCount()) {
 			canvas.setGraphics((Graphics2D)g);
-			print.printPage(pageIndex);
+
+			try {
+				print.printPage(pageIndex);
+			}
+			catch (ReportDataException e) {
+				PrinterException pe = new PrinterException(e.getMessage());
+				pe.initCause(e);
+				throw pe;
+			}
+
 			return Printable.PAGE_EXISTS;
 		}
 		else {
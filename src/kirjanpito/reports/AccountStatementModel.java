@@ -21,6 +21,7 @@ import kirjanpito.db.Settings;
 import kirjanpito.util.AccountBalances;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 
 /**
  * Malli tiliotetulosteelle.
@@ -42,6 +43,7 @@ public class AccountStatementModel implements PrintModel {
 	private Date endDate;
 	private int orderBy;
 	private AccountBalances balances;
+	private ProgressMonitor monitor = ProgressMonitor.NONE;
 
 	public static final int ORDER_BY_NUMBER = 1; // EntryDAO.ORDER_BY_DOCUMENT_NUMBER
 	public static final int ORDER_BY_DATE = 2; // EntryDAO.ORDER_BY_DOCUMENT_DATE
@@ -176,6 +178,10 @@ public class AccountStatementModel implements PrintModel {
 		this.orderBy = orderBy;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
 		Session sess = null;
 		final ArrayList<AccountStatementRow> rowList = new ArrayList<AccountStatementRow>();
@@ -205,6 +211,10 @@ public class AccountStatementModel implements PrintModel {
 					period.getId(), account.getId(), orderBy,
 					new DTOCallback<Entry>() {
 						public void process(Entry entry) {
+							if (monitor.isCancelled()) {
+								return;
+							}
+
 							balances.addEntry(entry);
 							Document document = documentMap.get(entry.getDocumentId());
 
@@ -236,6 +246,10 @@ public class AccountStatementModel implements PrintModel {
 			if (sess != null) sess.close();
 		}
 
+		if (monitor.isCancelled()) {
+			return;
+		}
+
 		rowList.add(new AccountStatementRow(-1, null, null, balance));
 		rows = new AccountStatementRow[rowList.size()];
 		rowList.toArray(rows);
@@ -10,11 +10,11 @@ import java.util.List;
 import java.util.Stack;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountTotal;
 import kirjanpito.db.COAHeading;
 import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
-import kirjanpito.db.Entry;
 import kirjanpito.db.Period;
 import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
@@ -22,6 +22,7 @@ import kirjanpito.util.AccountBalances;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ChartOfAccounts;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 import kirjanpito.util.Registry;
 
 /**
@@ -42,6 +43,7 @@ public class AccountSummaryModel implements PrintModel {
 	private boolean previousPeriodVisible;
 	private int printedAccounts;
 	private int maxLevel;
+	private ProgressMonitor monitor = ProgressMonitor.NONE;
 
 	public Registry getRegistry() {
 		return registry;
@@ -140,6 +142,10 @@ public class AccountSummaryModel implements PrintModel {
 		this.printedAccounts = printedAccounts;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
 		DataSource dataSource = registry.getDataSource();
 		Session sess = null;
@@ -154,12 +160,12 @@ public class AccountSummaryModel implements PrintModel {
 		try {
 			final HashSet<Integer> accountIds = new HashSet<Integer>();
 			sess = dataSource.openSession();
-			dataSource.getEntryDAO(sess).getByPeriodIdAndDate(period.getId(),
-				startDate, endDate, new DTOCallback<Entry>() {
-					public void process(Entry entry) {
-						if (isAccountPrinted(entry.getAccountId())) {
-							balances.addEntry(entry);
-							accountIds.add(entry.getAccountId());
+			dataSource.getAccountBalanceDAO(sess).getByPeriodIdAndDate(period.getId(),
+				startDate, endDate, new DTOCallback<AccountTotal>() {
+					public void process(AccountTotal total) {
+						if (isAccountPrinted(total.getAccountId())) {
+							balances.addTotal(total);
+							accountIds.add(total.getAccountId());
 						}
 					}
 				});
@@ -181,12 +187,12 @@ public class AccountSummaryModel implements PrintModel {
 				}
 				else {
 					/* Lasketaan edellisen tilikauden tilien saldot. */
-					dataSource.getEntryDAO(sess).getByPeriodIdAndDate(periodPrev.getId(),
-						periodPrev.getStartDate(), periodPrev.getEndDate(), new DTOCallback<Entry>() {
-							public void process(Entry entry) {
-								if (isAccountPrinted(entry.getAccountId())) {
-									balancesPrev.addEntry(entry);
-									accountIds.add(entry.getAccountId());
+					dataSource.getAccountBalanceDAO(sess).getByPeriodIdAndDate(periodPrev.getId(),
+						periodPrev.getStartDate(), periodPrev.getEndDate(), new DTOCallback<AccountTotal>() {
+							public void process(AccountTotal total) {
+								if (isAccountPrinted(total.getAccountId())) {
+									balancesPrev.addTotal(total);
+									accountIds.add(total.getAccountId());
 								}
 							}
 						});
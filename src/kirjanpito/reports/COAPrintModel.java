@@ -3,22 +3,22 @@ package kirjanpito.reports;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountBalanceDAO;
 import kirjanpito.db.COAHeading;
-import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
-import kirjanpito.db.Entry;
-import kirjanpito.db.EntryDAO;
 import kirjanpito.db.Period;
 import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
-import kirjanpito.util.AccountBalances;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ChartOfAccounts;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 import kirjanpito.util.Registry;
 
 public class COAPrintModel implements PrintModel {
@@ -26,6 +26,7 @@ public class COAPrintModel implements PrintModel {
 	private ChartOfAccounts coa;
 	private int accountLevel;
 	private int mode;
+	private ProgressMonitor monitor = ProgressMonitor.NONE;
 
 	public static final int ALL_ACCOUNTS = 0;
 	public static final int USED_ACCOUNTS = 1;
@@ -47,15 +48,19 @@ public class COAPrintModel implements PrintModel {
 		this.mode = mode;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
 		if (mode == ALL_ACCOUNTS) {
 			coa = registry.getChartOfAccounts();
 		}
 		else if (mode == USED_ACCOUNTS) {
-			AccountBalances balances = fetchAccountBalances();
+			Set<Integer> usedAccountIds = fetchUsedAccountIds();
 			coa = new ChartOfAccounts();
 			coa.set(registry.getAccounts(), registry.getCOAHeadings());
-			coa.filterNonUsedAccounts(balances);
+			coa.filterNonUsedAccounts(usedAccountIds);
 		}
 		else if (mode == FAVOURITE_ACCOUNTS) {
 			coa = new ChartOfAccounts();
@@ -157,8 +162,15 @@ public class COAPrintModel implements PrintModel {
 		}
 	}
 
-	private AccountBalances fetchAccountBalances() throws DataAccessException {
-		final AccountBalances balances = new AccountBalances(registry.getAccounts());
+	/**
+	 * Hakee niiden tilien tunnisteet, joille on kirjattu vientejä
+	 * nykyisellä tai edellisellä tilikaudella.
+	 *
+	 * @return tilien tunnisteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	private Set<Integer> fetchUsedAccountIds() throws DataAccessException {
+		HashSet<Integer> accountIds = new HashSet<Integer>();
 		DataSource dataSource = registry.getDataSource();
 		int currentPeriodId = registry.getSettings().getCurrentPeriodId();
 		Session sess = null;
@@ -178,26 +190,19 @@ public class COAPrintModel implements PrintModel {
 				}
 			}
 
-			DTOCallback<Entry> callback = new DTOCallback<Entry>() {
-				public void process(Entry obj) {
-					balances.addEntry(obj);
-				}
-			};
-
-			dataSource.getEntryDAO(sess).getByPeriodId(period.getId(),
-					EntryDAO.ORDER_BY_DOCUMENT_NUMBER, callback);
+			AccountBalanceDAO dao = dataSource.getAccountBalanceDAO(sess);
+			accountIds.addAll(dao.getUsedAccountIds(period.getId()));
 
 			if (periodIndex > 0) {
 				period = periods.get(periodIndex - 1);
-				dataSource.getEntryDAO(sess).getByPeriodId(period.getId(),
-						EntryDAO.ORDER_BY_DOCUMENT_NUMBER, callback);
+				accountIds.addAll(dao.getUsedAccountIds(period.getId()));
 			}
 		}
 		finally {
 			if (sess != null) sess.close();
 		}
 
-		return balances;
+		return accountIds;
 	}
 
 	public Settings getSettings() {
@@ -14,6 +14,7 @@ import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 import kirjanpito.util.Registry;
 
 public class DocumentPrintModel implements PrintModel {
@@ -21,6 +22,7 @@ public class DocumentPrintModel implements PrintModel {
 	private Settings settings;
 	private Document document;
 	private List<Entry> entries;
+	private ProgressMonitor monitor = ProgressMonitor.NONE;
 
 	public DocumentPrintModel() {
 		document = new Document();
@@ -42,6 +44,10 @@ public class DocumentPrintModel implements PrintModel {
 		document.copy(this.document);
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
 		DataSource dataSource = registry.getDataSource();
 		Session sess = null;
@@ -0,0 +1,175 @@
+package kirjanpito.reports;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Document;
+import kirjanpito.db.DocumentDAO;
+
+/**
+ * Tilikauden tositteiden numerot ja päivämäärät taulukoissa.
+ * Tulosteiden mallit etsivät viennin tositteen tämän taulukon
+ * avulla, jotta jokaisesta tositteesta ei tarvitse pitää
+ * <code>Document</code>-oliota muistissa.
+ *
+ * @author Tommi Helineva
+ */
+public class DocumentTable {
+	private int periodId;
+	private int[] ids;
+	private int[] numbers;
+	private long[] dates;
+	private long[] keys;
+	private long firstTime;
+	private int size;
+
+	private static final int PAGE_SIZE = 1000;
+
+	public DocumentTable() {
+		ids = new int[64];
+		numbers = new int[64];
+		dates = new long[64];
+		keys = new long[0];
+	}
+
+	/**
+	 * Hakee tilikauden tositteet, joiden numero on vähintään
+	 * <code>startNumber</code>. Tositteet haetaan sivuittain
+	 * numerojärjestyksessä.
+	 *
+	 * @param dao tositteiden DAO
+	 * @param periodId tilikauden tunniste
+	 * @param startNumber pienin tositenumero
+	 * @throws DataAccessException jos tositteiden hakeminen epäonnistuu
+	 */
+	public void load(DocumentDAO dao, int periodId, int startNumber)
+		throws DataAccessException {
+
+		List<Document> page;
+		this.periodId = periodId;
+		firstTime = Long.MAX_VALUE;
+		size = 0;
+
+		do {
+			page = dao.getFirstByPeriodIdAndNumber(periodId, startNumber,
+					Integer.MAX_VALUE, PAGE_SIZE);
+
+			for (Document document : page) {
+				add(document);
+			}
+
+			if (!page.isEmpty()) {
+				startNumber = page.get(page.size() - 1).getNumber() + 1;
+			}
+		}
+		while (page.size() == PAGE_SIZE);
+
+		/* Tunnisteet järjestetään hakua varten. Tunniste tallennetaan
+		 * 32 ylimpään bittiin ja paikka taulukossa alimpiin bitteihin. */
+		keys = new long[size];
+
+		for (int i = 0; i < size; i++) {
+			keys[i] = ((long)ids[i] << 32) | i;
+		}
+
+		Arrays.sort(keys);
+	}
+
+	/**
+	 * Palauttaa tositteiden lukumäärän.
+	 *
+	 * @return tositteiden lukumäärä
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Palauttaa tositteen paikan taulukossa.
+	 *
+	 * @param documentId tositteen tunniste
+	 * @return tositteen paikka tai -1, jos tositetta ei löydy
+	 */
+	public int indexOf(int documentId) {
+		int low = 0;
+		int high = keys.length - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = (int)(keys[mid] >> 32);
+
+			if (id < documentId) {
+				low = mid + 1;
+			}
+			else if (id > documentId) {
+				high = mid - 1;
+			}
+			else {
+				return (int)keys[mid];
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Palauttaa tositteen numeron.
+	 *
+	 * @param index tositteen paikka
+	 * @return tositenumero
+	 */
+	public int getNumber(int index) {
+		return numbers[index];
+	}
+
+	/**
+	 * Palauttaa tositteen päivämäärän millisekunteina.
+	 *
+	 * @param index tositteen paikka
+	 * @return päivämäärä
+	 */
+	public long getTime(int index) {
+		return dates[index];
+	}
+
+	/**
+	 * Palauttaa aikaisimman tositteen päivämäärän.
+	 *
+	 * @return aikaisin päivämäärä
+	 */
+	public Date getFirstDate() {
+		return new Date((size > 0) ? firstTime : 0);
+	}
+
+	/**
+	 * Luo tositteesta <code>Document</code>-olion.
+	 *
+	 * @param index tositteen paikka
+	 * @return tosite
+	 */
+	public Document getDocument(int index) {
+		Document document = new Document();
+		document.setId(ids[index]);
+		document.setNumber(numbers[index]);
+		document.setPeriodId(periodId);
+		document.setDate(new Date(dates[index]));
+		return document;
+	}
+
+	private void add(Document document) {
+		if (size == ids.length) {
+			int capacity = size * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			numbers = Arrays.copyOf(numbers, capacity);
+			dates = Arrays.copyOf(dates, capacity);
+		}
+
+		ids[size] = document.getId();
+		numbers[size] = document.getNumber();
+		dates[size] = document.getDate().getTime();
+		firstTime = Math.min(firstTime, dates[size]);
+		size++;
+	}
+}
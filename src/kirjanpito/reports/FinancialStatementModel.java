@@ -12,17 +12,19 @@ import java.util.Date;
 import java.util.List;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountTotal;
 import kirjanpito.db.DTOCallback;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.db.DataSource;
-import kirjanpito.db.Entry;
 import kirjanpito.db.Period;
 import kirjanpito.db.ReportStructure;
 import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
 import kirjanpito.util.AccountBalances;
 import kirjanpito.util.CSVWriter;
+import kirjanpito.util.MultiRangeBalances;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 
 /**
  * Malli tuloslaskelmalle ja taseelle.
@@ -47,6 +49,7 @@ public class FinancialStatementModel implements PrintModel {
 	private int maxLevel;
 	private boolean styleBold;
 	private boolean styleItalic;
+	private ProgressMonitor monitor = ProgressMonitor.NONE;
 
 	public static final int STYLE_PLAIN = 0;
 	public static final int STYLE_BOLD = 1;
@@ -189,6 +192,10 @@ public class FinancialStatementModel implements PrintModel {
 		this.pageBreakEnabled = pageBreakEnabled;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
 		Session sess = null;
 		String reportId;
@@ -247,18 +254,22 @@ public class FinancialStatementModel implements PrintModel {
 				balances[i] = new AccountBalances(accounts);
 			}
 
-			/* Lasketaan tilien saldot. */
-			for (int i = 0; i < startDates.length; i++) {
-				final int index = i;
-
-				dataSource.getEntryDAO(sess).getByPeriodIdAndDate(-1,
-						startDates[i], endDates[i],
-					new DTOCallback<Entry>() {
-						public void process(Entry entry) {
-							balances[index].addEntry(entry);
+			/* Haetaan kaikkien sarakkeiden saldot saldotaulusta
+			 * yhdellä kyselyllä. */
+			final MultiRangeBalances ranges = new MultiRangeBalances(
+					startDates, endDates);
+
+			dataSource.getAccountBalanceDAO(sess).getDailyTotals(
+					ranges.getStartDate(), ranges.getEndDate(),
+				new DTOCallback<AccountTotal>() {
+					public void process(AccountTotal total) {
+						if (!monitor.isCancelled()) {
+							ranges.addTotal(total);
 						}
-					});
-			}
+					}
+				});
+
+			ranges.fill(balances);
 		}
 		finally {
 			if (sess != null) sess.close();
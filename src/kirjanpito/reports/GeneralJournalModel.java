@@ -5,6 +5,7 @@ import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -21,6 +22,7 @@ import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 import kirjanpito.util.Registry;
 
 /**
@@ -35,12 +37,17 @@ public class GeneralJournalModel implements PrintModel {
 	protected Date startDate;
 	protected Date endDate;
 	protected int orderBy;
+	protected ProgressMonitor monitor = ProgressMonitor.NONE;
+
+	/* Aliluokat voivat tallentaa rivit listaan. Jos lista on null,
+	 * rivit haetaan ikkunoittain (journalRows). */
 	protected List<GeneralJournalRow> rows;
 	protected int lastDocumentNumber;
 	protected BigDecimal totalDebit;
 	protected BigDecimal totalCredit;
 	protected boolean totalAmountVisible;
 	private int prevDocumentId;
+	private JournalRows journalRows;
 
 	public static final int ORDER_BY_NUMBER = 1; // EntryDAO.ORDER_BY_DOCUMENT_NUMBER
 	public static final int ORDER_BY_DATE = 2; // EntryDAO.ORDER_BY_DOCUMENT_DATE
@@ -133,47 +140,50 @@ public class GeneralJournalModel implements PrintModel {
 		this.totalAmountVisible = totalAmountVisible;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
-		List<Document> documents;
 		DataSource dataSource = registry.getDataSource();
 		Session sess = null;
 
-		final HashMap<Integer, Document> documentMap =
-			new HashMap<Integer, Document>();
-
+		final JournalRows journalRows = new JournalRows();
 		settings = registry.getSettings();
 		prevDocumentId = -1;
-		rows = new ArrayList<GeneralJournalRow>();
+		rows = null;
+		this.journalRows = null;
 		lastDocumentNumber = 0;
 		totalDebit = BigDecimal.ZERO;
 		totalCredit = BigDecimal.ZERO;
 
 		try {
 			sess = dataSource.openSession();
-			documents = dataSource.getDocumentDAO(
-					sess).getByPeriodIdAndDate(period.getId(), startDate, endDate);
-
-			for (Document d : documents) {
-				if (d.getNumber() >= 1) {
-					documentMap.put(d.getId(), d);
-				}
-			}
+			journalRows.documents.load(dataSource.getDocumentDAO(sess), period.getId(), 1);
 
-			documents = null;
+			/* Ensimmäisellä läpikäynnillä rivejä ei tallenneta, vaan
+			 * lasketaan rivien lukumäärä, summat ja ikkunoiden alkukohdat. */
 			dataSource.getEntryDAO(sess).getByPeriodId(
 				period.getId(), orderBy,
 				new DTOCallback<Entry>() {
 					public void process(Entry entry) {
+						if (monitor.isCancelled()) {
+							return;
+						}
+
 						Account account = registry.getAccountById(entry.getAccountId());
-						Document document = documentMap.get(entry.getDocumentId());
+						int documentIndex = journalRows.indexOf(entry.getDocumentId());
 
-						if (account == null || document == null) {
+						if (account == null || documentIndex < 0) {
 							return;
 						}
 
-						if (prevDocumentId != document.getId()) {
-							lastDocumentNumber = Math.max(lastDocumentNumber, document.getNumber());
-							rows.add(new GeneralJournalRow(2, document, null, null, null));
+						if (prevDocumentId != entry.getDocumentId()) {
+							lastDocumentNumber = Math.max(lastDocumentNumber,
+									journalRows.documents.getNumber(documentIndex));
+							journalRows.addDocument(documentIndex);
+							monitor.setProgress(journalRows.documentCount,
+									journalRows.documents.getSize());
 						}
 
 						if (entry.isDebit()) {
@@ -183,8 +193,8 @@ public class GeneralJournalModel implements PrintModel {
 							totalCredit = totalCredit.add(entry.getAmount());
 						}
 
-						rows.add(new GeneralJournalRow(1, document, null, account, entry));
-						prevDocumentId = document.getId();
+						journalRows.addEntry(entry);
+						prevDocumentId = entry.getDocumentId();
 					}
 				});
 		}
@@ -192,10 +202,12 @@ public class GeneralJournalModel implements PrintModel {
 			if (sess != null) sess.close();
 		}
 
-		if (totalAmountVisible) {
-			rows.add(new GeneralJournalRow(0, null, null, null, null));
-			rows.add(new GeneralJournalRow(4, null, null, null, null));
+		if (monitor.isCancelled()) {
+			return;
 		}
+
+		journalRows.finish();
+		this.journalRows = journalRows;
 	}
 
 	public void writeCSV(CSVWriter writer) throws IOException {
@@ -243,7 +255,9 @@ public class GeneralJournalModel implements PrintModel {
 		writer.writeField("Selite");
 		writer.writeLine();
 
-		for (GeneralJournalRow row : rows) {
+		for (int i = 0; i < getRowCount(); i++) {
+			GeneralJournalRow row = getRow(i);
+
 			if (row.type != 1) {
 				continue;
 			}
@@ -304,7 +318,8 @@ public class GeneralJournalModel implements PrintModel {
 		s.writeTextCell("Kredit", "boldAlignRightBorderBottom");
 		s.writeTextCell("Selite", "boldBorderBottom");
 
-		for (GeneralJournalRow row : rows) {
+		for (int i = 0; i < getRowCount(); i++) {
+			GeneralJournalRow row = getRow(i);
 			s.addRow();
 
 			if (row.type == 3) {
@@ -351,7 +366,7 @@ public class GeneralJournalModel implements PrintModel {
 	 * @return rivien lukumäärä
 	 */
 	public int getRowCount() {
-		return rows.size();
+		return (rows != null) ? rows.size() : journalRows.getRowCount();
 	}
 
 	/**
@@ -361,7 +376,7 @@ public class GeneralJournalModel implements PrintModel {
 	 * @return tyyppi
 	 */
 	public int getType(int index) {
-		return rows.get(index).type;
+		return getRow(index).type;
 	}
 
 	/**
@@ -371,7 +386,7 @@ public class GeneralJournalModel implements PrintModel {
 	 * @return tosite
 	 */
 	public Document getDocument(int index) {
-		return rows.get(index).document;
+		return getRow(index).document;
 	}
 
 	/**
@@ -381,7 +396,7 @@ public class GeneralJournalModel implements PrintModel {
 	 * @return tosite
 	 */
 	public Account getAccount(int index) {
-		return rows.get(index).account;
+		return getRow(index).account;
 	}
 
 	/**
@@ -391,7 +406,7 @@ public class GeneralJournalModel implements PrintModel {
 	 * @return vienti
 	 */
 	public Entry getEntry(int index) {
-		return rows.get(index).entry;
+		return getRow(index).entry;
 	}
 
 	/**
@@ -402,7 +417,7 @@ public class GeneralJournalModel implements PrintModel {
 	 * @return tositelaji
 	 */
 	public DocumentType getDocumentType(int index) {
-		return rows.get(index).documentType;
+		return getRow(index).documentType;
 	}
 
 	/**
@@ -432,6 +447,189 @@ public class GeneralJournalModel implements PrintModel {
 		return totalCredit;
 	}
 
+	/**
+	 * Palauttaa rivin <code>index</code>.
+	 *
+	 * @param index rivinumero
+	 * @return rivi
+	 * @throws ReportDataException jos rivien hakeminen epäonnistuu
+	 */
+	protected GeneralJournalRow getRow(int index) {
+		if (rows != null) {
+			return rows.get(index);
+		}
+
+		try {
+			return journalRows.get(index);
+		}
+		catch (DataAccessException e) {
+			throw new ReportDataException(e);
+		}
+	}
+
+	/**
+	 * Päiväkirjan rivit, jotka haetaan tietokannasta ikkunoittain.
+	 * Ikkuna alkaa aina tositteen kohdalta, ja ikkunan viennit haetaan
+	 * ikkunan tositteiden perusteella.
+	 */
+	private class JournalRows extends WindowedRows<GeneralJournalRow> {
+		public DocumentTable documents;
+		private int[] documentOrder;
+		private int documentCount;
+		private int[] windowDocuments;
+		private int rowIndex;
+
+		public JournalRows() {
+			documents = new DocumentTable();
+			documentOrder = new int[64];
+			windowDocuments = new int[16];
+		}
+
+		/**
+		 * Palauttaa tositteen paikan tositetaulukossa, jos tosite
+		 * kuuluu tulosteen aikavälille.
+		 *
+		 * @param documentId tositteen tunniste
+		 * @return tositteen paikka tai -1
+		 */
+		public int indexOf(int documentId) {
+			int index = documents.indexOf(documentId);
+
+			if (index < 0) {
+				return -1;
+			}
+
+			long time = documents.getTime(index);
+
+			if (time < startDate.getTime() || time > endDate.getTime()) {
+				return -1;
+			}
+
+			return index;
+		}
+
+		/**
+		 * Lisää tositteen otsikkorivin ensimmäisellä läpikäynnillä.
+		 *
+		 * @param documentIndex tositteen paikka tositetaulukossa
+		 */
+		public void addDocument(int documentIndex) {
+			if (isWindowFull(rowIndex)) {
+				addWindow();
+			}
+
+			if (documentCount == documentOrder.length) {
+				documentOrder = Arrays.copyOf(documentOrder, documentCount * 2);
+			}
+
+			documentOrder[documentCount++] = documentIndex;
+			rowIndex++;
+		}
+
+		/**
+		 * Lisää vientirivin ensimmäisellä läpikäynnillä.
+		 *
+		 * @param entry vienti
+		 */
+		public void addEntry(Entry entry) {
+			addChecksum(entry);
+			rowIndex++;
+		}
+
+		/**
+		 * Lopettaa ensimmäisen läpikäynnin.
+		 */
+		public void finish() {
+			if (totalAmountVisible) {
+				if (getWindowCount() == 0) {
+					addWindow();
+				}
+
+				rowIndex += 2;
+			}
+
+			setRowCount(rowIndex);
+		}
+
+		private void addWindow() {
+			int window = addWindow(rowIndex);
+
+			if (window == windowDocuments.length) {
+				windowDocuments = Arrays.copyOf(windowDocuments, window * 2);
+			}
+
+			windowDocuments[window] = documentCount;
+		}
+
+		protected List<GeneralJournalRow> fetchWindow(int window) throws DataAccessException {
+			DataSource dataSource = registry.getDataSource();
+			int first = windowDocuments[window];
+			int last = (window + 1 < getWindowCount()) ?
+					windowDocuments[window + 1] : documentCount;
+
+			ArrayList<GeneralJournalRow> list = new ArrayList<GeneralJournalRow>(
+					getWindowEnd(window) - getWindowStart(window));
+
+			if (first < last) {
+				ArrayList<Document> windowDocuments = new ArrayList<Document>(last - first);
+				final HashMap<Integer, List<Entry>> entryMap =
+					new HashMap<Integer, List<Entry>>();
+
+				for (int i = first; i < last; i++) {
+					windowDocuments.add(documents.getDocument(documentOrder[i]));
+				}
+
+				Session sess = null;
+
+				try {
+					sess = dataSource.openSession();
+					dataSource.getEntryDAO(sess).getByDocuments(windowDocuments,
+						new DTOCallback<Entry>() {
+							public void process(Entry entry) {
+								List<Entry> entries = entryMap.get(entry.getDocumentId());
+
+								if (entries == null) {
+									entries = new ArrayList<Entry>();
+									entryMap.put(entry.getDocumentId(), entries);
+								}
+
+								entries.add(entry);
+							}
+						});
+				}
+				finally {
+					if (sess != null) sess.close();
+				}
+
+				for (Document document : windowDocuments) {
+					List<Entry> entries = entryMap.get(document.getId());
+
+					if (entries == null) {
+						continue;
+					}
+
+					list.add(new GeneralJournalRow(2, document, null, null, null));
+
+					for (Entry entry : entries) {
+						Account account = registry.getAccountById(entry.getAccountId());
+
+						if (account != null) {
+							addChecksum(entry);
+							list.add(new GeneralJournalRow(1, document, null, account, entry));
+						}
+					}
+				}
+			}
+
+			if (totalAmountVisible && window == getWindowCount() - 1) {
+				list.add(new GeneralJournalRow(0, null, null, null, null));
+				list.add(new GeneralJournalRow(4, null, null, null, null));
+			}
+
+			return list;
+		}
+	}
+
 	protected class GeneralJournalRow {
 		public int type;
 		public Document document;
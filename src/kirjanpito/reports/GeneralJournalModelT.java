@@ -25,6 +25,8 @@ import kirjanpito.util.CSVWriter;
  */
 public class GeneralJournalModelT extends GeneralJournalModel {
 	private List<DocumentType> documentTypes;
+	private int prevDocumentId;
+	private int documentCount;
 
 	public void run() throws DataAccessException {
 		List<Document> documents;
@@ -42,6 +44,8 @@ public class GeneralJournalModelT extends GeneralJournalModel {
 		rows = new ArrayList<GeneralJournalRow>();
 		totalDebit = BigDecimal.ZERO;
 		totalCredit = BigDecimal.ZERO;
+		prevDocumentId = -1;
+		documentCount = 0;
 
 		try {
 			sess = dataSource.openSession();
@@ -55,6 +59,10 @@ public class GeneralJournalModelT extends GeneralJournalModel {
 				period.getId(), startDate, endDate,
 				new DTOCallback<Entry>() {
 					public void process(Entry entry) {
+						if (monitor.isCancelled()) {
+							return;
+						}
+
 						Account account = registry.getAccountById(entry.getAccountId());
 						Document document = documentMap.get(entry.getDocumentId());
 
@@ -62,6 +70,11 @@ public class GeneralJournalModelT extends GeneralJournalModel {
 							return;
 						}
 
+						if (document.getId() != prevDocumentId) {
+							prevDocumentId = document.getId();
+							monitor.setProgress(++documentCount, documentMap.size());
+						}
+
 						if (document.getDate().before(startDate) || document.getDate().after(endDate)) {
 							return;
 						}
@@ -88,6 +101,10 @@ public class GeneralJournalModelT extends GeneralJournalModel {
 			if (sess != null) sess.close();
 		}
 
+		if (monitor.isCancelled()) {
+			return;
+		}
+
 		/* Asetetaan tositelaji sellaisille riveille, joille ei ole vielä asetettu
 		 * tositelajia (esim. alkusaldoviennit). */
 		for (GeneralJournalRow row : rows) {
@@ -5,8 +5,8 @@ import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
@@ -17,12 +17,14 @@ import kirjanpito.db.DataSource;
 import kirjanpito.db.Document;
 import kirjanpito.db.DocumentType;
 import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
 import kirjanpito.db.Period;
 import kirjanpito.db.Session;
 import kirjanpito.db.Settings;
 import kirjanpito.util.AccountBalances;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 import kirjanpito.util.Registry;
 
 /**
@@ -37,12 +39,16 @@ public class GeneralLedgerModel implements PrintModel {
 	protected Date endDate;
 	protected int orderBy;
 	protected Settings settings;
+	protected ProgressMonitor monitor = ProgressMonitor.NONE;
+
+	/* Aliluokat voivat tallentaa rivit listaan. Jos lista on null,
+	 * rivit haetaan ikkunoittain (ledgerRows). */
 	protected List<GeneralLedgerRow> rows;
 	protected int lastDocumentNumber;
 	protected BigDecimal totalDebit;
 	protected BigDecimal totalCredit;
 	protected boolean totalAmountVisible;
-	private int prevAccountId;
+	private LedgerRows ledgerRows;
 
 	public static final int ORDER_BY_NUMBER = 3; // EntryDAO.ORDER_BY_ACCOUNT_NUMBER_AND_DOCUMENT_NUMBER
 	public static final int ORDER_BY_DATE = 4; // EntryDAO.ORDER_BY_ACCOUNT_NUMBER_AND_DOCUMENT_DATE
@@ -135,49 +141,72 @@ public class GeneralLedgerModel implements PrintModel {
 		this.totalAmountVisible = totalAmountVisible;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
-		List<Document> documents;
 		DataSource dataSource = registry.getDataSource();
 		Session sess = null;
 
-		final HashMap<Integer, Document> documentMap =
-			new HashMap<Integer, Document>();
-
-		final AccountBalances balances = new AccountBalances(registry.getAccounts());
+		final List<Account> accounts = registry.getAccounts();
+		final AccountBalances balances = new AccountBalances(accounts);
+		final LedgerRows ledgerRows = new LedgerRows();
+		final long startTime = startDate.getTime();
+		final long endTime = endDate.getTime();
 
 		settings = registry.getSettings();
-		prevAccountId = -1;
-		rows = new ArrayList<GeneralLedgerRow>();
+		rows = null;
+		this.ledgerRows = null;
 		lastDocumentNumber = 0;
 		totalDebit = BigDecimal.ZERO;
 		totalCredit = BigDecimal.ZERO;
 
 		try {
 			sess = dataSource.openSession();
-			documents = dataSource.getDocumentDAO(sess).getByPeriodId(period.getId(), 0);
-
-			for (Document d : documents) {
-				documentMap.put(d.getId(), d);
-			}
+			ledgerRows.documents.load(dataSource.getDocumentDAO(sess), period.getId(), 0);
 
+			/* Ensimmäisellä läpikäynnillä rivejä ei tallenneta, vaan
+			 * lasketaan rivien lukumäärä, summat ja ikkunoiden alkukohdat. */
 			dataSource.getEntryDAO(sess).getByPeriodId(
 				period.getId(), orderBy,
 				new DTOCallback<Entry>() {
 					public void process(Entry entry) {
+						if (monitor.isCancelled()) {
+							return;
+						}
+
 						Account account = registry.getAccountById(entry.getAccountId());
-						Document document = documentMap.get(entry.getDocumentId());
 
-						if (account == null || document == null) {
+						if (account == null) {
+							return;
+						}
+
+						int documentIndex = ledgerRows.documents.indexOf(entry.getDocumentId());
+						int accountCount = ledgerRows.accountCount;
+						ledgerRows.addEntry(entry, account, documentIndex, balances);
+
+						/* Viennit käydään läpi tilinumeron mukaisessa järjestyksessä. */
+						if (ledgerRows.accountCount != accountCount) {
+							monitor.setProgress(accounts.indexOf(account) + 1,
+									accounts.size());
+						}
+
+						if (documentIndex < 0) {
 							return;
 						}
 
+						ledgerRows.addChecksum(entry);
 						balances.addEntry(entry);
+						long time = ledgerRows.documents.getTime(documentIndex);
 
-						if (document.getDate().before(startDate) || document.getDate().after(endDate)) {
+						if (time < startTime || time > endTime) {
 							return;
 						}
 
-						if (document.getNumber() >= 1) {
+						int number = ledgerRows.documents.getNumber(documentIndex);
+
+						if (number >= 1) {
 							if (entry.isDebit()) {
 								totalDebit = totalDebit.add(entry.getAmount());
 							}
@@ -186,27 +215,11 @@ public class GeneralLedgerModel implements PrintModel {
 							}
 						}
 
-						if (account.getType() == Account.TYPE_PROFIT_PREV) {
-							if (prevAccountId != -1)
-								rows.add(new GeneralLedgerRow(0, null, null, null, null, null));
-
-							rows.add(new GeneralLedgerRow(4, document, null, account, null,
-									balances.getBalance(entry.getAccountId())));
-							return;
-						}
-
-						if (prevAccountId != account.getId()) {
-							if (prevAccountId != -1)
-								rows.add(new GeneralLedgerRow(0, null, null, null, null, null));
-
-							rows.add(new GeneralLedgerRow(2, null, null, account, null, null));
+						if (account.getType() != Account.TYPE_PROFIT_PREV) {
+							lastDocumentNumber = Math.max(lastDocumentNumber, number);
 						}
 
-						lastDocumentNumber = Math.max(lastDocumentNumber, document.getNumber());
-						rows.add(new GeneralLedgerRow(1, document, null, account, entry,
-								balances.getBalance(entry.getAccountId())));
-
-						prevAccountId = account.getId();
+						ledgerRows.builder.addEntry(entry, account, documentIndex);
 					}
 				});
 		}
@@ -214,12 +227,12 @@ public class GeneralLedgerModel implements PrintModel {
 			if (sess != null) sess.close();
 		}
 
-		addProfitRow(balances.getProfit());
-
-		if (totalAmountVisible) {
-			rows.add(new GeneralLedgerRow(0, null, null, null, null, null));
-			rows.add(new GeneralLedgerRow(5, null, null, null, null, null));
+		if (monitor.isCancelled()) {
+			return;
 		}
+
+		ledgerRows.finish(balances.getProfit());
+		this.ledgerRows = ledgerRows;
 	}
 
 	/**
@@ -312,7 +325,9 @@ public class GeneralLedgerModel implements PrintModel {
 		writer.writeField("Selite");
 		writer.writeLine();
 
-		for (GeneralLedgerRow row : rows) {
+		for (int i = 0; i < getRowCount(); i++) {
+			GeneralLedgerRow row = getRow(i);
+
 			if (row.type != 1 && row.type != 4) {
 				continue;
 			}
@@ -386,7 +401,8 @@ public class GeneralLedgerModel implements PrintModel {
 		s.writeTextCell("Saldo", "boldAlignRightBorderBottom");
 		s.writeTextCell("Selite", "boldBorderBottom");
 
-		for (GeneralLedgerRow row : rows) {
+		for (int i = 0; i < getRowCount(); i++) {
+			GeneralLedgerRow row = getRow(i);
 			s.addRow();
 
 			if (row.type == 3) {
@@ -452,7 +468,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return rivien lukumäärä
 	 */
 	public int getRowCount() {
-		return rows.size();
+		return (rows != null) ? rows.size() : ledgerRows.getRowCount();
 	}
 
 	/**
@@ -462,7 +478,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return tyyppi
 	 */
 	public int getType(int index) {
-		return rows.get(index).type;
+		return getRow(index).type;
 	}
 
 	/**
@@ -472,7 +488,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return tosite
 	 */
 	public Document getDocument(int index) {
-		return rows.get(index).document;
+		return getRow(index).document;
 	}
 
 	/**
@@ -482,7 +498,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return tili
 	 */
 	public Account getAccount(int index) {
-		return rows.get(index).account;
+		return getRow(index).account;
 	}
 
 	/**
@@ -492,7 +508,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return vienti
 	 */
 	public Entry getEntry(int index) {
-		return rows.get(index).entry;
+		return getRow(index).entry;
 	}
 
 	/**
@@ -503,7 +519,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return tilin saldo
 	 */
 	public BigDecimal getBalance(int index) {
-		return rows.get(index).balance;
+		return getRow(index).balance;
 	}
 
 	/**
@@ -514,7 +530,7 @@ public class GeneralLedgerModel implements PrintModel {
 	 * @return tositelaji
 	 */
 	public DocumentType getDocumentType(int index) {
-		return rows.get(index).documentType;
+		return getRow(index).documentType;
 	}
 
 	/**
@@ -544,6 +560,466 @@ public class GeneralLedgerModel implements PrintModel {
 		return totalCredit;
 	}
 
+	/**
+	 * Palauttaa rivin <code>index</code>.
+	 *
+	 * @param index rivinumero
+	 * @return rivi
+	 * @throws ReportDataException jos rivien hakeminen epäonnistuu
+	 */
+	protected GeneralLedgerRow getRow(int index) {
+		if (rows != null) {
+			return rows.get(index);
+		}
+
+		try {
+			return ledgerRows.get(index);
+		}
+		catch (DataAccessException e) {
+			throw new ReportDataException(e);
+		}
+	}
+
+	/**
+	 * Muodostaa pääkirjan rivit vienneistä. Jos <code>rows</code> on
+	 * <code>null</code>, rivejä ei tallenneta, vaan ainoastaan
+	 * lasketaan rivien lukumäärä.
+	 */
+	private class RowBuilder {
+		public LedgerRows source;
+		public List<GeneralLedgerRow> rows;
+		public int rowIndex;
+		public int prevAccountId;
+		public boolean[] profitRowsAdded;
+		public AccountBalances balances;
+		public BigDecimal startBalance;
+
+		public RowBuilder(LedgerRows source, List<GeneralLedgerRow> rows) {
+			this.source = source;
+			this.rows = rows;
+		}
+
+		public void addEntry(Entry entry, Account account, int documentIndex) {
+			if (account.getType() == Account.TYPE_PROFIT_PREV) {
+				if (prevAccountId != -1)
+					addRow(0, -1, null, null, null);
+
+				addRow(4, documentIndex, account, null, getBalance(account));
+				return;
+			}
+
+			if (prevAccountId != account.getId()) {
+				if (prevAccountId != -1)
+					addRow(0, -1, null, null, null);
+
+				addProfitRows(account);
+				addRow(2, -1, account, null, null);
+			}
+
+			addRow(1, documentIndex, account, entry, getBalance(account));
+			prevAccountId = account.getId();
+		}
+
+		/**
+		 * Lisää tilikauden voitto/tappio -rivit niille tileille, joiden
+		 * numero on pienempi kuin tilin <code>account</code> numero.
+		 * Rivit lisätään samassa järjestyksessä kuin
+		 * <code>addProfitRow()</code>-metodissa.
+		 */
+		private void addProfitRows(Account account) {
+			for (int i = source.profitAccounts.length - 1; i >= 0; i--) {
+				Account profitAccount = source.profitAccounts[i];
+
+				if (!profitRowsAdded[i] &&
+						profitAccount.getNumber().compareTo(account.getNumber()) < 0) {
+					addRow(4, -1, profitAccount, null, source.profit);
+					addRow(0, -1, null, null, null);
+					profitRowsAdded[i] = true;
+				}
+			}
+		}
+
+		public void finish() {
+			for (int i = 0; i < source.profitAccounts.length; i++) {
+				if (!profitRowsAdded[i]) {
+					addRow(0, -1, null, null, null);
+					addRow(4, -1, source.profitAccounts[i], null, source.profit);
+					profitRowsAdded[i] = true;
+				}
+			}
+
+			if (totalAmountVisible) {
+				addRow(0, -1, null, null, null);
+				addRow(5, -1, null, null, null);
+			}
+		}
+
+		private BigDecimal getBalance(Account account) {
+			if (rows == null) {
+				return null;
+			}
+
+			BigDecimal balance = balances.getBalance(account.getId());
+			return (startBalance == null) ? balance : startBalance.add(balance);
+		}
+
+		private void addRow(int type, int documentIndex, Account account,
+				Entry entry, BigDecimal balance) {
+
+			if (rows != null) {
+				rows.add(new GeneralLedgerRow(type, (documentIndex < 0) ? null :
+					source.documents.getDocument(documentIndex),
+					null, account, entry, balance));
+			}
+
+			rowIndex++;
+		}
+	}
+
+	/**
+	 * Pääkirjan rivit, jotka haetaan tietokannasta ikkunoittain. Ikkuna
+	 * alkaa aina viennin kohdalta, ja ikkunan alkukohtaan tallennetaan
+	 * tili, viennin järjestysnumero ja tosite sekä tilin saldo ennen
+	 * vientiä. Ikkunan viennit haetaan tileittäin. Jos tilille on
+	 * kirjattu suuri osa tilikauden vienneistä, viennit haetaan
+	 * tositteiden järjestyksessä ikkunan alkukohdasta alkaen, jotta
+	 * tietokannan ei tarvitse järjestää kaikkia tilin vientejä
+	 * jokaista ikkunaa varten.
+	 */
+	private class LedgerRows extends WindowedRows<GeneralLedgerRow> {
+		public DocumentTable documents;
+		public Account[] profitAccounts;
+		public BigDecimal profit;
+		public RowBuilder builder;
+		private int[] accountIds;
+		private int[] accountSizes;
+		private int accountCount;
+		private int entryCount;
+		private int offset;
+		private int[] windowAccounts;
+		private int[] windowOffsets;
+		private int[] windowDocuments;
+		private int[] windowRowNumbers;
+		private BigDecimal[] windowBalances;
+		private int[] windowPrevAccountIds;
+		private boolean[][] windowProfitRows;
+
+		public LedgerRows() {
+			ArrayList<Account> list = new ArrayList<Account>();
+
+			for (Account account : registry.getAccounts()) {
+				if (account.getType() == Account.TYPE_PROFIT) {
+					list.add(account);
+				}
+			}
+
+			documents = new DocumentTable();
+			profitAccounts = list.toArray(new Account[list.size()]);
+			builder = new RowBuilder(this, null);
+			builder.prevAccountId = -1;
+			builder.profitRowsAdded = new boolean[profitAccounts.length];
+			accountIds = new int[64];
+			accountSizes = new int[64];
+			windowAccounts = new int[16];
+			windowOffsets = new int[16];
+			windowDocuments = new int[16];
+			windowRowNumbers = new int[16];
+			windowBalances = new BigDecimal[16];
+			windowPrevAccountIds = new int[16];
+			windowProfitRows = new boolean[16][];
+		}
+
+		/**
+		 * Käsittelee tilin seuraavan viennin ensimmäisellä
+		 * läpikäynnillä. Jos edellisestä ikkunasta on kulunut riittävästi
+		 * rivejä, viennin kohdalle lisätään uusi ikkuna.
+		 *
+		 * @param entry vienti
+		 * @param account viennin tili
+		 * @param documentIndex viennin tositteen paikka tai -1
+		 * @param balances tilien saldot ennen vientiä
+		 */
+		public void addEntry(Entry entry, Account account, int documentIndex,
+				AccountBalances balances) {
+
+			if (accountCount == 0 || accountIds[accountCount - 1] != account.getId()) {
+				if (accountCount == accountIds.length) {
+					accountIds = Arrays.copyOf(accountIds, accountCount * 2);
+					accountSizes = Arrays.copyOf(accountSizes, accountCount * 2);
+				}
+
+				accountIds[accountCount++] = account.getId();
+				offset = 0;
+			}
+
+			if (documentIndex >= 0 && isWindowFull(builder.rowIndex)) {
+				int window = addWindow(builder.rowIndex);
+				windowAccounts[window] = accountCount - 1;
+				windowOffsets[window] = offset;
+				windowDocuments[window] = documentIndex;
+				windowRowNumbers[window] = entry.getRowNumber();
+				windowBalances[window] = (offset > 0) ? balances.getBalance(account.getId()) : null;
+				windowPrevAccountIds[window] = builder.prevAccountId;
+				windowProfitRows[window] = builder.profitRowsAdded.clone();
+			}
+
+			accountSizes[accountCount - 1]++;
+			entryCount++;
+			offset++;
+		}
+
+		/**
+		 * Lopettaa ensimmäisen läpikäynnin.
+		 *
+		 * @param profit tilikauden voitto
+		 */
+		public void finish(BigDecimal profit) {
+			this.profit = profit;
+
+			if (getWindowCount() == 0) {
+				int window = addWindow(0);
+				windowAccounts[window] = accountCount;
+				windowPrevAccountIds[window] = -1;
+				windowProfitRows[window] = builder.profitRowsAdded.clone();
+			}
+
+			builder.finish();
+			setRowCount(builder.rowIndex);
+			builder = null;
+		}
+
+		protected int addWindow(int index) {
+			int window = super.addWindow(index);
+
+			if (window == windowAccounts.length) {
+				int capacity = window * 2;
+				windowAccounts = Arrays.copyOf(windowAccounts, capacity);
+				windowOffsets = Arrays.copyOf(windowOffsets, capacity);
+				windowDocuments = Arrays.copyOf(windowDocuments, capacity);
+				windowRowNumbers = Arrays.copyOf(windowRowNumbers, capacity);
+				windowBalances = Arrays.copyOf(windowBalances, capacity);
+				windowPrevAccountIds = Arrays.copyOf(windowPrevAccountIds, capacity);
+				windowProfitRows = Arrays.copyOf(windowProfitRows, capacity);
+			}
+
+			return window;
+		}
+
+		/**
+		 * Palauttaa <code>true</code>, jos tilin viennit kannattaa hakea
+		 * tositteiden järjestyksessä. Tositteita käydään läpi keskimäärin
+		 * <code>WINDOW_SIZE * entryCount / size</code> vientiä ikkunaa
+		 * kohti, kun taas tilin kaikkien vientien järjestäminen vaatii
+		 * <code>size</code> vientiä.
+		 */
+		private boolean isDense(int accountIndex) {
+			long size = accountSizes[accountIndex];
+			return size > WINDOW_SIZE && size * size > (long)WINDOW_SIZE * entryCount;
+		}
+
+		protected List<GeneralLedgerRow> fetchWindow(int window) throws DataAccessException {
+			DataSource dataSource = registry.getDataSource();
+			int end = getWindowEnd(window);
+			boolean last = (window == getWindowCount() - 1);
+			ArrayList<GeneralLedgerRow> list = new ArrayList<GeneralLedgerRow>(
+					end - getWindowStart(window));
+
+			RowBuilder windowBuilder = new RowBuilder(this, list);
+			windowBuilder.rowIndex = getWindowStart(window);
+			windowBuilder.prevAccountId = windowPrevAccountIds[window];
+			windowBuilder.profitRowsAdded = windowProfitRows[window].clone();
+			WindowFetcher fetcher = new WindowFetcher(windowBuilder, last ? -1 : end);
+			Session sess = null;
+
+			try {
+				sess = dataSource.openSession();
+				EntryDAO entryDAO = dataSource.getEntryDAO(sess);
+				int entryOrder = (orderBy == ORDER_BY_DATE) ?
+						EntryDAO.ORDER_BY_DOCUMENT_DATE : EntryDAO.ORDER_BY_DOCUMENT_NUMBER;
+
+				for (int i = windowAccounts[window]; i < accountCount && !fetcher.done; i++) {
+					boolean first = (i == windowAccounts[window]);
+					fetcher.account = registry.getAccountById(accountIds[i]);
+
+					if (fetcher.account == null) {
+						continue;
+					}
+
+					windowBuilder.balances = new AccountBalances();
+					windowBuilder.balances.addAccount(fetcher.account);
+					windowBuilder.startBalance = first ? windowBalances[window] : null;
+
+					if (isDense(i)) {
+						fetchDense(entryDAO, entryOrder, fetcher, accountIds[i],
+								first ? windowDocuments[window] : -1,
+								first ? windowRowNumbers[window] : 0);
+					}
+					else {
+						fetcher.setStart(-1, 0);
+						fetcher.skipCount = first ? windowOffsets[window] : 0;
+						entryDAO.getByPeriodIdAndAccountId(period.getId(),
+								accountIds[i], entryOrder, fetcher);
+					}
+				}
+			}
+			finally {
+				if (sess != null) sess.close();
+			}
+
+			if (last) {
+				windowBuilder.finish();
+			}
+
+			return list;
+		}
+
+		/**
+		 * Hakee tilin viennit tositteiden järjestyksessä. Seuraava haku
+		 * aloitetaan viimeksi käsitellyn viennin tositteesta, joten
+		 * tositteen jo käsitellyt viennit ohitetaan.
+		 */
+		private void fetchDense(EntryDAO entryDAO, int entryOrder,
+				WindowFetcher fetcher, int accountId, int documentIndex,
+				int rowNumber) throws DataAccessException {
+
+			Document start;
+			int limit = WINDOW_SIZE;
+
+			if (documentIndex >= 0) {
+				start = documents.getDocument(documentIndex);
+			}
+			else {
+				start = new Document();
+				start.setNumber(0);
+				start.setDate(documents.getFirstDate());
+			}
+
+			fetcher.skipCount = 0;
+			fetcher.setStart(documentIndex, rowNumber);
+
+			while (true) {
+				fetcher.count = 0;
+				fetcher.processed = 0;
+				entryDAO.getByPeriodIdAndAccountId(period.getId(), accountId,
+						entryOrder, start, limit, fetcher);
+
+				if (fetcher.count < limit || fetcher.done) {
+					break;
+				}
+
+				/* Jos haetut viennit oli jo käsitelty, haetaan
+				 * seuraavalla kerralla enemmän vientejä. */
+				limit = (fetcher.processed == 0) ? limit * 2 : WINDOW_SIZE;
+
+				if (fetcher.processed > 0) {
+					start = documents.getDocument(fetcher.lastDocumentIndex);
+					fetcher.setStart(fetcher.lastDocumentIndex, fetcher.lastRowNumber + 1);
+				}
+			}
+		}
+
+		/**
+		 * Vertaa kahden viennin järjestystä tositteen ja rivinumeron
+		 * perusteella.
+		 */
+		public int compare(int documentIndex1, int rowNumber1,
+				int documentIndex2, int rowNumber2) {
+
+			if (orderBy == ORDER_BY_DATE) {
+				long time1 = documents.getTime(documentIndex1);
+				long time2 = documents.getTime(documentIndex2);
+
+				if (time1 != time2) {
+					return (time1 < time2) ? -1 : 1;
+				}
+			}
+
+			int number1 = documents.getNumber(documentIndex1);
+			int number2 = documents.getNumber(documentIndex2);
+
+			if (number1 != number2) {
+				return (number1 < number2) ? -1 : 1;
+			}
+
+			return rowNumber1 - rowNumber2;
+		}
+	}
+
+	/**
+	 * Käsittelee ikkunan viennit, kunnes ikkunan loppukohta saavutetaan.
+	 */
+	private class WindowFetcher implements DTOCallback<Entry> {
+		public Account account;
+		public int count;
+		public int processed;
+		public int skipCount;
+		public int lastDocumentIndex;
+		public int lastRowNumber;
+		public boolean done;
+		private RowBuilder builder;
+		private int end;
+		private int startDocumentIndex;
+		private int startRowNumber;
+
+		public WindowFetcher(RowBuilder builder, int end) {
+			this.builder = builder;
+			this.end = end;
+		}
+
+		/**
+		 * Asettaa viennin, jota edeltävät viennit ohitetaan.
+		 *
+		 * @param documentIndex tositteen paikka tai -1, jos vientejä
+		 * ei ohiteta
+		 * @param rowNumber viennin rivinumero
+		 */
+		public void setStart(int documentIndex, int rowNumber) {
+			this.startDocumentIndex = documentIndex;
+			this.startRowNumber = rowNumber;
+		}
+
+		public void process(Entry entry) {
+			count++;
+
+			if (done) {
+				return;
+			}
+
+			if (skipCount > 0) {
+				skipCount--;
+				return;
+			}
+
+			LedgerRows source = builder.source;
+			int documentIndex = source.documents.indexOf(entry.getDocumentId());
+
+			if (documentIndex < 0 || (startDocumentIndex >= 0 && source.compare(
+					documentIndex, entry.getRowNumber(),
+					startDocumentIndex, startRowNumber) < 0)) {
+				return;
+			}
+
+			processed++;
+			lastDocumentIndex = documentIndex;
+			lastRowNumber = entry.getRowNumber();
+
+			if (end >= 0 && builder.rowIndex >= end) {
+				done = true;
+				return;
+			}
+
+			source.addChecksum(entry);
+			builder.balances.addEntry(entry);
+			long time = source.documents.getTime(documentIndex);
+
+			if (time < startDate.getTime() || time > endDate.getTime()) {
+				return;
+			}
+
+			builder.addEntry(entry, account, documentIndex);
+		}
+	}
+
 	protected class GeneralLedgerRow {
 		public int type;
 		public Document document;
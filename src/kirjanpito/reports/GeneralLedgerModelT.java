@@ -26,6 +26,7 @@ import kirjanpito.util.CSVWriter;
  */
 public class GeneralLedgerModelT extends GeneralLedgerModel {
 	private List<DocumentType> documentTypes;
+	private int prevAccountId;
 
 	public void run() throws DataAccessException {
 		List<Document> documents;
@@ -38,12 +39,14 @@ public class GeneralLedgerModelT extends GeneralLedgerModel {
 		final HashMap<Integer, DocumentType> documentTypeMap =
 			new HashMap<Integer, DocumentType>();
 
-		final AccountBalances balances = new AccountBalances(registry.getAccounts());
+		final List<Account> accounts = registry.getAccounts();
+		final AccountBalances balances = new AccountBalances(accounts);
 		documentTypes = registry.getDocumentTypes();
 		settings = registry.getSettings();
 		rows = new ArrayList<GeneralLedgerRow>();
 		totalDebit = BigDecimal.ZERO;
 		totalCredit = BigDecimal.ZERO;
+		prevAccountId = -1;
 
 		try {
 			sess = dataSource.openSession();
@@ -57,6 +60,10 @@ public class GeneralLedgerModelT extends GeneralLedgerModel {
 				period.getId(), orderBy,
 				new DTOCallback<Entry>() {
 					public void process(Entry entry) {
+						if (monitor.isCancelled()) {
+							return;
+						}
+
 						Account account = registry.getAccountById(entry.getAccountId());
 						Document document = documentMap.get(entry.getDocumentId());
 
@@ -64,6 +71,13 @@ public class GeneralLedgerModelT extends GeneralLedgerModel {
 							return;
 						}
 
+						/* Viennit käydään läpi tilinumeron mukaisessa järjestyksessä. */
+						if (account.getId() != prevAccountId) {
+							prevAccountId = account.getId();
+							monitor.setProgress(accounts.indexOf(account) + 1,
+									accounts.size());
+						}
+
 						balances.addEntry(entry);
 
 						if (document.getDate().before(startDate) || document.getDate().after(endDate)) {
@@ -101,6 +115,10 @@ public class GeneralLedgerModelT extends GeneralLedgerModel {
 			if (sess != null) sess.close();
 		}
 
+		if (monitor.isCancelled()) {
+			return;
+		}
+
 		/* Asetetaan tositelaji sellaisille riveille, joille ei ole vielä asetettu
 		 * tositelajia (esim. alkusaldoviennit). */
 		for (GeneralLedgerRow row : rows) {
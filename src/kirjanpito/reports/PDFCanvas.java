@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
+import com.lowagie.text.Rectangle;
 import com.lowagie.text.pdf.BaseFont;
 import com.lowagie.text.pdf.PdfContentByte;
 import com.lowagie.text.pdf.PdfWriter;
@@ -22,9 +23,21 @@ public class PDFCanvas implements PrintCanvas {
 	public PDFCanvas(Document document, PdfWriter writer)
 		throws IOException, DocumentException
 	{
+		this(document.getPageSize());
 		this.cb = writer.getDirectContent();
-		this.pageWidth = document.getPageSize().getWidth();
-		this.pageHeight = document.getPageSize().getHeight();
+	}
+	
+	/**
+	 * Luo <code>PDFCanvas</code>-olion, jolla ei voi piirtää. Oliota
+	 * käytetään sivun asettelussa tekstin leveyden laskemiseen.
+	 * 
+	 * @param pageSize sivun koko
+	 */
+	public PDFCanvas(Rectangle pageSize)
+		throws IOException, DocumentException
+	{
+		this.pageWidth = pageSize.getWidth();
+		this.pageHeight = pageSize.getHeight();
 		this.normalFont = BaseFont.createFont(BaseFont.HELVETICA,
 				BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
 		this.boldFont = BaseFont.createFont(BaseFont.HELVETICA_BOLD,
@@ -58,37 +71,29 @@ public class PDFCanvas implements PrintCanvas {
 	}
 	
 	public void close() {
-		endText();
+		if (cb != null) {
+			endText();
+		}
 	}
 	
 	public void setHeadingStyle() {
-		beginText();
-		cb.setFontAndSize(normalFont, 14f);
-		calculateLineHeight(normalFont, 14f);
+		setFont(normalFont, 14f);
 	}
 	
 	public void setNormalStyle() {
-		beginText();
-		cb.setFontAndSize(normalFont, 10f);
-		calculateLineHeight(normalFont, 10f);
+		setFont(normalFont, 10f);
 	}
 	
 	public void setSmallStyle() {
-		beginText();
-		cb.setFontAndSize(normalFont, 9f);
-		calculateLineHeight(normalFont, 9f);
+		setFont(normalFont, 9f);
 	}
 	
 	public void setBoldStyle() {
-		beginText();
-		cb.setFontAndSize(boldFont, 10);
-		calculateLineHeight(boldFont, 10);
+		setFont(boldFont, 10);
 	}
 	
 	public void setItalicStyle() {
-		beginText();
-		cb.setFontAndSize(italicFont, 10);
-		calculateLineHeight(italicFont, 10);
+		setFont(italicFont, 10);
 	}
 	
 	public void drawText(int x, int y, String s) {
@@ -121,6 +126,15 @@ public class PDFCanvas implements PrintCanvas {
 		return (int)currentFont.getWidthPoint(s, currentFontSize);
 	}
 	
+	private void setFont(BaseFont font, float size) {
+		if (cb != null) {
+			beginText();
+			cb.setFontAndSize(font, size);
+		}
+		
+		calculateLineHeight(font, size);
+	}
+	
 	private void calculateLineHeight(BaseFont font, float size) {
 		currentFont = font;
 		currentFontSize = size;
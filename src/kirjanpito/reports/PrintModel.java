@@ -5,6 +5,7 @@ import java.io.IOException;
 import kirjanpito.db.DataAccessException;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 
 /**
  * Tulosteen malli.
@@ -19,6 +20,15 @@ public interface PrintModel {
 	 */
 	public void run() throws DataAccessException;
 
+	/**
+	 * Asettaa seurannan, jolle <code>run()</code> ilmoittaa
+	 * edistymisestä. Jos tietojen hakeminen keskeytetään, mallin
+	 * tiedot ovat keskeneräisiä.
+	 *
+	 * @param monitor seuranta
+	 */
+	public void setProgressMonitor(ProgressMonitor monitor);
+
 	/**
 	 * Kirjoittaa tulosteen tiedot CSV-tiedostoon.
 	 *
@@ -0,0 +1,238 @@
+package kirjanpito.reports;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <code>PrintCanvas</code>, joka tallentaa piirtokomennot sivuittain.
+ * Sivun mitat ja tekstin leveydet kysytään toiselta
+ * <code>PrintCanvas</code>-oliolta, joten asettelu on sama kuin
+ * piirrettäessä suoraan siihen. Tallennettu sivu ei muutu, joten
+ * sen voi piirtää uudelleen mistä tahansa säikeestä.
+ *
+ * @author Tommi Helineva
+ */
+public class RecordingCanvas implements PrintCanvas {
+	private PrintCanvas metrics;
+	private byte[] commands;
+	private int[] args;
+	private ArrayList<String> strings;
+	private int commandCount;
+	private int argCount;
+
+	private static final byte HEADING_STYLE = 1;
+	private static final byte NORMAL_STYLE = 2;
+	private static final byte SMALL_STYLE = 3;
+	private static final byte BOLD_STYLE = 4;
+	private static final byte ITALIC_STYLE = 5;
+	private static final byte TEXT = 6;
+	private static final byte TEXT_CENTER = 7;
+	private static final byte TEXT_RIGHT = 8;
+	private static final byte LINE = 9;
+
+	/**
+	 * Luo <code>RecordingCanvas</code>-olion.
+	 *
+	 * @param metrics <code>PrintCanvas</code>, jolta sivun mitat ja
+	 * tekstin leveydet kysytään
+	 */
+	public RecordingCanvas(PrintCanvas metrics) {
+		this.metrics = metrics;
+		this.commands = new byte[256];
+		this.args = new int[512];
+		this.strings = new ArrayList<String>();
+	}
+
+	/**
+	 * Palauttaa edellisen kutsun jälkeen tallennetut piirtokomennot
+	 * ja aloittaa uuden sivun.
+	 *
+	 * @return tallennettu sivu
+	 */
+	public Page takePage() {
+		Page page = new Page(Arrays.copyOf(commands, commandCount),
+				Arrays.copyOf(args, argCount),
+				strings.toArray(new String[strings.size()]));
+
+		commandCount = 0;
+		argCount = 0;
+		strings.clear();
+		return page;
+	}
+
+	public int getPageWidth() {
+		return metrics.getPageWidth();
+	}
+
+	public int getPageHeight() {
+		return metrics.getPageHeight();
+	}
+
+	public int getImageableX() {
+		return metrics.getImageableX();
+	}
+
+	public int getImageableY() {
+		return metrics.getImageableY();
+	}
+
+	public int getImageableWidth() {
+		return metrics.getImageableWidth();
+	}
+
+	public int getImageableHeight() {
+		return metrics.getImageableHeight();
+	}
+
+	public void close() {
+	}
+
+	public void setHeadingStyle() {
+		metrics.setHeadingStyle();
+		add(HEADING_STYLE);
+	}
+
+	public void setNormalStyle() {
+		metrics.setNormalStyle();
+		add(NORMAL_STYLE);
+	}
+
+	public void setSmallStyle() {
+		metrics.setSmallStyle();
+		add(SMALL_STYLE);
+	}
+
+	public void setBoldStyle() {
+		metrics.setBoldStyle();
+		add(BOLD_STYLE);
+	}
+
+	public void setItalicStyle() {
+		metrics.setItalicStyle();
+		add(ITALIC_STYLE);
+	}
+
+	public void drawText(int x, int y, String s) {
+		add(TEXT, x, y);
+		strings.add(s);
+	}
+
+	public void drawTextCenter(int x, int y, String s) {
+		add(TEXT_CENTER, x, y);
+		strings.add(s);
+	}
+
+	public void drawTextRight(int x, int y, String s) {
+		add(TEXT_RIGHT, x, y);
+		strings.add(s);
+	}
+
+	public void drawLine(int x1, int y1, int x2, int y2, float lineWidth) {
+		add(LINE, x1, y1);
+		add(x2, y2, Float.floatToIntBits(lineWidth));
+	}
+
+	public int stringWidth(String s) {
+		return metrics.stringWidth(s);
+	}
+
+	private void add(byte command) {
+		if (commandCount == commands.length) {
+			commands = Arrays.copyOf(commands, commandCount * 2);
+		}
+
+		commands[commandCount++] = command;
+	}
+
+	private void add(byte command, int x, int y) {
+		add(command);
+		ensureArgCapacity(2);
+		args[argCount++] = x;
+		args[argCount++] = y;
+	}
+
+	private void add(int x, int y, int lineWidth) {
+		ensureArgCapacity(3);
+		args[argCount++] = x;
+		args[argCount++] = y;
+		args[argCount++] = lineWidth;
+	}
+
+	private void ensureArgCapacity(int count) {
+		if (argCount + count > args.length) {
+			args = Arrays.copyOf(args, args.length * 2);
+		}
+	}
+
+	/**
+	 * Yhden sivun piirtokomennot.
+	 */
+	public static class Page {
+		private byte[] commands;
+		private int[] args;
+		private String[] strings;
+
+		private Page(byte[] commands, int[] args, String[] strings) {
+			this.commands = commands;
+			this.args = args;
+			this.strings = strings;
+		}
+
+		/**
+		 * Piirtää sivun <code>canvas</code>-olioon.
+		 *
+		 * @param canvas <code>PrintCanvas</code>, johon sivu piirretään
+		 */
+		public void replay(PrintCanvas canvas) {
+			int arg = 0;
+			int string = 0;
+
+			for (byte command : commands) {
+				switch (command) {
+				case HEADING_STYLE:
+					canvas.setHeadingStyle();
+					break;
+
+				case NORMAL_STYLE:
+					canvas.setNormalStyle();
+					break;
+
+				case SMALL_STYLE:
+					canvas.setSmallStyle();
+					break;
+
+				case BOLD_STYLE:
+					canvas.setBoldStyle();
+					break;
+
+				case ITALIC_STYLE:
+					canvas.setItalicStyle();
+					break;
+
+				case TEXT:
+					canvas.drawText(args[arg], args[arg + 1], strings[string++]);
+					arg += 2;
+					break;
+
+				case TEXT_CENTER:
+					canvas.drawTextCenter(args[arg], args[arg + 1], strings[string++]);
+					arg += 2;
+					break;
+
+				case TEXT_RIGHT:
+					canvas.drawTextRight(args[arg], args[arg + 1], strings[string++]);
+					arg += 2;
+					break;
+
+				case LINE:
+					canvas.drawLine(args[arg], args[arg + 1], args[arg + 2],
+							args[arg + 3], Float.intBitsToFloat(args[arg + 4]));
+					arg += 5;
+					break;
+				}
+			}
+
+			canvas.close();
+		}
+	}
+}
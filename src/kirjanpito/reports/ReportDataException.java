@@ -0,0 +1,24 @@
+package kirjanpito.reports;
+
+import kirjanpito.db.DataAccessException;
+
+/**
+ * Poikkeus, joka heitetään, jos tulosteen rivejä ei voida hakea
+ * tietokannasta tulostetta piirrettäessä. Rivien hakeminen epäonnistuu
+ * myös silloin, jos tietokantaa on muutettu tulosteen luomisen
+ * jälkeen. Tuloste on tällöin luotava uudelleen.
+ *
+ * @author Tommi Helineva
+ */
+public class ReportDataException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Luo uuden poikkeuksen.
+	 *
+	 * @param cause poikkeuksen aiheuttaja
+	 */
+	public ReportDataException(DataAccessException cause) {
+		super(cause.getMessage(), cause);
+	}
+}
@@ -21,6 +21,7 @@ import kirjanpito.db.Settings;
 import kirjanpito.util.AccountBalances;
 import kirjanpito.util.CSVWriter;
 import kirjanpito.util.ODFSpreadsheet;
+import kirjanpito.util.ProgressMonitor;
 
 /**
  * Malli ALV-laskelmalle.
@@ -35,6 +36,7 @@ public class VATReportModel implements PrintModel {
 	private Date endDate;
 	private List<Account> accounts;
 	private ArrayList<VATReportRow> rows;
+	private ProgressMonitor monitor = ProgressMonitor.NONE;
 	private BigDecimal totalVatAmount2; // Suoritettava ALV yhteensä
 	private BigDecimal totalVatAmount2M;
 	private BigDecimal totalVatAmount3; // Vähennettävä ALV yhteensä
@@ -157,6 +159,10 @@ public class VATReportModel implements PrintModel {
 		this.settings = settings;
 	}
 
+	public void setProgressMonitor(ProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
 	public void run() throws DataAccessException {
 		Session sess = null;
 		final AccountBalances balances = new AccountBalances(accounts);
@@ -185,7 +191,7 @@ public class VATReportModel implements PrintModel {
 			dataSource.getEntryDAO(sess).getByPeriodIdAndDate(period.getId(),
 				startDate, endDate, 1, new DTOCallback<Entry>() {
 				public void process(Entry entry) {
-					if (entry.getFlag(0)) {
+					if (monitor.isCancelled() || entry.getFlag(0)) {
 						return;
 					}
 
@@ -238,6 +244,10 @@ public class VATReportModel implements PrintModel {
 			if (sess != null) sess.close();
 		}
 
+		if (monitor.isCancelled()) {
+			return;
+		}
+
 		rows = new ArrayList<VATReportRow>();
 		BigDecimal vatExcluded, vatIncluded, vatAmount;
 
@@ -0,0 +1,225 @@
+package kirjanpito.reports;
+
+import java.util.Arrays;
+import java.util.List;
+
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.Entry;
+
+/**
+ * Tulosteen rivit, jotka haetaan tietokannasta ikkunoittain.
+ * Ensimmäisellä läpikäynnillä lasketaan vain rivien lukumäärä ja
+ * ikkunoiden alkukohdat. Aliluokka tallentaa jokaisen ikkunan
+ * alkukohtaan tiedot, joiden avulla ikkunan rivit voidaan muodostaa
+ * uudelleen. Muistissa pidetään enintään kaksi viimeksi käytettyä
+ * ikkunaa.
+ *
+ * <p>Aliluokka lisää kummallakin läpikäynnillä ikkunan viennit
+ * tarkistussummaan <code>addChecksum()</code>-metodilla. Jos haetun
+ * ikkunan rivien lukumäärä tai tarkistussumma poikkeaa ensimmäisestä
+ * läpikäynnistä, tietokantaa on muutettu tulosteen luomisen jälkeen,
+ * ja rivien hakeminen epäonnistuu.</p>
+ *
+ * @author Tommi Helineva
+ */
+public abstract class WindowedRows<T> {
+	private int[] starts;
+	private long[] checksums;
+	private int windowCount;
+	private int rowCount;
+	private int fetchedWindow;
+	private long fetchedChecksum;
+	private int[] cachedWindows;
+	private Object[] cachedRows;
+
+	/** Ikkunan rivien vähimmäismäärä. */
+	public static final int WINDOW_SIZE = 1000;
+
+	public WindowedRows() {
+		starts = new int[16];
+		checksums = new long[16];
+		fetchedWindow = -1;
+		cachedWindows = new int[] { -1, -1 };
+		cachedRows = new Object[2];
+	}
+
+	/**
+	 * Palauttaa rivien lukumäärän.
+	 *
+	 * @return rivien lukumäärä
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Palauttaa ikkunoiden lukumäärän.
+	 *
+	 * @return ikkunoiden lukumäärä
+	 */
+	public int getWindowCount() {
+		return windowCount;
+	}
+
+	/**
+	 * Palauttaa rivin <code>index</code>. Jos rivin ikkuna ei ole
+	 * muistissa, ikkunan rivit haetaan tietokannasta.
+	 *
+	 * @param index rivinumero
+	 * @return rivi
+	 * @throws DataAccessException jos rivien hakeminen epäonnistuu tai
+	 * ikkunan viennit ovat muuttuneet ensimmäisen läpikäynnin jälkeen
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T get(int index) throws DataAccessException {
+		if (index < 0 || index >= rowCount) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + rowCount);
+		}
+
+		int window = Arrays.binarySearch(starts, 0, windowCount, index);
+
+		if (window < 0) {
+			window = -window - 2;
+		}
+
+		List<T> rows;
+
+		if (cachedWindows[0] == window) {
+			rows = (List<T>)cachedRows[0];
+		}
+		else {
+			if (cachedWindows[1] == window) {
+				rows = (List<T>)cachedRows[1];
+			}
+			else {
+				rows = fetch(window);
+			}
+
+			/* Viimeksi käytetty ikkuna on ensimmäisenä. */
+			cachedWindows[1] = cachedWindows[0];
+			cachedRows[1] = cachedRows[0];
+			cachedWindows[0] = window;
+			cachedRows[0] = rows;
+		}
+
+		return rows.get(index - starts[window]);
+	}
+
+	/**
+	 * Hakee ikkunan rivit ja tarkistaa, että ikkunan rivien lukumäärä
+	 * ja tarkistussumma ovat samat kuin ensimmäisellä läpikäynnillä.
+	 */
+	private List<T> fetch(int window) throws DataAccessException {
+		List<T> rows;
+		fetchedWindow = window;
+		fetchedChecksum = 0;
+
+		try {
+			rows = fetchWindow(window);
+		}
+		finally {
+			fetchedWindow = -1;
+		}
+
+		if (rows.size() != getWindowEnd(window) - starts[window] ||
+				fetchedChecksum != checksums[window]) {
+			throw new DataAccessException(
+					"Tulosteen tiedot ovat muuttuneet tulosteen luomisen jälkeen.");
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Lisää ikkunan, joka alkaa rivistä <code>index</code>.
+	 *
+	 * @param index ikkunan ensimmäinen rivi
+	 * @return ikkunan numero
+	 */
+	protected int addWindow(int index) {
+		if (windowCount == starts.length) {
+			starts = Arrays.copyOf(starts, windowCount * 2);
+			checksums = Arrays.copyOf(checksums, windowCount * 2);
+		}
+
+		starts[windowCount] = index;
+		checksums[windowCount] = 0;
+		return windowCount++;
+	}
+
+	/**
+	 * Lisää viennin ikkunan tarkistussummaan. Ensimmäisellä
+	 * läpikäynnillä vienti lisätään viimeiseen ikkunaan ja ikkunaa
+	 * haettaessa haettavaan ikkunaan. Vientien järjestys ei vaikuta
+	 * tarkistussummaan.
+	 *
+	 * @param entry vienti
+	 */
+	protected void addChecksum(Entry entry) {
+		long h = entry.getId();
+		h = h * 31 + entry.getDocumentId();
+		h = h * 31 + entry.getAccountId();
+		h = h * 31 + (entry.isDebit() ? 1 : 0);
+		h = h * 31 + entry.getAmount().stripTrailingZeros().hashCode();
+		h = h * 31 + entry.getDescription().hashCode();
+		h = h * 31 + entry.getRowNumber();
+		h = h * 31 + entry.getFlags();
+		h *= 0x9E3779B97F4A7C15L;
+
+		if (fetchedWindow >= 0) {
+			fetchedChecksum += h;
+		}
+		else {
+			checksums[windowCount - 1] += h;
+		}
+	}
+
+	/**
+	 * Palauttaa ikkunan ensimmäisen rivin numeron.
+	 *
+	 * @param window ikkunan numero
+	 * @return ikkunan ensimmäinen rivi
+	 */
+	protected int getWindowStart(int window) {
+		return starts[window];
+	}
+
+	/**
+	 * Palauttaa ikkunan viimeistä riviä seuraavan rivin numeron.
+	 *
+	 * @param window ikkunan numero
+	 * @return ikkunan loppukohta
+	 */
+	protected int getWindowEnd(int window) {
+		return (window + 1 < windowCount) ? starts[window + 1] : rowCount;
+	}
+
+	/**
+	 * Tarkistaa, pitääkö rivin <code>index</code> kohdalle lisätä
+	 * uusi ikkuna.
+	 *
+	 * @param index rivinumero
+	 * @return <code>true</code>, jos uusi ikkuna on lisättävä
+	 */
+	protected boolean isWindowFull(int index) {
+		return windowCount == 0 || index - starts[windowCount - 1] >= WINDOW_SIZE;
+	}
+
+	/**
+	 * Asettaa rivien lukumäärän ensimmäisen läpikäynnin jälkeen.
+	 *
+	 * @param rowCount rivien lukumäärä
+	 */
+	protected void setRowCount(int rowCount) {
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Hakee ikkunan rivit tietokannasta.
+	 *
+	 * @param window ikkunan numero
+	 * @return ikkunan rivit
+	 * @throws DataAccessException jos rivien hakeminen epäonnistuu
+	 */
+	protected abstract List<T> fetchWindow(int window) throws DataAccessException;
+}
@@ -79,20 +79,25 @@ import javax.swing.table.TableColumnModel;
 
 import kirjanpito.db.Account;
 import kirjanpito.db.DataAccessException;
+import kirjanpito.db.DataSource;
 import kirjanpito.db.Document;
 import kirjanpito.db.DocumentType;
 import kirjanpito.db.Entry;
 import kirjanpito.db.EntryTemplate;
 import kirjanpito.db.Period;
 import kirjanpito.db.Settings;
+import kirjanpito.db.cache.CacheRegion;
+import kirjanpito.db.cache.CachingDataSource;
 import kirjanpito.models.COAModel;
 import kirjanpito.models.CSVExportWorker;
+import kirjanpito.models.CSVImportWorker;
 import kirjanpito.models.DataSourceInitializationModel;
 import kirjanpito.models.DataSourceInitializationWorker;
 import kirjanpito.models.DocumentModel;
 import kirjanpito.models.DocumentTypeModel;
 import kirjanpito.models.EntryTableModel;
 import kirjanpito.models.EntryTemplateModel;
+import kirjanpito.models.PrintModelWorker;
 import kirjanpito.models.PrintPreviewModel;
 import kirjanpito.models.PropertiesModel;
 import kirjanpito.models.ReportEditorModel;
@@ -182,6 +187,7 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 	private DecimalFormat formatter;
 	private AccountSelectionDialog accountSelectionDialog;
 	private PrintPreviewFrame printPreviewFrame;
+	private int printWorkerCount;
 	private boolean searchEnabled;
 	private BigDecimal debitTotal;
 	private BigDecimal creditTotal;
@@ -509,6 +515,9 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		menu.add(SwingUtils.createMenuItem("Vie tiedostoon",
 				null, 'V', null, exportListener));
 
+		menu.add(SwingUtils.createMenuItem("Tuo tiedostosta",
+				null, 'u', null, importListener));
+
 		/* Luodaan Ohje-valikko. */
 		menu = new JMenu("Ohje");
 		menu.setMnemonic('O');
@@ -521,6 +530,9 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		menu.add(SwingUtils.createMenuItem("Virheenjäljitystietoja", null, 'V',
 				null, debugListener));
 
+		menu.add(SwingUtils.createMenuItem("Välimuistin tilastot", null, 'm',
+				null, cacheStatisticsListener));
+
 		menu.add(SwingUtils.createMenuItem("Tietoja ohjelmasta", null, 'T',
 				null, aboutListener));
 
@@ -1037,12 +1049,23 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 	 * @param index tositteen järjestysnumero
 	 */
 	public void goToDocument(int index) {
+		goToDocument(index, -1);
+	}
+
+	/**
+	 * Siirtyy tositteeseen, jonka järjestysnumero on <code>index</code>
+	 * ja tositenumero <code>number</code>.
+	 *
+	 * @param index tositteen järjestysnumero
+	 * @param number tositenumero tai -1, jos tositenumeroa ei tiedetä
+	 */
+	public void goToDocument(int index, int number) {
 		if (!saveDocumentIfChanged()) {
 			return;
 		}
 
 		try {
-			model.goToDocument(index);
+			model.goToDocument(index, number);
 		}
 		catch (DataAccessException e) {
 			String message = "Tositetietojen hakeminen epäonnistui";
@@ -1124,7 +1147,7 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		 * tai haku on kytketty pois päältä. */
 		if (invalidDocuments) {
 			try {
-				model.fetchDocuments(index);
+				model.fetchDocuments(index, number);
 			}
 			catch (DataAccessException e) {
 				String message = "Tositetietojen hakeminen epäonnistui";
@@ -1138,7 +1161,7 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 			updateTotalRow();
 		}
 		else {
-			goToDocument(index);
+			goToDocument(index, number);
 		}
 	}
 
@@ -1208,7 +1231,7 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 	 * Avaa tilikarttaikkunan.
 	 */
 	public void showChartOfAccounts() {
-		if (!saveDocumentIfChanged()) {
+		if (!checkPrintWorkers() || !saveDocumentIfChanged()) {
 			return;
 		}
 
@@ -1250,6 +1273,63 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		}
 	}
 
+	/**
+	 * Tuo tositteet CSV-tiedostosta valitun tositelajin numeroille.
+	 * Tiedosto tarkistetaan ensin, ja tositteet tallennetaan vasta,
+	 * kun käyttäjä on hyväksynyt tuonnin.
+	 */
+	public void importDocuments() {
+		if (!saveDocumentIfChanged()) {
+			return;
+		}
+
+		AppSettings settings = AppSettings.getInstance();
+		String path = settings.getString("csv-directory", ".");
+		JFileChooser fc = new JFileChooser(path);
+		fc.setFileFilter(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isDirectory() || file.getName().endsWith(".csv");
+			}
+
+			public String getDescription() {
+				return "CSV-tiedostot";
+			}
+		});
+
+		if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+			File file = fc.getSelectedFile();
+			settings.set("csv-directory",
+					file.getParentFile().getAbsolutePath());
+
+			importDocuments(file, true);
+		}
+	}
+
+	/**
+	 * Tuo tositteet CSV-tiedostosta taustalla. Ikkuna poistetaan
+	 * käytöstä tositteiden tallentamisen ajaksi, koska SQLite-istunnot
+	 * käyttävät samaa yhteyttä. Muuten ikkunassa tehdyt muutokset
+	 * tallentuisivat tuonnin transaktioon, tai tuonnin virhe peruisi ne.
+	 *
+	 * @param file CSV-tiedosto
+	 * @param dryRun <code>true</code>, jos tiedosto vain tarkistetaan
+	 */
+	private void importDocuments(File file, boolean dryRun) {
+		CSVImportWorker worker = new CSVImportWorker(registry,
+				model.getDocumentType(), file, dryRun);
+		TaskProgressDialog dialog = new TaskProgressDialog(
+				this, "CSV-tiedoston tuonti", worker);
+
+		if (!dryRun) {
+			setEnabled(false);
+		}
+
+		dialog.create();
+		dialog.setVisible(true);
+		worker.addPropertyChangeListener(new ImportWorkerListener(worker));
+		worker.execute();
+	}
+
 	/**
 	 * Päättää ALV-tilit.
 	 */
@@ -1953,17 +2033,6 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		COAPrintModel printModel = new COAPrintModel();
 		printModel.setRegistry(registry);
 		printModel.setMode(mode);
-
-		try {
-			printModel.run();
-		}
-		catch (DataAccessException e) {
-			String message = "Tulosteen luominen epäonnistui";
-			logger.log(Level.SEVERE, message, e);
-			SwingUtils.showDataAccessErrorMessage(this, e, message);
-			return;
-		}
-
 		showPrintPreview(printModel, new COAPrint(printModel));
 	}
 
@@ -2066,6 +2135,10 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 	 * Avaa ALV-kantojen muutosikkunan.
 	 */
 	public void showVATChangeDialog() {
+		if (!checkPrintWorkers()) {
+			return;
+		}
+
 		VATChangeDialog dialog = new VATChangeDialog(this, registry);
 		dialog.create();
 		dialog.setVisible(true);
@@ -2106,6 +2179,36 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		}
 	}
 
+	/**
+	 * Näyttää tietokannan välimuistien osumien ja ohihakujen
+	 * lukumäärät.
+	 */
+	public void showCacheStatistics() {
+		DataSource dataSource = registry.getDataSource();
+
+		if (dataSource == null) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder("Välimuistin tilastot\n");
+
+		if (dataSource instanceof CachingDataSource) {
+			for (CacheRegion<?, ?> region :
+					((CachingDataSource)dataSource).getCacheRegions()) {
+
+				sb.append(String.format("\n%s: %d osumaa, %d ohihakua, %d arvoa",
+						region.getName(), region.getHitCount(),
+						region.getMissCount(), region.getSize()));
+			}
+		}
+
+		sb.append(String.format("\nKyselyt: %d osumaa, %d ohihakua",
+				dataSource.getStatementCacheHitCount(),
+				dataSource.getStatementCacheMissCount()));
+
+		SwingUtils.showInformationMessage(this, sb.toString());
+	}
+
 	/**
 	 * Näyttää tietoja ohjelmasta.
 	 */
@@ -2766,22 +2869,50 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 	}
 
 	/**
-	 * Näyttää tulosteiden esikatseluikkunan.
+	 * Hakee tulosteen tiedot taustalla ja näyttää tulosteiden
+	 * esikatseluikkunan, kun tiedot on haettu. Tietojen hakemisen
+	 * aikana näytetään edistymisikkuna, josta hakemisen voi keskeyttää.
 	 *
 	 * @param printModel tulosteen malli
 	 * @param print tuloste
 	 */
 	protected void showPrintPreview(PrintModel printModel, Print print) {
-		try {
-			printModel.run();
-		}
-		catch (DataAccessException e) {
-			String message = "Tulosteen luominen epäonnistui";
-			logger.log(Level.SEVERE, message, e);
-			SwingUtils.showDataAccessErrorMessage(this, e, message);
-			return;
+		PrintModelWorker worker = new PrintModelWorker(printModel);
+		TaskProgressDialog dialog = new TaskProgressDialog(this,
+				"Tulosteen luominen", worker);
+
+		dialog.create();
+		dialog.setVisible(true);
+		worker.addPropertyChangeListener(new PrintWorkerListener(worker, print));
+		printWorkerCount++;
+		worker.execute();
+	}
+
+	/**
+	 * Tarkistaa, että yhtään tulostetta ei ole luomassa. Tulosteiden
+	 * mallit lukevat tilikarttaa taustasäikeessä, joten tilikarttaa ei
+	 * voi muokata, kun tulosteen luominen on kesken.
+	 *
+	 * @return <code>true</code>, jos tilikarttaa voi muokata
+	 */
+	private boolean checkPrintWorkers() {
+		if (printWorkerCount > 0 || (printPreviewFrame != null &&
+				printPreviewFrame.isPrintModelRunning())) {
+			SwingUtils.showInformationMessage(this,
+				"Tilikarttaa ei voi muokata, kun tulosteen luominen on kesken.");
+			return false;
 		}
 
+		return true;
+	}
+
+	/**
+	 * Näyttää tulosteiden esikatseluikkunan.
+	 *
+	 * @param printModel tulosteen malli, jonka tiedot on haettu
+	 * @param print tuloste
+	 */
+	private void openPrintPreview(PrintModel printModel, Print print) {
 		print.setSettings(registry.getSettings());
 		PrintPreviewModel previewModel;
 
@@ -3044,6 +3175,13 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		}
 	};
 
+	/* Tuo */
+	private ActionListener importListener = new ActionListener() {
+		public void actionPerformed(ActionEvent e) {
+			importDocuments();
+		}
+	};
+
 	/* Tilikartta */
 	private ActionListener chartOfAccountsListener = new ActionListener() {
 		public void actionPerformed(ActionEvent e) {
@@ -3263,6 +3401,13 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		}
 	};
 
+	/* Välimuistin tilastot */
+	private ActionListener cacheStatisticsListener = new ActionListener() {
+		public void actionPerformed(ActionEvent e) {
+			showCacheStatistics();
+		}
+	};
+
 	/* Tietoja ohjelmasta */
 	private ActionListener aboutListener = new ActionListener() {
 		public void actionPerformed(ActionEvent e) {
@@ -3478,6 +3623,126 @@ public class DocumentFrame extends JFrame implements AccountSelectionListener {
 		}
 	};
 
+	private class ImportWorkerListener implements PropertyChangeListener {
+		private CSVImportWorker worker;
+
+		public ImportWorkerListener(CSVImportWorker worker) {
+			this.worker = worker;
+		}
+
+		public void propertyChange(PropertyChangeEvent ev) {
+			if (!ev.getPropertyName().equals("state") ||
+					worker.getState() != StateValue.DONE) {
+				return;
+			}
+
+			Window owner = DocumentFrame.this;
+			int count;
+
+			if (!worker.isDryRun()) {
+				setEnabled(true);
+			}
+
+			try {
+				count = worker.get();
+			}
+			catch (CancellationException e) {
+				return;
+			}
+			catch (Exception e) {
+				String message = "Tositteiden tuonti epäonnistui";
+				logger.log(Level.SEVERE, message, e.getCause());
+
+				if (e.getCause() instanceof DataAccessException) {
+					SwingUtils.showDataAccessErrorMessage(owner,
+							(DataAccessException)e.getCause(), message);
+				}
+				else {
+					SwingUtils.showErrorMessage(owner, message + ". " +
+							e.getCause().getMessage());
+				}
+
+				return;
+			}
+
+			if (worker.getErrorCount() > 0) {
+				StringBuilder sb = new StringBuilder("Tiedostossa on virheitä:\n");
+
+				for (String error : worker.getErrors()) {
+					sb.append('\n').append(error);
+				}
+
+				if (worker.getErrorCount() > worker.getErrors().size()) {
+					sb.append(String.format("\n\n... ja %d muuta virhettä.",
+							worker.getErrorCount() - worker.getErrors().size()));
+				}
+
+				SwingUtils.showErrorMessage(owner, sb.toString());
+			}
+			else if (worker.isDryRun()) {
+				int result = JOptionPane.showConfirmDialog(owner, String.format(
+						"Tiedostossa on %d tositetta ja %d vientiä. Tositteille " +
+						"annetaan numerot %d–%d.\n\nHaluatko tuoda tositteet?",
+						worker.getLastNumber() - worker.getFirstNumber() + 1,
+						worker.getEntryCount(), worker.getFirstNumber(),
+						worker.getLastNumber()),
+						Kirjanpito.APP_NAME, JOptionPane.YES_NO_OPTION,
+						JOptionPane.QUESTION_MESSAGE);
+
+				if (result == JOptionPane.YES_OPTION) {
+					importDocuments(worker.getFile(), false);
+				}
+			}
+			else {
+				refreshModel(true);
+				SwingUtils.showInformationMessage(owner, String.format(
+						"Tiedostosta tuotiin %d tositetta.", count));
+			}
+		}
+	}
+
+	private class PrintWorkerListener implements PropertyChangeListener {
+		private PrintModelWorker worker;
+		private Print print;
+
+		public PrintWorkerListener(PrintModelWorker worker, Print print) {
+			this.worker = worker;
+			this.print = print;
+		}
+
+		public void propertyChange(PropertyChangeEvent ev) {
+			if (!ev.getPropertyName().equals("state") ||
+					worker.getState() != StateValue.DONE) {
+				return;
+			}
+
+			printWorkerCount--;
+
+			try {
+				worker.get();
+			}
+			catch (CancellationException e) {
+				return;
+			}
+			catch (Exception e) {
+				String message = "Tulosteen luominen epäonnistui";
+				logger.log(Level.SEVERE, message, e.getCause());
+
+				if (e.getCause() instanceof DataAccessException) {
+					SwingUtils.showDataAccessErrorMessage(DocumentFrame.this,
+							(DataAccessException)e.getCause(), message);
+				}
+				else {
+					SwingUtils.showErrorMessage(DocumentFrame.this, message);
+				}
+
+				return;
+			}
+
+			openPrintPreview(worker.getPrintModel(), print);
+		}
+	}
+
 	private class InitializationWorkerListener implements PropertyChangeListener {
 		private Window owner;
 		private DataSourceInitializationWorker worker;
@@ -15,8 +15,12 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.print.PageFormat;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,12 +40,16 @@ import javax.swing.JScrollPane;
 import javax.swing.JToolBar;
 import javax.swing.JViewport;
 import javax.swing.KeyStroke;
+import javax.swing.SwingWorker.StateValue;
 import javax.swing.filechooser.FileFilter;
 
+import kirjanpito.models.PDFExportWorker;
+import kirjanpito.models.PrintModelWorker;
 import kirjanpito.models.PrintPreviewModel;
 import kirjanpito.reports.AWTCanvas;
 import kirjanpito.reports.AWTPrintable;
 import kirjanpito.reports.Print;
+import kirjanpito.reports.ReportDataException;
 import kirjanpito.util.AppSettings;
 
 /**
@@ -56,6 +64,7 @@ public class PrintPreviewFrame extends JFrame {
 	private JLabel pageLabel;
 	private JComboBox zoomComboBox;
 	private int px, py, dx, dy;
+	private boolean printModelRunning;
 
 	private static final double[] ZOOM_LEVELS = {
 		-1, 0.50, 0.70, 0.85, 1.00, 1.25, 1.50, 1.75, 2.00, 3.00, 4.00
@@ -246,6 +255,20 @@ public class PrintPreviewFrame extends JFrame {
 		previewPanel = new PrintPreviewPanel();
 		previewPanel.setScale(1.00);
 		previewPanel.setPreferredSize(new Dimension(710, 500));
+		previewPanel.addPropertyChangeListener("printException",
+				new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				Throwable cause = ((Throwable)evt.getNewValue()).getCause();
+
+				if (cause instanceof ReportDataException) {
+					reportDataFailed((ReportDataException)cause);
+				}
+				else {
+					logger.log(Level.SEVERE, "Tulosteen piirtäminen epäonnistui",
+							(Throwable)evt.getNewValue());
+				}
+			}
+		});
 
 		scrollPane = new JScrollPane(previewPanel,
 				JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
@@ -332,6 +355,8 @@ public class PrintPreviewFrame extends JFrame {
 	 * Tulostaa tulosteen.
 	 */
 	public void print() {
+		previewPanel.setPrintable(null);
+
 		try {
 			model.print();
 		}
@@ -340,6 +365,9 @@ public class PrintPreviewFrame extends JFrame {
 			SwingUtils.showErrorMessage(this,
 					"Tulostaminen epäonnistui. " + e.getMessage());
 		}
+		finally {
+			updatePrint();
+		}
 	}
 
 	/**
@@ -411,7 +439,7 @@ public class PrintPreviewFrame extends JFrame {
 					model.writeCSV(file, ';');
 				}
 				else if (ext.equals(".pdf")) {
-					model.writePDF(file);
+					writePDF(file);
 				}
 				else if (ext.equals(".ods")) {
 					model.writeODS(file);
@@ -442,7 +470,7 @@ public class PrintPreviewFrame extends JFrame {
 						file = new File(file.getAbsolutePath() + ".pdf");
 					}
 
-					model.writePDF(file);
+					writePDF(file);
 				}
 			}
 			catch (IOException e) {
@@ -450,9 +478,140 @@ public class PrintPreviewFrame extends JFrame {
 				SwingUtils.showErrorMessage(this,
 						"Tallentaminen epäonnistui. " + e.getMessage());
 			}
+			catch (ReportDataException e) {
+				reportDataFailed(e);
+			}
 		}
 	}
 
+	/**
+	 * Tallentaa tulosteen PDF-tiedostoon taustalla. Esikatselu
+	 * poistetaan käytöstä tallentamisen ajaksi, koska tuloste asetellaan
+	 * uudelleen PDF-sivuille.
+	 *
+	 * @param file PDF-tiedosto
+	 */
+	private void writePDF(final File file) {
+		final PDFExportWorker worker = new PDFExportWorker(model, file);
+		TaskProgressDialog dialog = new TaskProgressDialog(this,
+				"PDF-tiedoston tallentaminen", worker);
+
+		setEnabled(false);
+		previewPanel.setPrintable(null);
+		dialog.create();
+		dialog.setVisible(true);
+
+		worker.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (!"finished".equals(evt.getPropertyName())) {
+					return;
+				}
+
+				setEnabled(true);
+				updatePrint();
+
+				if (worker.isCancelled()) {
+					return;
+				}
+
+				try {
+					worker.get();
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof ReportDataException) {
+						reportDataFailed((ReportDataException)e.getCause());
+						return;
+					}
+
+					logger.log(Level.SEVERE, "Tallentaminen epäonnistui", e.getCause());
+					SwingUtils.showErrorMessage(PrintPreviewFrame.this,
+							"Tallentaminen epäonnistui. " + e.getCause().getMessage());
+				}
+				catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+
+		worker.execute();
+	}
+
+	/**
+	 * Ilmoittaa, että tulosteen rivien hakeminen epäonnistui, ja luo
+	 * tulosteen uudelleen. Keskeneräistä tulostetta ei näytetä.
+	 *
+	 * @param e poikkeus
+	 */
+	private void reportDataFailed(ReportDataException e) {
+		logger.log(Level.WARNING, "Tulosteen rivien hakeminen epäonnistui", e);
+		previewPanel.setPrintable(null);
+		SwingUtils.showErrorMessage(this, e.getMessage() +
+				" Tuloste luodaan uudelleen.");
+		rerunPrintModel();
+	}
+
+	/**
+	 * Hakee tulosteen tiedot uudelleen taustalla ja päivittää
+	 * esikatselun. Ikkuna poistetaan käytöstä hakemisen ajaksi. Jos
+	 * hakeminen keskeytetään tai epäonnistuu, esikatseluikkuna
+	 * piilotetaan, koska tulosteen tiedot ovat keskeneräiset.
+	 */
+	private void rerunPrintModel() {
+		final PrintModelWorker worker = new PrintModelWorker(model.getPrintModel());
+		TaskProgressDialog dialog = new TaskProgressDialog(this,
+				"Tulosteen luominen", worker);
+
+		printModelRunning = true;
+		setEnabled(false);
+		dialog.create();
+		dialog.setVisible(true);
+
+		worker.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (!"state".equals(evt.getPropertyName()) ||
+						worker.getState() != StateValue.DONE) {
+					return;
+				}
+
+				printModelRunning = false;
+				setEnabled(true);
+
+				try {
+					worker.get();
+				}
+				catch (CancellationException e) {
+					setVisible(false);
+					return;
+				}
+				catch (Exception e) {
+					logger.log(Level.SEVERE, "Tulosteen luominen epäonnistui", e.getCause());
+					SwingUtils.showErrorMessage(PrintPreviewFrame.this,
+							"Tulosteen luominen epäonnistui. " + e.getCause().getMessage());
+					setVisible(false);
+					return;
+				}
+
+				updatePrint();
+
+				if (model.getPageIndex() >= model.getPageCount()) {
+					model.setPageIndex(Math.max(0, model.getPageCount() - 1));
+					updatePage();
+				}
+			}
+		});
+
+		worker.execute();
+	}
+
+	/**
+	 * Ilmoittaa, haetaanko tulosteen tietoja uudelleen.
+	 *
+	 * @return <code>true</code>, jos tulosteen luominen on kesken
+	 */
+	public boolean isPrintModelRunning() {
+		return printModelRunning;
+	}
+
 	/**
 	 * Siirtyy edelliselle sivulle.
 	 */
@@ -493,6 +652,9 @@ public class PrintPreviewFrame extends JFrame {
 			title = "Tulosteen esikatselu";
 		}
 		else {
+			/* Odotetaan, että esikatselun taustapiirto päättyy,
+			 * ennen kuin tulosteen asettelu muuttuu. */
+			previewPanel.setPrintable(null);
 			PageFormat pageFormat = model.createPageFormat();
 			AWTCanvas canvas = new AWTCanvas(pageFormat);
 			print.setCanvas(canvas);
@@ -4,18 +4,47 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.awt.print.PrinterException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
- * Tulosteiden esikatselupaneeli.
+ * Tulosteiden esikatselupaneeli. Sivut piirretään kuviksi, jotka
+ * säilytetään välimuistissa sivunumeron ja mittakaavan mukaan, joten
+ * vierittäminen ja sivun vaihtaminen eivät piirrä sivua uudelleen.
+ * Näytettävän sivun viereiset sivut piirretään taustasäikeessä.
+ * 
+ * <p>Tuloste ei kestä samanaikaista piirtämistä, joten kaikki
+ * piirtäminen tehdään <code>renderLock</code>-lukon sisällä.
+ * <code>setPrintable()</code> odottaa, että käynnissä oleva
+ * taustapiirto päättyy, joten sen jälkeen tulostetta voidaan käyttää
+ * turvallisesti muualla.</p>
+ * 
+ * <p>Jos sivun piirtäminen epäonnistuu, paneeli lopettaa piirtämisen
+ * ja ilmoittaa virheestä tapahtumankäsittelysäikeessä
+ * <code>printException</code>-ominaisuuden muutoksena. Piirtämistä
+ * jatketaan, kun tuloste asetetaan uudelleen.</p>
+ * 
+ * <p>Taustasäie lopetetaan, kun tulosteeksi asetetaan
+ * <code>null</code> tai paneeli poistetaan näkyvistä, ja säie
+ * päättyy myös itsestään, kun sillä ei ole tehtäviä.</p>
  * 
  * @author Tommi Helineva
  */
@@ -24,11 +53,31 @@ public class PrintPreviewPanel extends JPanel {
 	private Printable printable;
 	private int pageIndex;
 	private double scale;
+	private int prerenderIndex;
+	private double prerenderScale;
+	private final Object renderLock;
+	private final PageCache cache;
+	private ExecutorService executor;
+	private List<Future<?>> prerenderTasks;
+	private int generation;
+	private PrinterException printException;
+	
+	/** Välimuistissa olevien kuvien enimmäiskoko tavuina. */
+	private static final long CACHE_SIZE = 48L * 1024 * 1024;
+	
+	/** Kuinka monta sivua piirretään valmiiksi kumpaankin suuntaan. */
+	private static final int PRERENDER_PAGES = 2;
+	
+	/** Kuinka monta sekuntia taustasäie odottaa uusia tehtäviä. */
+	private static final int KEEP_ALIVE_SECONDS = 10;
 	
 	private static final long serialVersionUID = 1L;
 	
 	public PrintPreviewPanel() {
 		scale = -1;
+		renderLock = new Object();
+		cache = new PageCache();
+		prerenderTasks = new ArrayList<Future<?>>();
 	}
 	
 	/**
@@ -46,7 +95,11 @@ public class PrintPreviewPanel extends JPanel {
 	 * @param pageFormat sivun asetukset
 	 */
 	public void setPageFormat(PageFormat pageFormat) {
-		this.pageFormat = pageFormat;
+		synchronized (renderLock) {
+			cancelPrerendering();
+			this.pageFormat = pageFormat;
+			cache.clear();
+		}
 	}
 
 	/**
@@ -59,12 +112,23 @@ public class PrintPreviewPanel extends JPanel {
 	}
 	
 	/**
-	 * Asettaa tulosteen.
+	 * Asettaa tulosteen. Keskeneräinen taustapiirto odotetaan
+	 * loppuun, ja välimuisti tyhjennetään. Jos tulosteeksi asetetaan
+	 * <code>null</code>, taustasäie lopetetaan.
 	 * 
 	 * @param printable tuloste
 	 */
 	public void setPrintable(Printable printable) {
-		this.printable = printable;
+		synchronized (renderLock) {
+			cancelPrerendering();
+			this.printable = printable;
+			printException = null;
+			cache.clear();
+			
+			if (printable == null) {
+				shutdownExecutor();
+			}
+		}
 	}
 	
 	/**
@@ -162,35 +226,192 @@ public class PrintPreviewPanel extends JPanel {
 		/* Piirretään sivun reunat. */
 		g.drawRect(rect.x - 1, rect.y - 1, rect.width + 1, rect.height + 1);
 		
-		AffineTransform transform = new AffineTransform();
-		Image image = null;
-
-		image = createImage(dirtyPaperBounds.width, dirtyPaperBounds.height);
-		Graphics2D g2 = (Graphics2D) image.getGraphics();
+		/* Piirretään sivu välimuistista. Jos sivua ei ole
+		 * välimuistissa, se piirretään nyt. */
+		BufferedImage image = getPageImage(pageIndex, scale);
+		
+		if (image != null) {
+			g.drawImage(image, rect.x, rect.y, this);
+		}
+		
+		prerender(pageIndex, scale);
+	}
+	
+	/**
+	 * Palauttaa sivun kuvan välimuistista tai piirtää sen, jos sitä
+	 * ei ole välimuistissa.
+	 */
+	private BufferedImage getPageImage(int pageIndex, double scale) {
+		PageKey key = new PageKey(pageIndex, scale);
+		BufferedImage image = cache.get(key);
+		
+		if (image != null) {
+			return image;
+		}
+		
+		synchronized (renderLock) {
+			/* Taustasäie on voinut piirtää sivun sillä aikaa, kun
+			 * lukkoa odotettiin. */
+			image = cache.get(key);
+			
+			if (image == null) {
+				image = renderPage(pageIndex, scale);
+				
+				if (image != null) {
+					cache.put(key, image);
+				}
+			}
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Piirtää sivun kuvaksi. Kutsutaan <code>renderLock</code>-lukon
+	 * sisällä.
+	 */
+	private BufferedImage renderPage(int pageIndex, double scale) {
+		if (printable == null || pageFormat == null || printException != null) {
+			return null;
+		}
+		
+		int width = Math.max(1, (int)(pageFormat.getWidth() * scale));
+		int height = Math.max(1, (int)(pageFormat.getHeight() * scale));
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_BYTE_GRAY);
+		
+		Graphics2D g2 = image.createGraphics();
 		g2.setColor(Color.WHITE);
-		g2.fillRect(0, 0, dirtyPaperBounds.width, dirtyPaperBounds.height);
+		g2.fillRect(0, 0, width, height);
 		g2.setColor(Color.BLACK);
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
 				RenderingHints.VALUE_ANTIALIAS_ON);
 		
 		/* Kaikille piirtokäskyille tehdään muunnos, jotta
-		 * ne piirretään oikeaan kohtaan kuvassa ja oikeassa
-		 * mittakaavassa. */
-		transform.translate(rect.x - dirtyPaperBounds.x, rect.y - dirtyPaperBounds.y);
-		transform.scale(scale, scale);
-		g2.setTransform(transform);
+		 * ne piirretään oikeassa mittakaavassa. */
+		g2.scale(scale, scale);
 		
 		/* Piirretään sivun sisältö kuvaan. */
 		try {
-			printable.print(g2, pageFormat, pageIndex);
+			if (printable.print(g2, pageFormat, pageIndex) == Printable.NO_SUCH_PAGE) {
+				image = null;
+			}
 		}
 		catch (PrinterException e) {
-			e.printStackTrace();
+			image = null;
+			firePrintException(e);
+		}
+		finally {
+			g2.dispose();
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Lopettaa piirtämisen ja ilmoittaa virheestä
+	 * tapahtumankäsittelysäikeessä. Kutsutaan
+	 * <code>renderLock</code>-lukon sisällä.
+	 */
+	private void firePrintException(final PrinterException e) {
+		printException = e;
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				firePropertyChange("printException", null, e);
+			}
+		});
+	}
+	
+	/**
+	 * Piirtää näytettävän sivun viereiset sivut taustasäikeessä.
+	 * Aiemmat piirtotehtävät, joita ei ole vielä aloitettu, perutaan.
+	 */
+	private void prerender(int pageIndex, final double scale) {
+		if (pageIndex == prerenderIndex && scale == prerenderScale &&
+				!prerenderTasks.isEmpty()) {
+			return;
+		}
+		
+		for (Future<?> task : prerenderTasks) {
+			task.cancel(false);
+		}
+		
+		prerenderTasks.clear();
+		prerenderIndex = pageIndex;
+		prerenderScale = scale;
+		
+		if (executor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1,
+					KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new PrerenderThreadFactory());
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		
+		final int taskGeneration = generation;
+		
+		for (int i = 1; i <= PRERENDER_PAGES; i++) {
+			for (final int index : new int[] { pageIndex + i, pageIndex - i }) {
+				if (index < 0) {
+					continue;
+				}
+				
+				prerenderTasks.add(executor.submit(new Runnable() {
+					public void run() {
+						PageKey key = new PageKey(index, scale);
+						
+						synchronized (renderLock) {
+							if (taskGeneration != generation || cache.get(key) != null) {
+								return;
+							}
+							
+							BufferedImage image = renderPage(index, scale);
+							
+							if (image != null) {
+								cache.put(key, image);
+							}
+						}
+					}
+				}));
+			}
+		}
+	}
+	
+	/**
+	 * Lopettaa taustasäikeen. Kutsutaan <code>renderLock</code>-lukon
+	 * sisällä.
+	 */
+	private void shutdownExecutor() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+	
+	@Override
+	public void removeNotify() {
+		synchronized (renderLock) {
+			cancelPrerendering();
+			shutdownExecutor();
 		}
 		
-		/* Piirretään kuva näytölle. */
-		g.drawImage(image, dirtyPaperBounds.x, dirtyPaperBounds.y,
-				dirtyPaperBounds.width, dirtyPaperBounds.height, this);
+		super.removeNotify();
+	}
+	
+	/**
+	 * Peruu taustapiirtotehtävät. Kutsutaan <code>renderLock</code>-lukon
+	 * sisällä, joten käynnissä oleva tehtävä on jo päättynyt.
+	 */
+	private void cancelPrerendering() {
+		generation++;
+		
+		for (Future<?> task : prerenderTasks) {
+			task.cancel(false);
+		}
+		
+		prerenderTasks.clear();
 	}
 
 	/**
@@ -210,4 +431,86 @@ public class PrintPreviewPanel extends JPanel {
 					(int)(pageHeight * scale + 15));
 		}
 	}
+
+	/**
+	 * Luo taustapiirron säikeet. Luokka on staattinen, jotta säie ei
+	 * viittaa paneeliin.
+	 */
+	private static class PrerenderThreadFactory implements ThreadFactory {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "PrintPreviewPanel");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	}
+	
+	private static class PageKey {
+		private int pageIndex;
+		private double scale;
+		
+		public PageKey(int pageIndex, double scale) {
+			this.pageIndex = pageIndex;
+			this.scale = scale;
+		}
+		
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(scale);
+			return pageIndex * 31 + (int)(bits ^ (bits >>> 32));
+		}
+		
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PageKey)) {
+				return false;
+			}
+			
+			PageKey key = (PageKey)obj;
+			return key.pageIndex == pageIndex && key.scale == scale;
+		}
+	}
+	
+	/**
+	 * Sivujen kuvat LRU-järjestyksessä. Vanhimpia kuvia poistetaan,
+	 * kun kuvien yhteenlaskettu koko ylittää <code>CACHE_SIZE</code>-tavua.
+	 * Viimeksi lisättyä kuvaa ei poisteta.
+	 */
+	private static class PageCache {
+		private LinkedHashMap<PageKey, BufferedImage> images;
+		private long size;
+		
+		public PageCache() {
+			images = new LinkedHashMap<PageKey, BufferedImage>(16, 0.75f, true);
+		}
+		
+		public synchronized BufferedImage get(PageKey key) {
+			return images.get(key);
+		}
+		
+		public synchronized void put(PageKey key, BufferedImage image) {
+			BufferedImage old = images.put(key, image);
+			
+			if (old != null) {
+				size -= getSize(old);
+			}
+			
+			size += getSize(image);
+			Iterator<Map.Entry<PageKey, BufferedImage>> iter =
+				images.entrySet().iterator();
+			
+			while (size > CACHE_SIZE && images.size() > 1) {
+				Map.Entry<PageKey, BufferedImage> entry = iter.next();
+				size -= getSize(entry.getValue());
+				iter.remove();
+			}
+		}
+		
+		public synchronized void clear() {
+			images.clear();
+			size = 0;
+		}
+		
+		private static long getSize(BufferedImage image) {
+			return (long)image.getWidth() * image.getHeight();
+		}
+	}
 }
@@ -1,31 +1,76 @@
 package kirjanpito.util;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 
 import kirjanpito.db.Account;
+import kirjanpito.db.AccountTotal;
+import kirjanpito.db.AccountTotalArray;
 import kirjanpito.db.Entry;
 
 /**
  * Laskee tilien saldot vientien perusteella. Aluksi oliolle on annettava
  * tilit, joiden saldot lasketaan. Tilit voidaan antaa luotaessa oliota
  * tai <code>addAccount()</code>-metodilla.
+ * <p>
+ * Saldot lasketaan sentteinä <code>long</code>-taulukkoon, jota
+ * indeksoidaan tilin tunnisteen perusteella. <code>BigDecimal</code>-olioita
+ * luodaan vasta, kun saldo luetaan.
  * 
  * @author Tommi Helineva
  */
 public class AccountBalances {
-	private HashMap<Integer, AccountBalance> balances;
-	private BigDecimal profit;
+	private int[] slots;
+	private int[] debitSigns;
+	private int[] creditSigns;
+	private int[] profitSigns;
+	private long[] balances;
+	private boolean[] posted;
+	private int slotCount;
+	private long profit;
 	private int count;
 	
+	/* Tilin saldo lasketaan seuraavan taulukon mukaan:
+	 * 
+	 * +-------------+--------+--------+
+	 * | Account     | Debit  | Credit |
+	 * +-------------+--------+--------+
+	 * | Assets      |  INC   |  DEC   |
+	 * | Expenses    |  INC   |  DEC   |
+	 * | Liabilities |  DEC   |  INC   |
+	 * | Equity      |  DEC   |  INC   |
+	 * | Revenue     |  DEC   |  INC   |
+	 * +-------------+--------+--------+
+	 * 
+	 * (INC = saldo kasvaa, DEC = saldo vähenee)
+	 * 
+	 * DEBIT_SIGNS sisältää debet-viennin etumerkin tilityypeittäin.
+	 * Kredit-viennin etumerkki on päinvastainen. Tuntemattoman tyyppisen
+	 * tilin saldo kasvaa sekä debet- että kredit-vienneistä. PROFIT_SIGNS
+	 * ilmoittaa, kasvattaako (1) vai pienentääkö (-1) saldon muutos
+	 * tilikauden voittoa.
+	 */
+	private static final int[] DEBIT_SIGNS = {
+		1,  /* TYPE_ASSET */
+		-1, /* TYPE_LIABILITY */
+		-1, /* TYPE_EQUITY */
+		-1, /* TYPE_REVENUE */
+		1,  /* TYPE_EXPENSE */
+		-1, /* TYPE_PROFIT_PREV */
+		-1  /* TYPE_PROFIT */
+	};
+	
+	private static final int[] PROFIT_SIGNS = {
+		0, 0, 0, 1, -1, 0, 0
+	};
+	
 	/**
 	 * Luo <code>AccountBalances</code>-olion, jolle ei ole vielä
 	 * asetettu tilejä, joiden saldot lasketaan.
 	 */
 	public AccountBalances() {
-		balances = new HashMap<Integer, AccountBalance>();
-		profit = BigDecimal.ZERO;
+		this(16);
 	}
 	
 	/**
@@ -35,20 +80,63 @@ public class AccountBalances {
 	 * @param accounts tilit
 	 */
 	public AccountBalances(List<Account> accounts) {
-		this();
+		this(accounts.size());
 		
 		for (Account account : accounts) {
-			balances.put(account.getId(), new AccountBalance(account));
+			addAccount(account);
 		}
 	}
 	
+	private AccountBalances(int capacity) {
+		capacity = Math.max(capacity, 1);
+		slots = new int[capacity + 1];
+		debitSigns = new int[capacity];
+		creditSigns = new int[capacity];
+		profitSigns = new int[capacity];
+		balances = new long[capacity];
+		posted = new boolean[capacity];
+	}
+	
 	/**
 	 * Lisää tilin.
 	 * 
 	 * @param account tili
 	 */
 	public void addAccount(Account account) {
-		balances.put(account.getId(), new AccountBalance(account));
+		int id = account.getId();
+		
+		if (id >= slots.length) {
+			slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+		}
+		
+		/* Taulukossa slots on tallennettu paikan numero + 1, jotta
+		 * arvo 0 tarkoittaa, että tiliä ei ole lisätty. */
+		int slot = slots[id] - 1;
+		
+		if (slot < 0) {
+			if (slotCount == balances.length) {
+				int capacity = slotCount * 2;
+				debitSigns = Arrays.copyOf(debitSigns, capacity);
+				creditSigns = Arrays.copyOf(creditSigns, capacity);
+				profitSigns = Arrays.copyOf(profitSigns, capacity);
+				balances = Arrays.copyOf(balances, capacity);
+				posted = Arrays.copyOf(posted, capacity);
+			}
+			
+			slot = slotCount++;
+			slots[id] = slot + 1;
+		}
+		else if (posted[slot]) {
+			count--;
+		}
+		
+		int type = account.getType();
+		boolean known = type >= 0 && type < DEBIT_SIGNS.length;
+		debitSigns[slot] = known ? DEBIT_SIGNS[type] : 1;
+		creditSigns[slot] = known ? -DEBIT_SIGNS[type] : 1;
+		profitSigns[slot] = known ? PROFIT_SIGNS[type] : 0;
+		balances[slot] = 0;
+		posted[slot] = false;
 	}
 	
 	/**
@@ -57,67 +145,89 @@ public class AccountBalances {
 	 * @param entry vienti
 	 */
 	public void addEntry(Entry entry) {
-		AccountBalance ab = balances.get(entry.getAccountId());
+		int slot = getSlot(entry.getAccountId());
+		
+		if (slot < 0)
+			return;
+		
+		add(slot, AccountTotalArray.toCents(entry.getAmount()), entry.isDebit());
+	}
+	
+	/**
+	 * Laskee tilin uuden saldon tilin vientien summien perusteella.
+	 * 
+	 * @param total tilin debet- ja kredit-vientien summat
+	 */
+	public void addTotal(AccountTotal total) {
+		int slot = getSlot(total.getAccountId());
 		
-		if (ab == null)
+		if (slot < 0)
 			return;
 		
-		BigDecimal amount = entry.getAmount();
-		int type = ab.account.getType();
-		boolean debit = entry.isDebit();
-		
-		/* Tilin saldo lasketaan seuraavan taulukon mukaan:
-		 * 
-		 * +-------------+--------+--------+
-		 * | Account     | Debit  | Credit |
-		 * +-------------+--------+--------+
-		 * | Assets      |  INC   |  DEC   |
-		 * | Expenses    |  INC   |  DEC   |
-		 * | Liabilities |  DEC   |  INC   |
-		 * | Equity      |  DEC   |  INC   |
-		 * | Revenue     |  DEC   |  INC   |
-		 * +-------------+--------+--------+
-		 * 
-		 * (INC = saldo kasvaa, DEC = saldo vähenee)
-		 */
-		
-		if ((type == Account.TYPE_ASSET && !debit) ||
-				(type == Account.TYPE_EXPENSE && !debit) ||
-				(type == Account.TYPE_LIABILITY && debit) ||
-				(type == Account.TYPE_EQUITY && debit) ||
-				(type == Account.TYPE_REVENUE && debit) ||
-				(type == Account.TYPE_PROFIT_PREV && debit) ||
-				(type == Account.TYPE_PROFIT && debit))
-		{
-			amount = amount.negate();
+		add(slot, AccountTotalArray.toCents(total.getDebitTotal()), true);
+		add(slot, AccountTotalArray.toCents(total.getCreditTotal()), false);
+	}
+	
+	/**
+	 * Laskee tilien uudet saldot tilikohtaisten summien perusteella.
+	 * 
+	 * @param totals tilikohtaiset debet- ja kredit-vientien summat
+	 */
+	public void addTotals(AccountTotalArray totals) {
+		for (int i = 0; i < totals.size(); i++) {
+			int slot = getSlot(totals.getAccountId(i));
+			
+			if (slot < 0)
+				continue;
+			
+			add(slot, totals.getDebitCents(i), true);
+			add(slot, totals.getCreditCents(i), false);
+		}
+	}
+	
+	private int getSlot(int accountId) {
+		if (accountId < 0 || accountId >= slots.length) {
+			return -1;
 		}
 		
-		if (type == Account.TYPE_EXPENSE) {
-			profit = profit.subtract(amount);
+		return slots[accountId] - 1;
+	}
+	
+	private void add(int slot, long amount, boolean debit) {
+		int sign = debit ? debitSigns[slot] : creditSigns[slot];
+		
+		if (sign < 0) {
+			amount = -amount;
 		}
-		else if (type == Account.TYPE_REVENUE) {
-			profit = profit.add(amount);
+		
+		/* Math.addExact heittää ArithmeticExceptionin, jos
+		 * summa ei mahdu long-tyyppiin. */
+		switch (profitSigns[slot]) {
+		case 1:
+			profit = Math.addExact(profit, amount);
+			break;
+			
+		case -1:
+			profit = Math.subtractExact(profit, amount);
+			break;
 		}
 		
-		if (ab.balance == null) {
-			ab.balance = amount;
+		balances[slot] = Math.addExact(balances[slot], amount);
+		
+		if (!posted[slot]) {
+			posted[slot] = true;
 			count++;
 		}
-		else {
-			ab.balance = ab.balance.add(amount);
-		}
 	}
 	
 	/**
 	 * Nollaa saldot.
 	 */
 	public void reset() {
-		for (AccountBalance ab : balances.values()) {
-			ab.balance = null;
-		}
-		
+		Arrays.fill(balances, 0, slotCount, 0);
+		Arrays.fill(posted, 0, slotCount, false);
 		count = 0;
-		profit = BigDecimal.ZERO;
+		profit = 0;
 	}
 	
 	/**
@@ -128,8 +238,13 @@ public class AccountBalances {
 	 * yhtään vientiä
 	 */
 	public BigDecimal getBalance(int id) {
-		AccountBalance ab = balances.get(id);
-		return (ab == null) ? null : ab.balance;
+		int slot = getSlot(id);
+		
+		if (slot < 0 || !posted[slot]) {
+			return null;
+		}
+		
+		return BigDecimal.valueOf(balances[slot], 2);
 	}
 	
 	/**
@@ -147,15 +262,6 @@ public class AccountBalances {
 	 * @return tilikauden voitto
 	 */
 	public BigDecimal getProfit() {
-		return profit;
-	}
-
-	private class AccountBalance {
-		public Account account;
-		public BigDecimal balance;
-		
-		public AccountBalance(Account account) {
-			this.account = account;
-		}
+		return BigDecimal.valueOf(profit, 2);
 	}
 }
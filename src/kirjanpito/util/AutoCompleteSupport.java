@@ -8,6 +8,8 @@ import kirjanpito.db.Entry;
 public interface AutoCompleteSupport {
 	public void addDocuments(List<Document> documents);
 	public void addEntry(Entry entry);
+	public void addEntries(List<Entry> entries);
+	public void removeEntries(List<Entry> entries);
 	public void clear();
 	public String autoCompleteEntryDescription(int accountId, String description);
 }
@@ -41,7 +41,8 @@ public class CSVReader {
 			p = c;
 		}
 		
-		if (c < 0) return null;
+		/* Viimeisen rivin lopussa ei välttämättä ole rivinvaihtoa. */
+		if (c < 0 && fields.isEmpty() && buffer.length() == 0) return null;
 		fields.add(buffer.toString());
 		String[] fieldArray = new String[fields.size()];
 		fields.toArray(fieldArray);
@@ -1,14 +1,19 @@
 package kirjanpito.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import kirjanpito.db.Account;
 import kirjanpito.db.COAHeading;
 
 public class ChartOfAccounts {
 	private COAItem[] items;
+	private SearchIndex searchIndex;
 	
 	/**
 	 * Tili
@@ -33,6 +38,7 @@ public class ChartOfAccounts {
 		int hi = 0;
 		
 		items = new COAItem[accounts.size() + headings.size()];
+		searchIndex = null;
 		
 		for (int i = 0; i < items.length; i++) {
 			/* Jos kaikki tilit jo lisätty, lisätään loput otsikot. */
@@ -149,50 +155,29 @@ public class ChartOfAccounts {
 	 * Etsii tilikartan tilien nimistä ja otsikkoteksteistä
 	 * merkkijonoa <code>q</code>. Metodi palauttaa
 	 * ensimmäisen löytyneen tilin tai otsikon rivinumeron.
+	 * Ensisijaisesti palautetaan tili, jonka numero tai nimi on
+	 * <code>q</code>, sitten tili, jonka numero tai nimi alkaa
+	 * merkkijonolla <code>q</code>, ja viimeisenä otsikko, joka alkaa
+	 * merkkijonolla <code>q</code>. Isoja ja pieniä kirjaimia ei erotella.
 	 * 
 	 * @param q hakusana
-	 * @return rivinumero
+	 * @return rivinumero tai -1, jos mitään ei löytynyt
 	 */
 	public int search(String q) {
-		int index = 0;
-		int match1 = -1;
-		int match2 = -1;
-		int match3 = -1;
-		int len = q.length();
-		
-		for (COAItem item : items) {
-			if (item.account != null) {
-				if (item.account.getNumber().equalsIgnoreCase(q) ||
-						item.account.getName().equalsIgnoreCase(q)) {
-					match1 = index;
-					break;
-				}
-				else if (item.account.getNumber().regionMatches(true, 0, q, 0, len) ||
-						item.account.getName().regionMatches(true, 0, q, 0, len)) {
-					
-					if (match2 < 0) {
-						match2 = index;
-					}
-				}
-			}
-			else if (item.heading.getText().regionMatches(true, 0, q, 0, len)) {
-				if (match3 < 0) {
-					match3 = index;
-				}
-			}
-			
-			index++;
-		}
-		
-		if (match2 < 0) {
-			match2 = match3;
-		}
-		
-		if (match1 < 0) {
-			match1 = match2;
+		if (searchIndex == null) {
+			searchIndex = new SearchIndex(items);
 		}
 		
-		return match1;
+		return searchIndex.search(q);
+	}
+	
+	/**
+	 * Poistaa hakuhakemiston, jotta se luodaan uudelleen
+	 * seuraavassa haussa. Metodia on kutsuttava, kun tilikartan
+	 * tilin numeroa tai nimeä tai otsikon tekstiä muutetaan.
+	 */
+	public void clearSearchIndex() {
+		searchIndex = null;
 	}
 	
 	public void filterNonFavouriteAccounts() {
@@ -222,15 +207,16 @@ public class ChartOfAccounts {
 		
 		items = new COAItem[tmp.size()];
 		tmp.toArray(items);
+		searchIndex = null;
 	}
 	
-	public void filterNonUsedAccounts(AccountBalances balances) {
+	public void filterNonUsedAccounts(Set<Integer> usedAccountIds) {
 		LinkedList<COAItem> headingList = new LinkedList<COAItem>();
 		ArrayList<COAItem> tmp = new ArrayList<COAItem>();
 
 		for (COAItem item : items) {
 			if (item.account != null) {
-				if (balances.getBalance(item.account.getId()) == null)
+				if (!usedAccountIds.contains(item.account.getId()))
 					continue;
 
 				while (!headingList.isEmpty()) {
@@ -250,8 +236,169 @@ public class ChartOfAccounts {
 
 		items = new COAItem[tmp.size()];
 		tmp.toArray(items);
+		searchIndex = null;
 	}
 
+	/**
+	 * Muuttaa merkkijonon muotoon, jossa isoja ja pieniä kirjaimia
+	 * ei erotella. Merkit muutetaan samalla tavalla kuin
+	 * <code>String.regionMatches()</code> vertailee niitä.
+	 */
+	private static String fold(String s) {
+		char[] chars = s.toCharArray();
+		
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		
+		return new String(chars);
+	}
+	
+	/**
+	 * Tilikartan hakuhakemisto. Tilien numerot ja nimet sekä
+	 * otsikkotekstit on järjestetty aakkosjärjestykseen, joten
+	 * hakusanalla alkavat merkkijonot löytyvät binäärihaulla
+	 * yhtenäiseltä väliltä. Välin pienin rivinumero haetaan
+	 * segmenttipuusta.
+	 */
+	private static class SearchIndex {
+		private HashMap<String, Integer> exactMatches;
+		private PrefixTable accountPrefixes;
+		private PrefixTable headingPrefixes;
+		
+		public SearchIndex(COAItem[] items) {
+			ArrayList<String> accountKeys = new ArrayList<String>();
+			ArrayList<Integer> accountRows = new ArrayList<Integer>();
+			ArrayList<String> headingKeys = new ArrayList<String>();
+			ArrayList<Integer> headingRows = new ArrayList<Integer>();
+			exactMatches = new HashMap<String, Integer>();
+			
+			for (int i = 0; i < items.length; i++) {
+				if (items[i].account != null) {
+					String number = fold(items[i].account.getNumber());
+					String name = fold(items[i].account.getName());
+					accountKeys.add(number);
+					accountRows.add(i);
+					accountKeys.add(name);
+					accountRows.add(i);
+					
+					if (!exactMatches.containsKey(number)) {
+						exactMatches.put(number, i);
+					}
+					
+					if (!exactMatches.containsKey(name)) {
+						exactMatches.put(name, i);
+					}
+				}
+				else {
+					headingKeys.add(fold(items[i].heading.getText()));
+					headingRows.add(i);
+				}
+			}
+			
+			accountPrefixes = new PrefixTable(accountKeys, accountRows);
+			headingPrefixes = new PrefixTable(headingKeys, headingRows);
+		}
+		
+		public int search(String q) {
+			String key = fold(q);
+			Integer match = exactMatches.get(key);
+			
+			if (match != null) {
+				return match;
+			}
+			
+			int index = accountPrefixes.getFirstRow(key);
+			return (index >= 0) ? index : headingPrefixes.getFirstRow(key);
+		}
+	}
+	
+	private static class PrefixTable {
+		private String[] keys;
+		private int[] tree;
+		
+		public PrefixTable(final List<String> keys, List<Integer> rows) {
+			int count = keys.size();
+			Integer[] order = new Integer[count];
+			
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer o1, Integer o2) {
+					return keys.get(o1).compareTo(keys.get(o2));
+				}
+			});
+			
+			/* Puun lehdet ovat indekseissä count .. 2 * count - 1. */
+			this.keys = new String[count];
+			this.tree = new int[2 * count];
+			
+			for (int i = 0; i < count; i++) {
+				this.keys[i] = keys.get(order[i]);
+				tree[count + i] = rows.get(order[i]);
+			}
+			
+			for (int i = count - 1; i > 0; i--) {
+				tree[i] = Math.min(tree[2 * i], tree[2 * i + 1]);
+			}
+		}
+		
+		/**
+		 * Palauttaa pienimmän rivinumeron niistä merkkijonoista,
+		 * jotka alkavat merkkijonolla <code>prefix</code>.
+		 * 
+		 * @param prefix hakusana
+		 * @return rivinumero tai -1
+		 */
+		public int getFirstRow(String prefix) {
+			int start = lowerBound(prefix);
+			
+			/* Etsitään ensimmäinen merkkijono, joka ei ala hakusanalla. */
+			int low = start;
+			int high = keys.length;
+			
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				
+				if (keys[mid].startsWith(prefix)) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			
+			int min = Integer.MAX_VALUE;
+			
+			for (int l = start + keys.length, r = low + keys.length; l < r; l >>= 1, r >>= 1) {
+				if ((l & 1) == 1) min = Math.min(min, tree[l++]);
+				if ((r & 1) == 1) min = Math.min(min, tree[--r]);
+			}
+			
+			return (min == Integer.MAX_VALUE) ? -1 : min;
+		}
+		
+		private int lowerBound(String key) {
+			int low = 0;
+			int high = keys.length;
+			
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				
+				if (keys[mid].compareTo(key) < 0) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			
+			return low;
+		}
+	}
+	
 	private static class COAItem {
 		private Account account;
 		private COAHeading heading;
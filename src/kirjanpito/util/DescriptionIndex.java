@@ -0,0 +1,352 @@
+package kirjanpito.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import kirjanpito.db.Document;
+import kirjanpito.db.Entry;
+
+/**
+ * Vientien selitteiden hakemisto, jonka avulla selitteitä täydennetään.
+ * Selitteet säilytetään tilikohtaisissa taulukoissa aakkosjärjestyksessä,
+ * ja jokaiselle selitteelle lasketaan käyttökertojen lukumäärä. Kun
+ * selitteen alkuosa täydennetään, valitaan alkuosalla alkavista
+ * selitteistä useimmin käytetty.
+ *
+ * <p>Hakemisto rakennetaan tilikauden kaikista vienneistä
+ * <code>Builder</code>-luokan avulla, ja tallennetut viennit
+ * päivitetään hakemistoon <code>addEntries()</code>- ja
+ * <code>removeEntries()</code>-metodeilla. Muutokset, jotka tehdään
+ * hakemiston rakentamisen aikana, lisätään myös uuteen hakemistoon.
+ * Metodeja kutsutaan tapahtumankäsittelysäikeestä.</p>
+ *
+ * @author Tommi Helineva
+ */
+public class DescriptionIndex implements AutoCompleteSupport {
+	private HashMap<Integer, DescriptionTable> tables;
+	private Builder builder;
+	private ArrayList<Change> changes;
+
+	public DescriptionIndex() {
+		tables = new HashMap<Integer, DescriptionTable>();
+	}
+
+	public void addDocuments(List<Document> documents) {
+	}
+
+	/**
+	 * Lisää viennin selitteen hakemistoon, jos sitä ei ole vielä
+	 * hakemistossa. Käyttökertojen lukumäärä ei muutu.
+	 *
+	 * @param entry vienti
+	 */
+	public void addEntry(Entry entry) {
+		update(entry.getAccountId(), entry.getDescription(), 0);
+	}
+
+	/**
+	 * Lisää uusien vientien selitteet hakemistoon ja kasvattaa
+	 * selitteiden käyttökertojen lukumäärää.
+	 *
+	 * @param entries viennit
+	 */
+	public void addEntries(List<Entry> entries) {
+		for (Entry entry : entries) {
+			update(entry.getAccountId(), entry.getDescription(), 1);
+		}
+	}
+
+	/**
+	 * Vähentää poistettujen vientien selitteiden käyttökertojen
+	 * lukumäärää. Selite poistetaan hakemistosta, kun sitä ei enää
+	 * käytetä.
+	 *
+	 * @param entries viennit
+	 */
+	public void removeEntries(List<Entry> entries) {
+		for (Entry entry : entries) {
+			update(entry.getAccountId(), entry.getDescription(), -1);
+		}
+	}
+
+	public void clear() {
+		tables.clear();
+	}
+
+	public String autoCompleteEntryDescription(int accountId, String description) {
+		DescriptionTable table = tables.get(accountId);
+
+		if (table == null || description.isEmpty()) {
+			return null;
+		}
+
+		return table.complete(description.toLowerCase());
+	}
+
+	/**
+	 * Palauttaa hakemistossa olevien selitteiden lukumäärän.
+	 *
+	 * @return selitteiden lukumäärä
+	 */
+	public int getSize() {
+		int size = 0;
+
+		for (DescriptionTable table : tables.values()) {
+			size += table.size;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Aloittaa hakemiston rakentamisen. Palautettuun
+	 * <code>Builder</code>-olioon lisätään tilikauden viennit, minkä
+	 * jälkeen kutsutaan <code>finishRebuild()</code>-metodia.
+	 * <code>Builder</code>-oliota voidaan käyttää toisesta säikeestä.
+	 *
+	 * @return rakennettava hakemisto
+	 */
+	public Builder beginRebuild() {
+		builder = new Builder();
+		changes = new ArrayList<Change>();
+		return builder;
+	}
+
+	/**
+	 * Ottaa käyttöön rakennetun hakemiston. Jos hakemiston rakentaminen
+	 * on aloitettu uudelleen <code>builder</code>in luomisen jälkeen,
+	 * hakemistoa ei oteta käyttöön.
+	 *
+	 * @param builder rakennettu hakemisto
+	 */
+	public void finishRebuild(Builder builder) {
+		if (this.builder != builder) {
+			return;
+		}
+
+		ArrayList<Change> list = changes;
+		this.builder = null;
+		this.changes = null;
+		tables = builder.build();
+
+		for (Change change : list) {
+			update(change.accountId, change.description, change.delta);
+		}
+	}
+
+	/**
+	 * Keskeyttää hakemiston rakentamisen.
+	 *
+	 * @param builder keskeytettävä hakemisto
+	 */
+	public void cancelRebuild(Builder builder) {
+		if (this.builder == builder) {
+			this.builder = null;
+			this.changes = null;
+		}
+	}
+
+	private void update(int accountId, String description, int delta) {
+		if (description.isEmpty()) {
+			return;
+		}
+
+		if (changes != null) {
+			changes.add(new Change(accountId, description, delta));
+		}
+
+		DescriptionTable table = tables.get(accountId);
+
+		if (table == null) {
+			if (delta < 0) {
+				return;
+			}
+
+			table = new DescriptionTable(new String[0], new String[0], new int[0]);
+			tables.put(accountId, table);
+		}
+
+		table.update(description, delta);
+	}
+
+	/**
+	 * Kerää selitteet ja niiden käyttökertojen lukumäärät
+	 * hajautustauluun ja muodostaa niistä lopuksi järjestetyt taulukot.
+	 */
+	public static class Builder {
+		private HashMap<Integer, HashMap<String, Counter>> accounts;
+
+		private Builder() {
+			accounts = new HashMap<Integer, HashMap<String, Counter>>();
+		}
+
+		/**
+		 * Lisää viennin selitteen.
+		 *
+		 * @param entry vienti
+		 */
+		public void add(Entry entry) {
+			String description = entry.getDescription();
+
+			if (description.isEmpty()) {
+				return;
+			}
+
+			HashMap<String, Counter> map = accounts.get(entry.getAccountId());
+
+			if (map == null) {
+				map = new HashMap<String, Counter>();
+				accounts.put(entry.getAccountId(), map);
+			}
+
+			String key = description.toLowerCase();
+			Counter counter = map.get(key);
+
+			if (counter == null) {
+				counter = new Counter(description);
+				map.put(key, counter);
+			}
+
+			counter.count++;
+		}
+
+		private HashMap<Integer, DescriptionTable> build() {
+			HashMap<Integer, DescriptionTable> tables =
+				new HashMap<Integer, DescriptionTable>();
+
+			for (Map.Entry<Integer, HashMap<String, Counter>> account : accounts.entrySet()) {
+				HashMap<String, Counter> map = account.getValue();
+				String[] keys = map.keySet().toArray(new String[map.size()]);
+				String[] descriptions = new String[keys.length];
+				int[] counts = new int[keys.length];
+				Arrays.sort(keys);
+
+				for (int i = 0; i < keys.length; i++) {
+					Counter counter = map.get(keys[i]);
+					descriptions[i] = counter.description;
+					counts[i] = counter.count;
+
+					/* Pienillä kirjaimilla kirjoitetulle selitteelle
+					 * ei tarvita erillistä avainta. */
+					if (keys[i].equals(descriptions[i])) {
+						keys[i] = descriptions[i];
+					}
+				}
+
+				tables.put(account.getKey(), new DescriptionTable(keys, descriptions, counts));
+			}
+
+			accounts = null;
+			return tables;
+		}
+	}
+
+	private static class Counter {
+		public String description;
+		public int count;
+
+		public Counter(String description) {
+			this.description = description;
+		}
+	}
+
+	private static class Change {
+		public int accountId;
+		public String description;
+		public int delta;
+
+		public Change(int accountId, String description, int delta) {
+			this.accountId = accountId;
+			this.description = description;
+			this.delta = delta;
+		}
+	}
+
+	/**
+	 * Yhden tilin selitteet aakkosjärjestyksessä. Avaimina ovat
+	 * pienillä kirjaimilla kirjoitetut selitteet.
+	 */
+	private static class DescriptionTable {
+		public String[] keys;
+		public String[] descriptions;
+		public int[] counts;
+		public int size;
+
+		public DescriptionTable(String[] keys, String[] descriptions, int[] counts) {
+			this.keys = keys;
+			this.descriptions = descriptions;
+			this.counts = counts;
+			this.size = keys.length;
+		}
+
+		public void update(String description, int delta) {
+			String key = description.toLowerCase();
+			int index = Arrays.binarySearch(keys, 0, size, key);
+
+			if (index >= 0) {
+				counts[index] += delta;
+
+				if (counts[index] <= 0) {
+					remove(index);
+				}
+			}
+			else if (delta >= 0) {
+				insert(-index - 1, key.equals(description) ? description : key,
+						description, Math.max(1, delta));
+			}
+		}
+
+		/**
+		 * Palauttaa useimmin käytetyn selitteen, joka alkaa
+		 * merkkijonolla <code>prefix</code>.
+		 */
+		public String complete(String prefix) {
+			int index = Arrays.binarySearch(keys, 0, size, prefix);
+
+			if (index < 0) {
+				index = -index - 1;
+			}
+
+			int best = -1;
+
+			while (index < size && keys[index].startsWith(prefix)) {
+				if (best < 0 || counts[index] > counts[best]) {
+					best = index;
+				}
+
+				index++;
+			}
+
+			return (best < 0) ? null : descriptions[best];
+		}
+
+		private void insert(int index, String key, String description, int count) {
+			if (size == keys.length) {
+				int capacity = Math.max(4, size + (size >> 1));
+				keys = Arrays.copyOf(keys, capacity);
+				descriptions = Arrays.copyOf(descriptions, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+			}
+
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(descriptions, index, descriptions, index + 1, size - index);
+			System.arraycopy(counts, index, counts, index + 1, size - index);
+			keys[index] = key;
+			descriptions[index] = description;
+			counts[index] = count;
+			size++;
+		}
+
+		private void remove(int index) {
+			size--;
+			System.arraycopy(keys, index + 1, keys, index, size - index);
+			System.arraycopy(descriptions, index + 1, descriptions, index, size - index);
+			System.arraycopy(counts, index + 1, counts, index, size - index);
+			keys[size] = null;
+			descriptions[size] = null;
+		}
+	}
+}
@@ -193,7 +193,6 @@ public abstract class DocumentRecordSet {
 		}
 		
 		Session sess = null;
-		int newOffset = i - (i % pageSize);
 
 		try {
 			sess = dataSource.openSession();
@@ -202,15 +201,15 @@ public abstract class DocumentRecordSet {
 		finally {
 			if (sess != null) sess.close();
 		}
-		
-		offset = newOffset;
-		index = i - newOffset;
 	}
 	
 	/**
-	 * Siirtyy tositteeseen, jonka järjestysnumero on <code>i</code>
-	 * @param i tositteen järjestysnumero
+	 * Siirtyy tositteeseen, jonka järjestysnumero on <code>i</code>.
+	 * Ensimmäinen ja viimeinen sivu sekä nykyistä sivua edeltävä ja
+	 * seuraava sivu haetaan tositenumeron perusteella. Muussa tapauksessa
+	 * sivu haetaan järjestysnumeron perusteella.
 	 * 
+	 * @param i tositteen järjestysnumero
 	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
 	 */
 	public void move(Session sess, int i) throws DataAccessException {
@@ -219,10 +218,82 @@ public abstract class DocumentRecordSet {
 			return;
 		}
 		
-		int newOffset = i - (i % pageSize);
-		fetchDocuments(sess, newOffset, pageSize);
-		offset = newOffset;
-		index = i - newOffset;
+		Document firstDocument = null;
+		Document lastDocument = null;
+		List<Document> list;
+		int newOffset;
+		
+		if (documents != null && documents.size() > 0) {
+			firstDocument = documents.get(0);
+			lastDocument = documents.get(documents.size() - 1);
+		}
+		
+		if (i < pageSize) {
+			list = fetchFirstDocuments(sess, Integer.MIN_VALUE, pageSize);
+			newOffset = 0;
+		}
+		else if (i >= count - pageSize) {
+			list = fetchLastDocuments(sess, Integer.MAX_VALUE, pageSize);
+			newOffset = count - list.size();
+		}
+		else if (lastDocument != null && i >= offset + documents.size() &&
+				i < offset + documents.size() + pageSize) {
+			list = fetchFirstDocuments(sess, lastDocument.getNumber() + 1, pageSize);
+			newOffset = offset + documents.size();
+		}
+		else if (firstDocument != null && i < offset && i >= offset - pageSize) {
+			list = fetchLastDocuments(sess, firstDocument.getNumber() - 1, pageSize);
+			newOffset = offset - list.size();
+		}
+		else {
+			newOffset = i - (i % pageSize);
+			list = fetchDocuments(sess, newOffset, pageSize);
+		}
+		
+		setPage(sess, list, newOffset, i);
+	}
+	
+	/**
+	 * Siirtyy tositteeseen, jonka järjestysnumero on <code>i</code>
+	 * ja tositenumero <code>number</code>. Sivu haetaan tositenumeron
+	 * perusteella, joten siirtymisen kesto ei riipu tositteen sijainnista.
+	 * 
+	 * @param i tositteen järjestysnumero
+	 * @param number tositenumero
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void move(int i, int number) throws DataAccessException {
+		Session sess = null;
+
+		try {
+			sess = dataSource.openSession();
+			move(sess, i, number);
+		}
+		finally {
+			if (sess != null) sess.close();
+		}
+	}
+	
+	/**
+	 * Siirtyy tositteeseen, jonka järjestysnumero on <code>i</code>
+	 * ja tositenumero <code>number</code>. Sivu haetaan tositenumeron
+	 * perusteella, joten siirtymisen kesto ei riipu tositteen sijainnista.
+	 * 
+	 * @param i tositteen järjestysnumero
+	 * @param number tositenumero
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	public void move(Session sess, int i, int number) throws DataAccessException {
+		if (documents != null && i >= offset && i < offset + documents.size()) {
+			Document document = documents.get(i - offset);
+			
+			if (document != null && document.getNumber() == number) {
+				index = i - offset;
+				return;
+			}
+		}
+		
+		setPage(sess, fetchFirstDocuments(sess, number, pageSize), i, i);
 	}
 	
 	/**
@@ -297,6 +368,22 @@ public abstract class DocumentRecordSet {
 		move(sess, count - 1);
 	}
 	
+	private void setPage(Session sess, List<Document> list, int newOffset, int i)
+		throws DataAccessException {
+		
+		updateDocuments(list);
+		clearEntries();
+		
+		if (list.size() > 0) {
+			fetchEntries(sess, list);
+		}
+		
+		/* Tositteiden lukumäärä on voinut muuttua sen
+		 * jälkeen, kun se on haettu. */
+		offset = Math.max(0, newOffset);
+		index = Math.max(0, Math.min(i - offset, list.size() - 1));
+	}
+	
 	protected void updateDocuments(List<Document> documents) {
 		this.documents = documents;
 		autoCompleteSupport.addDocuments(documents);
@@ -325,6 +412,51 @@ public abstract class DocumentRecordSet {
 	protected abstract void fetchCount(Session sess)
 			throws DataAccessException;
 	
-	protected abstract void fetchDocuments(Session sess,
+	/**
+	 * Hakee tositteet järjestysnumerosta <code>offset</code> alkaen.
+	 * 
+	 * @param sess tietokantaistunto
+	 * @param offset ensimmäisen tositteen järjestysnumero
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	protected abstract List<Document> fetchDocuments(Session sess,
 			int offset, int limit) throws DataAccessException;
+	
+	/**
+	 * Hakee enintään <code>limit</code> ensimmäistä tositetta, joiden
+	 * numero on vähintään <code>number</code>.
+	 * 
+	 * @param sess tietokantaistunto
+	 * @param number tositenumero
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet numerojärjestyksessä
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	protected abstract List<Document> fetchFirstDocuments(Session sess,
+			int number, int limit) throws DataAccessException;
+	
+	/**
+	 * Hakee enintään <code>limit</code> viimeistä tositetta, joiden
+	 * numero on enintään <code>number</code>.
+	 * 
+	 * @param sess tietokantaistunto
+	 * @param number tositenumero
+	 * @param limit tositteiden enimmäismäärä
+	 * @return tositteet numerojärjestyksessä
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	protected abstract List<Document> fetchLastDocuments(Session sess,
+			int number, int limit) throws DataAccessException;
+	
+	/**
+	 * Hakee tositteiden viennit ja lisää ne <code>addEntry()</code>-metodilla.
+	 * 
+	 * @param sess tietokantaistunto
+	 * @param documents tositteet
+	 * @throws DataAccessException jos tietojen hakeminen epäonnistuu
+	 */
+	protected abstract void fetchEntries(Session sess,
+			List<Document> documents) throws DataAccessException;
 }
@@ -11,6 +11,12 @@ public class DummyAutoCompleteSupport implements AutoCompleteSupport {
 
 	public void addEntry(Entry entry) {
 	}
+
+	public void addEntries(List<Entry> entries) {
+	}
+
+	public void removeEntries(List<Entry> entries) {
+	}
 	
 	public void clear() {
 	}
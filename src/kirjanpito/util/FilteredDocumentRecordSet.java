@@ -36,26 +36,37 @@ public class FilteredDocumentRecordSet extends DocumentRecordSet {
 						startNumber, endNumber));
 	}
 	
-	protected void fetchDocuments(Session sess, int offset, int limit)
+	protected List<Document> fetchDocuments(Session sess, int offset, int limit)
 		throws DataAccessException {
 		
-		DataSource dataSource = getDataSource();
-		List<Document> documents = dataSource.getDocumentDAO(
-				sess).getByPeriodIdAndNumber(getPeriod().getId(), startNumber,
-						endNumber, offset, limit);
+		return getDataSource().getDocumentDAO(sess).getByPeriodIdAndNumber(
+				getPeriod().getId(), startNumber, endNumber, offset, limit);
+	}
+	
+	protected List<Document> fetchFirstDocuments(Session sess, int number, int limit)
+		throws DataAccessException {
 		
-		updateDocuments(documents);
-		clearEntries();
+		return getDataSource().getDocumentDAO(sess).getFirstByPeriodIdAndNumber(
+				getPeriod().getId(), Math.max(number, startNumber), endNumber, limit);
+	}
+	
+	protected List<Document> fetchLastDocuments(Session sess, int number, int limit)
+		throws DataAccessException {
 		
-		if (documents.size() > 0) {
-			int firstNumber = documents.get(0).getNumber();
-			int lastNumber = documents.get(documents.size() - 1).getNumber();
-			dataSource.getEntryDAO(sess).getByPeriodIdAndNumber(
-					getPeriod().getId(), firstNumber, lastNumber, new DTOCallback<Entry>() {
-						public void process(Entry obj) {
-							addEntry(obj);
-						}
-					});
-		}
+		return getDataSource().getDocumentDAO(sess).getLastByPeriodIdAndNumber(
+				getPeriod().getId(), startNumber, Math.min(number, endNumber), limit);
+	}
+	
+	protected void fetchEntries(Session sess, List<Document> documents)
+		throws DataAccessException {
+		
+		/* Viennit haetaan tositteittain, jotta aiemmin haettujen
+		 * tositteiden viennit löytyvät välimuistista. */
+		getDataSource().getEntryDAO(sess).getByDocuments(documents,
+				new DTOCallback<Entry>() {
+					public void process(Entry obj) {
+						addEntry(obj);
+					}
+				});
 	}
 }
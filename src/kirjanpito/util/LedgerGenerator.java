@@ -0,0 +1,443 @@
+package kirjanpito.util;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import kirjanpito.db.Account;
+import kirjanpito.db.DataAccessException;
+import kirjanpito.db.DataSource;
+import kirjanpito.db.DataSourceFactory;
+import kirjanpito.db.Document;
+import kirjanpito.db.DocumentDAO;
+import kirjanpito.db.Entry;
+import kirjanpito.db.EntryDAO;
+import kirjanpito.db.Period;
+import kirjanpito.db.Session;
+import kirjanpito.models.DataSourceInitializer;
+
+/**
+ * Luo tietokantaan synteettisen kirjanpidon suorituskyvyn ja
+ * skaalautuvuuden testaamista varten. Tyhjään tietokantaan lisätään
+ * ensin tilikartta tilikarttamallista. Tämän jälkeen jokaiselle
+ * tilikaudelle luodaan tositteita, jotka muistuttavat myynti- ja
+ * ostotositteita ALV-vienteineen. Satunnaislukugeneraattorin siemen
+ * annetaan parametrina, joten samoilla parametreilla luodaan aina
+ * samanlainen kirjanpito.
+ *
+ * @author Tommi Helineva
+ */
+public class LedgerGenerator {
+	private DataSource dataSource;
+	private File templateFile;
+	private int periodCount;
+	private int documentCount;
+	private int entryCount;
+	private int accountCount;
+	private int batchSize;
+	private Random random;
+	private List<Account> salesAccounts;
+	private List<Account> purchaseAccounts;
+	private List<Account> expenseAccounts;
+	private List<Account> revenueAccounts;
+	private List<Account> assetAccounts;
+	private HashMap<Integer, Account> accountMap;
+	private long generatedEntries;
+
+	public LedgerGenerator(DataSource dataSource, File templateFile) {
+		this.dataSource = dataSource;
+		this.templateFile = templateFile;
+		this.periodCount = 1;
+		this.documentCount = 1000;
+		this.entryCount = 4;
+		this.batchSize = 500;
+		this.random = new Random(1);
+	}
+
+	/**
+	 * Asettaa luotavien tilikausien lukumäärän. Tilikaudet päättyvät
+	 * kuluvaan vuoteen.
+	 *
+	 * @param periodCount tilikausien lukumäärä
+	 */
+	public void setPeriodCount(int periodCount) {
+		this.periodCount = periodCount;
+	}
+
+	/**
+	 * Asettaa tositteiden lukumäärän tilikautta kohti.
+	 *
+	 * @param documentCount tositteiden lukumäärä
+	 */
+	public void setDocumentCount(int documentCount) {
+		this.documentCount = documentCount;
+	}
+
+	/**
+	 * Asettaa vientien keskimääräisen lukumäärän tositetta kohti.
+	 * ALV-viennit lasketaan mukaan.
+	 *
+	 * @param entryCount vientien lukumäärä
+	 */
+	public void setEntryCount(int entryCount) {
+		this.entryCount = entryCount;
+	}
+
+	/**
+	 * Asettaa käytettävien tilien enimmäismäärän. Jos arvo on 0,
+	 * kaikkia tilikartan tilejä käytetään.
+	 *
+	 * @param accountCount tilien lukumäärä
+	 */
+	public void setAccountCount(int accountCount) {
+		this.accountCount = accountCount;
+	}
+
+	/**
+	 * Asettaa, kuinka monen tositteen välein muutokset vahvistetaan.
+	 *
+	 * @param batchSize tositteiden lukumäärä
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Asettaa satunnaislukugeneraattorin siemenen.
+	 *
+	 * @param seed siemen
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Palauttaa luotujen vientien lukumäärän.
+	 *
+	 * @return vientien lukumäärä
+	 */
+	public long getGeneratedEntries() {
+		return generatedEntries;
+	}
+
+	/**
+	 * Luo kirjanpidon. Jos tietokannassa on jo tilikausia tai
+	 * tositteita, kirjanpitoa ei luoda.
+	 *
+	 * @throws Exception jos kirjanpidon luominen epäonnistuu
+	 */
+	public void generate() throws Exception {
+		Session sess = dataSource.openSession();
+		boolean empty;
+
+		try {
+			empty = dataSource.getAccountDAO(sess).getAll().isEmpty();
+		}
+		finally {
+			sess.close();
+		}
+
+		/* Tyhjään tietokantaan lisätään perustiedot tilikarttamallista. */
+		if (empty) {
+			new DataSourceInitializer(dataSource, templateFile).run();
+		}
+
+		sess = dataSource.openSession();
+
+		try {
+			checkEmpty(sess);
+			fetchAccounts(sess);
+			List<Period> periods = createPeriods(sess);
+			sess.commit();
+
+			for (Period period : periods) {
+				createDocuments(sess, period);
+			}
+		}
+		catch (Exception e) {
+			sess.rollback();
+			throw e;
+		}
+		finally {
+			sess.close();
+		}
+	}
+
+	/**
+	 * Tarkistaa, ettei tietokannassa ole tilikausia tai tositteita
+	 * perustietojen lisäämisen jälkeen. Muuten samat tilikaudet
+	 * luotaisiin uudelleen, kun generaattori ajetaan toistamiseen
+	 * samaan tietokantaan.
+	 */
+	private void checkEmpty(Session sess) throws DataAccessException {
+		List<Period> periods = dataSource.getPeriodDAO(sess).getAll();
+
+		if (periods.size() > 1 || (periods.size() == 1 &&
+				dataSource.getDocumentDAO(sess).getCountByPeriodId(
+						periods.get(0).getId(), 1) > 0)) {
+			throw new DataAccessException("Tietokannassa on jo tilikausia " +
+					"tai tositteita. Kirjanpito luodaan vain tyhjään tietokantaan.");
+		}
+	}
+
+	private void fetchAccounts(Session sess) throws DataAccessException {
+		salesAccounts = new ArrayList<Account>();
+		purchaseAccounts = new ArrayList<Account>();
+		expenseAccounts = new ArrayList<Account>();
+		revenueAccounts = new ArrayList<Account>();
+		assetAccounts = new ArrayList<Account>();
+		accountMap = new HashMap<Integer, Account>();
+		List<Account> accounts = dataSource.getAccountDAO(sess).getAll();
+
+		for (Account account : accounts) {
+			accountMap.put(account.getId(), account);
+		}
+
+		if (accountCount > 0 && accountCount < accounts.size()) {
+			accounts = accounts.subList(0, accountCount);
+		}
+
+		/* ALV-koodi 4 = verollinen myynti, 5 = verolliset ostot. */
+		for (Account account : accounts) {
+			boolean vat = account.getVatAccount1Id() >= 0 &&
+				accountMap.containsKey(account.getVatAccount1Id()) &&
+				account.getVatRate() != null &&
+				account.getVatRate().compareTo(BigDecimal.ZERO) > 0;
+
+			if (account.getType() == Account.TYPE_REVENUE) {
+				if (vat && account.getVatCode() == 4) {
+					salesAccounts.add(account);
+				}
+				else {
+					revenueAccounts.add(account);
+				}
+			}
+			else if (account.getType() == Account.TYPE_EXPENSE) {
+				if (vat && account.getVatCode() == 5) {
+					purchaseAccounts.add(account);
+				}
+				else {
+					expenseAccounts.add(account);
+				}
+			}
+			else if (account.getType() == Account.TYPE_ASSET &&
+					account.getVatCode() == 0) {
+				assetAccounts.add(account);
+			}
+		}
+
+		if (assetAccounts.isEmpty()) {
+			throw new DataAccessException("Tilikartassa ei ole vastaavaa-tilejä");
+		}
+
+		if (salesAccounts.isEmpty()) salesAccounts = revenueAccounts;
+		if (revenueAccounts.isEmpty()) revenueAccounts = salesAccounts;
+		if (purchaseAccounts.isEmpty()) purchaseAccounts = expenseAccounts;
+		if (expenseAccounts.isEmpty()) expenseAccounts = purchaseAccounts;
+
+		if (revenueAccounts.isEmpty() || expenseAccounts.isEmpty()) {
+			throw new DataAccessException("Tilikartassa ei ole tulo- ja menotilejä");
+		}
+	}
+
+	private List<Period> createPeriods(Session sess) throws DataAccessException {
+		Period current = dataSource.getPeriodDAO(sess).getCurrent();
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(current.getStartDate());
+		int lastYear = cal.get(Calendar.YEAR);
+		List<Period> periods = new ArrayList<Period>();
+
+		/* Nykyinen tilikausi on viimeinen, ja edelliset
+		 * tilikaudet luodaan sitä edeltäville vuosille. */
+		for (int year = lastYear - periodCount + 1; year < lastYear; year++) {
+			Period period = new Period();
+			cal.clear();
+			cal.set(year, 0, 1);
+			period.setStartDate(cal.getTime());
+			cal.set(year, 11, 31);
+			period.setEndDate(cal.getTime());
+			dataSource.getPeriodDAO(sess).save(period);
+
+			Document document = new Document();
+			document.setDate(period.getStartDate());
+			document.setNumber(0);
+			document.setPeriodId(period.getId());
+			dataSource.getDocumentDAO(sess).save(document);
+			periods.add(period);
+		}
+
+		periods.add(current);
+		return periods;
+	}
+
+	private void createDocuments(Session sess, Period period)
+		throws DataAccessException {
+
+		DocumentDAO documentDAO = dataSource.getDocumentDAO(sess);
+		EntryDAO entryDAO = dataSource.getEntryDAO(sess);
+		int number = documentDAO.create(period.getId(), 1,
+				Integer.MAX_VALUE).getNumber() - 1;
+		long start = period.getStartDate().getTime();
+		long days = (period.getEndDate().getTime() - start) / 86400000L + 1;
+		List<Entry> entries = new ArrayList<Entry>();
+
+		for (int i = 0; i < documentCount; i++) {
+			Calendar cal = Calendar.getInstance();
+			cal.setTime(period.getStartDate());
+			cal.add(Calendar.DAY_OF_MONTH, (int)(days * i / documentCount));
+
+			Document document = new Document();
+			document.setPeriodId(period.getId());
+			document.setNumber(++number);
+			document.setDate(cal.getTime());
+			documentDAO.save(document);
+
+			entries.clear();
+			createEntries(document, entries);
+
+			entryDAO.saveAll(entries);
+			generatedEntries += entries.size();
+
+			if ((i + 1) % batchSize == 0) {
+				sess.commit();
+			}
+		}
+
+		sess.commit();
+	}
+
+	private void createEntries(Document document, List<Entry> entries) {
+		int type = random.nextInt(10);
+		int lines = Math.max(1, (entryCount - 1) / 2);
+
+		/* 50 % myyntitositteita, 40 % ostotositteita ja 10 %
+		 * tositteita ilman ALV:tä. */
+		if (type < 5) {
+			createVatDocument(document, entries, salesAccounts, false, lines);
+		}
+		else if (type < 9) {
+			createVatDocument(document, entries, purchaseAccounts, true, lines);
+		}
+		else {
+			createVatDocument(document, entries, expenseAccounts, true,
+					Math.max(1, entryCount - 1));
+		}
+	}
+
+	/**
+	 * Luo tositteen, jossa on <code>lines</code> tuloslaskelman tilin
+	 * vientiä ALV-vienteineen ja vastavienti vastaavaa-tilille.
+	 */
+	private void createVatDocument(Document document, List<Entry> entries,
+			List<Account> accounts, boolean debit, int lines) {
+
+		BigDecimal total = BigDecimal.ZERO;
+		int rowNumber = 0;
+
+		for (int i = 0; i < lines; i++) {
+			Account account = accounts.get(random.nextInt(accounts.size()));
+			BigDecimal amount = randomAmount();
+			BigDecimal vatAmount = BigDecimal.ZERO;
+
+			if (account.getVatCode() == 4 || account.getVatCode() == 5) {
+				vatAmount = VATUtil.subtractVatAmount(account.getVatRate(), amount);
+			}
+
+			total = total.add(amount);
+			Entry entry = createEntry(document, account.getId(), debit,
+					amount.subtract(vatAmount), rowNumber);
+			entries.add(entry);
+
+			/* ALV-vienti tallennetaan samalle riville kuin
+			 * DocumentModelissa (rivinumero + 100000). */
+			if (vatAmount.compareTo(BigDecimal.ZERO) != 0) {
+				entries.add(createEntry(document, account.getVatAccount1Id(),
+						debit, vatAmount, rowNumber + 100000));
+			}
+
+			rowNumber++;
+		}
+
+		Account account = assetAccounts.get(random.nextInt(assetAccounts.size()));
+		entries.add(createEntry(document, account.getId(), !debit, total, rowNumber));
+	}
+
+	private Entry createEntry(Document document, int accountId,
+			boolean debit, BigDecimal amount, int rowNumber) {
+
+		Entry entry = new Entry();
+		entry.setDocumentId(document.getId());
+		entry.setAccountId(accountId);
+		entry.setDebit(debit);
+		entry.setAmount(amount);
+		entry.setDescription("Tosite " + document.getNumber());
+		entry.setRowNumber(rowNumber);
+		return entry;
+	}
+
+	/**
+	 * Palauttaa satunnaisen rahamäärän. Pienet rahamäärät ovat
+	 * yleisempiä kuin suuret.
+	 */
+	private BigDecimal randomAmount() {
+		double value = Math.exp(random.nextDouble() * Math.log(100000.0));
+		return BigDecimal.valueOf(Math.round(value * 100), 2);
+	}
+
+	public static void main(String[] args) throws Exception {
+		HashMap<String, String> params = new HashMap<String, String>();
+		params.put("url", null);
+		params.put("username", "");
+		params.put("password", "");
+		params.put("template", "tilikarttamallit/elinkeinotoiminta-24.jar");
+		params.put("periods", "1");
+		params.put("documents", "1000");
+		params.put("entries", "4");
+		params.put("accounts", "0");
+		params.put("batch", "500");
+		params.put("seed", "1");
+
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+
+			if (index < 0 || !params.containsKey(arg.substring(0, index))) {
+				System.err.println("Tuntematon parametri: " + arg);
+				System.exit(1);
+			}
+
+			params.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+
+		if (params.get("url") == null) {
+			System.err.println("Käyttö: LedgerGenerator url=<JDBC-osoite> " +
+					"[username=] [password=] [template=] [periods=] " +
+					"[documents=] [entries=] [accounts=] [batch=] [seed=]");
+			System.exit(1);
+		}
+
+		DataSource dataSource = DataSourceFactory.create(params.get("url"),
+				params.get("username"), params.get("password"));
+		long start = System.currentTimeMillis();
+
+		try {
+			LedgerGenerator generator = new LedgerGenerator(dataSource,
+					new File(params.get("template")));
+			generator.setPeriodCount(Integer.parseInt(params.get("periods")));
+			generator.setDocumentCount(Integer.parseInt(params.get("documents")));
+			generator.setEntryCount(Integer.parseInt(params.get("entries")));
+			generator.setAccountCount(Integer.parseInt(params.get("accounts")));
+			generator.setBatchSize(Integer.parseInt(params.get("batch")));
+			generator.setSeed(Long.parseLong(params.get("seed")));
+			generator.generate();
+			System.err.println(generator.getGeneratedEntries() +
+					" vientiä luotu " + (System.currentTimeMillis() - start) + " ms");
+		}
+		finally {
+			dataSource.close();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package kirjanpito.util;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+import kirjanpito.db.AccountTotal;
+import kirjanpito.db.AccountTotalArray;
+
+/**
+ * Laskee tilien saldot usealle aikavälille yhdellä kertaa. Päiväkohtaiset
+ * summat käydään läpi vain kerran päivämäärän mukaan järjestettynä.
+ * Aikavälien alku- ja loppupäivämäärät jakavat aikajanan osiin, ja
+ * jokaiselle tilille lasketaan osakohtaiset summat. Osien summista
+ * muodostetaan kumulatiiviset summat, joten aikavälin summa on kahden
+ * kumulatiivisen summan erotus.
+ *
+ * @author Tommi Helineva
+ */
+public class MultiRangeBalances {
+	private Date startDate;
+	private Date endDate;
+	private long[] boundaries;
+	private int[] startIndexes;
+	private int[] endIndexes;
+	private int segmentCount;
+	private int segment;
+	private HashMap<Integer, Integer> slots;
+	private int[] accountIds;
+	private long[] debitTotals;
+	private long[] creditTotals;
+	private int[] entryCounts;
+
+	/**
+	 * Luo <code>MultiRangeBalances</code>-olion aikaväleille.
+	 * Aikavälit voivat olla päällekkäisiä.
+	 *
+	 * @param startDates alkamispäivämäärät
+	 * @param endDates päättymispäivämäärät
+	 */
+	public MultiRangeBalances(Date[] startDates, Date[] endDates) {
+		int count = startDates.length;
+		long[] values = new long[count * 2];
+
+		/* Päättymispäivämäärä kuuluu aikaväliin, joten osa
+		 * päättyy päättymispäivämäärää seuraavaan hetkeen. */
+		for (int i = 0; i < count; i++) {
+			values[i * 2] = startDates[i].getTime();
+			values[i * 2 + 1] = endDates[i].getTime() + 1;
+		}
+
+		Arrays.sort(values);
+		int size = 0;
+
+		for (int i = 0; i < values.length; i++) {
+			if (size == 0 || values[size - 1] != values[i]) {
+				values[size++] = values[i];
+			}
+		}
+
+		boundaries = Arrays.copyOf(values, size);
+		segmentCount = size - 1;
+		startIndexes = new int[count];
+		endIndexes = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			startIndexes[i] = Arrays.binarySearch(boundaries, startDates[i].getTime());
+			endIndexes[i] = Arrays.binarySearch(boundaries, endDates[i].getTime() + 1);
+		}
+
+		startDate = new Date(boundaries[0]);
+		endDate = new Date(boundaries[size - 1] - 1);
+		slots = new HashMap<Integer, Integer>();
+		allocate(16);
+	}
+
+	/**
+	 * Palauttaa aikavälien aikaisimman alkamispäivämäärän.
+	 *
+	 * @return alkamispäivämäärä
+	 */
+	public Date getStartDate() {
+		return startDate;
+	}
+
+	/**
+	 * Palauttaa aikavälien myöhäisimmän päättymispäivämäärän.
+	 *
+	 * @return päättymispäivämäärä
+	 */
+	public Date getEndDate() {
+		return endDate;
+	}
+
+	/**
+	 * Lisää tilin päiväkohtaiset summat. Summat on lisättävä
+	 * päivämäärän mukaan nousevassa järjestyksessä.
+	 *
+	 * @param total tilin päiväkohtaiset summat
+	 */
+	public void addTotal(AccountTotal total) {
+		long time = total.getDate().getTime();
+
+		if (time < boundaries[0]) {
+			return;
+		}
+
+		while (segment < segmentCount && time >= boundaries[segment + 1]) {
+			segment++;
+		}
+
+		if (segment == segmentCount) {
+			return;
+		}
+
+		Integer slot = slots.get(total.getAccountId());
+
+		if (slot == null) {
+			slot = slots.size();
+
+			if (slot == accountIds.length) {
+				allocate(slot * 2);
+			}
+
+			slots.put(total.getAccountId(), slot);
+			accountIds[slot] = total.getAccountId();
+		}
+
+		/* Osan j summa tallennetaan indeksiin j + 1, jotta
+		 * kumulatiivisen summan ensimmäinen alkio on nolla. */
+		int index = slot * (segmentCount + 1) + segment + 1;
+		debitTotals[index] += AccountTotalArray.toCents(total.getDebitTotal());
+		creditTotals[index] += AccountTotalArray.toCents(total.getCreditTotal());
+		entryCounts[index] += total.getEntryCount();
+	}
+
+	/**
+	 * Laskee aikavälien saldot. Ensimmäisen aikavälin saldot lisätään
+	 * olioon <code>balances[0]</code>, toisen olioon
+	 * <code>balances[1]</code> jne.
+	 *
+	 * @param balances saldot
+	 */
+	public void fill(AccountBalances[] balances) {
+		int stride = segmentCount + 1;
+		int[] sorted = new int[slots.size()];
+
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = accountIds[i];
+		}
+
+		Arrays.sort(sorted);
+		AccountTotalArray[] totals = new AccountTotalArray[balances.length];
+
+		for (int i = 0; i < totals.length; i++) {
+			totals[i] = new AccountTotalArray(sorted.length);
+		}
+
+		for (int accountId : sorted) {
+			int offset = slots.get(accountId) * stride;
+
+			for (int j = 1; j < stride; j++) {
+				debitTotals[offset + j] += debitTotals[offset + j - 1];
+				creditTotals[offset + j] += creditTotals[offset + j - 1];
+				entryCounts[offset + j] += entryCounts[offset + j - 1];
+			}
+
+			for (int i = 0; i < totals.length; i++) {
+				int start = offset + startIndexes[i];
+				int end = offset + endIndexes[i];
+
+				if (end <= start || entryCounts[end] == entryCounts[start]) {
+					continue;
+				}
+
+				totals[i].add(accountId, true,
+						debitTotals[end] - debitTotals[start],
+						entryCounts[end] - entryCounts[start]);
+				totals[i].add(accountId, false,
+						creditTotals[end] - creditTotals[start], 0);
+			}
+		}
+
+		for (int i = 0; i < totals.length; i++) {
+			balances[i].addTotals(totals[i]);
+		}
+	}
+
+	private void allocate(int accountCount) {
+		int length = accountCount * (segmentCount + 1);
+
+		if (accountIds == null) {
+			accountIds = new int[accountCount];
+			debitTotals = new long[length];
+			creditTotals = new long[length];
+			entryCounts = new int[length];
+		}
+		else {
+			accountIds = Arrays.copyOf(accountIds, accountCount);
+			debitTotals = Arrays.copyOf(debitTotals, length);
+			creditTotals = Arrays.copyOf(creditTotals, length);
+			entryCounts = Arrays.copyOf(entryCounts, length);
+		}
+	}
+}
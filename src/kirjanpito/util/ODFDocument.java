@@ -1,8 +1,11 @@
 package kirjanpito.util;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.zip.ZipEntry;
@@ -14,6 +17,7 @@ public class ODFDocument {
 	private String generator;
 	private String title;
 	private String mimeType;
+	private ZipOutputStream zip;
 
 	public ODFDocument() {
 		styleWriter = new XMLWriter();
@@ -53,6 +57,50 @@ public class ODFDocument {
 		return contentWriter;
 	}
 	
+	/**
+	 * Aloittaa dokumentin kirjoittamisen tiedostoon. Sisältö
+	 * kirjoitetaan <code>content.xml</code>-tiedostoon sitä mukaa, kun
+	 * sitä lisätään, joten sisältöä ei pidetä kokonaan muistissa.
+	 * Lopuksi kutsutaan <code>close()</code>-metodia.
+	 * 
+	 * @param file tiedosto
+	 * @throws IOException jos tiedoston avaaminen epäonnistuu
+	 */
+	public void open(File file) throws IOException {
+		zip = new ZipOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+
+		writeMimeType(zip);
+		writeManifest(zip);
+		zip.putNextEntry(new ZipEntry("content.xml"));
+		contentWriter = new XMLWriter(new BufferedWriter(
+				new OutputStreamWriter(zip, "UTF-8")));
+	}
+
+	/**
+	 * Päättää <code>open()</code>-metodilla aloitetun dokumentin
+	 * kirjoittamisen. Tyylit ja metatiedot kirjoitetaan sisällön
+	 * jälkeen, joten niitä voidaan muuttaa kirjoittamisen aikana.
+	 * 
+	 * @throws IOException jos kirjoittaminen epäonnistuu
+	 */
+	public void close() throws IOException {
+		try {
+			contentWriter.flush();
+			zip.closeEntry();
+			writeMeta(zip);
+
+			ZipEntry entry = new ZipEntry("styles.xml");
+			zip.putNextEntry(entry);
+			writeXml(zip, styleWriter);
+			zip.closeEntry();
+		}
+		finally {
+			zip.close();
+			zip = null;
+		}
+	}
+
 	public void save(File file) throws IOException {
 		FileOutputStream stream = new FileOutputStream(file);
 		ZipOutputStream zip = new ZipOutputStream(stream);
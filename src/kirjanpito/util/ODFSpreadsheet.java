@@ -445,6 +445,13 @@ public class ODFSpreadsheet extends ODFDocument {
 		super.save(file);
 	}
 
+	@Override
+	public void close() throws IOException {
+		endDocumentContent();
+		writeStyles();
+		super.close();
+	}
+
 	private static class ODFSpreadsheetColumn {
 		public String name;
 		public String width;
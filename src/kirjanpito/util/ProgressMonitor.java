@@ -0,0 +1,39 @@
+package kirjanpito.util;
+
+/**
+ * Seuraa pitkäkestoisen tehtävän, esim. tulosteen tietojen hakemisen
+ * tai tietokannan alustamisen, edistymistä. Tehtävä ilmoittaa
+ * edistymisestä <code>setProgress()</code>-metodilla ja lopettaa
+ * tietojen käsittelyn, kun <code>isCancelled()</code> palauttaa
+ * <code>true</code>.
+ *
+ * @author Tommi Helineva
+ */
+public interface ProgressMonitor {
+	/**
+	 * Seuranta, joka ei tee mitään.
+	 */
+	public static final ProgressMonitor NONE = new ProgressMonitor() {
+		public void setProgress(int value, int maximum) {
+		}
+
+		public boolean isCancelled() {
+			return false;
+		}
+	};
+
+	/**
+	 * Ilmoittaa, kuinka suuri osa tiedoista on käsitelty.
+	 *
+	 * @param value käsiteltyjen tietojen määrä
+	 * @param maximum kaikkien tietojen määrä
+	 */
+	public void setProgress(int value, int maximum);
+
+	/**
+	 * Ilmoittaa, onko tehtävä keskeytetty.
+	 *
+	 * @return <code>true</code>, jos tietojen hakeminen lopetetaan
+	 */
+	public boolean isCancelled();
+}
@@ -26,6 +26,7 @@ public class Registry {
 	private List<DocumentType> documentTypes;
 	private ChartOfAccounts coa;
 	private Map<Integer, Account> accountMap;
+	private Map<String, Account> accountNumberMap;
 	
 	public Registry() {
 		listeners = new ArrayList<RegistryListener>();
@@ -159,13 +160,7 @@ public class Registry {
 	 * ei löydy
 	 */
 	public Account getAccountByNumber(String number) {
-		for (Account a : accounts) {
-			if (a.getNumber().equals(number)) {
-				return a;
-			}
-		}
-		
-		return null;
+		return accountNumberMap.get(number);
 	}
 	
 	public void clear() {
@@ -176,6 +171,7 @@ public class Registry {
 		entryTemplates = null;
 		documentTypes = null;
 		accountMap = null;
+		accountNumberMap = null;
 	}
 	
 	public boolean fetchPeriod(Session sess) throws DataAccessException {
@@ -208,12 +204,17 @@ public class Registry {
 	public void updateChartOfAccounts() {
 		coa.set(accounts, coaHeadings);
 		
-		/* Luodaan tileille hajautustaulu, jotta tilit
-		 * löytyvät nopeasti tunnisteen perusteella. */
+		/* Luodaan tileille hajautustaulut, jotta tilit löytyvät
+		 * nopeasti tunnisteen ja numeron perusteella. */
 		accountMap = new HashMap<Integer, Account>();
+		accountNumberMap = new HashMap<String, Account>();
 		
 		for (Account account : accounts) {
 			accountMap.put(account.getId(), account);
+			
+			if (!accountNumberMap.containsKey(account.getNumber())) {
+				accountNumberMap.put(account.getNumber(), account);
+			}
 		}
 	}
 	
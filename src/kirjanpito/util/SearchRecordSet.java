@@ -25,22 +25,34 @@ public class SearchRecordSet extends DocumentRecordSet {
 				sess).getCountByPeriodIdAndPhrase(getPeriod().getId(), q));
 	}
 	
-	protected void fetchDocuments(Session sess, int offset, int limit)
+	protected List<Document> fetchDocuments(Session sess, int offset, int limit)
 		throws DataAccessException {
 		
-		DataSource dataSource = getDataSource();
-		List<Document> documents = dataSource.getDocumentDAO(
-				sess).getByPeriodIdAndPhrase(getPeriod().getId(), q, offset, limit);
+		return getDataSource().getDocumentDAO(sess).getByPeriodIdAndPhrase(
+				getPeriod().getId(), q, offset, limit);
+	}
+	
+	protected List<Document> fetchFirstDocuments(Session sess, int number, int limit)
+		throws DataAccessException {
+		
+		return getDataSource().getDocumentDAO(sess).getFirstByPeriodIdAndPhrase(
+				getPeriod().getId(), q, number, Integer.MAX_VALUE, limit);
+	}
+	
+	protected List<Document> fetchLastDocuments(Session sess, int number, int limit)
+		throws DataAccessException {
 		
-		updateDocuments(documents);
-		clearEntries();
+		return getDataSource().getDocumentDAO(sess).getLastByPeriodIdAndPhrase(
+				getPeriod().getId(), q, Integer.MIN_VALUE, number, limit);
+	}
+	
+	protected void fetchEntries(Session sess, List<Document> documents)
+		throws DataAccessException {
 		
-		if (documents.size() > 0) {
-			dataSource.getEntryDAO(sess).getByDocuments(documents, new DTOCallback<Entry>() {
-				public void process(Entry obj) {
-					addEntry(obj);
-				}
-			});
-		}
+		getDataSource().getEntryDAO(sess).getByDocuments(documents, new DTOCallback<Entry>() {
+			public void process(Entry obj) {
+				addEntry(obj);
+			}
+		});
 	}
 }
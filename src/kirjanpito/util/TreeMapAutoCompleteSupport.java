@@ -26,6 +26,15 @@ public class TreeMapAutoCompleteSupport implements AutoCompleteSupport {
 					entry.getDescription());
 		}
 	}
+
+	public void addEntries(List<Entry> entries) {
+		for (Entry entry : entries) {
+			addEntry(entry);
+		}
+	}
+
+	public void removeEntries(List<Entry> entries) {
+	}
 	
 	public void clear() {
 		map.clear();
@@ -1,14 +1,34 @@
 package kirjanpito.util;
 
+import java.io.IOException;
+import java.io.Writer;
+
 public class XMLWriter {
 	private StringBuilder buffer;
 	private boolean elementOpen;
+	private Writer out;
+	private IOException exception;
+	
+	private static final int FLUSH_SIZE = 8192;
 	
 	public XMLWriter() {
 		this.buffer = new StringBuilder();
 		buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
 	}
 	
+	/**
+	 * Luo <code>XMLWriter</code>-olion, joka kirjoittaa XML:n
+	 * <code>out</code>-virtaan sitä mukaa, kun elementtejä lisätään.
+	 * Muistissa pidetään vain puskurillinen tekstiä. Kirjoitusvirheet
+	 * ilmoitetaan vasta <code>flush()</code>-metodissa.
+	 * 
+	 * @param out virta, johon XML kirjoitetaan
+	 */
+	public XMLWriter(Writer out) {
+		this();
+		this.out = out;
+	}
+	
 	public void startElement(String name) {
 		closeElement();
 		openElement();
@@ -21,6 +41,7 @@ public class XMLWriter {
 		buffer.append('/');
 		write(name);
 		closeElement();
+		flushBuffer();
 	}
 	
 	public void endElement() {
@@ -30,6 +51,7 @@ public class XMLWriter {
 		
 		buffer.append('/');
 		closeElement();
+		flushBuffer();
 	}
 	
 	public void writeAttribute(String name, String value) {
@@ -94,6 +116,55 @@ public class XMLWriter {
 		}
 	}
 	
+	/**
+	 * Kirjoittaa puskurissa olevan tekstin virtaan.
+	 * 
+	 * @throws IOException jos kirjoittaminen on epäonnistunut
+	 */
+	public void flush() throws IOException {
+		if (out != null) {
+			writeBuffer();
+			
+			if (exception == null) {
+				try {
+					out.flush();
+				}
+				catch (IOException e) {
+					exception = e;
+				}
+			}
+		}
+		
+		if (exception != null) {
+			throw exception;
+		}
+	}
+	
+	private void flushBuffer() {
+		if (out != null && buffer.length() >= FLUSH_SIZE) {
+			writeBuffer();
+		}
+	}
+	
+	private void writeBuffer() {
+		if (exception == null) {
+			try {
+				out.append(buffer);
+			}
+			catch (IOException e) {
+				exception = e;
+			}
+		}
+		
+		buffer.setLength(0);
+	}
+	
+	/**
+	 * Palauttaa kirjoitetun XML:n. Jos XML kirjoitetaan virtaan,
+	 * palautetaan vain puskurissa oleva osa.
+	 * 
+	 * @return XML
+	 */
 	public String toString() {
 		return buffer.toString();
 	}